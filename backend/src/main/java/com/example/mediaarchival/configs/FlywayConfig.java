@@ -0,0 +1,25 @@
+package com.example.mediaarchival.configs;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the versioned schema migrations.
+ * Hibernate creates and updates the tables from the entities, so the migrations are not run
+ * before the entity manager factory is built as they would be by default. They are run by
+ * {@link com.example.mediaarchival.tasks.SchemaMigrations} once the tables are up to date.
+ */
+@Configuration
+public class FlywayConfig {
+
+  /**
+   * Provides a migration strategy that leaves migrating to the schema migrations task.
+   *
+   * @return A FlywayMigrationStrategy that does nothing.
+   */
+  @Bean
+  public FlywayMigrationStrategy flywayMigrationStrategy() {
+    return flyway -> {};
+  }
+}
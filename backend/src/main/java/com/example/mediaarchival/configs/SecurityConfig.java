@@ -55,6 +55,11 @@ public class SecurityConfig {
                     // Secure all other API endpoints
                     .requestMatchers("/api/**")
                     .authenticated()
+                    // Health stays open for probes, metrics name libraries and their progress
+                    .requestMatchers("/actuator/health", "/actuator/health/**")
+                    .permitAll()
+                    .requestMatchers("/actuator/**")
+                    .authenticated()
                     // Permit all other requests
                     .anyRequest()
                     .permitAll())
@@ -1,20 +1,33 @@
 package com.example.mediaarchival.consumers;
 
-import com.example.mediaarchival.controllers.MediaController;
-import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaSizingService;
 import com.example.mediaarchival.utils.DirectoryUtils;
+import com.example.mediaarchival.utils.EnvUtils;
 import com.example.mediaarchival.utils.TarUtils;
 import java.io.File;
+import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.CompletedFileUpload;
 import software.amazon.awssdk.transfer.s3.model.FileUpload;
@@ -30,9 +43,17 @@ import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
 public class ArchivingConsumer {
 
   private final S3TransferManager transferManager;
+  private final S3Client s3Client;
   private final MediaRepository mediaRepository;
+  private final DirectorySizeRepository directorySizeRepository;
+  private final MediaSizingService mediaSizingService;
 
-  private final MediaController mediaController;
+  private final JobService jobService;
+  private final LibraryStatsService libraryStatsService;
+  private final LibraryMetadataCache libraryMetadataCache;
+
+  // Bytes of temporary space claimed by archives that are being tarred or uploaded
+  private final AtomicLong reservedTempSpace = new AtomicLong();
 
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
 
@@ -40,11 +61,21 @@ public class ArchivingConsumer {
   @Autowired
   public ArchivingConsumer(
       MediaRepository mediaRepository,
+      DirectorySizeRepository directorySizeRepository,
+      MediaSizingService mediaSizingService,
       S3TransferManager transferManager,
-      MediaController mediaController) {
+      S3Client s3Client,
+      JobService jobService,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache) {
     this.transferManager = transferManager;
+    this.s3Client = s3Client;
     this.mediaRepository = mediaRepository;
-    this.mediaController = mediaController;
+    this.directorySizeRepository = directorySizeRepository;
+    this.mediaSizingService = mediaSizingService;
+    this.jobService = jobService;
+    this.libraryStatsService = libraryStatsService;
+    this.libraryMetadataCache = libraryMetadataCache;
   }
 
   /**
@@ -57,48 +88,123 @@ public class ArchivingConsumer {
       concurrency = "5")
   public void processArchivingRequest(String path) {
     MediaModel media = mediaRepository.findByPath(path);
-    LibraryModel library = media.getLibrary();
-    if (mediaController.getJobCancelled(media.getId())) {
-      updateMediaStatus(media);
+    JobModel job = media == null ? null : jobService.findActiveJob(media, JobType.ARCHIVE);
+    if (job == null || job.getState() != JobState.QUEUED) {
+      // The job was stopped while its message waited in the queue
+      return;
+    }
+    if (jobService.isCancelRequested(job)) {
+      jobService.transition(job, JobState.CANCELLED);
       return;
     }
+    long reservation = 0;
     try {
-      File source = TarUtils.createTarArchive(media, mediaRepository);
+      LibraryMetadataCache.Metadata library = libraryMetadataCache.getForMedia(media);
+      reservation = reserveTempSpace(media, library);
+      if (reservation < 0) {
+        jobService.transition(job, JobState.FAILED);
+        return;
+      }
+      if (!jobService.transition(job, JobState.TARRING)) {
+        return;
+      }
+      File source = TarUtils.createTarArchive(media, library.isTvSeries());
       try {
-        uploadToS3(library, source, media);
+        uploadToS3(library, source, media, job);
       } finally {
         source.delete();
       }
     } catch (CancellationException ignore) {
     } catch (Exception any) {
       errorLogger.error("error archiving media: " + any.getMessage());
-      updateMediaStatus(media);
+      jobService.stop(job);
+    } finally {
+      if (reservation > 0) {
+        reservedTempSpace.addAndGet(-reservation);
+      }
+    }
+  }
+
+  /**
+   * Admits an archive job if the temporary directory can hold its TAR file. The size of the
+   * media is read by checking every file, since files rewritten in place do not change the
+   * modification times the directory size cache relies on. The cache and the stored size are
+   * corrected if they drifted. A media whose
+   * size is still pending waits for the {@link MediaSizingService} instead of sizing it twice.
+   * @param media The media model to be archived.
+   * @param library The metadata of the library the media belongs to.
+   * @return the number of bytes reserved for the job, or -1 if there is not enough space.
+   * @throws Exception if the pending size of the media could not be computed.
+   */
+  private long reserveTempSpace(MediaModel media, LibraryMetadataCache.Metadata library)
+      throws Exception {
+    if (media.isSizePending()) {
+      media.setSize(mediaSizingService.awaitSize(media));
+      media.setSizePending(false);
+    }
+    boolean isTvSeries = library.isTvSeries();
+    String sourcePath = isTvSeries ? media.getPath().replace("/metadata", "") : media.getPath();
+    // Every file is read into the archive anyway, so files rewritten in place are checked too
+    long size =
+        DirectoryUtils.getDirectorySize(
+            new File(sourcePath), isTvSeries, directorySizeRepository, true);
+    if (size != media.getSize()) {
+      media.setSize(size);
+      libraryStatsService.track(
+          List.of(media.getId()), () -> mediaRepository.updateSizeById(media.getId(), size));
+    }
+
+    long usableSpace = new File(EnvUtils.getTempDirectory()).getUsableSpace();
+    long reserved = reservedTempSpace.addAndGet(size);
+    if (reserved > usableSpace) {
+      reservedTempSpace.addAndGet(-size);
+      errorLogger.error(
+          "Not enough temporary space to archive " + media.getPath() + ": needs " + size
+              + " bytes, " + (usableSpace - reserved + size) + " bytes available");
+      return -1;
     }
+    return size;
   }
 
   /**
-   * Uploads a file to an S3 bucket and handles the transfer process.
-   * @param library The library model containing the bucket information.
+   * Uploads a file to an S3 bucket and handles the transfer process. S3 computes a SHA-256
+   * checksum of the upload, and the size, ETag and checksum of the uploaded object are recorded
+   * so syncs can tell whether the object in the bucket is still the one that was uploaded. The
+   * object's own last modified time is read back as the archive date, so syncs can tell it from
+   * older objects listed under the same key.
+   * @param library The metadata of the library, holding the bucket information.
    * @param source The source file to be uploaded.
    * @param media The media model associated with the file.
+   * @param job The archive job of the media.
    */
 
-  private void uploadToS3(LibraryModel library, File source, MediaModel media) {
-    if (mediaController.getJobCancelled(media.getId())) {
-      updateMediaStatus(media);
+  private void uploadToS3(
+      LibraryMetadataCache.Metadata library, File source, MediaModel media, JobModel job) {
+    if (jobService.isCancelRequested(job)) {
+      jobService.transition(job, JobState.CANCELLED);
+      return;
+    }
+    if (!jobService.transition(job, JobState.UPLOADING)) {
       return;
     }
     MediaObjectTransferListener listener =
         new MediaObjectTransferListener(
-            mediaRepository, mediaController, media, 5, true, source.getPath());
+            libraryStatsService,
+            jobService,
+            job,
+            media,
+            1,
+            true,
+            source.getPath());
 
     UploadFileRequest uploadFileRequest =
         UploadFileRequest.builder()
             .putObjectRequest(
                 b ->
-                    b.bucket(library.getBucketName())
+                    b.bucket(library.bucketName())
                         .key(media.getPath())
-                        .storageClass(library.getStorageClass()))
+                        .storageClass(library.storageClass())
+                        .checksumAlgorithm(ChecksumAlgorithm.SHA256))
             .addTransferListener(listener)
             .source(source)
             .build();
@@ -108,14 +214,30 @@ public class ArchivingConsumer {
 
     listener.setFileUpload(fileUpload);
 
-    future.join();
+    PutObjectResponse response = future.join().response();
+    // Set on the media as well, so the listener's save of the completed job keeps them
+    media.setUploadedSize(source.length());
+    media.setUploadedETag(response.eTag());
+    media.setUploadedChecksum(response.checksumSHA256());
+    media.setDateArchived(uploadedAt(library, media));
+    mediaRepository.updateUploadedObjectById(
+        media.getId(),
+        media.getUploadedSize(),
+        media.getUploadedETag(),
+        media.getUploadedChecksum(),
+        media.getDateArchived());
   }
 
-  private void updateMediaStatus(MediaModel media) {
-    media.setArchiving(false);
-    media.setUploadProgress(-1);
-    media.setTarring(false);
-    media.setJobCancelled(false);
-    mediaRepository.save(media);
+  // S3 stamps the object when the upload starts, before the listener records it as archived
+  private Instant uploadedAt(LibraryMetadataCache.Metadata library, MediaModel media) {
+    try {
+      return s3Client
+          .headObject(b -> b.bucket(library.bucketName()).key(media.getPath()))
+          .lastModified();
+    } catch (Exception e) {
+      errorLogger.error(
+          "Error reading the uploaded object of " + media.getPath() + ": " + e.getMessage());
+      return media.getDateArchived();
+    }
   }
 }
@@ -1,9 +1,13 @@
 package com.example.mediaarchival.consumers;
 
-import com.example.mediaarchival.controllers.MediaController;
-import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
 import com.example.mediaarchival.utils.DirectoryUtils;
 import com.example.mediaarchival.utils.EnvUtils;
 import java.io.IOException;
@@ -31,21 +35,29 @@ public class DownloadConsumer {
   private final S3TransferManager transferManager;
   private final MediaRepository mediaRepository;
 
-  private final MediaController mediaController;
+  private final JobService jobService;
+  private final LibraryStatsService libraryStatsService;
+  private final LibraryMetadataCache libraryMetadataCache;
+
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
   @Autowired
   public DownloadConsumer(
       MediaRepository mediaRepository,
       S3TransferManager transferManager,
-      MediaController mediaController) {
+      JobService jobService,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache) {
     this.transferManager = transferManager;
     this.mediaRepository = mediaRepository;
-    this.mediaController = mediaController;
+    this.jobService = jobService;
+    this.libraryStatsService = libraryStatsService;
+    this.libraryMetadataCache = libraryMetadataCache;
   }
 
   /**
    * Downloads a media object from an S3 bucket based on a path received from the download queue.
    * This method listens to a JMS queue and triggers when a download request is received.
+   * The transfer listener moves the download job to its final state once the transfer ends.
    *
    * @param path The path of the media object in the S3 bucket.
    * @throws IOException If an I/O error occurs during the download process.
@@ -56,53 +68,54 @@ public class DownloadConsumer {
       concurrency = "5")
   public void downloadObject(String path) throws IOException {
     MediaModel media = mediaRepository.findByPath(path);
-    boolean cancelled = mediaController.getJobCancelled(media.getId());
-    if (!cancelled) {
-      try {
-        LibraryModel library = media.getLibrary();
-        String downloadPath = EnvUtils.getDownloadDirectory() + "/" + media.getPath() + ".tar";
-        DirectoryUtils.createDirectoriesExceptLast(downloadPath);
+    JobModel job = media == null ? null : jobService.findActiveJob(media, JobType.DOWNLOAD);
+    if (job == null
+        || job.getState() != JobState.QUEUED && job.getState() != JobState.RESTORED) {
+      // The job was stopped while its message waited in the queue
+      return;
+    }
+    if (jobService.isCancelRequested(job)) {
+      jobService.transition(job, JobState.CANCELLED);
+      return;
+    }
+    if (!jobService.transition(job, JobState.DOWNLOADING)) {
+      return;
+    }
+    try {
+      String bucketName = libraryMetadataCache.getForMedia(media).bucketName();
+      String downloadPath = EnvUtils.getDownloadDirectory() + "/" + media.getPath() + ".tar";
+      DirectoryUtils.createDirectoriesExceptLast(downloadPath);
 
-        MediaObjectTransferListener listener =
-            new MediaObjectTransferListener(
-                mediaRepository, mediaController, media, 5, false, downloadPath);
+      MediaObjectTransferListener listener =
+          new MediaObjectTransferListener(
+              libraryStatsService,
+              jobService,
+              job,
+              media,
+              1,
+              false,
+              downloadPath);
 
-        DownloadFileRequest downloadFileRequest =
-            DownloadFileRequest.builder()
-                .getObjectRequest(
-                    req ->
-                        req.bucket(library.getBucketName()).key(path))
-                .destination(Paths.get(downloadPath))
-                .addTransferListener(listener)
-                .build();
+      DownloadFileRequest downloadFileRequest =
+          DownloadFileRequest.builder()
+              .getObjectRequest(
+                  req ->
+                      req.bucket(bucketName).key(path))
+              .destination(Paths.get(downloadPath))
+              .addTransferListener(listener)
+              .build();
 
-        FileDownload fileDownload = transferManager.downloadFile(downloadFileRequest);
+      FileDownload fileDownload = transferManager.downloadFile(downloadFileRequest);
 
-        CompletableFuture<CompletedFileDownload> future = fileDownload.completionFuture();
+      CompletableFuture<CompletedFileDownload> future = fileDownload.completionFuture();
 
-        listener.setFileDownload(fileDownload);
+      listener.setFileDownload(fileDownload);
 
-        future.join();
-      } catch (CancellationException ignore) {
-      } catch (Exception any) {
-        errorLogger.error("error downloading media: " + any.getMessage());
-      } finally {
-        resetMedia(media);
-        media.setDownloadSuccess(false);
-        mediaRepository.save(media);
-      }
-    } else {
-      resetMedia(media);
-      mediaRepository.updateIsRecoveringById(media.getId(), false);
+      future.join();
+    } catch (CancellationException ignore) {
+    } catch (Exception any) {
+      errorLogger.error("error downloading media: " + any.getMessage());
+      jobService.stop(job);
     }
   }
-
-  private void resetMedia(MediaModel media) {
-    media.setDownloadProgress(-1);
-    media.setRestored(false);
-    media.setRestoring(false);
-    media.setDownloadProgress(-1);
-    media.setJobCancelled(false);
-    mediaRepository.save(media);
-  }
 }
@@ -0,0 +1,172 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.SyncOutcome;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.services.LibrarySyncService;
+import com.example.mediaarchival.services.LibrarySyncService.AppliedEntry;
+import com.example.mediaarchival.services.SyncReportStore;
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import com.example.mediaarchival.utils.S3InventoryUtils.InventoryEntry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Decides the sync outcome of every media of a library and every object listed from its bucket,
+ * as they are merge joined by path. Each outcome is written to the sync report in join order.
+ * Changes are applied in batches through {@link LibrarySyncService}. Media matched with an object
+ * are applied by ID with their objects, and their outcome is what the service applied, so their
+ * report lines wait for their batch. Media whose archives were deleted from the bucket get one
+ * bulk update per batch.
+ */
+class LibrarySyncJoin implements MergeJoinUtils.JoinHandler<MediaModel, S3Object> {
+
+  static final int BATCH_SIZE = 1000;
+
+  private final LibrarySyncService librarySyncService;
+  private final SyncReportStore.Writer report;
+  private final Instant syncStarted;
+  private final List<Long> pendingMatchedIds = new ArrayList<>();
+  private final List<InventoryEntry> pendingMatched = new ArrayList<>();
+  // Report lines behind the first matched media of the batch, whose outcomes are not yet known
+  private final List<ReportLine> pendingLines = new ArrayList<>();
+  private final List<Long> pendingDeleted = new ArrayList<>();
+  private int updated;
+
+  /**
+   * Creates a join writing to the given report.
+   *
+   * @param librarySyncService the service applying archived objects and deleted archives to the
+   *     catalog
+   * @param report the report of the sync
+   * @param syncStarted when the sync started listing the bucket, media archived later are kept
+   */
+  LibrarySyncJoin(
+      LibrarySyncService librarySyncService,
+      SyncReportStore.Writer report,
+      Instant syncStarted) {
+    this.librarySyncService = librarySyncService;
+    this.report = report;
+    this.syncStarted = syncStarted;
+  }
+
+  @Override
+  public void onLeftOnly(MediaModel media) {
+    boolean wasArchived =
+        media.getArchivedStatus() == ArchivedStatus.ARCHIVED
+            || media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE;
+    if (!wasArchived) {
+      write(SyncOutcome.NEVER_ARCHIVED, media.getPath(), media.getId(), null, null);
+      return;
+    }
+    write(SyncOutcome.DELETED_FROM_S3, media.getPath(), media.getId(), null, null);
+    pendingDeleted.add(media.getId());
+    if (pendingDeleted.size() >= BATCH_SIZE) {
+      flushDeleted();
+    }
+  }
+
+  @Override
+  public void onRightOnly(S3Object object) {
+    write(SyncOutcome.ORPHANED, object.key(), null, object.lastModified(), object.size());
+  }
+
+  @Override
+  public void onBoth(MediaModel media, S3Object object) {
+    pendingMatchedIds.add(media.getId());
+    pendingMatched.add(
+        new InventoryEntry(
+            object.key(),
+            object.size(),
+            object.lastModified(),
+            object.eTag(),
+            object.storageClassAsString()));
+    pendingLines.add(new ReportLine(null, media.getPath(), media.getId(), null, null));
+    if (pendingLines.size() >= BATCH_SIZE) {
+      flushMatched();
+    }
+  }
+
+  /**
+   * Applies the changes still pending and writes their outcomes.
+   */
+  void flush() {
+    flushMatched();
+    flushDeleted();
+  }
+
+  /**
+   * Gets the number of media whose archive state was changed.
+   *
+   * @return the number of media updated
+   */
+  int getUpdated() {
+    return updated;
+  }
+
+  private void flushMatched() {
+    if (pendingLines.isEmpty()) {
+      return;
+    }
+    List<AppliedEntry> applied =
+        librarySyncService.applyEntries(
+            new ArrayList<>(pendingMatchedIds), new ArrayList<>(pendingMatched));
+    int next = 0;
+    for (ReportLine line : pendingLines) {
+      if (line.outcome() != null) {
+        writeNow(
+            line.outcome(), line.path(), line.mediaId(), line.dateArchived(), line.archivedSize());
+        continue;
+      }
+      AppliedEntry entry = applied.get(next++);
+      if (entry.changed()) {
+        updated++;
+      }
+      writeNow(
+          entry.outcome(),
+          line.path(),
+          entry.outcome() == SyncOutcome.ORPHANED ? null : line.mediaId(),
+          entry.dateArchived(),
+          entry.archivedSize());
+    }
+    pendingMatchedIds.clear();
+    pendingMatched.clear();
+    pendingLines.clear();
+  }
+
+  private void flushDeleted() {
+    if (!pendingDeleted.isEmpty()) {
+      updated += librarySyncService.markNotArchived(new ArrayList<>(pendingDeleted), syncStarted);
+      pendingDeleted.clear();
+    }
+  }
+
+  private void write(
+      SyncOutcome outcome, String path, Long mediaId, Instant dateArchived, Long archivedSize) {
+    if (pendingLines.isEmpty()) {
+      writeNow(outcome, path, mediaId, dateArchived, archivedSize);
+      return;
+    }
+    pendingLines.add(new ReportLine(outcome, path, mediaId, dateArchived, archivedSize));
+    if (pendingLines.size() >= BATCH_SIZE) {
+      flushMatched();
+    }
+  }
+
+  private void writeNow(
+      SyncOutcome outcome, String path, Long mediaId, Instant dateArchived, Long archivedSize) {
+    try {
+      report.write(outcome, path, mediaId, dateArchived, archivedSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // A line of the report, without its outcome while that is not yet known
+  private record ReportLine(
+      SyncOutcome outcome, String path, Long mediaId, Instant dateArchived, Long archivedSize) {}
+}
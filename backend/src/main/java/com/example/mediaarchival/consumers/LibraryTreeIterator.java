@@ -0,0 +1,254 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
+import com.example.mediaarchival.services.ScanProgress;
+import com.example.mediaarchival.utils.DirectoryUtils;
+import com.example.mediaarchival.utils.DirectoryUtils.DirectorySummary;
+import com.example.mediaarchival.utils.DirectoryUtils.TvShowSummary;
+import com.example.mediaarchival.utils.PathTemplate;
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the directories described by a library path and yields the media found on disk in
+ * ascending path order, as the catalog sorts paths, so the result can be merge joined against
+ * the catalog. The walk is
+ * driven by the compiled {@link PathTemplate} of the library: literal segments are followed
+ * without listing, children that cannot lead to media are never entered, and only one directory
+ * listing per level of the walk is held at a time.
+ */
+class LibraryTreeIterator implements Iterator<ScannedMedia> {
+
+  private final PathTemplate template;
+  private final boolean isTvLibrary;
+  private final File root;
+  private final ScanProgress progress;
+  private final DirectorySizeRepository sizeCache;
+  private final Comparator<String> order;
+  private final String startAfter;
+  private final Deque<Frame> frames = new ArrayDeque<>();
+  private final Deque<ScannedMedia> pending = new ArrayDeque<>();
+  private ScannedMedia next;
+  private boolean skippedEntries;
+
+  /**
+   * Creates an iterator over the media of a library.
+   *
+   * @param libraryPath the library path template, see {@link PathTemplate}
+   * @param category the category of the library
+   * @param progress receives a count of every directory listed
+   * @param sizeCache the repository holding cached directory sizes, used to summarize TV shows
+   * @param order the order of paths in the catalog, in which media are returned
+   * @param startAfter only media with a path after this one are returned, and directories
+   *     holding nothing after it are not listed; null for all media
+   * @throws IllegalArgumentException if the library path is not a valid template
+   */
+  LibraryTreeIterator(
+      String libraryPath,
+      MediaCategory category,
+      ScanProgress progress,
+      DirectorySizeRepository sizeCache,
+      Comparator<String> order,
+      String startAfter) {
+    this.template = PathTemplate.compile(libraryPath);
+    this.isTvLibrary = category == MediaCategory.TV;
+    this.root = new File(template.getRoot());
+    this.progress = progress;
+    this.sizeCache = sizeCache;
+    this.order = order;
+    this.startAfter = startAfter;
+    enter(root, template.rootStates());
+    next = advance();
+  }
+
+  /**
+   * Checks whether the directory the library path starts from exists.
+   *
+   * @return true if the root of the library path is a directory
+   */
+  boolean rootExists() {
+    return root.isDirectory();
+  }
+
+  /**
+   * Checks whether the walk found anything on disk that can hold media. Media and directories
+   * skipped for lying before the start of a resumed scan count as well, so a listing that is
+   * empty only because everything after the checkpoint is gone is told apart from an empty
+   * root. The answer is final once {@link #hasNext()} returns false.
+   *
+   * @return true if media or directories that may hold media were found
+   */
+  boolean foundEntries() {
+    return next != null || skippedEntries;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public ScannedMedia next() {
+    if (next == null) {
+      throw new NoSuchElementException();
+    }
+    ScannedMedia current = next;
+    next = advance();
+    return current;
+  }
+
+  private ScannedMedia advance() {
+    while (true) {
+      if (!pending.isEmpty()) {
+        ScannedMedia media = pending.poll();
+        if (isAfterStart(media.path())) {
+          return media;
+        }
+        skippedEntries = true;
+        continue;
+      }
+      Frame frame = frames.peek();
+      if (frame == null) {
+        return null;
+      }
+      if (frame.index >= frame.children.size()) {
+        frames.pop();
+        continue;
+      }
+      Child child = frame.children.get(frame.index++);
+      if (!child.isMedia) {
+        if (mayHoldPathsAfterStart(child.file)) {
+          enter(child.file, child.states);
+        } else {
+          skippedEntries = true;
+        }
+      } else if (isTvLibrary) {
+        if (mayHoldPathsAfterStart(child.file)) {
+          pending.addAll(tvMedia(child.file));
+        } else {
+          skippedEntries = true;
+        }
+      } else if (!isAfterStart(child.file.getPath())) {
+        skippedEntries = true;
+      } else {
+        return new ScannedMedia(
+            child.file.getPath(),
+            child.file.getName(),
+            child.file,
+            false,
+            lastModified(child.file),
+            ScannedMedia.UNKNOWN_SIZE);
+      }
+    }
+  }
+
+  // Follows literal segments without listing, then lists the directory reached and keeps the
+  // children that can still match. Media are not descended into, so matches never nest.
+  private void enter(File dir, BitSet states) {
+    String literal;
+    while ((literal = template.literalChild(states)) != null) {
+      dir = new File(dir, literal);
+      states = template.advance(states, literal);
+    }
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    progress.directoryVisited(files.length);
+    List<Child> children = new ArrayList<>();
+    for (File file : files) {
+      BitSet childStates = template.advance(states, file.getName());
+      if (childStates.isEmpty()) {
+        continue;
+      }
+      boolean isMedia = template.isMedia(childStates);
+      if (isMedia || file.isDirectory()) {
+        children.add(new Child(file, childStates, isMedia));
+      }
+    }
+    children.sort(Comparator.comparing(child -> child.sortKey(isTvLibrary), order));
+    frames.push(new Frame(children));
+  }
+
+  // One walk of the show yields its metadata and every season, each with its size and the
+  // latest modification time anywhere inside it
+  private List<ScannedMedia> tvMedia(File show) {
+    if (!show.isDirectory()) {
+      return List.of(
+          new ScannedMedia(
+              show.getPath() + "/metadata",
+              show.getName() + " metadata",
+              show,
+              true,
+              lastModified(show),
+              ScannedMedia.UNKNOWN_SIZE));
+    }
+    TvShowSummary summary = DirectoryUtils.summarizeTvShow(show, sizeCache);
+    progress.directoryVisited(summary.seasons().size());
+    List<ScannedMedia> media = new ArrayList<>();
+    DirectorySummary metadata = summary.metadata();
+    media.add(
+        new ScannedMedia(
+            show.getPath() + "/metadata",
+            show.getName() + " metadata",
+            show,
+            true,
+            Instant.ofEpochMilli(metadata.lastModified()),
+            metadata.size()));
+    for (DirectorySummary season : summary.seasons()) {
+      media.add(
+          new ScannedMedia(
+              show.getPath() + "/" + season.dir().getName(),
+              show.getName() + " " + season.dir().getName(),
+              season.dir(),
+              false,
+              Instant.ofEpochMilli(season.lastModified()),
+              season.size()));
+    }
+    media.sort(Comparator.comparing(ScannedMedia::path, order));
+    return media;
+  }
+
+  private boolean isAfterStart(String path) {
+    return startAfter == null || order.compare(path, startAfter) > 0;
+  }
+
+  // Every path below a directory starts with its path and a separator, so when that prefix
+  // sorts before the start and is not a prefix of it, the whole directory was already scanned
+  private boolean mayHoldPathsAfterStart(File dir) {
+    String prefix = dir.getPath() + "/";
+    return startAfter == null
+        || order.compare(prefix, startAfter) > 0
+        || startAfter.startsWith(prefix);
+  }
+
+  private static Instant lastModified(File file) {
+    return Instant.ofEpochMilli(file.lastModified());
+  }
+
+  // A child whose paths continue below it is ordered as if its name ended with a separator,
+  // which keeps everything below it in path order next to media named like it
+  private record Child(File file, BitSet states, boolean isMedia) {
+    String sortKey(boolean isTvLibrary) {
+      return isMedia && !isTvLibrary ? file.getName() : file.getName() + "/";
+    }
+  }
+
+  private static class Frame {
+    private final List<Child> children;
+    private int index;
+
+    Frame(List<Child> children) {
+      this.children = children;
+    }
+  }
+}
@@ -1,15 +1,34 @@
 package com.example.mediaarchival.consumers;
 
-import com.example.mediaarchival.enums.ArchivedStatus;
-import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.enums.ChangeDetection;
+import com.example.mediaarchival.enums.ScanState;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
 import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
-import com.example.mediaarchival.utils.DirectoryUtils;
-import java.io.File;
+import com.example.mediaarchival.services.CatalogPathOrder;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.LibrarySyncService;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import com.example.mediaarchival.services.ScanProgress;
+import com.example.mediaarchival.services.ScanProgressTracker;
+import com.example.mediaarchival.services.ScanScheduler;
+import com.example.mediaarchival.services.SyncReportStore;
+import com.example.mediaarchival.utils.EnvUtils;
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import com.example.mediaarchival.utils.PathTemplate;
+import com.example.mediaarchival.utils.S3InventoryUtils;
+import com.example.mediaarchival.utils.S3InventoryUtils.InventoryEntry;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -17,19 +36,39 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 @Component
 public class LibraryUpdateConsumer {
 
   private final LibraryRepository libraryRepository;
   private final MediaRepository mediaRepository;
+  private final DirectorySizeRepository directorySizeRepository;
+  private final FileFingerprintRepository fileFingerprintRepository;
+  private final ScanScheduler scanScheduler;
+  private final MediaSizingService mediaSizingService;
+  private final ScanProgressTracker scanProgressTracker;
+  private final MediaPathIndex mediaPathIndex;
+  private final MediaNameIndex mediaNameIndex;
+  private final LibrarySyncService librarySyncService;
+  private final SyncReportStore syncReportStore;
+  private final LibraryStatsService libraryStatsService;
+  private final CatalogPathOrder catalogPathOrder;
 
   private final S3Client s3Client;
+  private final S3AsyncClient s3AsyncClient;
+
+  // Inventory rows applied per lookup, matching the size of a listing page
+  private static final int SYNC_BATCH_SIZE = 1000;
 
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+  private static final Logger logger = LoggerFactory.getLogger(LibraryUpdateConsumer.class);
 
   /**
    * Consumer class responsible for handling library update operations.
@@ -37,15 +76,42 @@ public class LibraryUpdateConsumer {
    */
   @Autowired
   public LibraryUpdateConsumer(
-      LibraryRepository libraryRepository, MediaRepository mediaRepository, S3Client s3Client) {
+      LibraryRepository libraryRepository,
+      MediaRepository mediaRepository,
+      DirectorySizeRepository directorySizeRepository,
+      FileFingerprintRepository fileFingerprintRepository,
+      ScanScheduler scanScheduler,
+      MediaSizingService mediaSizingService,
+      ScanProgressTracker scanProgressTracker,
+      MediaPathIndex mediaPathIndex,
+      MediaNameIndex mediaNameIndex,
+      LibrarySyncService librarySyncService,
+      SyncReportStore syncReportStore,
+      S3Client s3Client,
+      S3AsyncClient s3AsyncClient,
+      LibraryStatsService libraryStatsService,
+      CatalogPathOrder catalogPathOrder) {
     this.libraryRepository = libraryRepository;
     this.mediaRepository = mediaRepository;
+    this.directorySizeRepository = directorySizeRepository;
+    this.fileFingerprintRepository = fileFingerprintRepository;
+    this.scanScheduler = scanScheduler;
+    this.mediaSizingService = mediaSizingService;
+    this.scanProgressTracker = scanProgressTracker;
+    this.mediaPathIndex = mediaPathIndex;
+    this.mediaNameIndex = mediaNameIndex;
+    this.librarySyncService = librarySyncService;
+    this.syncReportStore = syncReportStore;
     this.s3Client = s3Client;
+    this.s3AsyncClient = s3AsyncClient;
+    this.libraryStatsService = libraryStatsService;
+    this.catalogPathOrder = catalogPathOrder;
   }
 
   /**
-   * Scans a library and updates media objects based on the local file system.
-   * Triggered by messages from the 'libraryScanQueue'.
+   * Schedules a scan of a library on the lane of the storage device it lives on, so libraries
+   * on different devices are scanned concurrently. Triggered by messages from the
+   * 'libraryScanQueue'.
    *
    * @param libraryId The ID of the library to be scanned.
    */
@@ -54,34 +120,96 @@ public class LibraryUpdateConsumer {
       containerFactory = "containerFactory",
       concurrency = "1")
   public void scanLibrary(Long libraryId) {
-    LibraryModel library = null;
-    Optional<LibraryModel> libraryOptional;
-
     try {
-      libraryOptional = libraryRepository.findById(libraryId);
+      Optional<LibraryModel> libraryOptional = libraryRepository.findById(libraryId);
       if (libraryOptional.isEmpty()) {
         return;
       }
-      library = libraryOptional.get();
-      String libraryPath = library.getPath(); // Get the library path
-      String[] segments = libraryPath.split("/");
-      if (libraryPath.charAt(0) == '/') {
-        segments[0] = "/";
+      LibraryModel library = libraryOptional.get();
+      scanScheduler.submit(library.getId(), library.getPath(), () -> scanLibrary(library));
+    } catch (Exception e) {
+      errorLogger.error(e.getMessage());
+    }
+  }
+
+  /**
+   * Scans a library and updates media objects based on the local file system.
+   * The media found on disk and the media in the catalog are both read in the order the catalog
+   * sorts paths in, see {@link CatalogPathOrder}, and merge joined, so media that were added, changed or removed are all detected in one pass.
+   * Progress is published through the {@link ScanProgressTracker} while the scan runs.
+   * A scan that was interrupted resumes after the checkpoint it left on the library.
+   *
+   * @param library The library to be scanned.
+   */
+  void scanLibrary(LibraryModel library) {
+    ScanProgress progress = scanProgressTracker.start(library);
+    ScanState outcome = ScanState.FAILED;
+    try {
+      String checkpoint = library.getScanCheckpoint();
+      if (checkpoint != null) {
+        logger.info("Resuming scan of library " + library.getName() + " after " + checkpoint);
+      }
+      LibraryTreeIterator filesOnDisk =
+          new LibraryTreeIterator(
+              library.getPath(),
+              library.getCategory(),
+              progress,
+              directorySizeRepository,
+              catalogPathOrder,
+              checkpoint);
+      if (!filesOnDisk.rootExists()) {
+        errorLogger.error("Library path not found, skipping scan: " + library.getPath());
+        return;
       }
-      scanDirectory(segments[0], segments, library);
+
+      // An empty listing more likely means an unmounted volume than a deleted library,
+      // so nothing is removed from the catalog in that case. A resumed scan looks at what is on
+      // disk now, including what lies before its checkpoint, not at what the earlier run found.
+      MediaScanDiff diff =
+          new MediaScanDiff(
+              mediaRepository,
+              libraryRepository,
+              mediaSizingService,
+              EnvUtils.getChangeDetection() == ChangeDetection.FINGERPRINT
+                  ? fileFingerprintRepository
+                  : null,
+              library,
+              EnvUtils.getMissingMediaPolicy(),
+              filesOnDisk.foundEntries(),
+              progress,
+              mediaPathIndex,
+              mediaNameIndex,
+              libraryStatsService);
+      MergeJoinUtils.join(
+          filesOnDisk,
+          ScannedMedia::path,
+          new MediaPathCursor(
+              mediaRepository, library.getId(), MediaScanDiff.BATCH_SIZE, checkpoint),
+          MediaModel::getPath,
+          catalogPathOrder,
+          diff);
+      diff.flush();
+      library.setScanCheckpoint(null);
+      outcome = ScanState.COMPLETED;
+      logger.info("Scanned library " + library.getName() + ": " + diff.summary());
     } catch(Exception e){
       errorLogger.error(e.getMessage());
     } finally {
-      if(library != null){
-        library.setUpdating(false);
-        libraryRepository.save(library);
-      }
+      scanProgressTracker.finish(library, progress, outcome);
+      library.setUpdating(false);
+      libraryRepository.save(library);
     }
   }
 
   /**
    * Synchronizes a library with its corresponding objects in the S3 bucket.
-   * Triggered by messages from the 'librarySyncQueue'.
+   * Triggered by messages from the 'librarySyncQueue'. Libraries with an inventory location
+   * are reconciled from the latest S3 Inventory report of their bucket, falling back to
+   * listing when no report can be read. Otherwise the keys below the directories of the
+   * library's root that hold media are listed in order, several prefixes at once, and merge
+   * joined with the library's media sorted by path. The outcome for every media and object is
+   * written to the library's sync report as the join goes, so memory use does not depend on
+   * the size of the library or the bucket.
    *
    * @param libraryId The ID of the library to be synchronized.
    */
@@ -92,6 +220,8 @@ public class LibraryUpdateConsumer {
   public void synchronizeLibrary(Long libraryId) {
     LibraryModel library = null;
     Optional<LibraryModel> libraryOptional;
+    PrefixListing listing = null;
+    PrefixListing rootListing = null;
     try {
       libraryOptional = libraryRepository.findById(libraryId);
       if (libraryOptional.isEmpty()) {
@@ -99,46 +229,62 @@ public class LibraryUpdateConsumer {
       }
       library = libraryOptional.get();
 
-      String bucketName = library.getBucketName();
-
-      boolean moreObjectsExist = true;
-      String continuationToken = null;
-
-      while (moreObjectsExist) {
-        ListObjectsV2Request request =
-                ListObjectsV2Request.builder() // Using the builder pattern here
-                        .bucket(bucketName)
-                        .continuationToken(continuationToken)
-                        .build();
-
-        ListObjectsV2Response result = this.s3Client.listObjectsV2(request);
-        for (software.amazon.awssdk.services.s3.model.S3Object object : result.contents()) {
-          String modifiedPath = object.key();
-          MediaModel media = mediaRepository.findByPath(modifiedPath);
-          if (media != null) {
-            Instant s3LastModifiedDate = object.lastModified();
-            Instant mediaLastModifiedDate = media.getDateLastModified();
-
-            if (mediaLastModifiedDate.isAfter(s3LastModifiedDate)) {
-              media.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
-            } else {
-              media.setArchivedStatus(ArchivedStatus.ARCHIVED);
-            }
-
-            media.setDateArchived(object.lastModified());
-            mediaRepository.save(media);
-          }
+      String rootPrefix = rootPrefix(PathTemplate.compile(library.getPath()).getRoot());
+      if (library.getInventoryPath() != null && !library.getInventoryPath().isBlank()) {
+        try {
+          synchronizeFromInventory(library, rootPrefix);
+          return;
+        } catch (Exception e) {
+          errorLogger.error(
+              "Error reading the inventory of library " + library.getName()
+                  + ", listing its bucket instead: " + e.getMessage());
         }
+      }
 
-        if (result.isTruncated()) {
-          continuationToken = result.nextContinuationToken();
-        } else {
-          moreObjectsExist = false;
-        }
+      Instant syncStarted = Instant.now();
+      List<String> directories =
+          mediaRepository.findFirstLevelDirectories(libraryId, rootPrefix.length() + 1);
+      listing =
+          new PrefixListing(
+              s3AsyncClient,
+              PrefixListing.requestsFor(library.getBucketName(), directories),
+              EnvUtils.getSyncListConcurrency());
+      Iterator<S3Object> objects = listing.objects();
+      if (directories.contains("")) {
+        rootListing =
+            new PrefixListing(
+                s3AsyncClient,
+                List.of(PrefixListing.rootRequestFor(library.getBucketName(), rootPrefix)),
+                1);
+        objects = PrefixListing.merge(rootListing.objects(), objects);
+      }
+
+      try (SyncReportStore.Writer report = syncReportStore.open(libraryId)) {
+        LibrarySyncJoin join =
+            new LibrarySyncJoin(librarySyncService, report, syncStarted);
+        // Bucket keys are listed in code point order, while H2 returns paths in UTF-16 order
+        MergeJoinUtils.joinAcrossStringOrders(
+            new MediaPathCursor(mediaRepository, libraryId, LibrarySyncJoin.BATCH_SIZE, null),
+            MediaModel::getPath,
+            objects,
+            S3Object::key,
+            join);
+        join.flush();
+        report.complete();
+        logger.info(
+            "Synchronized library " + library.getName() + " from " + directories.size()
+                + " prefixes: " + report.getCounts() + ", " + join.getUpdated()
+                + " media updated");
       }
     } catch(Exception e){
       errorLogger.error(e.getMessage());
     } finally {
+      if (listing != null) {
+        listing.cancel();
+      }
+      if (rootListing != null) {
+        rootListing.cancel();
+      }
       if(library != null){
         library.setUpdating(false);
         libraryRepository.save(library);
@@ -146,140 +292,90 @@ public class LibraryUpdateConsumer {
     }
   }
 
-  private void scanDirectory(String currentPath, String[] segments, LibraryModel library) {
-    File currentDir = new File(currentPath);
-
-    // Check if the current directory exists
-    if (!currentDir.exists() || !currentDir.isDirectory()) {
-      return;
+  /**
+   * Reconciles a library with the latest complete S3 Inventory report of its bucket. Reports
+   * are read newest first until one with a manifest is found, since the newest may still be
+   * being delivered. Rows are streamed and applied in batches, so the report is never held in
+   * memory.
+   */
+  private void synchronizeFromInventory(LibraryModel library, String rootPrefix)
+      throws IOException {
+    String location = library.getInventoryPath().trim();
+    int slash = location.indexOf('/');
+    String inventoryBucket = slash < 0 ? location : location.substring(0, slash);
+    String inventoryPrefix = slash < 0 ? "" : location.substring(slash + 1);
+    if (!inventoryPrefix.isEmpty() && !inventoryPrefix.endsWith("/")) {
+      inventoryPrefix += "/";
     }
 
-    // If there are no more segments left, create/update media objects for all files and directories
-    if (segments.length == 1) {
-      File[] filesAndDirs = currentDir.listFiles();
-      if (filesAndDirs != null) {
-        for (File fileOrDir : filesAndDirs) {
-          createOrUpdateMediaObject(fileOrDir, library);
-        }
-      }
-      return;
+    List<String> folders = new ArrayList<>();
+    for (ListObjectsV2Response page :
+        s3Client.listObjectsV2Paginator(
+            ListObjectsV2Request.builder()
+                .bucket(inventoryBucket)
+                .prefix(inventoryPrefix)
+                .delimiter("/")
+                .build())) {
+      page.commonPrefixes().forEach(folder -> folders.add(folder.prefix()));
     }
 
-    // Get the next segment
-    String nextSegment = segments[1];
-    String[] remainingSegments = Arrays.copyOfRange(segments, 1, segments.length);
-
-    if (nextSegment.startsWith("${") && nextSegment.endsWith("}")) {
-      File[] subDirs = currentDir.listFiles(File::isDirectory);
-      if (subDirs != null) {
-        for (File subDir : subDirs) {
-          scanDirectory(currentPath + "/" + subDir.getName(), remainingSegments, library);
-        }
+    S3InventoryUtils.Manifest manifest = null;
+    String manifestKey = null;
+    for (String key : S3InventoryUtils.manifestKeysNewestFirst(folders)) {
+      try (InputStream in =
+          s3Client.getObject(GetObjectRequest.builder().bucket(inventoryBucket).key(key).build())) {
+        manifest = S3InventoryUtils.readManifest(in);
+        manifestKey = key;
+        break;
+      } catch (NoSuchKeyException e) {
+        // The report is still being delivered, try the previous one
       }
-    } else {
-      scanDirectory(currentPath + "/" + nextSegment, remainingSegments, library);
     }
-  }
-
-  // Helper method to create or update a MediaModel object
-  private void createOrUpdateMediaObject(File file, LibraryModel library) {
-    Instant lastModified = Instant.ofEpochMilli(file.lastModified());
-    // Check if a media object with the same path already exists
-    MediaModel existingMedia;
-    if (library.getCategory() == MediaCategory.TV) {
-      existingMedia = mediaRepository.findByPath(file.getPath() + "/metadata");
-    } else {
-      existingMedia = mediaRepository.findByPath(file.getPath());
+    if (manifest == null) {
+      throw new IOException("No inventory report found at " + location);
     }
-
-    if (existingMedia != null) {
-      // Check if the existing object is ARCHIVED and out of date
-      if (existingMedia.getArchivedStatus() == ArchivedStatus.ARCHIVED
-          && existingMedia.getDateArchived() != null
-          && lastModified.isAfter(existingMedia.getDateArchived())) {
-        existingMedia.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
-        existingMedia.setSize(
-            DirectoryUtils.getDirectorySize(file, library.getCategory() == MediaCategory.TV));
-
-        existingMedia.setSize(file.getTotalSpace());
-      }
-      existingMedia.setDateLastModified(lastModified);
-      mediaRepository.save(existingMedia);
-    } else {
-      MediaModel media = new MediaModel();
-      media.setLibrary(library);
-      media.setArchivedStatus(ArchivedStatus.NOT_ARCHIVED);
-      media.setDateLastModified(lastModified);
-      media.setArchiving(false);
-      media.setUploadProgress(-1);
-      media.setTarring(false);
-      media.setRestoring(false);
-      media.setRestored(false);
-      media.setDownloadProgress(-1);
-      media.setJobCancelled(false);
-
-      if (library.getCategory() == MediaCategory.TV) {
-        media.setName(file.getName() + " metadata");
-        media.setPath(file.getPath() + "/metadata");
-        media.setSize(DirectoryUtils.getDirectorySize(file, true));
-      } else {
-        media.setName(file.getName());
-        media.setPath(file.getPath());
-        media.setSize(DirectoryUtils.getDirectorySize(file, false));
-      }
-
-      // Save the media object
-      mediaRepository.save(media);
+    if (!"CSV".equalsIgnoreCase(manifest.fileFormat())) {
+      throw new IOException("Unsupported inventory format " + manifest.fileFormat());
+    }
+    if (manifest.sourceBucket() != null
+        && !manifest.sourceBucket().equals(library.getBucketName())) {
+      throw new IOException("Inventory describes bucket " + manifest.sourceBucket());
     }
 
-    // Check if the library's mediaCategory is TV
-    if (library.getCategory() == MediaCategory.TV) {
-      if (file.isDirectory()) {
-        File[] subDirs = file.listFiles(File::isDirectory);
-        if (subDirs != null) {
-          for (File subDir : subDirs) {
-            // If the subdirectory contains "season" in its name, save it
-            if (subDir.getName().toLowerCase().contains("season")) {
-              // Check if a TV season media object with the same path already exists
-              String seasonPath = file.getPath() + "/" + subDir.getName();
-              MediaModel existingSeasonMedia = mediaRepository.findByPath(seasonPath);
-              if (existingSeasonMedia != null) {
-                // Update the existing TV season media object
-                existingSeasonMedia.setDateLastModified(lastModified);
-
-                // Check if the existing TV season object is ARCHIVED and out of date
-                if (existingSeasonMedia.getArchivedStatus() == ArchivedStatus.ARCHIVED
-                    && existingSeasonMedia.getDateArchived() != null
-                    && lastModified.isAfter(existingSeasonMedia.getDateArchived())) {
-                  existingSeasonMedia.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
-                  existingSeasonMedia.setSize(DirectoryUtils.getDirectorySize(subDir, false));
-                }
-                // Save the updated TV season media object
-                mediaRepository.save(existingSeasonMedia);
-              } else {
-                // Save the TV season directory as a new media object
-                MediaModel seasonMedia = new MediaModel();
-                seasonMedia.setName(file.getName() + " " + subDir.getName());
-                seasonMedia.setPath(seasonPath);
-                seasonMedia.setLibrary(library);
-                seasonMedia.setDateLastModified(lastModified);
-                seasonMedia.setArchivedStatus(ArchivedStatus.NOT_ARCHIVED);
-                seasonMedia.setArchiving(false);
-                seasonMedia.setUploadProgress(-1);
-                seasonMedia.setTarring(false);
-                seasonMedia.setRestoring(false);
-                seasonMedia.setRestored(false);
-                seasonMedia.setDownloadProgress(-1);
-                seasonMedia.setJobCancelled(false);
-                seasonMedia.setSize(DirectoryUtils.getDirectorySize(subDir, false));
-
-                // Save the TV season media object
-                mediaRepository.save(seasonMedia);
+    List<InventoryEntry> batch = new ArrayList<>(SYNC_BATCH_SIZE);
+    int[] counts = new int[2];
+    for (String file : manifest.files()) {
+      try (InputStream in =
+          s3Client.getObject(GetObjectRequest.builder().bucket(inventoryBucket).key(file).build())) {
+        S3InventoryUtils.readCsv(
+            in,
+            manifest.columns(),
+            entry -> {
+              if (!entry.key().startsWith(rootPrefix)) {
+                return;
               }
-            }
-          }
-        }
+              counts[0]++;
+              batch.add(entry);
+              if (batch.size() == SYNC_BATCH_SIZE) {
+                counts[1] += librarySyncService.applyEntries(batch);
+                batch.clear();
+              }
+            });
       }
     }
+    if (!batch.isEmpty()) {
+      counts[1] += librarySyncService.applyEntries(batch);
+    }
+    logger.info(
+        "Synchronized library " + library.getName() + " from inventory " + manifestKey + ": "
+            + counts[0] + " objects, " + counts[1] + " media updated");
+  }
+
+  // Keys of a library start with its root, relative roots are listed from the bucket's start
+  private static String rootPrefix(String root) {
+    if (root.equals(".")) {
+      return "";
+    }
+    return root.endsWith("/") ? root : root + "/";
   }
 }
@@ -1,9 +1,11 @@
 package com.example.mediaarchival.consumers;
 
-import com.example.mediaarchival.controllers.MediaController;
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
-import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryStatsService;
 import com.example.mediaarchival.utils.TarUtils;
 import java.io.File;
 import java.io.IOException;
@@ -17,8 +19,9 @@ import software.amazon.awssdk.transfer.s3.progress.TransferListener;
 
 public class MediaObjectTransferListener implements TransferListener {
 
-  private final MediaRepository mediaRepository;
-  private final MediaController mediaController;
+  private final LibraryStatsService libraryStatsService;
+  private final JobService jobService;
+  private final JobModel job;
   private final MediaModel mediaObject;
   private final int updateIntervalPercentage;
 
@@ -35,18 +38,22 @@ public class MediaObjectTransferListener implements TransferListener {
 
   /**
    * A listener for media object transfer events, handling the progress tracking and completion
-   * status updates for both uploads and downloads of media objects.
+   * status updates for both uploads and downloads of media objects. Progress is recorded through
+   * the job service, which buffers it and writes it to the database behind the transfer, and the
+   * end of the transfer moves the job to its final state.
    */
 
   public MediaObjectTransferListener(
-          MediaRepository mediaRepository,
-          MediaController mediaController,
+          LibraryStatsService libraryStatsService,
+          JobService jobService,
+          JobModel job,
           MediaModel mediaObject,
           int updateIntervalPercentage,
           boolean isUpload,
           String tempPath) {
-    this.mediaRepository = mediaRepository;
-    this.mediaController = mediaController;
+    this.libraryStatsService = libraryStatsService;
+    this.jobService = jobService;
+    this.job = job;
     this.mediaObject = mediaObject;
     this.updateIntervalPercentage = updateIntervalPercentage;
     this.tempPath = tempPath;
@@ -60,12 +67,12 @@ public class MediaObjectTransferListener implements TransferListener {
    */
   @Override
   public void transferInitiated(TransferListener.Context.TransferInitiated context) {
-    setProgress(mediaObject, 0);
+    setProgress(0);
   }
 
   /**
    * Handles the bytes transferred event during a media object transfer.
-   * Updates the progress of the transfer in the database based on the bytes transferred.
+   * Records the progress of the transfer based on the bytes transferred.
    *
    * @param context The context containing the details of the transfer progress.
    */
@@ -74,7 +81,7 @@ public class MediaObjectTransferListener implements TransferListener {
   public void bytesTransferred(TransferListener.Context.BytesTransferred context) {
     long transferredBytes = context.progressSnapshot().transferredBytes();
     long size = mediaObject.getSize();
-    if (mediaController.getJobCancelled(mediaObject.getId()) && !jobPaused) {
+    if (!jobPaused && jobService.isCancelRequested(job)) {
       if (fileUpload != null && !fileUpload.completionFuture().isDone()) {
         jobPaused = true;
         fileUpload.pause();
@@ -89,7 +96,7 @@ public class MediaObjectTransferListener implements TransferListener {
     int progressPercentage = (int) ((transferredBytes * 100) / size);
 
     if (progressPercentage - lastTransferredBytes >= updateIntervalPercentage) {
-      setProgress(mediaObject, progressPercentage);
+      setProgress(progressPercentage);
       lastTransferredBytes = progressPercentage;
     }
   }
@@ -109,8 +116,7 @@ public class MediaObjectTransferListener implements TransferListener {
       try {
         successDownload();
       } catch (IOException e) {
-        mediaObject.setDownloadSuccess(false);
-        mediaRepository.save(mediaObject);
+        jobService.transition(job, JobState.FAILED);
         throw new RuntimeException(e);
       }
     }
@@ -152,26 +158,18 @@ public class MediaObjectTransferListener implements TransferListener {
   }
 
   private void failedUpload() {
-    mediaObject.setArchiving(false);
-    mediaObject.setUploadProgress(-1);
-    mediaRepository.save(mediaObject);
+    jobService.stop(job);
   }
 
   private void successUpload() {
-    mediaObject.setArchiving(false);
-    mediaObject.setUploadProgress(-1);
     mediaObject.setArchivedStatus(ArchivedStatus.ARCHIVED);
     mediaObject.setDateArchived(Instant.now());
-    mediaRepository.save(mediaObject);
+    libraryStatsService.save(mediaObject);
+    jobService.transition(job, JobState.SUCCEEDED);
   }
 
   private void failedDownload() {
-    mediaObject.setDownloadProgress(-1);
-    mediaObject.setRestored(false);
-    mediaObject.setRestoring(false);
-    mediaObject.setRecovering(true);
-    mediaObject.setDownloadSuccess(false);
-    mediaRepository.save(mediaObject);
+    jobService.stop(job);
     try {
       File tar = new File(this.tempPath);
       tar.delete();
@@ -181,21 +179,12 @@ public class MediaObjectTransferListener implements TransferListener {
   }
 
   private void successDownload() throws IOException {
-    mediaObject.setRestoring(false);
-    mediaObject.setRestored(false);
-    mediaRepository.save(mediaObject);
     File tar = new File(this.tempPath);
     TarUtils.unpackTarArchive(tar);
-    mediaObject.setDownloadSuccess(true);
-    mediaObject.setRecovering(true);
-    mediaRepository.save(mediaObject);
+    jobService.transition(job, JobState.SUCCEEDED);
   }
 
-  private void setProgress(MediaModel media, int progress) {
-    if (this.isUpload) {
-      mediaRepository.updateUploadProgressById(media.getId(), progress);
-    } else {
-      mediaRepository.updateDownloadProgressById(media.getId(), progress);
-    }
+  private void setProgress(int progress) {
+    jobService.recordProgress(job, progress);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,70 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Iterates over the media of a library in ascending path order, loading one batch at a time.
+ * Each batch is fetched by seeking past the last path of the previous one, so the catalog is
+ * never held in memory and no long-running transaction is needed.
+ */
+class MediaPathCursor implements Iterator<MediaModel> {
+
+  private final MediaRepository mediaRepository;
+  private final Long libraryId;
+  private final int batchSize;
+  private List<MediaModel> batch = List.of();
+  private int index;
+  private String lastPath;
+  private boolean exhausted;
+
+  /**
+   * Creates a cursor over a library's media.
+   *
+   * @param mediaRepository the repository to read media from
+   * @param libraryId the ID of the library
+   * @param batchSize the number of media loaded per query
+   * @param startAfter only media with a path after this one are returned, or null for all
+   */
+  MediaPathCursor(
+      MediaRepository mediaRepository, Long libraryId, int batchSize, String startAfter) {
+    this.mediaRepository = mediaRepository;
+    this.libraryId = libraryId;
+    this.batchSize = batchSize;
+    this.lastPath = startAfter == null ? "" : startAfter;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (index < batch.size()) {
+      return true;
+    }
+    if (exhausted) {
+      return false;
+    }
+    batch =
+        mediaRepository.findByLibraryIdAndPathGreaterThanOrderByLibraryIdAscPathAsc(
+            libraryId, lastPath, PageRequest.of(0, batchSize));
+    if (batch == null) {
+      batch = List.of();
+    }
+    index = 0;
+    exhausted = batch.size() < batchSize;
+    if (!batch.isEmpty()) {
+      lastPath = batch.get(batch.size() - 1).getPath();
+    }
+    return !batch.isEmpty();
+  }
+
+  @Override
+  public MediaModel next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return batch.get(index++);
+  }
+}
@@ -0,0 +1,283 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.MissingMediaPolicy;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import com.example.mediaarchival.services.ScanProgress;
+import com.example.mediaarchival.utils.FingerprintUtils;
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the result of merge joining a library's files on disk against its catalog entries.
+ * New media are inserted, changed media are updated and media that are no longer on disk are
+ * handled according to the {@link MissingMediaPolicy}. When a fingerprint cache is given, media
+ * are changed when their content fingerprint changes rather than their modification time.
+ * Sizes the walk did not provide are left pending and handed to the {@link MediaSizingService}.
+ * All writes are buffered and applied in batches. Every {@link #CHECKPOINT_INTERVAL} media the
+ * buffers are flushed and the last path handled is recorded on the library, so an interrupted
+ * scan can resume after it.
+ */
+class MediaScanDiff implements MergeJoinUtils.JoinHandler<ScannedMedia, MediaModel> {
+
+  static final int BATCH_SIZE = 500;
+  static final int CHECKPOINT_INTERVAL = 10 * BATCH_SIZE;
+
+  private final MediaRepository mediaRepository;
+  private final LibraryRepository libraryRepository;
+  private final MediaSizingService sizingService;
+  private final FileFingerprintRepository fingerprintCache;
+  private final LibraryModel library;
+  private final MissingMediaPolicy missingMediaPolicy;
+  private final boolean removalsEnabled;
+  private final ScanProgress progress;
+  private final MediaPathIndex mediaPathIndex;
+  private final MediaNameIndex mediaNameIndex;
+  private final LibraryStatsService libraryStats;
+
+  private final List<MediaModel> pendingSaves = new ArrayList<>();
+  // The media of each pending save whose size is computed once it has an ID, or null
+  private final List<ScannedMedia> pendingSizes = new ArrayList<>();
+  private final List<MediaModel> pendingRemovals = new ArrayList<>();
+  private String lastPath;
+  private int sinceCheckpoint;
+
+  /**
+   * Creates a diff for one scan of a library.
+   *
+   * @param mediaRepository the repository changes are written to
+   * @param libraryRepository the repository checkpoints are written to
+   * @param sizingService the service sizing media in the background
+   * @param fingerprintCache the repository holding cached file fingerprints, or null to detect
+   *     changes by modification time only
+   * @param library the library being scanned
+   * @param missingMediaPolicy what to do with media that are no longer on disk
+   * @param removalsEnabled whether media missing from disk may be removed at all
+   * @param progress receives a count of every change and of the bytes sized
+   * @param mediaPathIndex the path index kept current with media added and deleted
+   * @param mediaNameIndex the name index kept current with media added and deleted
+   * @param libraryStats the statistics of the library, updated with every batch written
+   */
+  MediaScanDiff(
+      MediaRepository mediaRepository,
+      LibraryRepository libraryRepository,
+      MediaSizingService sizingService,
+      FileFingerprintRepository fingerprintCache,
+      LibraryModel library,
+      MissingMediaPolicy missingMediaPolicy,
+      boolean removalsEnabled,
+      ScanProgress progress,
+      MediaPathIndex mediaPathIndex,
+      MediaNameIndex mediaNameIndex,
+      LibraryStatsService libraryStats) {
+    this.mediaRepository = mediaRepository;
+    this.libraryRepository = libraryRepository;
+    this.sizingService = sizingService;
+    this.fingerprintCache = fingerprintCache;
+    this.library = library;
+    this.missingMediaPolicy = missingMediaPolicy;
+    this.removalsEnabled = removalsEnabled;
+    this.progress = progress;
+    this.mediaPathIndex = mediaPathIndex;
+    this.mediaNameIndex = mediaNameIndex;
+    this.libraryStats = libraryStats;
+  }
+
+  @Override
+  public void onLeftOnly(ScannedMedia scanned) {
+    MediaModel media = new MediaModel();
+    media.setLibrary(library);
+    media.setName(scanned.name());
+    media.setPath(scanned.path());
+    media.setArchivedStatus(ArchivedStatus.NOT_ARCHIVED);
+    media.setDateLastModified(scanned.lastModified());
+    if (fingerprintCache != null) {
+      media.setFingerprint(fingerprintOf(scanned));
+    }
+    progress.mediaCreated();
+    queueSave(media, resize(media, scanned));
+    handled(scanned.path());
+  }
+
+  @Override
+  public void onBoth(ScannedMedia scanned, MediaModel media) {
+    boolean isChanged = media.isMissing();
+    media.setMissing(false);
+
+    Instant lastModified = scanned.lastModified();
+    boolean isModified = !lastModified.equals(media.getDateLastModified());
+    boolean isOutdated =
+        media.getDateArchived() != null && lastModified.isAfter(media.getDateArchived());
+
+    // A known fingerprint overrides the modification time, which copies and sync tools may
+    // preserve or bump without the content changing
+    if (fingerprintCache != null) {
+      String fingerprint = fingerprintOf(scanned);
+      if (fingerprint != null && media.getFingerprint() != null) {
+        boolean isContentChanged = !fingerprint.equals(media.getFingerprint());
+        isModified = isModified || isContentChanged;
+        isOutdated = isContentChanged;
+      }
+      if (fingerprint != null && !fingerprint.equals(media.getFingerprint())) {
+        media.setFingerprint(fingerprint);
+        isChanged = true;
+      }
+    }
+
+    ScannedMedia sizing = null;
+    if (isModified) {
+      media.setDateLastModified(lastModified);
+      sizing = resize(media, scanned);
+      isChanged = true;
+    }
+
+    // Check if the existing object is ARCHIVED and out of date
+    if (media.getArchivedStatus() == ArchivedStatus.ARCHIVED && isOutdated) {
+      media.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
+      isChanged = true;
+    }
+
+    if (isChanged) {
+      progress.mediaUpdated();
+      queueSave(media, sizing);
+    } else {
+      progress.mediaUnchanged();
+    }
+    handled(media.getPath());
+  }
+
+  @Override
+  public void onRightOnly(MediaModel media) {
+    boolean isRemoved =
+        removalsEnabled
+            && !(missingMediaPolicy == MissingMediaPolicy.MARK_MISSING && media.isMissing());
+    if (isRemoved) {
+      pendingRemovals.add(media);
+      if (pendingRemovals.size() >= BATCH_SIZE) {
+        flushRemovals();
+      }
+    }
+    handled(media.getPath());
+  }
+
+  /**
+   * Writes all buffered changes to the catalog.
+   */
+  void flush() {
+    flushSaves();
+    flushRemovals();
+  }
+
+  /**
+   * Summarizes the changes made by this diff.
+   *
+   * @return a short description of the number of media added, changed, removed and unchanged
+   */
+  String summary() {
+    return "added "
+        + progress.getMediaCreated()
+        + ", changed "
+        + progress.getMediaUpdated()
+        + ", removed "
+        + progress.getMediaRemoved()
+        + " ("
+        + missingMediaPolicy
+        + "), unchanged "
+        + progress.getMediaUnchanged();
+  }
+
+  // Paths arrive in ascending order, so once the buffers are flushed everything up to the
+  // last path is in the catalog
+  private void handled(String path) {
+    lastPath = path;
+    if (++sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+      flush();
+      libraryRepository.updateScanCheckpointById(library.getId(), lastPath);
+      library.setScanCheckpoint(lastPath);
+      sinceCheckpoint = 0;
+    }
+  }
+
+  private void queueSave(MediaModel media, ScannedMedia sizing) {
+    pendingSaves.add(media);
+    pendingSizes.add(sizing);
+    if (pendingSaves.size() >= BATCH_SIZE) {
+      flushSaves();
+    }
+  }
+
+  private void flushSaves() {
+    if (!pendingSaves.isEmpty()) {
+      int i = 0;
+      for (MediaModel saved : libraryStats.saveAll(new ArrayList<>(pendingSaves))) {
+        mediaPathIndex.put(saved.getPath(), saved.getId());
+        mediaNameIndex.put(saved.getId(), saved.getName());
+        ScannedMedia sizing = pendingSizes.get(i++);
+        if (sizing != null) {
+          sizingService.submit(
+              saved.getId(),
+              sizing.source(),
+              sizing.excludeSeasons(),
+              MediaSizingService.Priority.SCAN);
+        }
+      }
+      pendingSaves.clear();
+      pendingSizes.clear();
+    }
+  }
+
+  private void flushRemovals() {
+    if (pendingRemovals.isEmpty()) {
+      return;
+    }
+    // Media with a running job are left alone, the job will surface the problem
+    Set<Long> withJobs =
+        new HashSet<>(
+            mediaRepository.findIdsWithActiveJobByIdIn(
+                pendingRemovals.stream().map(MediaModel::getId).toList()));
+    pendingRemovals.removeIf(media -> withJobs.contains(media.getId()));
+    pendingRemovals.forEach(media -> progress.mediaRemoved());
+    if (pendingRemovals.isEmpty()) {
+      return;
+    }
+    List<Long> ids = pendingRemovals.stream().map(MediaModel::getId).toList();
+    if (missingMediaPolicy == MissingMediaPolicy.DELETE) {
+      libraryStats.track(ids, () -> mediaRepository.deleteAllByIdInBatch(ids));
+      pendingRemovals.forEach(media -> mediaPathIndex.remove(media.getPath()));
+      mediaNameIndex.remove(pendingRemovals);
+    } else {
+      mediaRepository.markMissingByIdIn(ids);
+    }
+    pendingRemovals.clear();
+  }
+
+  private String fingerprintOf(ScannedMedia scanned) {
+    return FingerprintUtils.fingerprint(
+        scanned.source(), scanned.excludeSeasons(), fingerprintCache);
+  }
+
+  // Sizes known from the walk are set right away, the others are left pending and computed in
+  // the background once the media is saved, so new media appear without waiting for them
+  private ScannedMedia resize(MediaModel media, ScannedMedia scanned) {
+    if (scanned.size() != ScannedMedia.UNKNOWN_SIZE) {
+      media.setSize(scanned.size());
+      media.setSizePending(false);
+      progress.bytesSized(scanned.size());
+      return null;
+    }
+    media.setSizePending(true);
+    return scanned;
+  }
+}
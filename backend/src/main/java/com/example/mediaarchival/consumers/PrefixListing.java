@@ -0,0 +1,194 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Lists the keys of a bucket under a set of disjoint prefixes, with up to a fixed number of
+ * prefixes listed at once. Pages are returned in key order: the prefixes are listed in order, and
+ * while the first of them is paged through, the first pages of the following ones are already
+ * being fetched. The request for a prefix's next page is sent as soon as its current page is
+ * returned, so listing continues while pages are being processed. At most one page per running
+ * prefix is buffered.
+ */
+class PrefixListing {
+
+  private final S3AsyncClient s3AsyncClient;
+  private final int concurrency;
+  private final Deque<ListObjectsV2Request> pending;
+  private final Deque<CompletableFuture<ListObjectsV2Response>> running = new ArrayDeque<>();
+  private final Deque<ListObjectsV2Request> runningRequests = new ArrayDeque<>();
+
+  /**
+   * Creates a listing of the given requests.
+   *
+   * @param s3AsyncClient the client to list with
+   * @param requests the first request of every prefix, in key order
+   * @param concurrency the maximum number of prefixes listed at once
+   */
+  PrefixListing(
+      S3AsyncClient s3AsyncClient, Collection<ListObjectsV2Request> requests, int concurrency) {
+    this.s3AsyncClient = s3AsyncClient;
+    this.concurrency = Math.max(concurrency, 1);
+    this.pending = new ArrayDeque<>(requests);
+  }
+
+  /**
+   * Builds the requests listing the directories below a library's root that hold media, in the
+   * order S3 lists their keys. Directory prefixes end with a slash, so none is a prefix of
+   * another and listing them one after the other yields their keys in order.
+   *
+   * @param bucketName the bucket of the library
+   * @param directories the directories below the root holding media, as returned by
+   *     {@code MediaRepository.findFirstLevelDirectories}
+   * @return one request per directory
+   */
+  static List<ListObjectsV2Request> requestsFor(String bucketName, Collection<String> directories) {
+    List<String> prefixes = new ArrayList<>();
+    for (String directory : directories) {
+      if (directory != null && !directory.isEmpty()) {
+        prefixes.add(directory);
+      }
+    }
+    prefixes.sort(MergeJoinUtils.CODE_POINT_ORDER);
+
+    List<ListObjectsV2Request> requests = new ArrayList<>();
+    for (String prefix : prefixes) {
+      requests.add(ListObjectsV2Request.builder().bucket(bucketName).prefix(prefix).build());
+    }
+    return requests;
+  }
+
+  /**
+   * Builds the request listing the objects directly in a library's root, leaving out the
+   * directories below it.
+   *
+   * @param bucketName the bucket of the library
+   * @param rootPrefix the library's root with a trailing slash, or empty for a relative root
+   * @return the request
+   */
+  static ListObjectsV2Request rootRequestFor(String bucketName, String rootPrefix) {
+    return ListObjectsV2Request.builder().bucket(bucketName).prefix(rootPrefix).delimiter("/").build();
+  }
+
+  /**
+   * Waits for the next page in key order.
+   *
+   * @return the page, or null once every prefix has been listed
+   */
+  ListObjectsV2Response nextPage() {
+    while (running.size() < concurrency && !pending.isEmpty()) {
+      start(pending.poll());
+    }
+    if (running.isEmpty()) {
+      return null;
+    }
+
+    ListObjectsV2Response page = running.poll().join();
+    ListObjectsV2Request request = runningRequests.poll();
+    if (page.isTruncated()) {
+      // The prefix stays first in line with its next page
+      running.addFirst(
+          s3AsyncClient.listObjectsV2(
+              request.toBuilder().continuationToken(page.nextContinuationToken()).build()));
+      runningRequests.addFirst(request);
+    }
+    return page;
+  }
+
+  /**
+   * Iterates over the objects of every page in key order.
+   *
+   * @return the objects
+   */
+  Iterator<S3Object> objects() {
+    return new Iterator<>() {
+      private Iterator<S3Object> page = List.<S3Object>of().iterator();
+      private boolean exhausted;
+
+      @Override
+      public boolean hasNext() {
+        while (!page.hasNext() && !exhausted) {
+          ListObjectsV2Response next = nextPage();
+          if (next == null) {
+            exhausted = true;
+          } else {
+            page = next.contents().iterator();
+          }
+        }
+        return page.hasNext();
+      }
+
+      @Override
+      public S3Object next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return page.next();
+      }
+    };
+  }
+
+  /**
+   * Merges two streams of objects that are both in key order into one.
+   *
+   * @param first the first objects, in key order
+   * @param second the second objects, in key order
+   * @return the objects of both, in key order
+   */
+  static Iterator<S3Object> merge(Iterator<S3Object> first, Iterator<S3Object> second) {
+    return new Iterator<>() {
+      private S3Object nextFirst = first.hasNext() ? first.next() : null;
+      private S3Object nextSecond = second.hasNext() ? second.next() : null;
+
+      @Override
+      public boolean hasNext() {
+        return nextFirst != null || nextSecond != null;
+      }
+
+      @Override
+      public S3Object next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        S3Object next;
+        if (nextSecond == null
+            || nextFirst != null
+                && MergeJoinUtils.compareCodePoints(nextFirst.key(), nextSecond.key()) <= 0) {
+          next = nextFirst;
+          nextFirst = first.hasNext() ? first.next() : null;
+        } else {
+          next = nextSecond;
+          nextSecond = second.hasNext() ? second.next() : null;
+        }
+        return next;
+      }
+    };
+  }
+
+  /**
+   * Cancels the requests still running.
+   */
+  void cancel() {
+    running.forEach(page -> page.cancel(true));
+    running.clear();
+    runningRequests.clear();
+    pending.clear();
+  }
+
+  private void start(ListObjectsV2Request request) {
+    running.add(s3AsyncClient.listObjectsV2(request));
+    runningRequests.add(request);
+  }
+}
@@ -1,8 +1,12 @@
 package com.example.mediaarchival.consumers;
 
-import com.example.mediaarchival.controllers.MediaController;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +22,8 @@ public class RestoreConsumer {
   private final MediaRepository mediaRepository;
   private final S3Client s3Client;
   private final JmsTemplate jmsTemplate;
-  private final MediaController mediaController;
+  private final JobService jobService;
+  private final LibraryMetadataCache libraryMetadataCache;
 
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
 
@@ -32,11 +37,13 @@ public class RestoreConsumer {
       MediaRepository mediaRepository,
       S3Client s3Client,
       JmsTemplate jmsTemplate,
-      MediaController mediaController) {
+      JobService jobService,
+      LibraryMetadataCache libraryMetadataCache) {
     this.mediaRepository = mediaRepository;
     this.s3Client = s3Client;
     this.jmsTemplate = jmsTemplate;
-    this.mediaController = mediaController;
+    this.jobService = jobService;
+    this.libraryMetadataCache = libraryMetadataCache;
   }
 
   /**
@@ -52,18 +59,25 @@ public class RestoreConsumer {
       errorLogger.error("Media not found for path: " + path);
       return;
     }
+    JobModel job = jobService.findActiveJob(media, JobType.DOWNLOAD);
+    if (job == null || job.getState() != JobState.QUEUED) {
+      // The job was stopped while its message waited in the queue
+      return;
+    }
 
     try{
-      boolean cancelled = mediaController.getJobCancelled(media.getId());
+      boolean cancelled = jobService.isCancelRequested(job);
       if (!cancelled) {
+        String bucketName = libraryMetadataCache.getForMedia(media).bucketName();
         HeadObjectRequest request = HeadObjectRequest.builder()
-                .bucket(media.getLibrary().getBucketName())
+                .bucket(bucketName)
                 .key(media.getPath())
                 .build();
 
         HeadObjectResponse response = s3Client.headObject(request);
 
         if (response.restore() != null && response.restore().contains("ongoing-request=\"false\"")) {
+          // Already restored, the queued job is downloaded right away
           jmsTemplate.convertAndSend("downloadQueue", media.getPath());
         } else if (response.restore() == null) {
 
@@ -73,33 +87,23 @@ public class RestoreConsumer {
                   .build();
 
           RestoreObjectRequest objectRequest = RestoreObjectRequest.builder()
-                  .bucket(media.getLibrary().getBucketName())
+                  .bucket(bucketName)
                   .key(media.getPath())
                   .restoreRequest(restoreRequest)
                   .build();
 
           s3Client.restoreObject(objectRequest);
 
-          mediaRepository.updateIsRestoringById(media.getId(), true);
+          jobService.transition(job, JobState.RESTORING);
         } else {
-          mediaRepository.updateIsRestoringById(media.getId(), true);
+          jobService.transition(job, JobState.RESTORING);
         }
       } else {
-        media.setRestored(false);
-        media.setRecovering(false);
-        media.setRestoring(false);
-        media.setJobCancelled(false);
-        media.setDownloadProgress(-1);
-        mediaRepository.save(media);
+        jobService.transition(job, JobState.CANCELLED);
       }
     } catch (Exception e){
       errorLogger.error(e.getMessage());
-      media.setRestored(false);
-      media.setRecovering(false);
-      media.setRestoring(false);
-      media.setJobCancelled(false);
-      media.setDownloadProgress(-1);
-      mediaRepository.save(media);
+      jobService.stop(job);
     }
   }
 }
@@ -0,0 +1,26 @@
+package com.example.mediaarchival.consumers;
+
+import java.io.File;
+import java.time.Instant;
+
+/**
+ * A media item found on disk by a library scan.
+ *
+ * @param path the catalog path of the media
+ * @param name the display name of the media
+ * @param source the file or directory holding the media's content
+ * @param excludeSeasons whether season directories are excluded from the media's content
+ * @param lastModified the last modification time of the media on disk
+ * @param size the size of the media if it was computed while walking the library, or
+ *     {@link #UNKNOWN_SIZE}
+ */
+record ScannedMedia(
+    String path,
+    String name,
+    File source,
+    boolean excludeSeasons,
+    Instant lastModified,
+    long size) {
+
+  static final long UNKNOWN_SIZE = -1;
+}
@@ -1,20 +1,38 @@
 package com.example.mediaarchival.controllers;
 
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobType;
 import com.example.mediaarchival.errors.ActiveJobsException;
+import com.example.mediaarchival.errors.LibraryUpdatingException;
 import com.example.mediaarchival.errors.ResourceNotFoundException;
-import com.example.mediaarchival.filters.MediaSpecifications;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
 import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.DeviceScanStatus;
+import com.example.mediaarchival.responses.LibraryStatsResponse;
+import com.example.mediaarchival.responses.ScanProgressResponse;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.ScanProgressTracker;
+import com.example.mediaarchival.services.ScanScheduler;
+import com.example.mediaarchival.services.SyncReportStore;
+import com.example.mediaarchival.utils.PathTemplate;
 import jakarta.transaction.Transactional;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.web.bind.annotation.*;
@@ -35,17 +53,46 @@ import software.amazon.awssdk.services.s3.model.StorageClass;
 public class LibraryController {
   private final LibraryRepository libraryRepository;
   private final MediaRepository mediaRepository;
+  private final ScanScheduler scanScheduler;
+  private final ScanProgressTracker scanProgressTracker;
+  private final MediaPathIndex mediaPathIndex;
+  private final MediaNameIndex mediaNameIndex;
+  private final SyncReportStore syncReportStore;
+  private final JobRepository jobRepository;
+  private final JobService jobService;
+  private final LibraryStatsService libraryStatsService;
+  private final LibraryMetadataCache libraryMetadataCache;
 
   private final JmsTemplate jmsTemplate;
 
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
   @Autowired
   public LibraryController(
       LibraryRepository libraryRepository,
       MediaRepository mediaRepository,
       S3Client s3Client,
-      JmsTemplate jmsTemplate) {
+      JmsTemplate jmsTemplate,
+      ScanScheduler scanScheduler,
+      ScanProgressTracker scanProgressTracker,
+      MediaPathIndex mediaPathIndex,
+      MediaNameIndex mediaNameIndex,
+      SyncReportStore syncReportStore,
+      JobRepository jobRepository,
+      JobService jobService,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache) {
     this.libraryRepository = libraryRepository;
     this.mediaRepository = mediaRepository;
+    this.scanScheduler = scanScheduler;
+    this.scanProgressTracker = scanProgressTracker;
+    this.mediaPathIndex = mediaPathIndex;
+    this.mediaNameIndex = mediaNameIndex;
+    this.syncReportStore = syncReportStore;
+    this.jobRepository = jobRepository;
+    this.jobService = jobService;
+    this.libraryStatsService = libraryStatsService;
+    this.libraryMetadataCache = libraryMetadataCache;
     this.jmsTemplate = jmsTemplate;
   }
 
@@ -98,7 +145,16 @@ public class LibraryController {
           .body("Library with this path already exists.");
     }
 
+    // Reject templates the scanner could not compile
+    try {
+      PathTemplate.compile(library.getPath());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
     LibraryModel savedLibrary = libraryRepository.save(library);
+    libraryStatsService.reconcile(savedLibrary);
+    libraryMetadataCache.invalidate(savedLibrary.getId());
     return ResponseEntity.status(HttpStatus.CREATED).body(savedLibrary);
   }
 
@@ -117,14 +173,45 @@ public class LibraryController {
             .findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Library not found with id: " + id));
 
-    // Delete associated MediaModel objects
-    List<MediaModel> mediaObjects = mediaRepository.findByLibraryId(id);
-    mediaRepository.deleteAll(mediaObjects);
+    // Delete associated MediaModel objects in one statement, reading only the index keys
+    List<MediaRepository.IndexedView> mediaObjects = mediaRepository.findIndexedByLibraryId(id);
+    mediaRepository.deleteAllByLibraryIdInBatch(id);
+    mediaPathIndex.removeAll(mediaObjects);
+    mediaNameIndex.removeAll(mediaObjects);
 
+    libraryStatsService.delete(id);
     libraryRepository.delete(library);
+    libraryMetadataCache.invalidate(id);
+    syncReportStore.delete(id);
     return ResponseEntity.noContent().build();
   }
 
+  /**
+   * Retrieves the statistics of a library: the number and total size of its media in every
+   * archive status, and the number of its media being archived or recovered.
+   *
+   * @param id The ID of the library.
+   * @return A ResponseEntity containing the statistics of the library.
+   * @throws ResourceNotFoundException If no library is found with the given ID.
+   */
+  @GetMapping("/{id}/stats")
+  public ResponseEntity<LibraryStatsResponse> getLibraryStats(@PathVariable Long id) {
+    if (!libraryRepository.existsById(id)) {
+      throw new ResourceNotFoundException("Library not found with id: " + id);
+    }
+    return ResponseEntity.ok(libraryStatsService.getStats(id));
+  }
+
+  /**
+   * Retrieves the statistics of every library.
+   *
+   * @return A ResponseEntity containing the statistics of the libraries.
+   */
+  @GetMapping("/stats")
+  public ResponseEntity<List<LibraryStatsResponse>> getAllLibraryStats() {
+    return ResponseEntity.ok(libraryStatsService.getAllStats());
+  }
+
   /**
    * Initiates a scan of the library's media objects.
    *
@@ -132,26 +219,56 @@ public class LibraryController {
    * @return A ResponseEntity indicating the initiation of the scan.
    * @throws ResourceNotFoundException If no library is found with the given ID.
    * @throws ActiveJobsException       If there are active jobs for the library.
+   * @throws LibraryUpdatingException  If the library is already being scanned or synchronized.
    */
   @PostMapping("/{id}/scan")
   public ResponseEntity<Void> scanLibrary(@PathVariable Long id) {
-    LibraryModel library =
-        libraryRepository
-            .findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("Library not found with id: " + id));
+    if (!libraryRepository.existsById(id)) {
+      throw new ResourceNotFoundException("Library not found with id: " + id);
+    }
 
     if (libraryHasActiveJobs(id)) {
       throw new ActiveJobsException(id);
     }
 
-    library.setUpdating(true);
-    libraryRepository.save(library);
+    if (libraryRepository.markUpdatingById(id) == 0) {
+      throw new LibraryUpdatingException(id);
+    }
 
     jmsTemplate.convertAndSend("libraryScanQueue", id);
 
     return ResponseEntity.noContent().build();
   }
 
+  /**
+   * Retrieves the progress of the running or most recent scan of a library.
+   *
+   * @param id The ID of the library.
+   * @return A ResponseEntity containing the scan progress, or no content if the library
+   *     was not scanned since startup.
+   * @throws ResourceNotFoundException If no library is found with the given ID.
+   */
+  @GetMapping("/{id}/scan-progress")
+  public ResponseEntity<ScanProgressResponse> getScanProgress(@PathVariable Long id) {
+    if (!libraryRepository.existsById(id)) {
+      throw new ResourceNotFoundException("Library not found with id: " + id);
+    }
+    return scanProgressTracker
+        .getProgress(id)
+        .map(progress -> ResponseEntity.ok(progress.snapshot()))
+        .orElseGet(() -> ResponseEntity.noContent().build());
+  }
+
+  /**
+   * Reports the scan limits and the scans scheduled on each storage device.
+   *
+   * @return A ResponseEntity containing the status of every device scanned since startup.
+   */
+  @GetMapping("/scan-devices")
+  public ResponseEntity<List<DeviceScanStatus>> getScanDevices() {
+    return ResponseEntity.ok(scanScheduler.getStatus());
+  }
+
   /**
    * Sends requests to archive all eligible media objects in a library.
    *
@@ -160,18 +277,17 @@ public class LibraryController {
    */
   @PostMapping("/{libraryId}/archive")
   public ResponseEntity<String> archiveLibraryMediaObjects(@PathVariable Long libraryId) {
-    // Fetch media objects from the library with archivedStatus NOT_ARCHIVED or OUT_OF_DATE
+    // Fetch media objects on disk from the library with archivedStatus NOT_ARCHIVED or OUT_OF_DATE
     List<MediaModel> mediaObjects =
-        mediaRepository.findByLibraryIdAndArchivedStatusIn(
+        mediaRepository.findByLibraryIdAndArchivedStatusInAndIsMissingFalse(
             libraryId, Arrays.asList(ArchivedStatus.NOT_ARCHIVED, ArchivedStatus.OUT_OF_DATE));
 
+    // Media with an active job of either kind are skipped
+    Set<Long> withJobs = new HashSet<>(jobRepository.findActiveMediaIdsByLibraryId(libraryId));
     for (MediaModel media : mediaObjects) {
-      if (!media.isArchiving() && !media.isRecovering()) {
+      if (!withJobs.contains(media.getId())) {
+        jobService.start(media, JobType.ARCHIVE);
         jmsTemplate.convertAndSend("archivingQueue", media.getPath());
-        media.setArchiving(true);
-        media.setUploadProgress(-1);
-        media.setTarring(false);
-        mediaRepository.save(media);
       }
     }
 
@@ -187,32 +303,52 @@ public class LibraryController {
    * @return A ResponseEntity indicating the initiation of synchronization.
    * @throws ResourceNotFoundException If no library is found with the given ID.
    * @throws ActiveJobsException       If there are active jobs for the library.
+   * @throws LibraryUpdatingException  If the library is already being scanned or synchronized.
    */
 
   @PostMapping("/{libraryId}/synchronize")
   public ResponseEntity<String> synchronizeMedia(@PathVariable Long libraryId) {
-    LibraryModel library =
-        libraryRepository
-            .findById(libraryId)
-            .orElseThrow(
-                () ->
-                    new ResourceNotFoundException("Library with ID " + libraryId + " not found."));
+    if (!libraryRepository.existsById(libraryId)) {
+      throw new ResourceNotFoundException("Library with ID " + libraryId + " not found.");
+    }
 
     if (libraryHasActiveJobs(libraryId)) {
       throw new ActiveJobsException(libraryId);
     }
 
-    library.setUpdating(true);
-    libraryRepository.save(library);
+    if (libraryRepository.markUpdatingById(libraryId) == 0) {
+      throw new LibraryUpdatingException(libraryId);
+    }
 
     jmsTemplate.convertAndSend("librarySyncQueue", libraryId);
 
     return ResponseEntity.noContent().build();
   }
 
+  /**
+   * Streams the report of the last completed sync of a library that listed its bucket, one JSON
+   * line per media or bucket object with its outcome, followed by a summary line.
+   *
+   * @param libraryId The ID of the library.
+   * @return A ResponseEntity streaming the report, or no content if there is no report.
+   * @throws ResourceNotFoundException If no library is found with the given ID.
+   */
+  @GetMapping("/{libraryId}/sync-report")
+  public ResponseEntity<Resource> getSyncReport(@PathVariable Long libraryId) {
+    if (!libraryRepository.existsById(libraryId)) {
+      throw new ResourceNotFoundException("Library not found with id: " + libraryId);
+    }
+    return syncReportStore
+        .find(libraryId)
+        .<ResponseEntity<Resource>>map(
+            report ->
+                ResponseEntity.ok()
+                    .contentType(NDJSON)
+                    .body(new FileSystemResource(report)))
+        .orElseGet(() -> ResponseEntity.noContent().build());
+  }
+
   private boolean libraryHasActiveJobs(long libraryId) {
-    Specification<MediaModel> specification = MediaSpecifications.activeLibraryJobs(libraryId);
-    List<MediaModel> activeJobs = mediaRepository.findAll(specification);
-    return !activeJobs.isEmpty();
+    return jobRepository.existsByActiveTrueAndMediaLibraryId(libraryId);
   }
 }
@@ -1,11 +1,35 @@
 package com.example.mediaarchival.controllers;
 
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.errors.InvalidCursorException;
 import com.example.mediaarchival.errors.ResourceNotFoundException;
+import com.example.mediaarchival.filters.MediaCursor;
 import com.example.mediaarchival.filters.MediaSpecifications;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.MediaPage;
+import com.example.mediaarchival.responses.MediaScrollPage;
+import com.example.mediaarchival.responses.MediaSummary;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaCountCache;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +55,53 @@ public class MediaController {
 
   private final JmsTemplate jmsTemplate;
 
+  private final MediaPathIndex mediaPathIndex;
+
+  private final MediaNameIndex mediaNameIndex;
+
+  private final MediaSizingService mediaSizingService;
+
+  private final MediaCountCache mediaCountCache;
+
+  private final JobService jobService;
+
+  private final JobRepository jobRepository;
+
+  private final LibraryRepository libraryRepository;
+
+  private final LibraryStatsService libraryStatsService;
+  private final LibraryMetadataCache libraryMetadataCache;
+
+  /**
+   * The largest page a scrolling client can request.
+   */
+  public static final int MAX_SCROLL_SIZE = 1000;
+
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
 
-  public MediaController(MediaRepository mediaRepository, JmsTemplate jmsTemplate) {
+  public MediaController(
+      MediaRepository mediaRepository,
+      JmsTemplate jmsTemplate,
+      MediaPathIndex mediaPathIndex,
+      MediaNameIndex mediaNameIndex,
+      MediaSizingService mediaSizingService,
+      MediaCountCache mediaCountCache,
+      JobService jobService,
+      JobRepository jobRepository,
+      LibraryRepository libraryRepository,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache) {
     this.mediaRepository = mediaRepository;
     this.jmsTemplate = jmsTemplate;
+    this.mediaPathIndex = mediaPathIndex;
+    this.mediaNameIndex = mediaNameIndex;
+    this.mediaSizingService = mediaSizingService;
+    this.mediaCountCache = mediaCountCache;
+    this.jobService = jobService;
+    this.jobRepository = jobRepository;
+    this.libraryRepository = libraryRepository;
+    this.libraryStatsService = libraryStatsService;
+    this.libraryMetadataCache = libraryMetadataCache;
   }
 
   /**
@@ -50,10 +116,14 @@ public class MediaController {
    * @param size           The size of each page.
    * @param sortBy         The attribute to sort by.
    * @param sortDirection  The direction of sorting.
-   * @return A ResponseEntity containing a page of filtered, sorted media objects.
+   * @return A ResponseEntity containing a page of summaries of the filtered, sorted media objects,
+   *     with the live progress of their running transfers, and their libraries listed once.
+   *     Media on the page whose size is pending are sized before other scanned media. Sorting by
+   *     uploadJobs or downloadJobs lists the media with an active archive or download job, read
+   *     from the job table.
    */
   @GetMapping
-  public ResponseEntity<Page<MediaModel>> getAllMedias(
+  public ResponseEntity<MediaPage> getAllMedias(
       @RequestParam(required = false) ArchivedStatus archivedStatus,
       @RequestParam(required = false) String search,
       @RequestParam(required = false) Long libraryId,
@@ -64,35 +134,104 @@ public class MediaController {
       @RequestParam(required = false, defaultValue = "name") String sortBy,
       @RequestParam(required = false, defaultValue = "asc") String sortDirection) {
 
-    Sort sort;
-    if ("asc".equalsIgnoreCase(sortDirection)) {
-      sort = Sort.by(Sort.Direction.ASC, sortBy);
+    Specification<MediaModel> specification =
+        filterSpecification(archivedStatus, search, libraryId, isRecovering, isArchiving);
+
+    Page<MediaSummary> media;
+    if ("uploadJobs".equals(sortBy) || "downloadJobs".equals(sortBy)) {
+      JobType type = "uploadJobs".equals(sortBy) ? JobType.ARCHIVE : JobType.DOWNLOAD;
+      media = jobService.findMediaWithActiveJobs(type, specification, page, size);
     } else {
-      sort = Sort.by(Sort.Direction.DESC, sortBy);
-    }
+      Sort sort;
+      if ("asc".equalsIgnoreCase(sortDirection)) {
+        sort = Sort.by(Sort.Direction.ASC, sortBy);
+      } else {
+        sort = Sort.by(Sort.Direction.DESC, sortBy);
+      }
 
-    if ("uploadJobs".equals(sortBy)) {
-      sort = MediaSpecifications.getUploadJobsSort();
-    } else if ("downloadJobs".equals(sortBy)) {
-      sort = MediaSpecifications.getDownloadJobsSort();
-    }
+      // Create a Pageable object with sorting
+      Pageable pageable = PageRequest.of(page, size, sort);
 
-    // Create a Pageable object with sorting
-    Pageable pageable = PageRequest.of(page, size, sort);
+      // Fetch paginated, sorted, and filtered media summaries
+      media = mediaRepository.findSummaries(specification, pageable);
+      jobService.applyTo(media.getContent());
+    }
+    prioritizeSizing(media.getContent());
+
+    return ResponseEntity.ok(
+        new MediaPage(
+            media.getContent(),
+            findLibraries(media.getContent()),
+            page,
+            size,
+            media.getTotalElements()));
+  }
 
-    // Build the specification based on filters
-    Specification<MediaModel> specification =
-        MediaSpecifications.filterByArchivedStatus(archivedStatus)
-            .and(MediaSpecifications.searchMediaInSubset(search))
-            .and(MediaSpecifications.filterByLibraryId(libraryId)) // Apply libraryId filter
-            .and(
-                MediaSpecifications.filterByIsRecovering(isRecovering)) // Apply isRetrieving filter
-            .and(MediaSpecifications.filterByIsArchiving(isArchiving)); // Apply isArchiving filter
+  /**
+   * Retrieves a page of filtered media objects after a cursor, for clients that scroll through
+   * the list instead of jumping to arbitrary pages. Each page is found by seeking past the last
+   * media of the previous one rather than by skipping rows, so pages deep into a large library
+   * cost the same as the first. The total is cached and refreshed in the background, so it may
+   * be a few seconds old.
+   *
+   * @param archivedStatus The status to filter archived media.
+   * @param search         The search term for media names.
+   * @param libraryId      The ID of the library to filter media.
+   * @param isRecovering   Filter for media currently in the process of recovery.
+   * @param isArchiving    Filter for media currently in the process of archiving.
+   * @param cursor         The cursor returned with the previous page, absent for the first page.
+   * @param size           The size of each page, at most {@link #MAX_SCROLL_SIZE}.
+   * @param sortBy         The attribute to sort by, one of {@link MediaCursor#sortableAttributes}.
+   * @param sortDirection  The direction of sorting.
+   * @return A ResponseEntity containing the page of media summaries with their libraries, and
+   *     the cursor of the next page.
+   * @throws InvalidCursorException If the cursor is malformed or was issued for another order.
+   */
+  @GetMapping("/scroll")
+  public ResponseEntity<MediaScrollPage> scrollMedias(
+      @RequestParam(required = false) ArchivedStatus archivedStatus,
+      @RequestParam(required = false) String search,
+      @RequestParam(required = false) Long libraryId,
+      @RequestParam(required = false) Boolean isRecovering,
+      @RequestParam(required = false) Boolean isArchiving,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "10") int size,
+      @RequestParam(required = false, defaultValue = "name") String sortBy,
+      @RequestParam(required = false, defaultValue = "asc") String sortDirection) {
+    if (!MediaCursor.sortableAttributes().contains(sortBy)) {
+      throw new InvalidCursorException("Cannot scroll media sorted by " + sortBy);
+    }
+    boolean ascending = "asc".equalsIgnoreCase(sortDirection);
+    int limit = Math.min(Math.max(size, 1), MAX_SCROLL_SIZE);
 
-    // Fetch paginated, sorted, and filtered media objects
-    Page<MediaModel> media = mediaRepository.findAll(specification, pageable);
+    MediaCursor after = null;
+    if (cursor != null && !cursor.isEmpty()) {
+      after = MediaCursor.decode(cursor);
+      after.requireOrder(sortBy, ascending);
+    }
 
-    return ResponseEntity.ok(media);
+    Specification<MediaModel> filters =
+        filterSpecification(archivedStatus, search, libraryId, isRecovering, isArchiving);
+    // One extra media tells whether there is a next page
+    List<MediaSummary> media =
+        mediaRepository.findSummaries(
+            filters.and(MediaSpecifications.afterCursor(after)),
+            MediaSpecifications.getScrollSort(sortBy, ascending),
+            limit + 1);
+    String nextCursor = null;
+    if (media.size() > limit) {
+      media = new ArrayList<>(media.subList(0, limit));
+      nextCursor = MediaCursor.after(media.get(limit - 1), sortBy, ascending).encode();
+    }
+    jobService.applyTo(media);
+    prioritizeSizing(media);
+
+    long total =
+        mediaCountCache.count(
+            new MediaCountCache.Filters(
+                archivedStatus, search, libraryId, isRecovering, isArchiving),
+            filters);
+    return ResponseEntity.ok(new MediaScrollPage(media, findLibraries(media), nextCursor, total));
   }
 
   /**
@@ -108,9 +247,26 @@ public class MediaController {
         mediaRepository
             .findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
+    jobService.applyTo(List.of(media));
+    mediaSizingService.prioritize(List.of(media), MediaSizingService.Priority.VIEW);
     return ResponseEntity.ok(media);
   }
 
+  /**
+   * Retrieves the jobs of a specific media object, most recent first.
+   *
+   * @param id The ID of the media object.
+   * @return A ResponseEntity containing the media object's job history.
+   * @throws ResourceNotFoundException If no media object is found with the given ID.
+   */
+  @GetMapping("/{id}/jobs")
+  public ResponseEntity<List<JobModel>> getMediaJobs(@PathVariable Long id) {
+    if (!mediaRepository.existsById(id)) {
+      throw new ResourceNotFoundException("Media not found with id: " + id);
+    }
+    return ResponseEntity.ok(jobRepository.findByMediaIdOrderByIdDesc(id));
+  }
+
   /**
    * Deletes a specific media object by its ID.
    *
@@ -125,7 +281,9 @@ public class MediaController {
             .findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
 
-    mediaRepository.delete(mediaObject);
+    libraryStatsService.track(List.of(id), () -> mediaRepository.delete(mediaObject));
+    mediaPathIndex.remove(mediaObject.getPath());
+    mediaNameIndex.remove(List.of(mediaObject));
     return ResponseEntity.noContent().build();
   }
 
@@ -137,16 +295,15 @@ public class MediaController {
    */
   @PostMapping("/bulk-delete")
   public ResponseEntity<String> bulkDeleteMediaObjects(@RequestBody List<Long> ids) {
-    for (long id : ids) {
-      try{
-        MediaModel media = mediaRepository
-            .findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
-        mediaRepository.delete(media);
-      } catch (Exception e){
-       errorLogger.error(e.getMessage());
-      }
+    // Only the keys of the indexes are read, the media are then deleted in one statement
+    List<MediaRepository.IndexedView> media = mediaRepository.findIndexedByIdIn(ids);
+    if (media.isEmpty()) {
+      return ResponseEntity.ok("Deletes successful");
     }
+    List<Long> deleted = media.stream().map(MediaRepository.IndexedView::getId).toList();
+    libraryStatsService.track(deleted, () -> mediaRepository.deleteAllByIdInBatch(deleted));
+    mediaPathIndex.removeAll(media);
+    mediaNameIndex.removeAll(media);
 
     return ResponseEntity.ok("Deletes successful");
   }
@@ -159,13 +316,12 @@ public class MediaController {
    */
   @PostMapping("/archive")
   public ResponseEntity<String> archiveMediaObjects(@RequestBody List<String> paths) {
-    for (String path : paths) {
-      MediaModel media = mediaRepository.findByPath(path);
-      if (!media.isArchiving() && !media.isRecovering()) {
-        media.setArchiving(true);
-        media.setUploadProgress(-1);
-        media.setTarring(false);
-        mediaRepository.save(media);
+    List<MediaModel> mediaObjects = findByPaths(paths);
+    jobService.applyTo(mediaObjects);
+    for (MediaModel media : mediaObjects) {
+      if (media.getCurrentJob() == null && !media.isMissing()) {
+        jobService.start(media, JobType.ARCHIVE);
+        mediaSizingService.prioritize(List.of(media), MediaSizingService.Priority.ARCHIVE);
         jmsTemplate.convertAndSend("archivingQueue", media.getPath());
       }
     }
@@ -181,12 +337,12 @@ public class MediaController {
    */
   @PostMapping("/prepare-download")
   public ResponseEntity<String> prepareMediaObjectsForDownload(@RequestBody List<String> paths) {
-    for (String path : paths) {
-      MediaModel media = mediaRepository.findByPath(path);
-
+    List<MediaModel> mediaObjects = findByPaths(paths);
+    jobService.applyTo(mediaObjects);
+    for (MediaModel media : mediaObjects) {
       // Retrieve the associated library's storage class
-      StorageClass storageClass = media.getLibrary().getStorageClass();
-      prepareDownload(media, storageClass, jmsTemplate, mediaRepository);
+      StorageClass storageClass = libraryMetadataCache.getForMedia(media).storageClass();
+      prepareDownload(media, storageClass, jmsTemplate, jobService);
     }
 
     return ResponseEntity.ok("Download preparation requests sent successfully");
@@ -200,17 +356,7 @@ public class MediaController {
    */
   @PostMapping("/cancel-job")
   public ResponseEntity<String> cancelJobs(@RequestBody List<Long> ids) {
-    for (long id : ids) {
-      MediaModel media =
-          mediaRepository
-              .findById(id)
-              .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
-      if (((media.isRecovering() && media.getDownloadSuccess() == null) || media.isArchiving())
-          && !media.isJobCancelled()) {
-        media.setJobCancelled(true);
-        mediaRepository.save(media);
-      }
-    }
+    jobService.requestCancelForMedia(ids);
 
     return ResponseEntity.ok("Jobs cancelled");
   }
@@ -222,13 +368,7 @@ public class MediaController {
    */
   @PostMapping("/cancel-all-archive-jobs")
   public ResponseEntity<String> cancelAllArchiveJobs() {
-    List<MediaModel> medias = mediaRepository.findByIsArchiving(true);
-    for (MediaModel media : medias) {
-      if (!media.isJobCancelled()) {
-        media.setJobCancelled(true);
-        mediaRepository.save(media);
-      }
-    }
+    jobService.requestCancelAll(JobType.ARCHIVE);
 
     return ResponseEntity.ok("Jobs cancelled");
   }
@@ -240,13 +380,7 @@ public class MediaController {
    */
   @PostMapping("/cancel-all-download-jobs")
   public ResponseEntity<String> cancelAllDownloadJobs() {
-    List<MediaModel> medias = mediaRepository.findByIsRecovering(true);
-    for (MediaModel media : medias) {
-      if (!media.isJobCancelled() && media.getDownloadSuccess() == null) {
-        media.setJobCancelled(true);
-        mediaRepository.save(media);
-      }
-    }
+    jobService.requestCancelAll(JobType.DOWNLOAD);
 
     return ResponseEntity.ok("Jobs cancelled");
   }
@@ -258,19 +392,8 @@ public class MediaController {
    */
   @PostMapping("/clear-all-finished")
   public ResponseEntity<String> clearAllFinishedDownloads() {
-    List<MediaModel> successes = mediaRepository.findByDownloadSuccess(true);
-    List<MediaModel> failures = mediaRepository.findByDownloadSuccess(false);
-
-    for (MediaModel media : successes) {
-      media.setDownloadSuccess(null);
-      media.setRecovering(false);
-      mediaRepository.save(media);
-    }
-    for (MediaModel media : failures) {
-      media.setDownloadSuccess(null);
-      media.setRecovering(false);
-      mediaRepository.save(media);
-    }
+    jobService.transitionAll(
+        JobType.DOWNLOAD, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
     return ResponseEntity.ok("Cleared finished downloads");
   }
 
@@ -282,36 +405,26 @@ public class MediaController {
    */
   @PostMapping("/clear-finished")
   public ResponseEntity<String> clearFinishedDownloads(@RequestBody List<Long> ids) {
-    for (long id : ids) {
-      MediaModel media =
-          mediaRepository
-              .findById(id)
-              .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
-      if ((media.isRecovering() || media.isArchiving()) && !media.isJobCancelled()) {
-        media.setDownloadSuccess(null);
-        media.setRecovering(false);
-        mediaRepository.save(media);
-      }
-    }
+    jobService.transitionAllForMedia(
+        JobType.DOWNLOAD, ids, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
     return ResponseEntity.ok("Cleared finished selected downloads");
   }
 
   /**
    * Prepares a media object for download based on its storage class.
    *
-   * @param media            The media object to prepare for download.
+   * @param media            The media object to prepare for download, with its active job set.
    * @param storageClass     The storage class of the media object's library.
    * @param jmsTemplate      The JmsTemplate for sending messages.
-   * @param mediaRepository  The repository for saving changes to the media object.
+   * @param jobService       The service starting the download job.
    */
   public static void prepareDownload(
       MediaModel media,
       StorageClass storageClass,
       JmsTemplate jmsTemplate,
-      MediaRepository mediaRepository) {
-    if (!media.isRecovering() && media.getDownloadSuccess() == null && !media.isArchiving()) {
-      media.setRecovering(true);
-      mediaRepository.save(media);
+      JobService jobService) {
+    if (media.getCurrentJob() == null) {
+      jobService.start(media, JobType.DOWNLOAD);
       if (StorageClass.DEEP_ARCHIVE == storageClass || StorageClass.GLACIER == storageClass) {
         jmsTemplate.convertAndSend("restoreQueue", media.getPath());
       } else {
@@ -321,17 +434,104 @@ public class MediaController {
   }
 
   /**
-   * Checks if a job related to a specific media object is cancelled.
+   * Builds the specification of the media listing filters.
    *
-   * @param id The ID of the media object.
-   * @return A Boolean indicating if the job is cancelled.
-   * @throws ResourceNotFoundException If no media object is found with the given ID.
+   * @param archivedStatus The status to filter archived media.
+   * @param search         The search term for media names.
+   * @param libraryId      The ID of the library to filter media.
+   * @param isRecovering   Filter for media currently in the process of recovery.
+   * @param isArchiving    Filter for media currently in the process of archiving.
+   * @return The specification matching the media that pass every filter.
    */
-  public Boolean getJobCancelled(@PathVariable Long id) {
-    MediaModel media =
-        mediaRepository
-            .findById(id)
-            .orElseThrow(() -> new ResourceNotFoundException("Media not found with id: " + id));
-    return media.isJobCancelled();
+  private Specification<MediaModel> filterSpecification(
+      ArchivedStatus archivedStatus,
+      String search,
+      Long libraryId,
+      Boolean isRecovering,
+      Boolean isArchiving) {
+    // Name searches are narrowed down through the name index when the term is selective
+    // enough, so only its candidates are matched against the search
+    List<Long> searchCandidates = mediaNameIndex.findCandidates(search).orElse(null);
+
+    // Build the specification based on filters
+    return MediaSpecifications.filterByArchivedStatus(archivedStatus)
+        .and(MediaSpecifications.filterByIdIn(searchCandidates))
+        .and(MediaSpecifications.searchMediaInSubset(search))
+        .and(MediaSpecifications.filterByLibraryId(libraryId)) // Apply libraryId filter
+        .and(MediaSpecifications.filterByIsRecovering(isRecovering)) // Apply isRetrieving filter
+        .and(MediaSpecifications.filterByIsArchiving(isArchiving)); // Apply isArchiving filter
+  }
+
+  /**
+   * Loads the libraries of the listed media, each once however many of its media are listed.
+   *
+   * @param media The listed media.
+   * @return The libraries of the media.
+   */
+  private List<LibraryModel> findLibraries(List<MediaSummary> media) {
+    Set<Long> libraryIds = new LinkedHashSet<>();
+    for (MediaSummary item : media) {
+      if (item.getLibraryId() != null) {
+        libraryIds.add(item.getLibraryId());
+      }
+    }
+    return libraryIds.isEmpty() ? List.of() : libraryRepository.findAllById(libraryIds);
+  }
+
+  /**
+   * Sizes the listed media whose size is pending before other scanned media. Only those media
+   * are loaded as entities, which the sizing needs to locate their files.
+   *
+   * @param media The listed media.
+   */
+  private void prioritizeSizing(List<MediaSummary> media) {
+    List<Long> pendingIds = new ArrayList<>();
+    for (MediaSummary item : media) {
+      if (item.isSizePending()) {
+        pendingIds.add(item.getId());
+      }
+    }
+    if (!pendingIds.isEmpty()) {
+      mediaSizingService.prioritize(
+          mediaRepository.findAllById(pendingIds), MediaSizingService.Priority.VIEW);
+    }
+  }
+
+  /**
+   * Loads the media with the given paths in one query, resolving the paths through the path
+   * index. Paths the index does not know are looked up individually, and unknown paths are
+   * skipped.
+   *
+   * @param paths The paths of the media objects to load.
+   * @return The media objects, in the order of their paths.
+   */
+  private List<MediaModel> findByPaths(List<String> paths) {
+    List<Long> ids = new ArrayList<>();
+    for (String path : paths) {
+      OptionalLong id = mediaPathIndex.findId(path);
+      if (id.isPresent()) {
+        ids.add(id.getAsLong());
+      }
+    }
+    Map<String, MediaModel> mediaByPath = new HashMap<>();
+    for (MediaModel media : mediaRepository.findAllById(ids)) {
+      mediaByPath.put(media.getPath(), media);
+    }
+
+    List<MediaModel> mediaObjects = new ArrayList<>();
+    for (String path : paths) {
+      MediaModel media = mediaByPath.get(path);
+      if (media == null) {
+        media = mediaRepository.findByPath(path);
+        if (media == null) {
+          errorLogger.error("Media not found with path: " + path);
+          continue;
+        }
+        mediaPathIndex.put(media.getPath(), media.getId());
+        mediaNameIndex.put(media.getId(), media.getName());
+      }
+      mediaObjects.add(media);
+    }
+    return mediaObjects;
   }
 }
@@ -0,0 +1,17 @@
+package com.example.mediaarchival.enums;
+
+/**
+ * Determines how a library scan decides that the content of a media has changed.
+ */
+public enum ChangeDetection {
+  /**
+   * The media changed if its modification time changed.
+   */
+  MTIME,
+
+  /**
+   * The media changed if the fingerprint of its sampled file content changed, so modification
+   * times that were preserved or bumped without a change to the content are not trusted.
+   */
+  FINGERPRINT
+}
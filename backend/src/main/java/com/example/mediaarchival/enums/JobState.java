@@ -0,0 +1,96 @@
+package com.example.mediaarchival.enums;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The states of a job and the transitions allowed between them. Archive jobs go from
+ * {@link #QUEUED} through {@link #TARRING} and {@link #UPLOADING}, download jobs through
+ * {@link #RESTORING} and {@link #RESTORED} when their archive is in cold storage, then
+ * {@link #DOWNLOADING}. Every job ends {@link #SUCCEEDED}, {@link #FAILED} or
+ * {@link #CANCELLED}, and finished downloads are {@link #CLEARED} once acknowledged.
+ */
+public enum JobState {
+  /**
+   * The job was requested and waits for its consumer.
+   */
+  QUEUED,
+
+  /**
+   * The media is being written to a TAR archive.
+   */
+  TARRING,
+
+  /**
+   * The archive is being uploaded.
+   */
+  UPLOADING,
+
+  /**
+   * The archive is being restored from cold storage.
+   */
+  RESTORING,
+
+  /**
+   * The archive was restored and waits to be downloaded.
+   */
+  RESTORED,
+
+  /**
+   * The archive is being downloaded and unpacked.
+   */
+  DOWNLOADING,
+
+  /**
+   * The job completed.
+   */
+  SUCCEEDED,
+
+  /**
+   * The job stopped on an error or was interrupted by a restart.
+   */
+  FAILED,
+
+  /**
+   * The job was stopped at the user's request.
+   */
+  CANCELLED,
+
+  /**
+   * The finished job was acknowledged and removed from the job lists.
+   */
+  CLEARED;
+
+  private static final Map<JobState, Set<JobState>> TRANSITIONS =
+      Map.of(
+          QUEUED, EnumSet.of(TARRING, RESTORING, DOWNLOADING, FAILED, CANCELLED),
+          TARRING, EnumSet.of(UPLOADING, FAILED, CANCELLED),
+          UPLOADING, EnumSet.of(SUCCEEDED, FAILED, CANCELLED),
+          RESTORING, EnumSet.of(RESTORED, FAILED, CANCELLED),
+          RESTORED, EnumSet.of(DOWNLOADING, FAILED, CANCELLED),
+          DOWNLOADING, EnumSet.of(SUCCEEDED, FAILED, CANCELLED),
+          SUCCEEDED, EnumSet.of(CLEARED),
+          FAILED, EnumSet.of(CLEARED),
+          CANCELLED, EnumSet.noneOf(JobState.class),
+          CLEARED, EnumSet.noneOf(JobState.class));
+
+  /**
+   * Tells whether a job may move from this state to another.
+   *
+   * @param next the state to move to
+   * @return true if the transition is allowed
+   */
+  public boolean canTransitionTo(JobState next) {
+    return TRANSITIONS.get(this).contains(next);
+  }
+
+  /**
+   * Tells whether the job's work is over, whatever its outcome.
+   *
+   * @return true for the final states of a job's work
+   */
+  public boolean isFinished() {
+    return this == SUCCEEDED || this == FAILED || this == CANCELLED || this == CLEARED;
+  }
+}
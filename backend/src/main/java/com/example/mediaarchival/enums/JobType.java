@@ -0,0 +1,44 @@
+package com.example.mediaarchival.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The kind of work a job does for a media.
+ */
+public enum JobType {
+  /**
+   * Tars the media and uploads it to the library's bucket.
+   */
+  ARCHIVE(EnumSet.of(JobState.QUEUED, JobState.TARRING, JobState.UPLOADING)),
+
+  /**
+   * Restores the media's archive from cold storage if needed, then downloads and unpacks it.
+   * Finished downloads stay listed until they are cleared.
+   */
+  DOWNLOAD(
+      EnumSet.of(
+          JobState.QUEUED,
+          JobState.RESTORING,
+          JobState.RESTORED,
+          JobState.DOWNLOADING,
+          JobState.SUCCEEDED,
+          JobState.FAILED));
+
+  private final Set<JobState> activeStates;
+
+  JobType(Set<JobState> activeStates) {
+    this.activeStates = activeStates;
+  }
+
+  /**
+   * Tells whether jobs of this type in the given state are still active, which means they are
+   * listed with the running jobs and keep their media from starting another job.
+   *
+   * @param state the state of the job
+   * @return true if the job is active
+   */
+  public boolean isActiveIn(JobState state) {
+    return activeStates.contains(state);
+  }
+}
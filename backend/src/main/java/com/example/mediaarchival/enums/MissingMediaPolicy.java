@@ -0,0 +1,17 @@
+package com.example.mediaarchival.enums;
+
+/**
+ * Determines what a library scan does with media that are in the catalog
+ * but can no longer be found on disk.
+ */
+public enum MissingMediaPolicy {
+  /**
+   * The media is kept in the catalog and flagged as missing.
+   */
+  MARK_MISSING,
+
+  /**
+   * The media is deleted from the catalog.
+   */
+  DELETE
+}
@@ -0,0 +1,21 @@
+package com.example.mediaarchival.enums;
+
+/**
+ * The state of the most recent scan of a library.
+ */
+public enum ScanState {
+  /**
+   * The scan is still walking the library.
+   */
+  RUNNING,
+
+  /**
+   * The scan walked the whole library and applied its changes.
+   */
+  COMPLETED,
+
+  /**
+   * The scan stopped early, for example because the library path could not be found.
+   */
+  FAILED
+}
@@ -0,0 +1,36 @@
+package com.example.mediaarchival.enums;
+
+/**
+ * The outcome of synchronizing one media or bucket object of a library.
+ */
+public enum SyncOutcome {
+  /**
+   * The media is archived and its archive is current.
+   */
+  ARCHIVED,
+
+  /**
+   * The media is archived, but was modified after its archive was uploaded.
+   */
+  OUT_OF_DATE,
+
+  /**
+   * The media is archived, but the size or ETag of its archive differs from its upload.
+   */
+  MISMATCHED,
+
+  /**
+   * The media has no archive and was never archived.
+   */
+  NEVER_ARCHIVED,
+
+  /**
+   * The media was archived, but its archive is no longer in the bucket.
+   */
+  DELETED_FROM_S3,
+
+  /**
+   * The bucket object has no media in the catalog.
+   */
+  ORPHANED
+}
@@ -35,6 +35,28 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
   }
 
+  /**
+   * Handles exceptions when a library is already being scanned or synchronized.
+   *
+   * @param ex the LibraryUpdatingException thrown
+   * @return a ResponseEntity with the error message and HTTP status code
+   */
+  @ExceptionHandler(LibraryUpdatingException.class)
+  public ResponseEntity<Object> handleLibraryUpdatingException(LibraryUpdatingException ex) {
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+  }
+
+  /**
+   * Handles exceptions when a pagination cursor is malformed or was issued for another order.
+   *
+   * @param ex the InvalidCursorException thrown
+   * @return a ResponseEntity with the error message and HTTP status code
+   */
+  @ExceptionHandler(InvalidCursorException.class)
+  public ResponseEntity<Object> handleInvalidCursorException(InvalidCursorException ex) {
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+  }
+
   /**
    * Handles all other exceptions not explicitly managed by more specific handlers.
    *
@@ -0,0 +1,22 @@
+package com.example.mediaarchival.errors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.Serial;
+
+/**
+ * Exception thrown when a scan or sync of a library is requested while another one of the
+ * same library is still queued or running.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LibraryUpdatingException extends RuntimeException {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+
+  public LibraryUpdatingException(Long libraryId) {
+    super("Library with ID " + libraryId + " is already being scanned or synchronized.");
+  }
+
+}
@@ -0,0 +1,62 @@
+package com.example.mediaarchival.filters;
+
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.MediaModel;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Class that returns specification objects to be used
+ * for filtering results from a Select query to
+ * the JobModel repository
+ */
+public class JobSpecifications {
+
+  /**
+   * Filters the active jobs of a type.
+   *
+   * @param type The job type to filter by.
+   * @return Specification matching the active jobs of the type.
+   */
+  public static Specification<JobModel> activeOfType(JobType type) {
+    return (root, query, criteriaBuilder) ->
+        criteriaBuilder.and(
+            criteriaBuilder.isTrue(root.get("active")),
+            criteriaBuilder.equal(root.get("type"), type));
+  }
+
+  /**
+   * Filters jobs by their media, looking up the media of every job by its ID.
+   *
+   * @param mediaSpecification The filters the media of the job must pass.
+   * @return Specification matching the jobs whose media pass the filters.
+   */
+  public static Specification<JobModel> forMedia(Specification<MediaModel> mediaSpecification) {
+    return (root, query, criteriaBuilder) -> {
+      Subquery<Long> media = query.subquery(Long.class);
+      Root<MediaModel> mediaRoot = media.from(MediaModel.class);
+      media
+          .select(mediaRoot.get("id"))
+          .where(
+              criteriaBuilder.equal(mediaRoot.get("id"), root.get("media").get("id")),
+              mediaSpecification.toPredicate(mediaRoot, query, criteriaBuilder));
+      return criteriaBuilder.exists(media);
+    };
+  }
+
+  /**
+   * Sorts jobs by progress, with transfers furthest along first and cancelled jobs last, then
+   * in the order they were requested.
+   *
+   * @return Sort object with orders defined for sorting jobs.
+   */
+  public static Sort getJobsSort() {
+    return Sort.by(
+        Sort.Order.desc("progress"),
+        Sort.Order.asc("cancelRequested"),
+        Sort.Order.asc("id"));
+  }
+}
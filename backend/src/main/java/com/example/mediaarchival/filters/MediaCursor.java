@@ -0,0 +1,179 @@
+package com.example.mediaarchival.filters;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.errors.InvalidCursorException;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.responses.MediaSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The position of a reader in a sorted list of media: the sort column and direction, and the
+ * sort value and ID of the last media read. The next page starts right after that media, found
+ * through {@link MediaSpecifications#afterCursor} instead of skipping all earlier rows, so every
+ * page costs the same however deep into the list it is. Cursors are handed to clients as opaque
+ * URL-safe strings.
+ */
+public class MediaCursor {
+
+  // The attributes media can be scrolled by, with the parser of their cursor values
+  private static final Map<String, Function<String, Comparable<?>>> SORTABLE =
+      Map.of(
+          "name", value -> value,
+          "path", value -> value,
+          "archivedStatus", ArchivedStatus::valueOf,
+          "dateLastModified", Instant::parse,
+          "dateArchived", Instant::parse,
+          "size", Long::valueOf,
+          "id", Long::valueOf);
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final String sortBy;
+  private final boolean ascending;
+  private final String value;
+  private final long id;
+
+  private MediaCursor(String sortBy, boolean ascending, String value, long id) {
+    this.sortBy = sortBy;
+    this.ascending = ascending;
+    this.value = value;
+    this.id = id;
+  }
+
+  /**
+   * Gets the attributes media can be scrolled by.
+   *
+   * @return the names of the sortable attributes
+   */
+  public static Set<String> sortableAttributes() {
+    return SORTABLE.keySet();
+  }
+
+  /**
+   * Creates the cursor positioned right after a media.
+   *
+   * @param media the last media read
+   * @param sortBy the attribute the media are sorted by
+   * @param ascending whether the media are sorted in ascending order
+   * @return the cursor
+   */
+  public static MediaCursor after(MediaModel media, String sortBy, boolean ascending) {
+    return after(MediaSummary.of(media), sortBy, ascending);
+  }
+
+  /**
+   * Creates the cursor positioned right after a media read as a summary.
+   *
+   * @param media the last media read
+   * @param sortBy the attribute the media are sorted by
+   * @param ascending whether the media are sorted in ascending order
+   * @return the cursor
+   */
+  public static MediaCursor after(MediaSummary media, String sortBy, boolean ascending) {
+    Object sortValue =
+        switch (sortBy) {
+          case "name" -> media.getName();
+          case "path" -> media.getPath();
+          case "archivedStatus" -> media.getArchivedStatus();
+          case "dateLastModified" -> media.getDateLastModified();
+          case "dateArchived" -> media.getDateArchived();
+          case "size" -> media.getSize();
+          case "id" -> media.getId();
+          default -> throw new IllegalArgumentException("Cannot scroll media by " + sortBy);
+        };
+    return new MediaCursor(
+        sortBy, ascending, sortValue == null ? null : sortValue.toString(), media.getId());
+  }
+
+  /**
+   * Decodes a cursor handed out by {@link #encode}.
+   *
+   * @param token the encoded cursor
+   * @return the cursor
+   * @throws InvalidCursorException if the token is not a valid cursor
+   */
+  public static MediaCursor decode(String token) {
+    try {
+      JsonNode node = objectMapper.readTree(Base64.getUrlDecoder().decode(token));
+      String sortBy = node.path("sortBy").asText();
+      if (!SORTABLE.containsKey(sortBy) || !node.path("id").canConvertToLong()) {
+        throw new InvalidCursorException("Invalid cursor");
+      }
+      JsonNode value = node.path("value");
+      MediaCursor cursor =
+          new MediaCursor(
+              sortBy,
+              node.path("ascending").asBoolean(true),
+              value.isTextual() ? value.asText() : null,
+              node.path("id").asLong());
+      // Fails on values that do not fit the attribute
+      cursor.getTypedValue();
+      return cursor;
+    } catch (IOException | RuntimeException e) {
+      if (e instanceof InvalidCursorException invalid) {
+        throw invalid;
+      }
+      throw new InvalidCursorException("Invalid cursor");
+    }
+  }
+
+  /**
+   * Encodes the cursor as an opaque URL-safe string.
+   *
+   * @return the encoded cursor
+   */
+  public String encode() {
+    ObjectNode node = objectMapper.createObjectNode();
+    node.put("sortBy", sortBy);
+    node.put("ascending", ascending);
+    node.put("value", value);
+    node.put("id", id);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(node.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Checks that the cursor was issued for the given order, so a reader cannot resume a list in
+   * another order from it.
+   *
+   * @param sortBy the attribute the media are sorted by
+   * @param ascending whether the media are sorted in ascending order
+   * @throws InvalidCursorException if the cursor belongs to another order
+   */
+  public void requireOrder(String sortBy, boolean ascending) {
+    if (!this.sortBy.equals(sortBy) || this.ascending != ascending) {
+      throw new InvalidCursorException("Cursor does not match the requested sort order");
+    }
+  }
+
+  public String getSortBy() {
+    return sortBy;
+  }
+
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * Gets the sort value of the last media read, typed like its attribute.
+   *
+   * @return the sort value, or null if the media had none
+   */
+  public Comparable<?> getTypedValue() {
+    return value == null ? null : SORTABLE.get(sortBy).apply(value);
+  }
+}
@@ -1,10 +1,19 @@
 package com.example.mediaarchival.filters;
 
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import java.util.Collection;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -48,7 +57,7 @@ public class MediaSpecifications {
   }
 
   /**
-   * Filters media by their recovering status.
+   * Filters media by their recovering status, which is having an active download job.
    *
    * @param isRecovering The recovering status to filter by.
    * @return Specification for the given recovering status.
@@ -58,12 +67,13 @@ public class MediaSpecifications {
       if (isRecovering == null) {
         return criteriaBuilder.isTrue(criteriaBuilder.literal(true)); // No filter
       }
-      return criteriaBuilder.equal(root.get("isRecovering"), isRecovering);
+      Predicate hasJob = hasActiveJob(root, query, criteriaBuilder, JobType.DOWNLOAD);
+      return isRecovering ? hasJob : criteriaBuilder.not(hasJob);
     };
   }
 
   /**
-   * Filters media by their archiving status.
+   * Filters media by their archiving status, which is having an active archive job.
    *
    * @param isArchiving The archiving status to filter by.
    * @return Specification for the given archiving status.
@@ -73,10 +83,27 @@ public class MediaSpecifications {
       if (isArchiving == null) {
         return criteriaBuilder.isTrue(criteriaBuilder.literal(true)); // No filter
       }
-      return criteriaBuilder.equal(root.get("isArchiving"), isArchiving);
+      Predicate hasJob = hasActiveJob(root, query, criteriaBuilder, JobType.ARCHIVE);
+      return isArchiving ? hasJob : criteriaBuilder.not(hasJob);
     };
   }
 
+  // Whether the media has an active job of the type, found through the job table's index
+  private static Predicate hasActiveJob(
+      Root<MediaModel> root,
+      CommonAbstractCriteria query,
+      CriteriaBuilder criteriaBuilder,
+      JobType type) {
+    Subquery<Long> jobs = query.subquery(Long.class);
+    Root<JobModel> job = jobs.from(JobModel.class);
+    jobs.select(job.get("id"))
+        .where(
+            criteriaBuilder.equal(job.get("media").get("id"), root.get("id")),
+            criteriaBuilder.isTrue(job.get("active")),
+            criteriaBuilder.equal(job.get("type"), type));
+    return criteriaBuilder.exists(jobs);
+  }
+
 
   /**
    * Searches media items that include the given search term within a subset.
@@ -95,49 +122,76 @@ public class MediaSpecifications {
   }
 
   /**
-   * Specification for active library jobs given a library ID.
+   * Restricts media to the given IDs, such as the candidates of a name search.
    *
-   * @param libraryId The ID of the library to filter jobs by.
-   * @return Specification that matches active jobs for the given library ID.
+   * @param ids The IDs to keep, null for no restriction.
+   * @return Specification matching only the given IDs.
    */
-  public static Specification<MediaModel> activeLibraryJobs(Long libraryId) {
+  public static Specification<MediaModel> filterByIdIn(Collection<Long> ids) {
     return (root, query, criteriaBuilder) -> {
-      if (libraryId == null) {
-        return criteriaBuilder.isTrue(criteriaBuilder.literal(true));
+      if (ids == null) {
+        return criteriaBuilder.isTrue(criteriaBuilder.literal(true)); // No filter
       }
-
-      Predicate libraryIdMatch = criteriaBuilder.equal(root.get("library").get("id"), libraryId);
-      Predicate isArchiving = criteriaBuilder.isTrue(root.get("isArchiving"));
-      Predicate isRecovering = criteriaBuilder.isTrue(root.get("isRecovering"));
-      Predicate archivingOrRecovering = criteriaBuilder.or(isArchiving, isRecovering);
-
-      return criteriaBuilder.and(libraryIdMatch, archivingOrRecovering);
+      if (ids.isEmpty()) {
+        return criteriaBuilder.disjunction();
+      }
+      return root.get("id").in(ids);
     };
   }
 
   /**
-   * Sorts upload jobs based on progress, tarring status, and cancellation status.
+   * Matches the media after a cursor in the order of {@link #getScrollSort}, where media without
+   * a sort value come last and ties are broken by ID.
    *
-   * @return Sort object with orders defined for sorting upload jobs.
+   * @param cursor The position of the last media read, null to start from the beginning.
+   * @return Specification matching the media after the cursor.
    */
-  public static Sort getUploadJobsSort() {
-    return Sort.by(
-        Sort.Order.desc("uploadProgress"),
-        Sort.Order.desc("isTarring"),
-        Sort.Order.asc("isJobCancelled"));
-  }
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static Specification<MediaModel> afterCursor(MediaCursor cursor) {
+    return (root, query, criteriaBuilder) -> {
+      if (cursor == null) {
+        return criteriaBuilder.isTrue(criteriaBuilder.literal(true)); // No filter
+      }
+      boolean ascending = cursor.isAscending();
+      Path<Long> id = root.get("id");
+      Predicate idAfter =
+          ascending
+              ? criteriaBuilder.greaterThan(id, cursor.getId())
+              : criteriaBuilder.lessThan(id, cursor.getId());
+      if ("id".equals(cursor.getSortBy())) {
+        return idAfter;
+      }
 
+      Expression attribute = root.get(cursor.getSortBy());
+      Comparable value = cursor.getTypedValue();
+      if (value == null) {
+        return criteriaBuilder.and(criteriaBuilder.isNull(attribute), idAfter);
+      }
+      Predicate beyond =
+          ascending
+              ? criteriaBuilder.greaterThan(attribute, value)
+              : criteriaBuilder.lessThan(attribute, value);
+      return criteriaBuilder.or(
+          beyond,
+          criteriaBuilder.and(criteriaBuilder.equal(attribute, value), idAfter),
+          criteriaBuilder.isNull(attribute));
+    };
+  }
 
   /**
-   * Sorts download jobs based on progress, restored status, restoring status, and cancellation status.
+   * Sorts media for scrolling with a {@link MediaCursor}: by the given attribute with media
+   * without a value last, then by ID so that every media has a unique position.
    *
-   * @return Sort object with orders defined for sorting download jobs.
+   * @param sortBy The attribute to sort by.
+   * @param ascending Whether to sort in ascending order.
+   * @return Sort object with the attribute and ID orders.
    */
-  public static Sort getDownloadJobsSort() {
-    return Sort.by(
-        Sort.Order.desc("downloadProgress"),
-        Sort.Order.asc("isRestored"),
-        Sort.Order.asc("isRestoring"),
-        Sort.Order.asc("isJobCancelled"));
+  public static Sort getScrollSort(String sortBy, boolean ascending) {
+    Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+    Sort byId = Sort.by(direction, "id");
+    if ("id".equals(sortBy)) {
+      return byId;
+    }
+    return Sort.by(new Sort.Order(direction, sortBy, Sort.NullHandling.NULLS_LAST)).and(byId);
   }
 }
@@ -0,0 +1,213 @@
+package com.example.mediaarchival.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+
+/**
+ * Entity caching the aggregate size of a directory on disk. An entry stays valid for as long as
+ * the modification time of its directory is unchanged, which lets scans skip listing directories
+ * whose direct contents have not changed since they were last sized.
+ */
+@Entity
+public class DirectorySizeModel {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "directory_size_model_seq")
+  @SequenceGenerator(name = "directory_size_model_seq", sequenceName = "directory_size_model_seq", allocationSize = 50)
+  private Long id;
+
+  @Column(unique = true, length = 4096)
+  private String path;
+
+  @Column(length = 4096)
+  private String parentPath;
+
+  private long lastModified;
+
+  // Total size of the files directly inside the directory
+  private long ownSize;
+
+  // Total size of the directory and everything below it
+  private long totalSize;
+
+  // Total size of the directory and everything below it, leaving out TV season directories
+  private long nonSeasonSize;
+
+  // Latest modification time of the directory itself and the files directly inside it
+  @Column(columnDefinition = "bigint default 0")
+  private long ownLastModified;
+
+  // Latest modification time of anything in the directory and below it
+  @Column(columnDefinition = "bigint default 0")
+  private long maxLastModified;
+
+  // Latest modification time of anything in the directory and below it, leaving out TV season
+  // directories
+  @Column(columnDefinition = "bigint default 0")
+  private long nonSeasonLastModified;
+
+  /**
+   * Gets the unique identifier for the entry.
+   * @return the unique identifier
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Sets the unique identifier for the entry.
+   * @param id the unique identifier to set
+   */
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  /**
+   * Gets the path of the directory.
+   * @return the directory path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Sets the path of the directory.
+   * @param path the directory path to set
+   */
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Gets the path of the directory's parent.
+   * @return the parent directory path
+   */
+  public String getParentPath() {
+    return parentPath;
+  }
+
+  /**
+   * Sets the path of the directory's parent.
+   * @param parentPath the parent directory path to set
+   */
+  public void setParentPath(String parentPath) {
+    this.parentPath = parentPath;
+  }
+
+  /**
+   * Gets the modification time of the directory when it was last sized.
+   * @return the modification time in milliseconds since the epoch
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Sets the modification time of the directory when it was last sized.
+   * @param lastModified the modification time in milliseconds since the epoch
+   */
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Gets the total size of the files directly inside the directory.
+   * @return the size in bytes
+   */
+  public long getOwnSize() {
+    return ownSize;
+  }
+
+  /**
+   * Sets the total size of the files directly inside the directory.
+   * @param ownSize the size in bytes
+   */
+  public void setOwnSize(long ownSize) {
+    this.ownSize = ownSize;
+  }
+
+  /**
+   * Gets the total size of the directory and everything below it.
+   * @return the size in bytes
+   */
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Sets the total size of the directory and everything below it.
+   * @param totalSize the size in bytes
+   */
+  public void setTotalSize(long totalSize) {
+    this.totalSize = totalSize;
+  }
+
+  /**
+   * Gets the total size of the directory and everything below it, without season directories.
+   * @return the size in bytes
+   */
+  public long getNonSeasonSize() {
+    return nonSeasonSize;
+  }
+
+  /**
+   * Sets the total size of the directory and everything below it, without season directories.
+   * @param nonSeasonSize the size in bytes
+   */
+  public void setNonSeasonSize(long nonSeasonSize) {
+    this.nonSeasonSize = nonSeasonSize;
+  }
+
+  /**
+   * Gets the latest modification time of the directory and the files directly inside it.
+   * @return the modification time in milliseconds since the epoch, or 0 if not computed yet
+   */
+  public long getOwnLastModified() {
+    return ownLastModified;
+  }
+
+  /**
+   * Sets the latest modification time of the directory and the files directly inside it.
+   * @param ownLastModified the modification time in milliseconds since the epoch
+   */
+  public void setOwnLastModified(long ownLastModified) {
+    this.ownLastModified = ownLastModified;
+  }
+
+  /**
+   * Gets the latest modification time of anything in the directory and below it.
+   * @return the modification time in milliseconds since the epoch, or 0 if not computed yet
+   */
+  public long getMaxLastModified() {
+    return maxLastModified;
+  }
+
+  /**
+   * Sets the latest modification time of anything in the directory and below it.
+   * @param maxLastModified the modification time in milliseconds since the epoch
+   */
+  public void setMaxLastModified(long maxLastModified) {
+    this.maxLastModified = maxLastModified;
+  }
+
+  /**
+   * Gets the latest modification time of anything in the directory and below it, leaving out
+   * TV season directories.
+   * @return the modification time in milliseconds since the epoch, or 0 if not computed yet
+   */
+  public long getNonSeasonLastModified() {
+    return nonSeasonLastModified;
+  }
+
+  /**
+   * Sets the latest modification time of anything in the directory and below it, leaving out
+   * TV season directories.
+   * @param nonSeasonLastModified the modification time in milliseconds since the epoch
+   */
+  public void setNonSeasonLastModified(long nonSeasonLastModified) {
+    this.nonSeasonLastModified = nonSeasonLastModified;
+  }
+}
@@ -0,0 +1,111 @@
+package com.example.mediaarchival.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+
+/**
+ * Entity caching the content fingerprint of a file on disk. Entries are keyed by the file's
+ * identity on its file system, such as its device and inode, and stay valid for as long as the
+ * file's size and modification time are unchanged, so each version of a file is read once.
+ */
+@Entity
+public class FileFingerprintModel {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_fingerprint_model_seq")
+  @SequenceGenerator(name = "file_fingerprint_model_seq", sequenceName = "file_fingerprint_model_seq", allocationSize = 50)
+  private Long id;
+
+  @Column(unique = true, length = 4096)
+  private String fileKey;
+
+  private long size;
+
+  private long lastModified;
+
+  @Column(length = 64)
+  private String fingerprint;
+
+  /**
+   * Gets the unique identifier for the entry.
+   * @return the unique identifier
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Sets the unique identifier for the entry.
+   * @param id the unique identifier to set
+   */
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  /**
+   * Gets the identity of the file on its file system.
+   * @return the file key
+   */
+  public String getFileKey() {
+    return fileKey;
+  }
+
+  /**
+   * Sets the identity of the file on its file system.
+   * @param fileKey the file key to set
+   */
+  public void setFileKey(String fileKey) {
+    this.fileKey = fileKey;
+  }
+
+  /**
+   * Gets the size of the file when it was fingerprinted.
+   * @return the size in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Sets the size of the file when it was fingerprinted.
+   * @param size the size in bytes to set
+   */
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  /**
+   * Gets the modification time of the file when it was fingerprinted.
+   * @return the modification time in milliseconds since the epoch
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Sets the modification time of the file when it was fingerprinted.
+   * @param lastModified the modification time in milliseconds since the epoch to set
+   */
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Gets the fingerprint of the file's sampled content.
+   * @return the fingerprint as a hex string
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Sets the fingerprint of the file's sampled content.
+   * @param fingerprint the fingerprint as a hex string to set
+   */
+  public void setFingerprint(String fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+}
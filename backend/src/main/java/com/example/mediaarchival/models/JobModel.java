@@ -0,0 +1,235 @@
+package com.example.mediaarchival.models;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import java.time.Instant;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Entity representing an archive or download job of a media. Jobs move through the states of
+ * {@link JobState}, and finished jobs are kept as the media's job history. Only a handful of jobs
+ * are active at any time, so the job lists, the restore checker and the checks for running jobs
+ * read this small table through its indexes instead of the catalog, and job transitions never
+ * rewrite catalog rows. The indexes are created by the schema migrations, which index only the
+ * active jobs by type and state on PostgreSQL. Jobs are deleted with their media.
+ */
+@Entity
+public class JobModel {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_model_seq")
+  @SequenceGenerator(name = "job_model_seq", sequenceName = "job_model_seq", allocationSize = 50)
+  private Long id;
+
+  @ManyToOne(optional = false, fetch = FetchType.LAZY)
+  @JoinColumn(name = "media_id")
+  @OnDelete(action = OnDeleteAction.CASCADE)
+  private MediaModel media;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16, nullable = false)
+  private JobType type;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16, nullable = false)
+  private JobState state;
+
+  // Whether the job is listed with the running jobs, derived from its type and state so that
+  // active jobs of both types are found through one index
+  private boolean active;
+
+  // Percentage of the archive transferred, or -1 while no transfer is running
+  private int progress = -1;
+
+  private boolean cancelRequested;
+
+  // Number of times a consumer started working on the job
+  private int attempts;
+
+  private Instant createdAt;
+  private Instant updatedAt;
+  private Instant finishedAt;
+
+  /**
+   * Gets the unique identifier for the job.
+   * @return the unique identifier
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Sets the unique identifier for the job.
+   * @param id the unique identifier to set
+   */
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  /**
+   * Gets the media the job works on.
+   * @return the media
+   */
+  @JsonIgnore
+  public MediaModel getMedia() {
+    return media;
+  }
+
+  /**
+   * Sets the media the job works on.
+   * @param media the media to set
+   */
+  public void setMedia(MediaModel media) {
+    this.media = media;
+  }
+
+  /**
+   * Gets the kind of work the job does.
+   * @return the job type
+   */
+  public JobType getType() {
+    return type;
+  }
+
+  /**
+   * Sets the kind of work the job does.
+   * @param type the job type to set
+   */
+  public void setType(JobType type) {
+    this.type = type;
+  }
+
+  /**
+   * Gets the state of the job.
+   * @return the job state
+   */
+  public JobState getState() {
+    return state;
+  }
+
+  /**
+   * Sets the state of the job and whether it is active in that state. Transitions are checked
+   * by the {@code JobService}, which is the only caller once a job is created.
+   * @param state the job state to set
+   */
+  public void setState(JobState state) {
+    this.state = state;
+    this.active = type != null && type.isActiveIn(state);
+  }
+
+  /**
+   * Checks if the job is listed with the running jobs.
+   * @return true if the job is active
+   */
+  public boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Gets the percentage of the archive transferred.
+   * @return the progress, or -1 while no transfer is running
+   */
+  public int getProgress() {
+    return progress;
+  }
+
+  /**
+   * Sets the percentage of the archive transferred.
+   * @param progress the progress to set
+   */
+  public void setProgress(int progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Checks if the user asked for the job to be cancelled.
+   * @return true if cancellation was requested
+   */
+  public boolean isCancelRequested() {
+    return cancelRequested;
+  }
+
+  /**
+   * Sets whether the user asked for the job to be cancelled.
+   * @param cancelRequested the cancellation request to set
+   */
+  public void setCancelRequested(boolean cancelRequested) {
+    this.cancelRequested = cancelRequested;
+  }
+
+  /**
+   * Gets the number of times a consumer started working on the job.
+   * @return the number of attempts
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * Sets the number of times a consumer started working on the job.
+   * @param attempts the number of attempts to set
+   */
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  /**
+   * Gets when the job was requested.
+   * @return the creation time
+   */
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  /**
+   * Sets when the job was requested.
+   * @param createdAt the creation time to set
+   */
+  public void setCreatedAt(Instant createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  /**
+   * Gets when the job last changed.
+   * @return the update time
+   */
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+
+  /**
+   * Sets when the job last changed.
+   * @param updatedAt the update time to set
+   */
+  public void setUpdatedAt(Instant updatedAt) {
+    this.updatedAt = updatedAt;
+  }
+
+  /**
+   * Gets when the job's work ended.
+   * @return the finish time, or null while the job is running
+   */
+  public Instant getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * Sets when the job's work ended.
+   * @param finishedAt the finish time to set
+   */
+  public void setFinishedAt(Instant finishedAt) {
+    this.finishedAt = finishedAt;
+  }
+}
@@ -2,11 +2,14 @@ package com.example.mediaarchival.models;
 
 import com.example.mediaarchival.deserializers.MediaCategoryDeserializer;
 import com.example.mediaarchival.enums.MediaCategory;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import software.amazon.awssdk.services.s3.model.StorageClass;
 
 /**
@@ -16,9 +19,12 @@ import software.amazon.awssdk.services.s3.model.StorageClass;
  * a TV library, or a music library
  */
 @Entity
+// The fields of the lazy proxy a media's library is loaded through
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class LibraryModel {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "library_model_seq")
+  @SequenceGenerator(name = "library_model_seq", sequenceName = "library_model_seq", allocationSize = 50)
   private Long id;
 
   private String name;
@@ -33,6 +39,17 @@ public class LibraryModel {
 
   private boolean isUpdating;
 
+  @Column(columnDefinition = "bigint default 0")
+  private long lastScanDirectories;
+
+  @Column(length = 4096)
+  private String scanCheckpoint;
+
+  // Location of the S3 Inventory reports of the library's bucket, as
+  // destination-bucket/prefix/source-bucket/configuration-id. Null to sync by listing.
+  @Column(length = 1024)
+  private String inventoryPath;
+
   /**
    * Gets the unique identifier for the library.
    *
@@ -158,4 +175,60 @@ public class LibraryModel {
   public void setUpdating(boolean isUpdating) {
     this.isUpdating = isUpdating;
   }
+
+  /**
+   * Gets the number of directories visited by the last completed scan of the library.
+   * Running scans use it to estimate how much work is left.
+   *
+   * @return the number of directories, or 0 if the library has not been scanned yet.
+   */
+  public long getLastScanDirectories() {
+    return lastScanDirectories;
+  }
+
+  /**
+   * Sets the number of directories visited by the last completed scan of the library.
+   *
+   * @param lastScanDirectories the number of directories to set.
+   */
+  public void setLastScanDirectories(long lastScanDirectories) {
+    this.lastScanDirectories = lastScanDirectories;
+  }
+
+  /**
+   * Gets the path up to which an interrupted scan of the library was applied to the catalog.
+   * The next scan resumes after it.
+   *
+   * @return the checkpoint path, or null if the last scan finished or none was started.
+   */
+  public String getScanCheckpoint() {
+    return scanCheckpoint;
+  }
+
+  /**
+   * Sets the path up to which the running scan of the library was applied to the catalog.
+   *
+   * @param scanCheckpoint the checkpoint path, or null to clear it.
+   */
+  public void setScanCheckpoint(String scanCheckpoint) {
+    this.scanCheckpoint = scanCheckpoint;
+  }
+
+  /**
+   * Gets the location of the S3 Inventory reports used to synchronize the library.
+   *
+   * @return the inventory location, or null if the library is synchronized by listing its bucket.
+   */
+  public String getInventoryPath() {
+    return inventoryPath;
+  }
+
+  /**
+   * Sets the location of the S3 Inventory reports used to synchronize the library.
+   *
+   * @param inventoryPath the inventory location, or null to synchronize by listing the bucket.
+   */
+  public void setInventoryPath(String inventoryPath) {
+    this.inventoryPath = inventoryPath;
+  }
 }
@@ -0,0 +1,152 @@
+package com.example.mediaarchival.models;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.Instant;
+
+/**
+ * Entity holding the number and total size of the media of a library in one archive status.
+ * Every library has one row per {@link ArchivedStatus}, adjusted by the writes that add, change
+ * or remove its media in the same transaction, so the statistics of a library are read without
+ * touching the catalog. A periodic reconcile recounts them from the catalog.
+ */
+@Entity
+@Table(
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_library_stats_library_status",
+            columnNames = {"library_id", "archived_status"}))
+public class LibraryStatsModel {
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "library_stats_model_seq")
+  @SequenceGenerator(
+      name = "library_stats_model_seq",
+      sequenceName = "library_stats_model_seq",
+      allocationSize = 50)
+  private Long id;
+
+  @ManyToOne(optional = false, fetch = FetchType.LAZY)
+  @JoinColumn(name = "library_id")
+  private LibraryModel library;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "archived_status", length = 16, nullable = false)
+  private ArchivedStatus archivedStatus;
+
+  private long mediaCount;
+
+  private long totalBytes;
+
+  // When the row was last recounted from the catalog, null until the first reconcile
+  private Instant reconciledAt;
+
+  /**
+   * Gets the unique identifier for the statistics row.
+   * @return the unique identifier
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Sets the unique identifier for the statistics row.
+   * @param id the unique identifier to set
+   */
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  /**
+   * Gets the library the statistics are of.
+   * @return the library
+   */
+  @JsonIgnore
+  public LibraryModel getLibrary() {
+    return library;
+  }
+
+  /**
+   * Sets the library the statistics are of.
+   * @param library the library to set
+   */
+  public void setLibrary(LibraryModel library) {
+    this.library = library;
+  }
+
+  /**
+   * Gets the archive status counted by the row.
+   * @return the archive status
+   */
+  public ArchivedStatus getArchivedStatus() {
+    return archivedStatus;
+  }
+
+  /**
+   * Sets the archive status counted by the row.
+   * @param archivedStatus the archive status to set
+   */
+  public void setArchivedStatus(ArchivedStatus archivedStatus) {
+    this.archivedStatus = archivedStatus;
+  }
+
+  /**
+   * Gets the number of media of the library in the status.
+   * @return the number of media
+   */
+  public long getMediaCount() {
+    return mediaCount;
+  }
+
+  /**
+   * Sets the number of media of the library in the status.
+   * @param mediaCount the number of media to set
+   */
+  public void setMediaCount(long mediaCount) {
+    this.mediaCount = mediaCount;
+  }
+
+  /**
+   * Gets the total size of the media of the library in the status.
+   * @return the total size in bytes
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Sets the total size of the media of the library in the status.
+   * @param totalBytes the total size in bytes to set
+   */
+  public void setTotalBytes(long totalBytes) {
+    this.totalBytes = totalBytes;
+  }
+
+  /**
+   * Gets when the row was last recounted from the catalog.
+   * @return the time of the last reconcile, or null if the row was never reconciled
+   */
+  public Instant getReconciledAt() {
+    return reconciledAt;
+  }
+
+  /**
+   * Sets when the row was last recounted from the catalog.
+   * @param reconciledAt the time of the last reconcile to set
+   */
+  public void setReconciledAt(Instant reconciledAt) {
+    this.reconciledAt = reconciledAt;
+  }
+}
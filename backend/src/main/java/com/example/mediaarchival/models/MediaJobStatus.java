@@ -0,0 +1,116 @@
+package com.example.mediaarchival.models;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+
+/**
+ * A media whose job flags and progress are derived from its active job, which the JobService
+ * sets on the media it reads. Shared by the {@link MediaModel} entity and the lighter views of
+ * media returned by listings, so both report jobs the same way.
+ */
+public interface MediaJobStatus {
+
+  /**
+   * Gets the unique identifier of the media.
+   * @return the unique identifier
+   */
+  Long getId();
+
+  /**
+   * Gets the active job of the media.
+   * @return the active job, or null if the media has none or its jobs were not loaded
+   */
+  JobModel getCurrentJob();
+
+  /**
+   * Sets the active job of the media.
+   * @param currentJob the active job, or null if the media has none
+   */
+  void setCurrentJob(JobModel currentJob);
+
+  /**
+   * Checks if the media is being archived.
+   * @return true if the media has an active archive job
+   */
+  default boolean isArchiving() {
+    return hasActiveJob(JobType.ARCHIVE);
+  }
+
+  /**
+   * Checks if the media is being tarred as part of an upload.
+   * @return true if the media's archive job is tarring it
+   */
+  default boolean isTarring() {
+    return hasJobIn(JobType.ARCHIVE, JobState.TARRING);
+  }
+
+  /**
+   * Gets the upload progress of the media.
+   * @return the upload progress percentage, or -1 if no upload is running
+   */
+  default int getUploadProgress() {
+    return hasActiveJob(JobType.ARCHIVE) ? getCurrentJob().getProgress() : -1;
+  }
+
+  /**
+   * Checks if the media is being recovered, or its download finished and was not cleared yet.
+   * @return true if the media has an active download job
+   */
+  default boolean isRecovering() {
+    return hasActiveJob(JobType.DOWNLOAD);
+  }
+
+  /**
+   * Checks if the media's archive is being restored from cold storage.
+   * @return true if the media's download job is restoring it
+   */
+  default boolean isRestoring() {
+    return hasJobIn(JobType.DOWNLOAD, JobState.RESTORING);
+  }
+
+  /**
+   * Checks if the media's archive was restored and waits to be downloaded.
+   * @return true if the media's download job restored it
+   */
+  default boolean isRestored() {
+    return hasJobIn(JobType.DOWNLOAD, JobState.RESTORED);
+  }
+
+  /**
+   * Gets the download progress of the media.
+   * @return the download progress percentage, or -1 if no download is running
+   */
+  default int getDownloadProgress() {
+    return hasActiveJob(JobType.DOWNLOAD) ? getCurrentJob().getProgress() : -1;
+  }
+
+  /**
+   * Gets the outcome of the media's finished download.
+   * @return true or false once the download succeeded or failed, null while none finished
+   */
+  default Boolean getDownloadSuccess() {
+    if (hasJobIn(JobType.DOWNLOAD, JobState.SUCCEEDED)) {
+      return true;
+    }
+    return hasJobIn(JobType.DOWNLOAD, JobState.FAILED) ? false : null;
+  }
+
+  /**
+   * Checks if the user asked for the media's job to be cancelled.
+   * @return true if cancellation of the active job was requested
+   */
+  default boolean isJobCancelled() {
+    JobModel job = getCurrentJob();
+    return job != null && job.isActive() && job.isCancelRequested();
+  }
+
+  private boolean hasActiveJob(JobType type) {
+    JobModel job = getCurrentJob();
+    return job != null && job.getType() == type && job.isActive();
+  }
+
+  private boolean hasJobIn(JobType type, JobState state) {
+    JobModel job = getCurrentJob();
+    return job != null && job.getType() == type && job.getState() == state;
+  }
+}
@@ -2,20 +2,34 @@ package com.example.mediaarchival.models;
 
 import com.example.mediaarchival.deserializers.ArchivedStatusDeserializer;
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Transient;
 
 import java.time.Instant;
 
+/**
+ * Entity representing a media item of a library, with its archive state. Jobs live in their own
+ * table of {@link JobModel}, and the job flags and progress of a media are derived from its
+ * active job through {@link MediaJobStatus}, so running jobs never rewrite catalog rows. Besides
+ * the unique path, the table is indexed by library with archive status or path, used by bulk
+ * library actions and by syncs walking a library in path order. The indexes are created by the
+ * schema migrations rather than from the entity. IDs are drawn from a pooled sequence rather than
+ * an identity column, so the media saved by a scan are inserted in JDBC batches.
+ */
 @Entity
-public class MediaModel {
+public class MediaModel implements MediaJobStatus {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "media_model_seq")
+  @SequenceGenerator(name = "media_model_seq", sequenceName = "media_model_seq", allocationSize = 50)
   private Long id;
 
   private String name;
@@ -29,39 +43,53 @@ public class MediaModel {
   private Instant dateArchived;
   private Instant dateLastModified;
 
-  // Indicates that an object is in the process of being uploaded
-  private boolean isArchiving;
+  // Indicates that the media could not be found on disk during the last library scan.
+  // The default lets the column be added to catalogs that already contain media.
+  @Column(columnDefinition = "boolean default false")
+  private boolean isMissing;
 
-  // Indicates that the object is being tarred as part of an upload
-  private boolean isTarring;
+  private long size;
 
-  private int uploadProgress;
+  // Indicates that the size of the media is still being computed in the background. The size
+  // holds the previous value, or 0 for new media, until then.
+  @Column(columnDefinition = "boolean default false")
+  private boolean isSizePending;
 
-  // Indicates that the object is in the process of being downloaded
-  private boolean isRecovering;
+  // Fingerprint of the sampled content of the media's files, recorded when scans detect
+  // changes by content. Null until the media is first fingerprinted.
+  @Column(length = 64)
+  private String fingerprint;
 
-  // Indicates that the object is in the process of being restored to S3 from Glacier
-  private boolean isRestoring;
+  // Size and storage class of the media's object in S3 as last seen by a library sync. Null
+  // until the media is synchronized.
+  private Long archivedSize;
 
-  // Indicates that the object has been restored from S3
-  private boolean isRestored;
+  @Column(length = 32)
+  private String archivedStorageClass;
 
-  private int downloadProgress;
+  // Size, ETag and SHA-256 checksum of the media's object as returned by its last upload, which
+  // syncs compare against the bucket listing. Null for media archived before these were recorded.
+  private Long uploadedSize;
 
-  // Indicates that a download job has completed with success or failure. Null means no
-  // job has been completed.
-  private Boolean downloadSuccess;
+  @Column(length = 128)
+  private String uploadedETag;
 
-  private boolean isJobCancelled;
+  @Column(length = 128)
+  private String uploadedChecksum;
 
-  private long size;
+  // Loaded on first use, workers read the library's metadata from the LibraryMetadataCache
+  @ManyToOne(fetch = FetchType.LAZY)
+  private LibraryModel library;
 
-  @ManyToOne private LibraryModel library;
+  // The active archive or download job of the media, set by the JobService on media it returns
+  // to the API and to job consumers. The job flags and progress of the media are derived from it.
+  @Transient private JobModel currentJob;
 
   /**
    * Gets the unique identifier for the media.
    * @return the unique identifier
    */
+  @Override
   public Long getId() {
     return id;
   }
@@ -171,163 +199,167 @@ public class MediaModel {
   }
 
   /**
-   * Checks if the media is currently being archived.
-   * @return true if archiving, otherwise false
+   * Gets the active job of the media.
+   * @return the active job, or null if the media has none or its jobs were not loaded
    */
-  public boolean isArchiving() {
-    return isArchiving;
+  @Override
+  @JsonIgnore
+  public JobModel getCurrentJob() {
+    return currentJob;
   }
 
   /**
-   * Sets the media's archiving status.
-   * @param isArchiving the archiving status to set
+   * Sets the active job of the media.
+   * @param currentJob the active job, or null if the media has none
    */
-  public void setArchiving(boolean isArchiving) {
-    this.isArchiving = isArchiving;
+  @Override
+  public void setCurrentJob(JobModel currentJob) {
+    this.currentJob = currentJob;
   }
 
   /**
-   * Checks if the media is currently being tarred.
-   * @return true if tarring, otherwise false
+   * Gets the size of the media file.
+   * @return the size of the file
    */
-  public boolean isTarring() {
-    return isTarring;
+  public long getSize() {
+    return size;
   }
 
   /**
-   * Sets the media's tarring status.
-   * @param isTarring the tarring status to set
+   * Sets the size of the media file.
+   * @param size the size to set
    */
-  public void setTarring(boolean isTarring) {
-    this.isTarring = isTarring;
+  public void setSize(long size) {
+    this.size = size;
   }
 
   /**
-   * Gets the current upload progress percentage.
-   * @return the upload progress
+   * Checks if the media was missing from disk during the last library scan.
+   * @return true if missing, otherwise false
    */
-  public int getUploadProgress() {
-    return uploadProgress;
+  public boolean isMissing() {
+    return isMissing;
   }
 
   /**
-   * Sets the current upload progress percentage.
-   * @param uploadProgress the upload progress to set
+   * Sets the media's missing status.
+   * @param isMissing the missing status to set
    */
-  public void setUploadProgress(int uploadProgress) {
-    this.uploadProgress = uploadProgress;
+  public void setMissing(boolean isMissing) {
+    this.isMissing = isMissing;
   }
 
   /**
-   * Checks if the media is currently being restored.
-   * @return true if restoring, otherwise false
+   * Gets the fingerprint of the media's sampled content from the last library scan.
+   * @return the fingerprint as a hex string, or null if the media was not fingerprinted
    */
-  public boolean isRestoring() {
-    return isRestoring;
+  public String getFingerprint() {
+    return fingerprint;
   }
 
   /**
-   * Sets the media's restoring status.
-   * @param retrieving the restoring status to set
+   * Sets the fingerprint of the media's sampled content.
+   * @param fingerprint the fingerprint as a hex string to set
    */
-  public void setRestoring(boolean retrieving) {
-    isRestoring = retrieving;
+  public void setFingerprint(String fingerprint) {
+    this.fingerprint = fingerprint;
   }
 
   /**
-   * Checks if the media has been restored.
-   * @return true if restored, otherwise false
+   * Checks if the size of the media is still being computed.
+   * @return true if the size is pending, otherwise false
    */
-  public boolean isRestored() {
-    return isRestored;
+  public boolean isSizePending() {
+    return isSizePending;
   }
 
   /**
-   * Sets the media's restored status.
-   * @param restored the restored status to set
+   * Sets whether the size of the media is still being computed.
+   * @param isSizePending the size pending status to set
    */
-  public void setRestored(boolean restored) {
-    isRestored = restored;
+  public void setSizePending(boolean isSizePending) {
+    this.isSizePending = isSizePending;
   }
 
   /**
-   * Gets the current download progress percentage.
-   * @return the download progress
+   * Gets the size of the media's object in S3 as last seen by a library sync.
+   * @return the size in bytes, or null if the media was not synchronized
    */
-  public int getDownloadProgress() {
-    return downloadProgress;
+  public Long getArchivedSize() {
+    return archivedSize;
   }
 
   /**
-   * Sets the current download progress percentage.
-   * @param downloadProgress the download progress to set
+   * Sets the size of the media's object in S3.
+   * @param archivedSize the size in bytes to set
    */
-  public void setDownloadProgress(int downloadProgress) {
-    this.downloadProgress = downloadProgress;
+  public void setArchivedSize(Long archivedSize) {
+    this.archivedSize = archivedSize;
   }
 
   /**
-   * Checks if the media's job is cancelled.
-   * @return true if the job is cancelled, otherwise false
+   * Gets the storage class of the media's object in S3 as last seen by a library sync.
+   * @return the storage class, or null if the media was not synchronized
    */
-  public boolean isJobCancelled() {
-    return isJobCancelled;
+  public String getArchivedStorageClass() {
+    return archivedStorageClass;
   }
 
   /**
-   * Sets the media's job cancellation status.
-   * @param jobCancelled the job cancellation status to set
+   * Sets the storage class of the media's object in S3.
+   * @param archivedStorageClass the storage class to set
    */
-  public void setJobCancelled(boolean jobCancelled) {
-    isJobCancelled = jobCancelled;
+  public void setArchivedStorageClass(String archivedStorageClass) {
+    this.archivedStorageClass = archivedStorageClass;
   }
 
   /**
-   * Gets the size of the media file.
-   * @return the size of the file
+   * Gets the size of the media's object in S3 as returned by its last upload.
+   * @return the size in bytes, or null if not recorded
    */
-  public long getSize() {
-    return size;
+  public Long getUploadedSize() {
+    return uploadedSize;
   }
 
   /**
-   * Sets the size of the media file.
-   * @param size the size to set
+   * Sets the size of the media's object in S3 as returned by its last upload.
+   * @param uploadedSize the size in bytes to set
    */
-  public void setSize(long size) {
-    this.size = size;
+  public void setUploadedSize(Long uploadedSize) {
+    this.uploadedSize = uploadedSize;
   }
 
   /**
-   * Checks if the media is currently being recovered.
-   * @return true if recovering, otherwise false
+   * Gets the ETag of the media's object in S3 as returned by its last upload.
+   * @return the ETag, or null if not recorded
    */
-  public boolean isRecovering() {
-    return isRecovering;
+  public String getUploadedETag() {
+    return uploadedETag;
   }
 
   /**
-   * Sets the media's recovering status.
-   * @param isRecovering the recovering status to set
+   * Sets the ETag of the media's object in S3 as returned by its last upload.
+   * @param uploadedETag the ETag to set
    */
-  public void setRecovering(boolean isRecovering) {
-    this.isRecovering = isRecovering;
+  public void setUploadedETag(String uploadedETag) {
+    this.uploadedETag = uploadedETag;
   }
 
   /**
-   * Gets the success status of the last download job.
-   * @return true if successful, false if failed, null if no job has been completed
+   * Gets the base64 SHA-256 checksum of the media's object in S3 as returned by its last upload.
+   * Objects uploaded in parts have a checksum of their part checksums, suffixed with the number
+   * of parts.
+   * @return the checksum, or null if not recorded
    */
-  public Boolean getDownloadSuccess() {
-    return downloadSuccess;
+  public String getUploadedChecksum() {
+    return uploadedChecksum;
   }
 
   /**
-   * Sets the success status of the last download job.
-   * @param downloadFinished the status to set, true for success, false for failure, null if no job
+   * Sets the SHA-256 checksum of the media's object in S3 as returned by its last upload.
+   * @param uploadedChecksum the checksum to set
    */
-  public void setDownloadSuccess(Boolean downloadFinished) {
-    this.downloadSuccess = downloadFinished;
+  public void setUploadedChecksum(String uploadedChecksum) {
+    this.uploadedChecksum = uploadedChecksum;
   }
-
 }
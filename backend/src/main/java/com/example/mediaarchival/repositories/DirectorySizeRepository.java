@@ -0,0 +1,23 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.models.DirectorySizeModel;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for {@link DirectorySizeModel} that extends Spring Data JPA's {@link JpaRepository}.
+ * It stores the cached directory sizes used when sizing media on disk.
+ */
+@Repository
+public interface DirectorySizeRepository extends JpaRepository<DirectorySizeModel, Long> {
+
+  /**
+   * Finds the cached entries for a directory and every directory below it.
+   *
+   * @param path   the path of the directory
+   * @param prefix the path of the directory followed by a separator
+   * @return the cached entries of the directory's subtree
+   */
+  List<DirectorySizeModel> findByPathOrPathStartingWith(String path, String prefix);
+}
@@ -0,0 +1,23 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.models.FileFingerprintModel;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for {@link FileFingerprintModel} that extends Spring Data JPA's {@link JpaRepository}.
+ * It stores the cached file fingerprints used to detect changed media.
+ */
+@Repository
+public interface FileFingerprintRepository extends JpaRepository<FileFingerprintModel, Long> {
+
+  /**
+   * Finds the cached fingerprints of the given files.
+   *
+   * @param fileKeys the identities of the files
+   * @return the cached entries, for the files that have one
+   */
+  List<FileFingerprintModel> findByFileKeyIn(Collection<String> fileKeys);
+}
@@ -0,0 +1,259 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
+import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for {@link JobModel} that extends Spring Data JPA's {@link JpaRepository}
+ * and {@link JpaSpecificationExecutor}. Jobs change state through compare-and-set updates of
+ * single columns, so that a transition written by a consumer never overwrites a cancellation
+ * requested meanwhile or progress written by the progress buffer.
+ */
+@Repository
+public interface JobRepository
+    extends JpaRepository<JobModel, Long>, JpaSpecificationExecutor<JobModel> {
+
+  /**
+   * Finds the active jobs of the given media.
+   *
+   * @param mediaIds the IDs of the media
+   * @return the active jobs, at most one per media
+   */
+  List<JobModel> findByActiveTrueAndMediaIdIn(Collection<Long> mediaIds);
+
+  /**
+   * Finds the active jobs of a type.
+   *
+   * @param type the job type
+   * @return the active jobs of the type
+   */
+  List<JobModel> findByTypeAndActiveTrue(JobType type);
+
+  /**
+   * Finds the active jobs of a type in one of the given states, with their media. The libraries
+   * of the media are read from the {@code LibraryMetadataCache} instead.
+   *
+   * @param type the job type
+   * @param states the states to look for, in which jobs of the type are active
+   * @return the matching jobs
+   */
+  @EntityGraph(attributePaths = {"media"})
+  List<JobModel> findByTypeAndStateInAndActiveTrue(JobType type, Collection<JobState> states);
+
+  /**
+   * Finds every job of a media, most recent first.
+   *
+   * @param mediaId the ID of the media
+   * @return the media's job history
+   */
+  List<JobModel> findByMediaIdOrderByIdDesc(Long mediaId);
+
+  /**
+   * Finds the IDs of the media of a library that have an active job.
+   *
+   * @param libraryId the ID of the library
+   * @return the IDs of the media with an active job
+   */
+  @Query("SELECT j.media.id FROM JobModel j WHERE j.active = true AND j.media.library.id = :libraryId")
+  List<Long> findActiveMediaIdsByLibraryId(Long libraryId);
+
+  /**
+   * The number of active jobs of a type on the media of a library.
+   */
+  interface ActiveJobCount {
+    Long getLibraryId();
+
+    JobType getType();
+
+    long getCount();
+  }
+
+  /**
+   * Counts the active jobs of every library by type. Active jobs are few and indexed, so they
+   * are counted when asked for rather than kept in the library statistics.
+   *
+   * @return the counts of the libraries and types that have active jobs
+   */
+  @Query(
+      "SELECT j.media.library.id AS libraryId, j.type AS type, COUNT(j) AS count FROM JobModel j"
+          + " WHERE j.active = true GROUP BY j.media.library.id, j.type")
+  List<ActiveJobCount> countActiveByLibraryAndType();
+
+  /**
+   * Counts the active jobs of a library by type.
+   *
+   * @param libraryId the ID of the library
+   * @return the counts of the types that have active jobs
+   */
+  @Query(
+      "SELECT j.media.library.id AS libraryId, j.type AS type, COUNT(j) AS count FROM JobModel j"
+          + " WHERE j.active = true AND j.media.library.id = :libraryId"
+          + " GROUP BY j.media.library.id, j.type")
+  List<ActiveJobCount> countActiveByTypeAndLibraryId(Long libraryId);
+
+  /**
+   * Checks if any media of a library has an active job.
+   *
+   * @param libraryId the ID of the library
+   * @return true if the library has active jobs
+   */
+  boolean existsByActiveTrueAndMediaLibraryId(Long libraryId);
+
+  /**
+   * Reads whether cancellation of a job was requested.
+   *
+   * @param id the ID of the job
+   * @return true if cancellation was requested, null if the job does not exist
+   */
+  @Query("SELECT j.cancelRequested FROM JobModel j WHERE j.id = :id")
+  Boolean findCancelRequestedById(Long id);
+
+  /**
+   * Moves a job to another state if it is still in the expected one.
+   *
+   * @param id the ID of the job
+   * @param current the state the job is expected to be in
+   * @param next the state to move to
+   * @param active whether the job is active in the next state
+   * @param progress the progress of the job in the next state
+   * @param attempts the number of attempts of the job
+   * @param updatedAt the time of the transition
+   * @param finishedAt the time the job's work ended, or null if it goes on
+   * @return 1 if the job moved, 0 if it was no longer in the expected state
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.state = :next, j.active = :active, j.progress = :progress,"
+          + " j.attempts = :attempts, j.updatedAt = :updatedAt, j.finishedAt = :finishedAt"
+          + " WHERE j.id = :id AND j.state = :current")
+  int updateStateById(
+      Long id,
+      JobState current,
+      JobState next,
+      boolean active,
+      int progress,
+      int attempts,
+      Instant updatedAt,
+      Instant finishedAt);
+
+  /**
+   * Requests the cancellation of a job whose work is still running.
+   *
+   * @param id the ID of the job
+   * @param running the states in which a job's work is running
+   * @param updatedAt the time of the request
+   * @return 1 if cancellation was requested, 0 if the job's work is over
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.cancelRequested = true, j.updatedAt = :updatedAt"
+          + " WHERE j.id = :id AND j.state IN :running")
+  int requestCancelById(Long id, Collection<JobState> running, Instant updatedAt);
+
+  /**
+   * Requests the cancellation of every job of a type whose work is still running.
+   *
+   * @param type the kind of job
+   * @param running the states in which a job's work is running
+   * @param updatedAt the time of the request
+   * @return the number of jobs flagged
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.cancelRequested = true, j.updatedAt = :updatedAt"
+          + " WHERE j.active = true AND j.type = :type AND j.state IN :running"
+          + " AND j.cancelRequested = false")
+  int requestCancelByType(JobType type, Collection<JobState> running, Instant updatedAt);
+
+  /**
+   * Requests the cancellation of the running jobs of some media.
+   *
+   * @param mediaIds the IDs of the media
+   * @param running the states in which a job's work is running
+   * @param updatedAt the time of the request
+   * @return the number of jobs flagged
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.cancelRequested = true, j.updatedAt = :updatedAt"
+          + " WHERE j.media.id IN :mediaIds AND j.state IN :running AND j.cancelRequested = false")
+  int requestCancelByMediaIdIn(
+      Collection<Long> mediaIds, Collection<JobState> running, Instant updatedAt);
+
+  /**
+   * Moves every job of a type from some states to a final state in one statement. The jobs'
+   * progress is reset and their finish time set unless they had already finished.
+   *
+   * @param type the kind of job
+   * @param states the states of the jobs to move, in which jobs of the type are active
+   * @param next the final state to move to
+   * @param active whether jobs of the type are active in the next state
+   * @param updatedAt the time of the transition
+   * @return the number of jobs moved
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.state = :next, j.active = :active, j.progress = -1,"
+          + " j.updatedAt = :updatedAt, j.finishedAt = COALESCE(j.finishedAt, :updatedAt)"
+          + " WHERE j.active = true AND j.type = :type AND j.state IN :states")
+  int updateStateByTypeAndStateIn(
+      JobType type, Collection<JobState> states, JobState next, boolean active, Instant updatedAt);
+
+  /**
+   * Moves the jobs of a type of some media from some states to a final state in one statement,
+   * like {@link #updateStateByTypeAndStateIn}.
+   *
+   * @param type the kind of job
+   * @param mediaIds the IDs of the media
+   * @param states the states of the jobs to move
+   * @param next the final state to move to
+   * @param active whether jobs of the type are active in the next state
+   * @param updatedAt the time of the transition
+   * @return the number of jobs moved
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.state = :next, j.active = :active, j.progress = -1,"
+          + " j.updatedAt = :updatedAt, j.finishedAt = COALESCE(j.finishedAt, :updatedAt)"
+          + " WHERE j.type = :type AND j.media.id IN :mediaIds AND j.state IN :states")
+  int updateStateByTypeAndMediaIdInAndStateIn(
+      JobType type,
+      Collection<Long> mediaIds,
+      Collection<JobState> states,
+      JobState next,
+      boolean active,
+      Instant updatedAt);
+
+  /**
+   * Updates the progress of jobs that reached the same progress. Only jobs still transferring
+   * are updated, so progress buffered before a job was moved by a bulk update is not written
+   * back.
+   *
+   * @param ids the IDs of the jobs to update
+   * @param progress the new progress percentage
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE JobModel j SET j.progress = :progress WHERE j.id IN :ids AND j.state IN"
+          + " (com.example.mediaarchival.enums.JobState.UPLOADING,"
+          + " com.example.mediaarchival.enums.JobState.DOWNLOADING)")
+  void updateProgressByIdIn(Collection<Long> ids, int progress);
+}
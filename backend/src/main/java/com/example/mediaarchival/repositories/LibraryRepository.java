@@ -1,8 +1,12 @@
 package com.example.mediaarchival.repositories;
 
 import com.example.mediaarchival.models.LibraryModel;
+import jakarta.transaction.Transactional;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -27,4 +31,48 @@ public interface LibraryRepository extends JpaRepository<LibraryModel, Long> {
    * @return an {@link Optional} describing the found library, or an empty {@code Optional} if no library is found
    */
   Optional<LibraryModel> findByPath(String path);
+
+  /**
+   * Finds the libraries whose last scan was interrupted before it finished.
+   *
+   * @return the libraries that have a scan checkpoint
+   */
+  List<LibraryModel> findByScanCheckpointIsNotNull();
+
+  /**
+   * Records how far the running scan of a library got, without touching the other columns
+   * of the library.
+   *
+   * @param id the ID of the library
+   * @param scanCheckpoint the path up to which the scan was applied, or null to clear it
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE LibraryModel l SET l.scanCheckpoint = :scanCheckpoint WHERE l.id = :id")
+  void updateScanCheckpointById(Long id, String scanCheckpoint);
+
+  /**
+   * Marks a library as updating unless a scan or sync of it is already under way, in one
+   * statement, so two requests cannot both start one.
+   *
+   * @param id the ID of the library
+   * @return 1 if the library was marked, 0 if it was already updating or does not exist
+   */
+  @Modifying
+  @Transactional
+  @Query("UPDATE LibraryModel l SET l.isUpdating = true WHERE l.id = :id AND l.isUpdating = false")
+  int markUpdatingById(Long id);
+
+  /**
+   * Clears the updating flag of the libraries whose scan or sync was cut short and will not be
+   * resumed, which are those without a scan checkpoint.
+   *
+   * @return the number of libraries cleared
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE LibraryModel l SET l.isUpdating = false"
+          + " WHERE l.isUpdating = true AND l.scanCheckpoint IS NULL")
+  int clearUpdatingWithoutCheckpoint();
 }
@@ -0,0 +1,56 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.models.LibraryStatsModel;
+import jakarta.transaction.Transactional;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for {@link LibraryStatsModel} that extends Spring Data JPA's
+ * {@link JpaRepository}. Statistics are adjusted by relative updates, so concurrent writers
+ * to the same library add up instead of overwriting each other.
+ */
+@Repository
+public interface LibraryStatsRepository extends JpaRepository<LibraryStatsModel, Long> {
+
+  /**
+   * Finds the statistics rows of a library.
+   *
+   * @param libraryId the ID of the library
+   * @return one row per archive status, fewer if the library was not reconciled yet
+   */
+  List<LibraryStatsModel> findByLibraryId(Long libraryId);
+
+  /**
+   * Adds to the number and total size of a library's media in an archive status. Negative
+   * values subtract.
+   *
+   * @param libraryId the ID of the library
+   * @param archivedStatus the archive status
+   * @param count the number of media to add
+   * @param bytes the number of bytes to add
+   * @return 1 if the row was updated, 0 if the library has no row for the status
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "UPDATE LibraryStatsModel s SET s.mediaCount = s.mediaCount + :count,"
+          + " s.totalBytes = s.totalBytes + :bytes"
+          + " WHERE s.library.id = :libraryId AND s.archivedStatus = :archivedStatus")
+  int addByLibraryIdAndArchivedStatus(
+      Long libraryId, ArchivedStatus archivedStatus, long count, long bytes);
+
+  /**
+   * Deletes the statistics of a library in one statement.
+   *
+   * @param libraryId the ID of the library
+   */
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM LibraryStatsModel s WHERE s.library.id = :libraryId")
+  void deleteAllByLibraryIdInBatch(Long libraryId);
+}
@@ -2,15 +2,20 @@ package com.example.mediaarchival.repositories;
 
 import com.example.mediaarchival.enums.ArchivedStatus;
 import com.example.mediaarchival.models.MediaModel;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -20,7 +25,9 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface MediaRepository
-    extends JpaRepository<MediaModel, Long>, JpaSpecificationExecutor<MediaModel> {
+    extends JpaRepository<MediaModel, Long>,
+        JpaSpecificationExecutor<MediaModel>,
+        MediaRepositoryCustom {
 
   /**
    * Finds all media items associated with a given library ID.
@@ -65,94 +72,262 @@ public interface MediaRepository
   List<MediaModel> findByLibraryIdAndArchivedStatusIn(Long libraryId, List<ArchivedStatus> archivedStatusList);
 
   /**
-   * Finds media items that are currently being archived.
+   * Finds media items by their associated library ID and a list of archived statuses,
+   * skipping media that the last library scan could not find on disk.
    *
-   * @param isArchiving whether the media item is in the process of archiving
-   * @return a list of media items that are being archived
+   * @param libraryId          the ID of the library
+   * @param archivedStatusList the list of archived statuses to filter by
+   * @return a list of media items that match the library ID, are within the specified archived
+   *     statuses, and are present on disk
+   */
+  List<MediaModel> findByLibraryIdAndArchivedStatusInAndIsMissingFalse(
+      Long libraryId, List<ArchivedStatus> archivedStatusList);
+
+  /**
+   * Retrieves the next batch of a library's media in path order, starting after the given path.
+   * Repeated calls walk the whole library as a sorted cursor without holding it in memory.
+   * Ordering by the library as well lets the database read the batch from the library and path
+   * index in order, instead of sorting the whole library for every batch.
+   *
+   * @param libraryId the ID of the library
+   * @param path      the path to continue after, or an empty string to start from the beginning
+   * @param pageable  the batch size, only the page size is used
+   * @return the next media items of the library in ascending path order
+   */
+  List<MediaModel> findByLibraryIdAndPathGreaterThanOrderByLibraryIdAscPathAsc(
+      Long libraryId, String path, Pageable pageable);
+
+  /**
+   * The ID and path of a media item, loaded without the rest of the entity.
+   */
+  interface PathView {
+    Long getId();
+
+    String getPath();
+  }
+
+  /**
+   * Retrieves the next batch of media IDs and paths in ID order, starting after the given ID.
+   * Used to load path indexes without materializing media entities.
+   *
+   * @param afterId  the ID to continue after, or 0 to start from the beginning
+   * @param pageable the batch size, only the page size is used
+   * @return the IDs and paths of the next media items in ascending ID order
+   */
+  @Query("SELECT m.id AS id, m.path AS path FROM MediaModel m WHERE m.id > :afterId ORDER BY m.id")
+  List<PathView> findPathsByIdGreaterThan(Long afterId, Pageable pageable);
+
+  /**
+   * The ID and name of a media item, loaded without the rest of the entity.
+   */
+  interface NameView {
+    Long getId();
+
+    String getName();
+  }
+
+  /**
+   * Retrieves the next batch of media IDs and names in ID order, starting after the given ID.
+   * Used to load the name index without materializing media entities.
+   *
+   * @param afterId  the ID to continue after, or 0 to start from the beginning
+   * @param pageable the batch size, only the page size is used
+   * @return the IDs and names of the next media items in ascending ID order
+   */
+  @Query("SELECT m.id AS id, m.name AS name FROM MediaModel m WHERE m.id > :afterId ORDER BY m.id")
+  List<NameView> findNamesByIdGreaterThan(Long afterId, Pageable pageable);
+
+  /**
+   * The ID, path and name of a media item, the keys of the in-memory indexes.
+   */
+  interface IndexedView extends PathView, NameView {}
+
+  /**
+   * Retrieves the index keys of the media with the given IDs, so they can be removed from the
+   * indexes when the media are deleted in bulk.
+   *
+   * @param ids the IDs of the media
+   * @return the IDs, paths and names of the media that exist
    */
-  List<MediaModel> findByIsArchiving(boolean isArchiving);
+  @Query("SELECT m.id AS id, m.path AS path, m.name AS name FROM MediaModel m WHERE m.id IN :ids")
+  List<IndexedView> findIndexedByIdIn(Collection<Long> ids);
 
   /**
-   * Finds media items by their download success status.
+   * Retrieves the index keys of every media of a library.
    *
-   * @param downloadSuccess whether the download was successful
-   * @return a list of media items with the specified download success status
+   * @param libraryId the ID of the library
+   * @return the IDs, paths and names of the library's media
+   */
+  @Query(
+      "SELECT m.id AS id, m.path AS path, m.name AS name FROM MediaModel m"
+          + " WHERE m.library.id = :libraryId")
+  List<IndexedView> findIndexedByLibraryId(Long libraryId);
+
+  /**
+   * The library, archive status and size of a media item, what the library statistics count.
+   */
+  interface StatsView {
+    Long getId();
+
+    Long getLibraryId();
+
+    ArchivedStatus getArchivedStatus();
+
+    long getSize();
+  }
+
+  /**
+   * Reads what the library statistics count of the media with the given IDs, as stored in the
+   * catalog. Changes made to loaded media are not flushed before the query, so it returns the
+   * state the statistics were computed from before the media are saved.
+   *
+   * @param ids the IDs of the media
+   * @return the statistics keys of the media that exist
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+  @Query(
+      "SELECT m.id AS id, m.library.id AS libraryId, m.archivedStatus AS archivedStatus,"
+          + " m.size AS size FROM MediaModel m WHERE m.id IN :ids")
+  List<StatsView> findStatsByIdIn(Collection<Long> ids);
+
+  /**
+   * The number and total size of a library's media in one archive status.
+   */
+  interface StatusTotals {
+    ArchivedStatus getArchivedStatus();
+
+    long getMediaCount();
+
+    long getTotalBytes();
+  }
+
+  /**
+   * Counts and sums the sizes of a library's media by archive status, reading every media of
+   * the library. Used to reconcile the library statistics.
+   *
+   * @param libraryId the ID of the library
+   * @return the totals of every status the library has media in
    */
-  List<MediaModel> findByDownloadSuccess(boolean downloadSuccess);
+  @Query(
+      "SELECT m.archivedStatus AS archivedStatus, COUNT(m) AS mediaCount,"
+          + " COALESCE(SUM(m.size), 0) AS totalBytes FROM MediaModel m"
+          + " WHERE m.library.id = :libraryId GROUP BY m.archivedStatus")
+  List<StatusTotals> sumByLibraryIdGroupByArchivedStatus(Long libraryId);
 
   /**
-   * Finds media items that are currently being recovered.
+   * Finds the distinct directories directly below a library's root that hold media, used to
+   * restrict bucket listings to the library's keys.
    *
-   * @param isRecovering whether the media item is in the process of recovery
-   * @return a list of media items that are being recovered
+   * @param libraryId the ID of the library
+   * @param start the 1-based position of the first character after the root prefix
+   * @return the directories with a trailing slash, and an empty string if media lie directly
+   *     in the root
    */
-  List<MediaModel> findByIsRecovering(boolean isRecovering);
+  @Query(
+      "SELECT DISTINCT SUBSTRING(m.path, 1, LOCATE('/', m.path, :start)) FROM MediaModel m"
+          + " WHERE m.library.id = :libraryId")
+  List<String> findFirstLevelDirectories(Long libraryId, int start);
 
   /**
-   * Finds media items that are currently being restored.
+   * Finds media items whose size is still being computed.
    *
-   * @param isRestoring whether the media item is in the process of recovery
-   * @return a list of media items that are being recovered
+   * @param isSizePending whether the size of the media item is pending
+   * @return a list of media items with a pending size
    */
-  List<MediaModel> findByIsRestoring(boolean isRestoring);
+  List<MediaModel> findByIsSizePending(boolean isSizePending);
 
   /**
-   * Updates the upload progress of a media by its ID.
+   * Finds which of the given media have an active job.
    *
-   * @param id             the ID of the media to update
-   * @param uploadProgress the new upload progress percentage
+   * @param ids the IDs of the media
+   * @return the IDs of the media with an active job
+   */
+  @Query("SELECT j.media.id FROM JobModel j WHERE j.active = true AND j.media.id IN :ids")
+  List<Long> findIdsWithActiveJobByIdIn(Collection<Long> ids);
+
+  /**
+   * Updates the size of a media by its ID.
+   *
+   * @param id    the ID of the media to update
+   * @param size  the new size in bytes
    */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.uploadProgress = :uploadProgress WHERE m.id = :id")
-  void updateUploadProgressById(Long id, int uploadProgress);
+  @Query("UPDATE MediaModel m SET m.size = :size WHERE m.id = :id")
+  void updateSizeById(Long id, long size);
 
   /**
-   * Updates the download progress of a media by its ID.
+   * Stores the size computed for a media whose size was pending.
    *
-   * @param id                the ID of the media to update
-   * @param downloadProgress  the new download progress percentage
+   * @param id    the ID of the media to update
+   * @param size  the computed size in bytes
    */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.downloadProgress = :downloadProgress WHERE m.id = :id")
-  void updateDownloadProgressById(Long id, int downloadProgress);
+  @Query("UPDATE MediaModel m SET m.size = :size, m.isSizePending = false WHERE m.id = :id")
+  void updateComputedSizeById(Long id, long size);
 
   /**
-   * Updates the tarring status of a media by its ID.
+   * Records the size, ETag and checksum S3 returned for the upload of a media's archive.
    *
-   * @param id         the ID of the media to update
-   * @param isTarring  the new tarring status
+   * @param id       the ID of the media to update
+   * @param size     the size of the uploaded object in bytes
+   * @param eTag     the ETag of the uploaded object
+   * @param checksum the SHA-256 checksum of the uploaded object, or null if none was returned
+   * @param dateArchived the last modified time of the uploaded object
    */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.isTarring = :isTarring WHERE m.id = :id")
-  void updateIsTarringById(Long id, boolean isTarring);
+  @Query(
+      "UPDATE MediaModel m SET m.uploadedSize = :size, m.uploadedETag = :eTag,"
+          + " m.uploadedChecksum = :checksum, m.dateArchived = :dateArchived WHERE m.id = :id")
+  void updateUploadedObjectById(
+      Long id, Long size, String eTag, String checksum, Instant dateArchived);
 
   /**
-   * Updates the restoring status of a media by its ID.
+   * Flags a batch of media as missing from disk.
    *
-   * @param id            the ID of the media to update
-   * @param isRestoring   the new restoring status
+   * @param ids the IDs of the media to flag
    */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.isRestoring = :isRestoring WHERE m.id = :id")
-  void updateIsRestoringById(Long id, boolean isRestoring);
+  @Query("UPDATE MediaModel m SET m.isMissing = true WHERE m.id IN :ids")
+  void markMissingByIdIn(List<Long> ids);
 
   /**
-   * Updates the restored status of a media by its ID.
+   * Deletes every media of a library in one statement. Their jobs are deleted by the database
+   * along with them.
    *
-   * @param id           the ID of the media to update
-   * @param isRestored   the new restored status
+   * @param libraryId the ID of the library
+   * @return the number of media deleted
    */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.isRestored = :isRestored WHERE m.id = :id")
-  void updateIsRestoredById(Long id, boolean isRestored);
+  @Query("DELETE FROM MediaModel m WHERE m.library.id = :libraryId")
+  int deleteAllByLibraryIdInBatch(Long libraryId);
 
+  /**
+   * Marks a batch of media whose archives are no longer in S3 as not archived. Media being
+   * archived, media whose upload finished after the given instant and media archived after it
+   * are left as they are. An archive is dated by its object, which S3 stamps when the upload
+   * starts, so an upload that started before a sync listed the bucket and finished while it ran
+   * is only told apart by the end of its job.
+   *
+   * @param ids the IDs of the media
+   * @param archivedBefore only media archived and uploaded before this instant are changed
+   * @return the number of media changed
+   */
   @Modifying
   @Transactional
-  @Query("UPDATE MediaModel m SET m.isRecovering = :isRecovering WHERE m.id = :id")
-  void updateIsRecoveringById(Long id, boolean isRecovering);
-}
\ No newline at end of file
+  @Query(
+      "UPDATE MediaModel m SET m.archivedStatus ="
+          + " com.example.mediaarchival.enums.ArchivedStatus.NOT_ARCHIVED,"
+          + " m.dateArchived = null, m.archivedSize = null, m.archivedStorageClass = null,"
+          + " m.uploadedSize = null, m.uploadedETag = null, m.uploadedChecksum = null"
+          + " WHERE m.id IN :ids AND NOT EXISTS (SELECT j FROM JobModel j WHERE j.media = m"
+          + " AND j.type = com.example.mediaarchival.enums.JobType.ARCHIVE AND (j.active = true"
+          + " OR j.state = com.example.mediaarchival.enums.JobState.SUCCEEDED"
+          + " AND j.finishedAt >= :archivedBefore))"
+          + " AND (m.dateArchived IS NULL OR m.dateArchived < :archivedBefore)")
+  int markNotArchivedByIdIn(List<Long> ids, Instant archivedBefore);
+}
@@ -0,0 +1,40 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.responses.MediaSummary;
+import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Queries of {@link MediaRepository} that Spring Data cannot derive, implemented with the
+ * criteria API in {@link MediaRepositoryCustomImpl}. Listings select {@link MediaSummary}
+ * projections, so they load neither media entities nor their libraries.
+ */
+public interface MediaRepositoryCustom {
+
+  /**
+   * Retrieves the summaries of the first media items matching a specification in the given
+   * order, without counting all matches as a page would. The sort's null handling is applied, so
+   * nullable columns can be ordered the same way on every database.
+   *
+   * @param specification the criteria used to filter media items
+   * @param sort the order of the media items, of simple attributes only
+   * @param limit the maximum number of media items to return
+   * @return the summaries of the first matching media items
+   */
+  List<MediaSummary> findSummaries(
+      Specification<MediaModel> specification, Sort sort, int limit);
+
+  /**
+   * Retrieves a page of the summaries of the media items matching a specification. The matches
+   * are only counted when the page itself does not tell how many there are.
+   *
+   * @param specification the criteria used to filter media items
+   * @param pageable the page to read and its order, of simple attributes only
+   * @return the page of summaries
+   */
+  Page<MediaSummary> findSummaries(Specification<MediaModel> specification, Pageable pageable);
+}
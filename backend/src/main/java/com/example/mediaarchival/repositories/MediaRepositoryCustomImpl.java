@@ -0,0 +1,107 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.responses.MediaSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+
+/**
+ * Criteria API implementation of {@link MediaRepositoryCustom}, picked up by Spring Data as a
+ * fragment of {@link MediaRepository}.
+ */
+public class MediaRepositoryCustomImpl implements MediaRepositoryCustom {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public List<MediaSummary> findSummaries(
+      Specification<MediaModel> specification, Sort sort, int limit) {
+    return summaryQuery(specification, sort).setMaxResults(limit).getResultList();
+  }
+
+  @Override
+  public Page<MediaSummary> findSummaries(
+      Specification<MediaModel> specification, Pageable pageable) {
+    List<MediaSummary> content =
+        summaryQuery(specification, pageable.getSort())
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize())
+            .getResultList();
+    return PageableExecutionUtils.getPage(content, pageable, () -> count(specification));
+  }
+
+  private TypedQuery<MediaSummary> summaryQuery(
+      Specification<MediaModel> specification, Sort sort) {
+    // Spring Data does not apply null handling to criteria queries, Hibernate's builder does
+    HibernateCriteriaBuilder criteriaBuilder = criteriaBuilder();
+    CriteriaQuery<MediaSummary> query = criteriaBuilder.createQuery(MediaSummary.class);
+    Root<MediaModel> root = query.from(MediaModel.class);
+    // The library's ID is read from the foreign key, without joining the library
+    query.select(
+        criteriaBuilder.construct(
+            MediaSummary.class,
+            new Selection<?>[] {
+              root.get("id"),
+              root.get("name"),
+              root.get("path"),
+              root.get("archivedStatus"),
+              root.get("dateArchived"),
+              root.get("dateLastModified"),
+              root.get("size"),
+              root.get("isMissing"),
+              root.get("isSizePending"),
+              root.get("library").get("id")
+            }));
+    if (specification != null) {
+      query.where(specification.toPredicate(root, query, criteriaBuilder));
+    }
+
+    List<Order> orders = new ArrayList<>();
+    for (Sort.Order order : sort) {
+      Expression<?> attribute = root.get(order.getProperty());
+      if (order.getNullHandling() == Sort.NullHandling.NATIVE) {
+        orders.add(
+            order.isAscending() ? criteriaBuilder.asc(attribute) : criteriaBuilder.desc(attribute));
+      } else {
+        boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST;
+        orders.add(
+            order.isAscending()
+                ? criteriaBuilder.asc(attribute, nullsFirst)
+                : criteriaBuilder.desc(attribute, nullsFirst));
+      }
+    }
+    query.orderBy(orders);
+
+    return entityManager.createQuery(query);
+  }
+
+  private long count(Specification<MediaModel> specification) {
+    HibernateCriteriaBuilder criteriaBuilder = criteriaBuilder();
+    CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+    Root<MediaModel> root = query.from(MediaModel.class);
+    query.select(criteriaBuilder.count(root));
+    if (specification != null) {
+      query.where(specification.toPredicate(root, query, criteriaBuilder));
+    }
+    return entityManager.createQuery(query).getSingleResult();
+  }
+
+  private HibernateCriteriaBuilder criteriaBuilder() {
+    return entityManager.unwrap(Session.class).getCriteriaBuilder();
+  }
+}
@@ -0,0 +1,50 @@
+package com.example.mediaarchival.responses;
+
+/**
+ * Reports the library scans scheduled on one storage device.
+ */
+public class DeviceScanStatus {
+  private final String device;
+  private final int threadLimit;
+  private final int activeScans;
+  private final int queuedScans;
+  private final long completedScans;
+
+  /**
+   * Constructs the status of one storage device.
+   *
+   * @param device The name of the storage device.
+   * @param threadLimit The maximum number of scans that may traverse the device at once.
+   * @param activeScans The number of scans currently traversing the device.
+   * @param queuedScans The number of scans waiting for the device.
+   * @param completedScans The number of scans of the device finished since startup.
+   */
+  public DeviceScanStatus(
+      String device, int threadLimit, int activeScans, int queuedScans, long completedScans) {
+    this.device = device;
+    this.threadLimit = threadLimit;
+    this.activeScans = activeScans;
+    this.queuedScans = queuedScans;
+    this.completedScans = completedScans;
+  }
+
+  public String getDevice() {
+    return device;
+  }
+
+  public int getThreadLimit() {
+    return threadLimit;
+  }
+
+  public int getActiveScans() {
+    return activeScans;
+  }
+
+  public int getQueuedScans() {
+    return queuedScans;
+  }
+
+  public long getCompletedScans() {
+    return completedScans;
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.mediaarchival.responses;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Reports how many media of a library are in each archive status and how large they are,
+ * along with the number of archive and download jobs running on them.
+ */
+public class LibraryStatsResponse {
+  private final Long libraryId;
+  private final Map<ArchivedStatus, StatusStats> statuses;
+  private final long activeArchiveJobs;
+  private final long activeDownloadJobs;
+  private final Instant reconciledAt;
+
+  /**
+   * The number and total size of a library's media in one archive status.
+   *
+   * @param mediaCount The number of media.
+   * @param totalBytes The total size of the media in bytes.
+   */
+  public record StatusStats(long mediaCount, long totalBytes) {}
+
+  /**
+   * Constructs the statistics of a library.
+   *
+   * @param libraryId The ID of the library.
+   * @param statuses The media of the library by archive status.
+   * @param activeArchiveJobs The number of media being archived.
+   * @param activeDownloadJobs The number of media being recovered.
+   * @param reconciledAt When the statistics were last recounted from the catalog, or null if
+   *     they were not yet.
+   */
+  public LibraryStatsResponse(
+      Long libraryId,
+      Map<ArchivedStatus, StatusStats> statuses,
+      long activeArchiveJobs,
+      long activeDownloadJobs,
+      Instant reconciledAt) {
+    this.libraryId = libraryId;
+    this.statuses = statuses;
+    this.activeArchiveJobs = activeArchiveJobs;
+    this.activeDownloadJobs = activeDownloadJobs;
+    this.reconciledAt = reconciledAt;
+  }
+
+  public Long getLibraryId() {
+    return libraryId;
+  }
+
+  public Map<ArchivedStatus, StatusStats> getStatuses() {
+    return statuses;
+  }
+
+  public long getMediaCount() {
+    return statuses.values().stream().mapToLong(StatusStats::mediaCount).sum();
+  }
+
+  public long getTotalBytes() {
+    return statuses.values().stream().mapToLong(StatusStats::totalBytes).sum();
+  }
+
+  public long getActiveArchiveJobs() {
+    return activeArchiveJobs;
+  }
+
+  public long getActiveDownloadJobs() {
+    return activeDownloadJobs;
+  }
+
+  public Instant getReconciledAt() {
+    return reconciledAt;
+  }
+}
@@ -0,0 +1,62 @@
+package com.example.mediaarchival.responses;
+
+import com.example.mediaarchival.models.LibraryModel;
+import java.util.List;
+
+/**
+ * A numbered page of media summaries, with the libraries of the media on it listed once instead
+ * of repeated on every media.
+ */
+public class MediaPage {
+  private final List<MediaSummary> content;
+  private final List<LibraryModel> libraries;
+  private final int number;
+  private final int size;
+  private final long totalElements;
+
+  /**
+   * Constructs a page of media.
+   *
+   * @param content The media on the page, in order.
+   * @param libraries The libraries the media on the page belong to.
+   * @param number The number of the page, starting from 0.
+   * @param size The requested size of the page.
+   * @param totalElements The number of media matching the filters.
+   */
+  public MediaPage(
+      List<MediaSummary> content,
+      List<LibraryModel> libraries,
+      int number,
+      int size,
+      long totalElements) {
+    this.content = content;
+    this.libraries = libraries;
+    this.number = number;
+    this.size = size;
+    this.totalElements = totalElements;
+  }
+
+  public List<MediaSummary> getContent() {
+    return content;
+  }
+
+  public List<LibraryModel> getLibraries() {
+    return libraries;
+  }
+
+  public int getNumber() {
+    return number;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getTotalElements() {
+    return totalElements;
+  }
+
+  public int getTotalPages() {
+    return size == 0 ? 1 : (int) Math.ceil((double) totalElements / size);
+  }
+}
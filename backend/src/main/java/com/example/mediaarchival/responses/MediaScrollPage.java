@@ -0,0 +1,51 @@
+package com.example.mediaarchival.responses;
+
+import com.example.mediaarchival.models.LibraryModel;
+import java.util.List;
+
+/**
+ * A page of media read with a cursor, together with the cursor of the page that follows it and
+ * the libraries of the media on it.
+ */
+public class MediaScrollPage {
+  private final List<MediaSummary> content;
+  private final List<LibraryModel> libraries;
+  private final String nextCursor;
+  private final long totalElements;
+
+  /**
+   * Constructs a page of media.
+   *
+   * @param content The media on the page, in order.
+   * @param libraries The libraries the media on the page belong to.
+   * @param nextCursor The cursor of the next page, or null if this is the last page.
+   * @param totalElements The number of media matching the filters, which may be a few seconds
+   *     old.
+   */
+  public MediaScrollPage(
+      List<MediaSummary> content,
+      List<LibraryModel> libraries,
+      String nextCursor,
+      long totalElements) {
+    this.content = content;
+    this.libraries = libraries;
+    this.nextCursor = nextCursor;
+    this.totalElements = totalElements;
+  }
+
+  public List<MediaSummary> getContent() {
+    return content;
+  }
+
+  public List<LibraryModel> getLibraries() {
+    return libraries;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public long getTotalElements() {
+    return totalElements;
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.mediaarchival.responses;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.MediaJobStatus;
+import com.example.mediaarchival.models.MediaModel;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Instant;
+
+/**
+ * The columns of a media shown by the media and job listings, read as a projection rather than
+ * as an entity. Its library is referenced by ID only and sent once per page, and its job flags
+ * are derived from the active job the JobService sets on it, as on the media entity.
+ */
+public class MediaSummary implements MediaJobStatus {
+  private final Long id;
+  private final String name;
+  private final String path;
+  private final ArchivedStatus archivedStatus;
+  private final Instant dateArchived;
+  private final Instant dateLastModified;
+  private final long size;
+  private final boolean isMissing;
+  private final boolean isSizePending;
+  private final Long libraryId;
+  private JobModel currentJob;
+
+  /**
+   * Constructs the summary of a media, in the order the listing queries select its columns.
+   *
+   * @param id The ID of the media.
+   * @param name The name of the media.
+   * @param path The path of the media.
+   * @param archivedStatus The archive status of the media.
+   * @param dateArchived When the media was last archived, or null.
+   * @param dateLastModified When the media last changed on disk.
+   * @param size The size of the media in bytes.
+   * @param isMissing Whether the media was missing from disk during the last scan.
+   * @param isSizePending Whether the size is still being computed.
+   * @param libraryId The ID of the library of the media.
+   */
+  public MediaSummary(
+      Long id,
+      String name,
+      String path,
+      ArchivedStatus archivedStatus,
+      Instant dateArchived,
+      Instant dateLastModified,
+      long size,
+      boolean isMissing,
+      boolean isSizePending,
+      Long libraryId) {
+    this.id = id;
+    this.name = name;
+    this.path = path;
+    this.archivedStatus = archivedStatus;
+    this.dateArchived = dateArchived;
+    this.dateLastModified = dateLastModified;
+    this.size = size;
+    this.isMissing = isMissing;
+    this.isSizePending = isSizePending;
+    this.libraryId = libraryId;
+  }
+
+  /**
+   * Summarizes a media entity, with its active job.
+   *
+   * @param media The media.
+   * @return The summary of the media.
+   */
+  public static MediaSummary of(MediaModel media) {
+    MediaSummary summary =
+        new MediaSummary(
+            media.getId(),
+            media.getName(),
+            media.getPath(),
+            media.getArchivedStatus(),
+            media.getDateArchived(),
+            media.getDateLastModified(),
+            media.getSize(),
+            media.isMissing(),
+            media.isSizePending(),
+            media.getLibrary() != null ? media.getLibrary().getId() : null);
+    summary.setCurrentJob(media.getCurrentJob());
+    return summary;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public ArchivedStatus getArchivedStatus() {
+    return archivedStatus;
+  }
+
+  public Instant getDateArchived() {
+    return dateArchived;
+  }
+
+  public Instant getDateLastModified() {
+    return dateLastModified;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public boolean isMissing() {
+    return isMissing;
+  }
+
+  public boolean isSizePending() {
+    return isSizePending;
+  }
+
+  public Long getLibraryId() {
+    return libraryId;
+  }
+
+  @Override
+  @JsonIgnore
+  public JobModel getCurrentJob() {
+    return currentJob;
+  }
+
+  @Override
+  public void setCurrentJob(JobModel currentJob) {
+    this.currentJob = currentJob;
+  }
+}
@@ -0,0 +1,129 @@
+package com.example.mediaarchival.responses;
+
+import com.example.mediaarchival.enums.ScanState;
+import java.time.Instant;
+
+/**
+ * Reports the progress of the most recent scan of a library.
+ */
+public class ScanProgressResponse {
+  private final Long libraryId;
+  private final ScanState state;
+  private final Instant startedAt;
+  private final Instant finishedAt;
+  private final long directoriesVisited;
+  private final long previousScanDirectories;
+  private final long entriesVisited;
+  private final long mediaCreated;
+  private final long mediaUpdated;
+  private final long mediaRemoved;
+  private final long bytesSized;
+  private final double entriesPerSecond;
+  private final Long estimatedSecondsRemaining;
+  private final long secondsSinceLastProgress;
+
+  /**
+   * Constructs a snapshot of a scan's progress.
+   *
+   * @param libraryId The ID of the library being scanned.
+   * @param state Whether the scan is running, completed or failed.
+   * @param startedAt When the scan started.
+   * @param finishedAt When the scan finished, or null while it is running.
+   * @param directoriesVisited The number of directories listed so far.
+   * @param previousScanDirectories The number of directories the previous scan listed.
+   * @param entriesVisited The number of directory entries listed so far.
+   * @param mediaCreated The number of media added to the library.
+   * @param mediaUpdated The number of media whose details changed.
+   * @param mediaRemoved The number of media no longer found on disk.
+   * @param bytesSized The total size of the media sized so far.
+   * @param entriesPerSecond The number of directory entries listed per second.
+   * @param estimatedSecondsRemaining The estimated time left, or null if it cannot be estimated.
+   * @param secondsSinceLastProgress The time since a directory was last listed or a media sized.
+   */
+  public ScanProgressResponse(
+      Long libraryId,
+      ScanState state,
+      Instant startedAt,
+      Instant finishedAt,
+      long directoriesVisited,
+      long previousScanDirectories,
+      long entriesVisited,
+      long mediaCreated,
+      long mediaUpdated,
+      long mediaRemoved,
+      long bytesSized,
+      double entriesPerSecond,
+      Long estimatedSecondsRemaining,
+      long secondsSinceLastProgress) {
+    this.libraryId = libraryId;
+    this.state = state;
+    this.startedAt = startedAt;
+    this.finishedAt = finishedAt;
+    this.directoriesVisited = directoriesVisited;
+    this.previousScanDirectories = previousScanDirectories;
+    this.entriesVisited = entriesVisited;
+    this.mediaCreated = mediaCreated;
+    this.mediaUpdated = mediaUpdated;
+    this.mediaRemoved = mediaRemoved;
+    this.bytesSized = bytesSized;
+    this.entriesPerSecond = entriesPerSecond;
+    this.estimatedSecondsRemaining = estimatedSecondsRemaining;
+    this.secondsSinceLastProgress = secondsSinceLastProgress;
+  }
+
+  public Long getLibraryId() {
+    return libraryId;
+  }
+
+  public ScanState getState() {
+    return state;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public Instant getFinishedAt() {
+    return finishedAt;
+  }
+
+  public long getDirectoriesVisited() {
+    return directoriesVisited;
+  }
+
+  public long getPreviousScanDirectories() {
+    return previousScanDirectories;
+  }
+
+  public long getEntriesVisited() {
+    return entriesVisited;
+  }
+
+  public long getMediaCreated() {
+    return mediaCreated;
+  }
+
+  public long getMediaUpdated() {
+    return mediaUpdated;
+  }
+
+  public long getMediaRemoved() {
+    return mediaRemoved;
+  }
+
+  public long getBytesSized() {
+    return bytesSized;
+  }
+
+  public double getEntriesPerSecond() {
+    return entriesPerSecond;
+  }
+
+  public Long getEstimatedSecondsRemaining() {
+    return estimatedSecondsRemaining;
+  }
+
+  public long getSecondsSinceLastProgress() {
+    return secondsSinceLastProgress;
+  }
+}
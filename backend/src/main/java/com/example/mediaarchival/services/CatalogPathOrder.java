@@ -0,0 +1,45 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import java.sql.DatabaseMetaData;
+import java.util.Comparator;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * The order the catalog sorts media paths in. Scans walk the disk in this order, so what they
+ * find can be merge joined with the catalog and resumed after a checkpoint that both compare the
+ * same way. PostgreSQL sorts paths by code point, as their C collation does, while H2 sorts them
+ * as Java strings, by UTF-16 code unit. The two orders only differ for paths holding characters
+ * outside the Basic Multilingual Plane, such as emoji.
+ */
+@Component
+public class CatalogPathOrder implements Comparator<String> {
+
+  private final Comparator<String> order;
+
+  @Autowired
+  public CatalogPathOrder(DataSource dataSource) throws MetaDataAccessException {
+    this(
+        "PostgreSQL".equals(
+            JdbcUtils.extractDatabaseMetaData(
+                dataSource, DatabaseMetaData::getDatabaseProductName)));
+  }
+
+  /**
+   * Creates the order of a catalog.
+   *
+   * @param byCodePoint whether the catalog sorts paths by code point rather than by UTF-16 code unit
+   */
+  public CatalogPathOrder(boolean byCodePoint) {
+    this.order = byCodePoint ? MergeJoinUtils.CODE_POINT_ORDER : Comparator.naturalOrder();
+  }
+
+  @Override
+  public int compare(String a, String b) {
+    return order.compare(a, b);
+  }
+}
@@ -0,0 +1,349 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.filters.JobSpecifications;
+import com.example.mediaarchival.filters.MediaSpecifications;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.MediaJobStatus;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.MediaSummary;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts jobs and moves them through the state machine of {@link JobState}. Every transition is
+ * checked against the allowed transitions and written as a compare-and-set update of the job's
+ * state, so a consumer whose job was moved meanwhile, for instance by the startup reset, learns
+ * that its transition lost instead of overwriting the other one. Cancellation is a separate flag
+ * that consumers poll, so requesting it never races with a transition. Progress of running
+ * transfers goes through the {@link TransferProgressBuffer}.
+ */
+@Component
+public class JobService {
+
+  /**
+   * The states in which a job's work is still running and can be cancelled.
+   */
+  public static final Set<JobState> RUNNING_STATES =
+      EnumSet.of(
+          JobState.QUEUED,
+          JobState.TARRING,
+          JobState.UPLOADING,
+          JobState.RESTORING,
+          JobState.RESTORED,
+          JobState.DOWNLOADING);
+
+  private final JobRepository jobRepository;
+  private final MediaRepository mediaRepository;
+  private final TransferProgressBuffer transferProgressBuffer;
+
+  @Autowired
+  public JobService(
+      JobRepository jobRepository,
+      MediaRepository mediaRepository,
+      TransferProgressBuffer transferProgressBuffer) {
+    this.jobRepository = jobRepository;
+    this.mediaRepository = mediaRepository;
+    this.transferProgressBuffer = transferProgressBuffer;
+  }
+
+  /**
+   * Queues a new job for a media and sets it as the media's current job. Callers check that the
+   * media has no active job first.
+   *
+   * @param media the media to work on
+   * @param type the kind of job
+   * @return the saved job
+   */
+  public JobModel start(MediaModel media, JobType type) {
+    Instant now = Instant.now();
+    JobModel job = new JobModel();
+    job.setMedia(media);
+    job.setType(type);
+    job.setState(JobState.QUEUED);
+    job.setCreatedAt(now);
+    job.setUpdatedAt(now);
+    job = jobRepository.save(job);
+    media.setCurrentJob(job);
+    return job;
+  }
+
+  /**
+   * Finds the active job of a type for a media, as consumers do when they pick up a message.
+   *
+   * @param media the media
+   * @param type the kind of job
+   * @return the active job, or null if the media has no active job of that type
+   */
+  public JobModel findActiveJob(MediaModel media, JobType type) {
+    for (JobModel job : jobRepository.findByActiveTrueAndMediaIdIn(List.of(media.getId()))) {
+      if (job.getType() == type) {
+        media.setCurrentJob(job);
+        return job;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Moves a job to another state. Leaving {@link JobState#QUEUED} or {@link JobState#RESTORED}
+   * counts as an attempt, and the progress of the previous step is reset. When the job's work
+   * ends, its buffered progress is dropped first, so a late flush cannot write it back.
+   *
+   * @param job the job, updated in place if the transition succeeds
+   * @param next the state to move to
+   * @return true if the job moved, false if its state was changed meanwhile
+   * @throws IllegalStateException if the job may not move from its state to the next
+   */
+  public boolean transition(JobModel job, JobState next) {
+    JobState current = job.getState();
+    if (!current.canTransitionTo(next)) {
+      throw new IllegalStateException(
+          "Job " + job.getId() + " cannot move from " + current + " to " + next);
+    }
+    if (next.isFinished()) {
+      transferProgressBuffer.finish(job.getId());
+    }
+    Instant now = Instant.now();
+    int attempts =
+        current == JobState.QUEUED || current == JobState.RESTORED
+            ? job.getAttempts() + 1
+            : job.getAttempts();
+    Instant finishedAt =
+        next.isFinished() && job.getFinishedAt() == null ? now : job.getFinishedAt();
+    int updated =
+        jobRepository.updateStateById(
+            job.getId(),
+            current,
+            next,
+            job.getType().isActiveIn(next),
+            -1,
+            attempts,
+            now,
+            finishedAt);
+    if (updated == 0) {
+      return false;
+    }
+    job.setState(next);
+    job.setProgress(-1);
+    job.setAttempts(attempts);
+    job.setUpdatedAt(now);
+    job.setFinishedAt(finishedAt);
+    return true;
+  }
+
+  /**
+   * Ends a job whose work was interrupted, unless it already ended.
+   *
+   * @param job the job
+   * @return true if the job was stopped by this call
+   */
+  public boolean stop(JobModel job) {
+    if (job.getState().isFinished()) {
+      return false;
+    }
+    return transition(job, isCancelRequested(job) ? JobState.CANCELLED : JobState.FAILED);
+  }
+
+  /**
+   * Reads whether the user asked for a job to be cancelled.
+   *
+   * @param job the job, whose flag is refreshed
+   * @return true if cancellation was requested
+   */
+  public boolean isCancelRequested(JobModel job) {
+    boolean cancelRequested =
+        Boolean.TRUE.equals(jobRepository.findCancelRequestedById(job.getId()));
+    job.setCancelRequested(cancelRequested);
+    return cancelRequested;
+  }
+
+  /**
+   * Asks for a running job to be cancelled. Its consumer stops at its next check.
+   *
+   * @param job the job
+   * @return true if cancellation was requested, false if the job's work is already over
+   */
+  public boolean requestCancel(JobModel job) {
+    if (jobRepository.requestCancelById(job.getId(), RUNNING_STATES, Instant.now()) == 0) {
+      return false;
+    }
+    job.setCancelRequested(true);
+    return true;
+  }
+
+  /**
+   * Asks for every running job of a type to be cancelled, in one update.
+   *
+   * @param type the kind of job
+   * @return the number of jobs flagged
+   */
+  public int requestCancelAll(JobType type) {
+    return jobRepository.requestCancelByType(type, RUNNING_STATES, Instant.now());
+  }
+
+  /**
+   * Asks for the running jobs of some media to be cancelled, in one update. Media without a
+   * running job are ignored.
+   *
+   * @param mediaIds the IDs of the media
+   * @return the number of jobs flagged
+   */
+  public int requestCancelForMedia(Collection<Long> mediaIds) {
+    if (mediaIds.isEmpty()) {
+      return 0;
+    }
+    return jobRepository.requestCancelByMediaIdIn(mediaIds, RUNNING_STATES, Instant.now());
+  }
+
+  /**
+   * Moves every job of a type in some states to a final state, in one update instead of one
+   * transition per job. Buffered progress of the moved jobs is not written back, as progress
+   * is only written for transferring jobs.
+   *
+   * @param type the kind of job
+   * @param states the states of the jobs to move, in which jobs of the type are active
+   * @param next the final state to move to
+   * @return the number of jobs moved
+   * @throws IllegalStateException if the next state is not final or cannot be reached from one
+   *     of the states, or if jobs of the type are not active in one of the states
+   */
+  public int transitionAll(JobType type, Collection<JobState> states, JobState next) {
+    checkBulkTransition(states, next);
+    // Jobs are found by type and state among the active jobs only, which is how they are indexed
+    for (JobState state : states) {
+      if (!type.isActiveIn(state)) {
+        throw new IllegalStateException(type + " jobs are not active when " + state);
+      }
+    }
+    return jobRepository.updateStateByTypeAndStateIn(
+        type, states, next, type.isActiveIn(next), Instant.now());
+  }
+
+  /**
+   * Moves the jobs of a type of some media in some states to a final state, in one update, like
+   * {@link #transitionAll(JobType, Collection, JobState)}.
+   *
+   * @param type the kind of job
+   * @param mediaIds the IDs of the media
+   * @param states the states of the jobs to move
+   * @param next the final state to move to
+   * @return the number of jobs moved
+   * @throws IllegalStateException if the next state is not final or cannot be reached from one
+   *     of the states
+   */
+  public int transitionAllForMedia(
+      JobType type, Collection<Long> mediaIds, Collection<JobState> states, JobState next) {
+    checkBulkTransition(states, next);
+    if (mediaIds.isEmpty()) {
+      return 0;
+    }
+    return jobRepository.updateStateByTypeAndMediaIdInAndStateIn(
+        type, mediaIds, states, next, type.isActiveIn(next), Instant.now());
+  }
+
+  /**
+   * Records the progress of a job's running transfer.
+   *
+   * @param job the job
+   * @param progress the percentage of the archive transferred
+   */
+  public void recordProgress(JobModel job, int progress) {
+    transferProgressBuffer.record(job.getId(), progress);
+    job.setProgress(progress);
+  }
+
+  /**
+   * Finds a page of the media with an active job of a type, in the order of
+   * {@link JobSpecifications#getJobsSort()}. The page is read from the job table, which only
+   * holds a handful of active jobs, and the summaries of the media of the page are then read by
+   * their IDs.
+   *
+   * @param type the kind of job
+   * @param filters the filters the media must pass
+   * @param page the page number
+   * @param size the size of the page
+   * @return the page of media summaries, with their jobs set
+   */
+  public Page<MediaSummary> findMediaWithActiveJobs(
+      JobType type, Specification<MediaModel> filters, int page, int size) {
+    Page<JobModel> jobs =
+        jobRepository.findAll(
+            JobSpecifications.activeOfType(type).and(JobSpecifications.forMedia(filters)),
+            PageRequest.of(page, size, JobSpecifications.getJobsSort()));
+    transferProgressBuffer.applyTo(jobs.getContent());
+    List<Long> ids = new ArrayList<>(jobs.getNumberOfElements());
+    for (JobModel job : jobs) {
+      ids.add(job.getMedia().getId());
+    }
+    Map<Long, MediaSummary> mediaById = new HashMap<>();
+    if (!ids.isEmpty()) {
+      for (MediaSummary media :
+          mediaRepository.findSummaries(
+              MediaSpecifications.filterByIdIn(ids), Sort.unsorted(), ids.size())) {
+        mediaById.put(media.getId(), media);
+      }
+    }
+
+    List<MediaSummary> content = new ArrayList<>(jobs.getNumberOfElements());
+    for (JobModel job : jobs) {
+      // Media deleted since the jobs were read are left out
+      MediaSummary media = mediaById.get(job.getMedia().getId());
+      if (media != null) {
+        media.setCurrentJob(job);
+        content.add(media);
+      }
+    }
+    return new PageImpl<>(content, jobs.getPageable(), jobs.getTotalElements());
+  }
+
+  /**
+   * Sets the active job of every media read from the catalog, with the live progress of running
+   * transfers, so the job flags and progress of the media can be derived from it.
+   *
+   * @param media the media or media summaries to update
+   */
+  public void applyTo(Collection<? extends MediaJobStatus> media) {
+    if (media.isEmpty()) {
+      return;
+    }
+    List<Long> ids = new ArrayList<>(media.size());
+    for (MediaJobStatus item : media) {
+      ids.add(item.getId());
+    }
+    List<JobModel> jobs = jobRepository.findByActiveTrueAndMediaIdIn(ids);
+    transferProgressBuffer.applyTo(jobs);
+    Map<Long, JobModel> jobsByMedia = new HashMap<>();
+    for (JobModel job : jobs) {
+      jobsByMedia.put(job.getMedia().getId(), job);
+    }
+    for (MediaJobStatus item : media) {
+      item.setCurrentJob(jobsByMedia.get(item.getId()));
+    }
+  }
+
+  // Bulk updates do not count attempts, so they may only end jobs
+  private static void checkBulkTransition(Collection<JobState> states, JobState next) {
+    for (JobState state : states) {
+      if (!next.isFinished() || !state.canTransitionTo(next)) {
+        throw new IllegalStateException("Jobs cannot move from " + state + " to " + next);
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.StorageClass;
+
+/**
+ * Read-through cache of the metadata of libraries that workers need to handle a media, such as
+ * its bucket, storage class and category. A library is loaded from the catalog the first time
+ * it is asked for, so archive, download and restore jobs do not load the library of every media
+ * they handle. The metadata is set when a library is created and never changed afterwards, and
+ * the {@code LibraryController} invalidates a library whenever it writes one. The scan state of
+ * libraries is not cached, since scans and syncs update it while they run.
+ */
+@Component
+public class LibraryMetadataCache {
+
+  static final int MAX_ENTRIES = 256;
+
+  /**
+   * The metadata of a library that does not change once it is created.
+   *
+   * @param id the ID of the library
+   * @param name the name of the library
+   * @param path the path of the library on disk
+   * @param category the category of the media of the library
+   * @param storageClass the storage class the media of the library are archived with
+   * @param bucketName the bucket the media of the library are archived in
+   */
+  public record Metadata(
+      Long id,
+      String name,
+      String path,
+      MediaCategory category,
+      StorageClass storageClass,
+      String bucketName) {
+
+    /**
+     * Copies the metadata of a library.
+     *
+     * @param library the library
+     * @return the metadata of the library
+     */
+    public static Metadata of(LibraryModel library) {
+      return new Metadata(
+          library.getId(),
+          library.getName(),
+          library.getPath(),
+          library.getCategory(),
+          library.getStorageClass(),
+          library.getBucketName());
+    }
+
+    /**
+     * Checks if the library holds TV series, whose media are archived from the directory of
+     * the series rather than from their metadata directory.
+     *
+     * @return true if the library is a TV library
+     */
+    public boolean isTvSeries() {
+      return category == MediaCategory.TV;
+    }
+  }
+
+  private final LibraryRepository libraryRepository;
+  // Least recently used libraries are evicted first
+  private final Map<Long, Metadata> entries =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Metadata> eldest) {
+              return size() > MAX_ENTRIES;
+            }
+          });
+  // Set once every library of the catalog is cached, until a library is invalidated
+  private volatile boolean complete;
+  // Counts the invalidations, so a load that raced with one does not cache what it read
+  private long generation;
+
+  @Autowired
+  public LibraryMetadataCache(LibraryRepository libraryRepository) {
+    this.libraryRepository = libraryRepository;
+  }
+
+  /**
+   * Gets the metadata of a library, loading it from the catalog if it is not cached.
+   *
+   * @param libraryId the ID of the library
+   * @return the metadata, or empty if there is no such library
+   */
+  public Optional<Metadata> get(Long libraryId) {
+    if (libraryId == null) {
+      return Optional.empty();
+    }
+    Metadata cached = entries.get(libraryId);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    long loadedGeneration;
+    synchronized (entries) {
+      loadedGeneration = generation;
+    }
+    // Missing libraries are not cached, the library may be created under the ID later
+    Optional<Metadata> loaded = libraryRepository.findById(libraryId).map(Metadata::of);
+    synchronized (entries) {
+      if (loaded.isPresent() && loadedGeneration == generation) {
+        entries.put(libraryId, loaded.get());
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Gets the metadata of the library of a media, without loading the library entity of the
+   * media.
+   *
+   * @param media the media
+   * @return the metadata of its library
+   * @throws IllegalStateException if the media has no library or its library no longer exists
+   */
+  public Metadata getForMedia(MediaModel media) {
+    LibraryModel library = media.getLibrary();
+    return get(library == null ? null : library.getId())
+        .orElseThrow(
+            () -> new IllegalStateException("Library not found for media: " + media.getPath()));
+  }
+
+  /**
+   * Gets the metadata of every library, loading them all from the catalog unless they are all
+   * cached already.
+   *
+   * @return the metadata of the libraries, in ID order
+   */
+  public List<Metadata> getAll() {
+    List<Metadata> all;
+    if (!complete) {
+      long loadedGeneration;
+      synchronized (entries) {
+        loadedGeneration = generation;
+      }
+      all = new ArrayList<>();
+      for (LibraryModel library : libraryRepository.findAll()) {
+        all.add(Metadata.of(library));
+      }
+      synchronized (entries) {
+        if (loadedGeneration == generation) {
+          for (Metadata metadata : all) {
+            entries.put(metadata.id(), metadata);
+          }
+          // A catalog with more libraries than fit in the cache is listed from the catalog
+          complete = all.size() <= MAX_ENTRIES;
+        }
+      }
+    } else {
+      synchronized (entries) {
+        all = new ArrayList<>(entries.values());
+      }
+    }
+    all.sort(Comparator.comparing(Metadata::id));
+    return all;
+  }
+
+  /**
+   * Drops a library from the cache, after it was created, changed or deleted.
+   *
+   * @param libraryId the ID of the library
+   */
+  public void invalidate(Long libraryId) {
+    synchronized (entries) {
+      complete = false;
+      generation++;
+      entries.remove(libraryId);
+    }
+  }
+
+  /**
+   * Drops every library from the cache.
+   */
+  public void invalidateAll() {
+    synchronized (entries) {
+      complete = false;
+      generation++;
+      entries.clear();
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.LibraryStatsModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.LibraryStatsResponse;
+import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the number and total size of every library's media per archive status in the
+ * {@link LibraryStatsModel} table, so they are read without scanning the catalog. The code that
+ * adds, changes or removes media writes through this service, which reads what the statistics
+ * counted of the media before the write and adjusts them by the difference in the same
+ * transaction. Writes that miss the service, and libraries whose rows do not exist yet, are
+ * corrected by {@link #reconcile}, which recounts a library from the catalog.
+ */
+@Component
+public class LibraryStatsService {
+
+  private final LibraryStatsRepository libraryStatsRepository;
+  private final MediaRepository mediaRepository;
+  private final JobRepository jobRepository;
+
+  private static final Logger logger = LoggerFactory.getLogger(LibraryStatsService.class);
+
+  @Autowired
+  public LibraryStatsService(
+      LibraryStatsRepository libraryStatsRepository,
+      MediaRepository mediaRepository,
+      JobRepository jobRepository) {
+    this.libraryStatsRepository = libraryStatsRepository;
+    this.mediaRepository = mediaRepository;
+    this.jobRepository = jobRepository;
+  }
+
+  /**
+   * Saves a media and updates the statistics of its library.
+   *
+   * @param media the media to save
+   * @return the saved media
+   */
+  @Transactional
+  public MediaModel save(MediaModel media) {
+    List<MediaRepository.StatsView> before = findStats(List.of(media));
+    MediaModel saved = mediaRepository.save(media);
+    Deltas deltas = new Deltas();
+    deltas.subtractAll(before);
+    deltas.add(media);
+    deltas.applyTo(libraryStatsRepository);
+    return saved;
+  }
+
+  /**
+   * Saves media and updates the statistics of their libraries.
+   *
+   * @param media the media to save
+   * @return the saved media
+   */
+  @Transactional
+  public List<MediaModel> saveAll(List<MediaModel> media) {
+    List<MediaRepository.StatsView> before = findStats(media);
+    List<MediaModel> saved = mediaRepository.saveAll(media);
+    Deltas deltas = new Deltas();
+    deltas.subtractAll(before);
+    for (MediaModel item : saved) {
+      deltas.add(item);
+    }
+    deltas.applyTo(libraryStatsRepository);
+    return saved;
+  }
+
+  /**
+   * Runs a write that changes or deletes media in bulk and updates the statistics of their
+   * libraries by what it changed. Media the write deleted are subtracted.
+   *
+   * @param ids the IDs of the media the write may change
+   * @param write the write
+   * @return what the write returned
+   * @param <T> the type of the result of the write
+   */
+  @Transactional
+  public <T> T track(Collection<Long> ids, Supplier<T> write) {
+    if (ids.isEmpty()) {
+      return write.get();
+    }
+    List<MediaRepository.StatsView> before = mediaRepository.findStatsByIdIn(ids);
+    T result = write.get();
+    // Deletes of loaded media are only queued until flushed
+    mediaRepository.flush();
+    Deltas deltas = new Deltas();
+    deltas.subtractAll(before);
+    for (MediaRepository.StatsView media : mediaRepository.findStatsByIdIn(ids)) {
+      deltas.add(media.getLibraryId(), media.getArchivedStatus(), 1, media.getSize());
+    }
+    deltas.applyTo(libraryStatsRepository);
+    return result;
+  }
+
+  /**
+   * Runs a write that changes or deletes media in bulk and updates the statistics of their
+   * libraries by what it changed.
+   *
+   * @param ids the IDs of the media the write may change
+   * @param write the write
+   */
+  @Transactional
+  public void track(Collection<Long> ids, Runnable write) {
+    track(
+        ids,
+        () -> {
+          write.run();
+          return null;
+        });
+  }
+
+  /**
+   * Recounts the statistics of a library from the catalog, creating its rows if it has none.
+   * Counts that drifted from the catalog are logged before they are corrected.
+   *
+   * @param library the library
+   */
+  @Transactional
+  public void reconcile(LibraryModel library) {
+    Map<ArchivedStatus, LibraryStatsModel> rows = new EnumMap<>(ArchivedStatus.class);
+    for (LibraryStatsModel row : libraryStatsRepository.findByLibraryId(library.getId())) {
+      rows.put(row.getArchivedStatus(), row);
+    }
+    Map<ArchivedStatus, MediaRepository.StatusTotals> totals =
+        new EnumMap<>(ArchivedStatus.class);
+    for (MediaRepository.StatusTotals total :
+        mediaRepository.sumByLibraryIdGroupByArchivedStatus(library.getId())) {
+      if (total.getArchivedStatus() != null) {
+        totals.put(total.getArchivedStatus(), total);
+      }
+    }
+
+    Instant now = Instant.now();
+    List<LibraryStatsModel> changed = new ArrayList<>();
+    for (ArchivedStatus status : ArchivedStatus.values()) {
+      MediaRepository.StatusTotals total = totals.get(status);
+      long mediaCount = total == null ? 0 : total.getMediaCount();
+      long totalBytes = total == null ? 0 : total.getTotalBytes();
+      LibraryStatsModel row = rows.get(status);
+      if (row == null) {
+        row = new LibraryStatsModel();
+        row.setLibrary(library);
+        row.setArchivedStatus(status);
+      } else if (row.getMediaCount() != mediaCount || row.getTotalBytes() != totalBytes) {
+        logger.warn(
+            "Statistics of library "
+                + library.getId()
+                + " drifted for "
+                + status
+                + ": "
+                + row.getMediaCount()
+                + " media and "
+                + row.getTotalBytes()
+                + " bytes counted, "
+                + mediaCount
+                + " media and "
+                + totalBytes
+                + " bytes in the catalog");
+      }
+      row.setMediaCount(mediaCount);
+      row.setTotalBytes(totalBytes);
+      row.setReconciledAt(now);
+      changed.add(row);
+    }
+    libraryStatsRepository.saveAll(changed);
+  }
+
+  /**
+   * Deletes the statistics of a library, before the library itself is deleted.
+   *
+   * @param libraryId the ID of the library
+   */
+  public void delete(Long libraryId) {
+    libraryStatsRepository.deleteAllByLibraryIdInBatch(libraryId);
+  }
+
+  /**
+   * Gets the statistics of a library.
+   *
+   * @param libraryId the ID of the library
+   * @return the statistics, with zero counts for the statuses the library has no rows for
+   */
+  public LibraryStatsResponse getStats(Long libraryId) {
+    Map<JobType, Long> jobs = new EnumMap<>(JobType.class);
+    for (JobRepository.ActiveJobCount count :
+        jobRepository.countActiveByTypeAndLibraryId(libraryId)) {
+      jobs.put(count.getType(), count.getCount());
+    }
+    return toResponse(libraryId, libraryStatsRepository.findByLibraryId(libraryId), jobs);
+  }
+
+  /**
+   * Gets the statistics of every library that has any.
+   *
+   * @return the statistics of the libraries, in ID order
+   */
+  public List<LibraryStatsResponse> getAllStats() {
+    Map<Long, List<LibraryStatsModel>> rowsByLibrary = new LinkedHashMap<>();
+    for (LibraryStatsModel row : libraryStatsRepository.findAll()) {
+      rowsByLibrary
+          .computeIfAbsent(row.getLibrary().getId(), id -> new ArrayList<>())
+          .add(row);
+    }
+    Map<Long, Map<JobType, Long>> jobsByLibrary = new HashMap<>();
+    for (JobRepository.ActiveJobCount count : jobRepository.countActiveByLibraryAndType()) {
+      jobsByLibrary
+          .computeIfAbsent(count.getLibraryId(), id -> new EnumMap<>(JobType.class))
+          .put(count.getType(), count.getCount());
+    }
+    return rowsByLibrary.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .map(
+            rows ->
+                toResponse(
+                    rows.getKey(),
+                    rows.getValue(),
+                    jobsByLibrary.getOrDefault(rows.getKey(), Map.of())))
+        .toList();
+  }
+
+  private List<MediaRepository.StatsView> findStats(List<MediaModel> media) {
+    List<Long> ids = media.stream().map(MediaModel::getId).filter(Objects::nonNull).toList();
+    return ids.isEmpty() ? List.of() : mediaRepository.findStatsByIdIn(ids);
+  }
+
+  private static LibraryStatsResponse toResponse(
+      Long libraryId, List<LibraryStatsModel> rows, Map<JobType, Long> jobs) {
+    Map<ArchivedStatus, LibraryStatsResponse.StatusStats> statuses =
+        new EnumMap<>(ArchivedStatus.class);
+    for (ArchivedStatus status : ArchivedStatus.values()) {
+      statuses.put(status, new LibraryStatsResponse.StatusStats(0, 0));
+    }
+    for (LibraryStatsModel row : rows) {
+      statuses.put(
+          row.getArchivedStatus(),
+          new LibraryStatsResponse.StatusStats(row.getMediaCount(), row.getTotalBytes()));
+    }
+    // The oldest reconcile of the rows, null if any row was never reconciled
+    Instant reconciledAt =
+        rows.isEmpty() || rows.stream().anyMatch(row -> row.getReconciledAt() == null)
+            ? null
+            : rows.stream().map(LibraryStatsModel::getReconciledAt).min(Instant::compareTo).get();
+    return new LibraryStatsResponse(
+        libraryId,
+        statuses,
+        jobs.getOrDefault(JobType.ARCHIVE, 0L),
+        jobs.getOrDefault(JobType.DOWNLOAD, 0L),
+        reconciledAt);
+  }
+
+  // The changes of a write to the statistics, by library and status
+  private static final class Deltas {
+    private final Map<Long, Map<ArchivedStatus, long[]>> byLibrary = new HashMap<>();
+
+    void add(MediaModel media) {
+      if (media.getLibrary() != null) {
+        add(media.getLibrary().getId(), media.getArchivedStatus(), 1, media.getSize());
+      }
+    }
+
+    void subtractAll(List<MediaRepository.StatsView> media) {
+      for (MediaRepository.StatsView item : media) {
+        add(item.getLibraryId(), item.getArchivedStatus(), -1, -item.getSize());
+      }
+    }
+
+    void add(Long libraryId, ArchivedStatus status, long count, long bytes) {
+      if (libraryId == null || status == null) {
+        return;
+      }
+      long[] delta =
+          byLibrary
+              .computeIfAbsent(libraryId, id -> new EnumMap<>(ArchivedStatus.class))
+              .computeIfAbsent(status, key -> new long[2]);
+      delta[0] += count;
+      delta[1] += bytes;
+    }
+
+    // Libraries without rows are left to the reconcile, which creates them
+    void applyTo(LibraryStatsRepository libraryStatsRepository) {
+      for (Map.Entry<Long, Map<ArchivedStatus, long[]>> library : byLibrary.entrySet()) {
+        for (Map.Entry<ArchivedStatus, long[]> status : library.getValue().entrySet()) {
+          long[] delta = status.getValue();
+          if (delta[0] != 0 || delta[1] != 0) {
+            libraryStatsRepository.addByLibraryIdAndArchivedStatus(
+                library.getKey(), status.getKey(), delta[0], delta[1]);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.SyncOutcome;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.utils.S3InventoryUtils.InventoryEntry;
+import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies pages of an S3 bucket listing, or batches of an S3 Inventory report, to the catalog.
+ * Keys of an inventory are matched against the {@link MediaPathIndex}, so objects that are not
+ * in the catalog cost no query, while the objects of a listing come matched with their media by
+ * the sync's join. The media of a batch are loaded with one {@code IN} query. Only media whose
+ * archive state actually changes are written, in one transaction per batch so the updates go out
+ * as a JDBC batch. An object whose size or ETag differs from what its upload recorded is not the
+ * archive that was uploaded, so its media is flagged out of date to be archived again.
+ */
+@Component
+public class LibrarySyncService {
+
+  private final MediaRepository mediaRepository;
+  private final MediaPathIndex mediaPathIndex;
+  private final LibraryStatsService libraryStatsService;
+
+  @Autowired
+  public LibrarySyncService(
+      MediaRepository mediaRepository,
+      MediaPathIndex mediaPathIndex,
+      LibraryStatsService libraryStatsService) {
+    this.mediaRepository = mediaRepository;
+    this.mediaPathIndex = mediaPathIndex;
+    this.libraryStatsService = libraryStatsService;
+  }
+
+  /**
+   * What applying a bucket object did to the media it was matched with.
+   *
+   * @param outcome the sync outcome of the media, or {@link SyncOutcome#ORPHANED} if the media
+   *     was deleted meanwhile
+   * @param dateArchived when the archive the media keeps was uploaded
+   * @param archivedSize the size of the archive the media keeps
+   * @param changed whether the archive state of the media changed
+   */
+  public record AppliedEntry(
+      SyncOutcome outcome, Instant dateArchived, Long archivedSize, boolean changed) {}
+
+  /**
+   * Marks a batch of media whose archives are no longer in the bucket as not archived, keeping
+   * media being archived and media archived or uploaded after the sync started.
+   *
+   * @param ids the IDs of the media
+   * @param archivedBefore only media archived and uploaded before this instant are changed
+   * @return the number of media changed
+   */
+  public int markNotArchived(List<Long> ids, Instant archivedBefore) {
+    return libraryStatsService.track(
+        ids, () -> mediaRepository.markNotArchivedByIdIn(ids, archivedBefore));
+  }
+
+  /**
+   * Checks whether a bucket object differs from the archive uploaded for a media, by the size and
+   * ETag recorded when it was uploaded. Values that were not recorded or are not known for the
+   * object are not compared.
+   *
+   * @param media the media
+   * @param size the size of the object in bytes, or null if not known
+   * @param eTag the ETag of the object, or null if not known
+   * @return true if the object is not the uploaded archive
+   */
+  public static boolean differsFromUpload(MediaModel media, Long size, String eTag) {
+    if (size != null && media.getUploadedSize() != null && !size.equals(media.getUploadedSize())) {
+      return true;
+    }
+    // Listings quote ETags while inventory reports do not
+    return eTag != null
+        && media.getUploadedETag() != null
+        && !unquote(eTag).equals(unquote(media.getUploadedETag()));
+  }
+
+  /**
+   * Marks the media of a batch of bucket objects as archived, or as out of date when the media
+   * was modified after its object was uploaded or the object differs from the uploaded archive,
+   * and records the size and storage class of
+   * their objects. Objects older than the media's known archive, as reported by an inventory
+   * taken before the media was uploaded again, are ignored, unless their ETag shows they are the
+   * uploaded archive itself.
+   *
+   * @param entries the objects of one listing page or inventory batch
+   * @return the number of media whose archive state changed
+   */
+  @Transactional
+  public int applyEntries(List<InventoryEntry> entries) {
+    Map<Long, InventoryEntry> entriesByMediaId = new LinkedHashMap<>();
+    for (InventoryEntry entry : entries) {
+      OptionalLong mediaId = mediaPathIndex.findId(entry.key());
+      if (mediaId.isPresent()) {
+        entriesByMediaId.put(mediaId.getAsLong(), entry);
+      }
+    }
+    if (entriesByMediaId.isEmpty()) {
+      return 0;
+    }
+
+    List<MediaModel> updated = new ArrayList<>();
+    for (MediaModel media : mediaRepository.findAllById(new ArrayList<>(entriesByMediaId.keySet()))) {
+      apply(media, entriesByMediaId.get(media.getId()), updated);
+    }
+    if (!updated.isEmpty()) {
+      libraryStatsService.saveAll(updated);
+    }
+    return updated.size();
+  }
+
+  /**
+   * Applies a batch of bucket objects to the media they were matched with by path, like
+   * {@link #applyEntries(List)}, and tells what was applied to each. The media are read again in
+   * the applying transaction, so what an archive job wrote since the join read them is kept.
+   *
+   * @param mediaIds the IDs of the matched media
+   * @param entries the object matched with each media, in the same order
+   * @return what was applied for each media, in the same order
+   */
+  @Transactional
+  public List<AppliedEntry> applyEntries(List<Long> mediaIds, List<InventoryEntry> entries) {
+    Map<Long, MediaModel> mediaById = new HashMap<>();
+    for (MediaModel media : mediaRepository.findAllById(mediaIds)) {
+      mediaById.put(media.getId(), media);
+    }
+
+    List<MediaModel> updated = new ArrayList<>();
+    List<AppliedEntry> applied = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      MediaModel media = mediaById.get(mediaIds.get(i));
+      InventoryEntry entry = entries.get(i);
+      if (media == null) {
+        applied.add(
+            new AppliedEntry(SyncOutcome.ORPHANED, entry.lastModified(), entry.size(), false));
+        continue;
+      }
+      int updatedBefore = updated.size();
+      SyncOutcome outcome = apply(media, entry, updated);
+      applied.add(
+          new AppliedEntry(
+              outcome,
+              media.getDateArchived(),
+              media.getArchivedSize(),
+              updated.size() > updatedBefore));
+    }
+    if (!updated.isEmpty()) {
+      libraryStatsService.saveAll(updated);
+    }
+    return applied;
+  }
+
+  // Adds the media to the updated ones if its archive state changes, and returns its outcome.
+  // A media keeping a newer archive than the object keeps its outcome too
+  private static SyncOutcome apply(
+      MediaModel media, InventoryEntry entry, List<MediaModel> updated) {
+    if (media.getDateArchived() != null
+        && media.getDateArchived().isAfter(entry.lastModified())
+        && !isUpload(media, entry.eTag())) {
+      return media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE
+          ? SyncOutcome.OUT_OF_DATE
+          : SyncOutcome.ARCHIVED;
+    }
+    Instant mediaLastModified = media.getDateLastModified();
+    boolean mismatched = differsFromUpload(media, entry.size(), entry.eTag());
+    ArchivedStatus status =
+        mismatched || mediaLastModified != null && mediaLastModified.isAfter(entry.lastModified())
+            ? ArchivedStatus.OUT_OF_DATE
+            : ArchivedStatus.ARCHIVED;
+
+    if (status != media.getArchivedStatus()
+        || !Objects.equals(entry.lastModified(), media.getDateArchived())
+        || entry.size() != null && !entry.size().equals(media.getArchivedSize())
+        || entry.storageClass() != null
+            && !entry.storageClass().equals(media.getArchivedStorageClass())) {
+      media.setArchivedStatus(status);
+      media.setDateArchived(entry.lastModified());
+      if (entry.size() != null) {
+        media.setArchivedSize(entry.size());
+      }
+      if (entry.storageClass() != null) {
+        media.setArchivedStorageClass(entry.storageClass());
+      }
+      updated.add(media);
+    }
+    if (mismatched) {
+      return SyncOutcome.MISMATCHED;
+    }
+    return status == ArchivedStatus.OUT_OF_DATE ? SyncOutcome.OUT_OF_DATE : SyncOutcome.ARCHIVED;
+  }
+
+  // Archives uploaded before their modification time was read back were recorded as archived
+  // when the upload finished, which is after the time S3 gives the object
+  private static boolean isUpload(MediaModel media, String eTag) {
+    return eTag != null
+        && media.getUploadedETag() != null
+        && unquote(eTag).equals(unquote(media.getUploadedETag()));
+  }
+
+  private static String unquote(String eTag) {
+    return eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\"")
+        ? eTag.substring(1, eTag.length() - 1)
+        : eTag;
+  }
+}
@@ -0,0 +1,160 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import jakarta.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the number of media matching each combination of listing filters, so that scrolling
+ * through a large catalog does not count every matching media again for every page. A count is
+ * computed when its filters are first seen, and once it is older than {@link #MAX_AGE} it is
+ * still returned while a fresh count is computed in the background. Totals shown next to a
+ * scrolled list may therefore lag behind the catalog by a few seconds.
+ */
+@Component
+public class MediaCountCache {
+
+  /**
+   * The age after which a count is refreshed in the background.
+   */
+  public static final Duration MAX_AGE = Duration.ofSeconds(30);
+
+  static final int MAX_ENTRIES = 256;
+
+  /**
+   * The filters of a media listing that a count depends on.
+   *
+   * @param archivedStatus the archived status filter
+   * @param search the name search term
+   * @param libraryId the library filter
+   * @param isRecovering the recovering filter
+   * @param isArchiving the archiving filter
+   */
+  public record Filters(
+      ArchivedStatus archivedStatus,
+      String search,
+      Long libraryId,
+      Boolean isRecovering,
+      Boolean isArchiving) {}
+
+  private final MediaRepository mediaRepository;
+  private final Clock clock;
+  private final Executor refresher;
+  // Least recently used filters are evicted first
+  private final Map<Filters, CachedCount> counts =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Filters, CachedCount> eldest) {
+              return size() > MAX_ENTRIES;
+            }
+          });
+
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+
+  /**
+   * Creates a cache that refreshes counts on a background thread of its own.
+   *
+   * @param mediaRepository the repository media are counted in
+   */
+  @Autowired
+  public MediaCountCache(MediaRepository mediaRepository) {
+    this(
+        mediaRepository,
+        Clock.systemUTC(),
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "media-count-refresh");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  /**
+   * Creates a cache that ages counts with the given clock and refreshes them on the given
+   * executor.
+   *
+   * @param mediaRepository the repository media are counted in
+   * @param clock the clock counts are aged with
+   * @param refresher the executor stale counts are refreshed on
+   */
+  public MediaCountCache(MediaRepository mediaRepository, Clock clock, Executor refresher) {
+    this.mediaRepository = mediaRepository;
+    this.clock = clock;
+    this.refresher = refresher;
+  }
+
+  /**
+   * Gets the number of media matching a listing's filters.
+   *
+   * @param filters the filters, identifying the count in the cache
+   * @param specification the specification built from the filters
+   * @return the number of matching media, as of at most {@link #MAX_AGE} ago unless a refresh
+   *     is still running
+   */
+  public long count(Filters filters, Specification<MediaModel> specification) {
+    CachedCount cached = counts.get(filters);
+    if (cached == null) {
+      cached = new CachedCount(mediaRepository.count(specification), clock.instant());
+      counts.put(filters, cached);
+      return cached.count;
+    }
+    if (Duration.between(cached.countedAt, clock.instant()).compareTo(MAX_AGE) > 0
+        && cached.refreshing.compareAndSet(false, true)) {
+      refresh(cached, specification);
+    }
+    return cached.count;
+  }
+
+  /**
+   * Stops the background refresh.
+   */
+  @PreDestroy
+  public void shutdown() {
+    if (refresher instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void refresh(CachedCount cached, Specification<MediaModel> specification) {
+    refresher.execute(
+        () -> {
+          try {
+            cached.count = mediaRepository.count(specification);
+            cached.countedAt = clock.instant();
+          } catch (Exception e) {
+            errorLogger.error("Could not refresh media count: " + e.getMessage());
+          } finally {
+            cached.refreshing.set(false);
+          }
+        });
+  }
+
+  // A count and when it was computed, updated in place by its refresh
+  private static final class CachedCount {
+    private volatile long count;
+    private volatile Instant countedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    CachedCount(long count, Instant countedAt) {
+      this.count = count;
+      this.countedAt = countedAt;
+    }
+  }
+}
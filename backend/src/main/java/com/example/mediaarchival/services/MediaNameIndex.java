@@ -0,0 +1,206 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.utils.TrigramIndex;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory trigram index of media names, backed by a {@link TrigramIndex}. It narrows a name
+ * search down to the few media whose names hold every trigram of the search term, so the
+ * catalog only checks those instead of scanning every name. The index is loaded from the
+ * catalog on first use and kept current by the code that adds or removes media, like the
+ * {@link MediaPathIndex}. Media names follow from their paths, so media are never renamed in
+ * place.
+ */
+@Component
+public class MediaNameIndex {
+
+  static final int LOAD_BATCH_SIZE = 1000;
+
+  /**
+   * The largest number of candidates a search is narrowed down to. Terms matching more media
+   * are searched in the catalog directly, where the first page of such common matches is found
+   * quickly anyway.
+   */
+  public static final int MAX_CANDIDATES = 2000;
+
+  private final MediaRepository mediaRepository;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private TrigramIndex index;
+  // Set once a media ID does not fit the index, which then stops answering searches
+  private boolean overflowed;
+
+  private static final Logger logger = LoggerFactory.getLogger(MediaNameIndex.class);
+
+  @Autowired
+  public MediaNameIndex(MediaRepository mediaRepository) {
+    this.mediaRepository = mediaRepository;
+  }
+
+  /**
+   * Finds the IDs of the media whose names may contain a search term. Every media whose name
+   * contains the term is among them, but some of them may not match.
+   *
+   * @param search the search term, matched regardless of case
+   * @return the candidate IDs, or empty if the term is too short or too common to narrow down
+   */
+  public Optional<List<Long>> findCandidates(String search) {
+    if (search == null || search.length() < TrigramIndex.GRAM_LENGTH) {
+      return Optional.empty();
+    }
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      int[] ids = overflowed ? null : index.candidates(search, MAX_CANDIDATES);
+      if (ids == null) {
+        return Optional.empty();
+      }
+      List<Long> candidates = new ArrayList<>(ids.length);
+      for (int id : ids) {
+        candidates.add((long) id);
+      }
+      return Optional.of(candidates);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Records the name of a media that was added to the catalog.
+   *
+   * @param id the ID of the media
+   * @param name the name of the media
+   */
+  public void put(Long id, String name) {
+    lock.writeLock().lock();
+    try {
+      // Before the first load the catalog itself is the source of truth
+      if (index != null && id != null && name != null) {
+        if (id > Integer.MAX_VALUE) {
+          overflowed = true;
+        } else {
+          index.add(id.intValue(), name);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Forgets the names of media that were removed from the catalog.
+   *
+   * @param media the removed media
+   */
+  public void remove(Collection<MediaModel> media) {
+    Map<Integer, String> names = new HashMap<>();
+    for (MediaModel item : media) {
+      addName(names, item.getId(), item.getName());
+    }
+    removeNames(names);
+  }
+
+  /**
+   * Forgets the names of media that were removed from the catalog, read as projections.
+   *
+   * @param media the IDs and names of the removed media
+   */
+  public void removeAll(Collection<? extends MediaRepository.NameView> media) {
+    Map<Integer, String> names = new HashMap<>();
+    for (MediaRepository.NameView item : media) {
+      addName(names, item.getId(), item.getName());
+    }
+    removeNames(names);
+  }
+
+  /**
+   * Drops the index, so it is reloaded from the catalog on next use.
+   */
+  public void invalidate() {
+    lock.writeLock().lock();
+    try {
+      index = null;
+      overflowed = false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void addName(Map<Integer, String> names, Long id, String name) {
+    if (id != null && id <= Integer.MAX_VALUE && name != null) {
+      names.put(id.intValue(), name);
+    }
+  }
+
+  private void removeNames(Map<Integer, String> names) {
+    lock.writeLock().lock();
+    try {
+      if (index != null) {
+        index.removeAll(names);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureLoaded() {
+    lock.readLock().lock();
+    try {
+      if (index != null) {
+        return;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      if (index == null) {
+        index = load();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private TrigramIndex load() {
+    TrigramIndex loaded = new TrigramIndex();
+    long afterId = 0;
+    int count = 0;
+    List<MediaRepository.NameView> batch;
+    do {
+      batch =
+          mediaRepository.findNamesByIdGreaterThan(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+      for (MediaRepository.NameView media : batch) {
+        if (media.getId() > Integer.MAX_VALUE) {
+          overflowed = true;
+        } else if (media.getName() != null) {
+          loaded.add(media.getId().intValue(), media.getName());
+          count++;
+        }
+        afterId = media.getId();
+      }
+    } while (batch.size() == LOAD_BATCH_SIZE);
+    logger.info(
+        "Loaded "
+            + count
+            + " media names into "
+            + loaded.gramCount()
+            + " trigrams, about "
+            + loaded.estimatedBytes() / 1024
+            + " KiB");
+    return loaded;
+  }
+}
@@ -0,0 +1,178 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.utils.PathTrie;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index from media paths to media IDs, backed by a {@link PathTrie}. It lets bulk
+ * operations decide which paths belong to the catalog without a query per path. The index is
+ * loaded from the catalog on first use and kept current by the code that adds or removes media.
+ */
+@Component
+public class MediaPathIndex {
+
+  static final int LOAD_BATCH_SIZE = 1000;
+
+  private final MediaRepository mediaRepository;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private PathTrie trie;
+
+  private static final Logger logger = LoggerFactory.getLogger(MediaPathIndex.class);
+
+  @Autowired
+  public MediaPathIndex(MediaRepository mediaRepository) {
+    this.mediaRepository = mediaRepository;
+  }
+
+  /**
+   * Looks up the ID of the media with the given path.
+   *
+   * @param path the path of the media
+   * @return the ID of the media, or empty if no media has that path
+   */
+  public OptionalLong findId(String path) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      long id = trie.get(path);
+      return id == PathTrie.NO_VALUE ? OptionalLong.empty() : OptionalLong.of(id);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Records the path of a media that was added to the catalog.
+   *
+   * @param path the path of the media
+   * @param id the ID of the media
+   */
+  public void put(String path, Long id) {
+    lock.writeLock().lock();
+    try {
+      // Before the first load the catalog itself is the source of truth
+      if (trie != null && path != null && id != null) {
+        trie.put(path, id);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Forgets the path of a media that was removed from the catalog.
+   *
+   * @param path the path of the media
+   */
+  public void remove(String path) {
+    lock.writeLock().lock();
+    try {
+      if (trie != null && path != null) {
+        trie.remove(path);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Forgets the paths of media that were removed from the catalog, under one lock.
+   *
+   * @param media the IDs and paths of the removed media
+   */
+  public void removeAll(Collection<? extends MediaRepository.PathView> media) {
+    lock.writeLock().lock();
+    try {
+      if (trie != null) {
+        for (MediaRepository.PathView item : media) {
+          if (item.getPath() != null) {
+            trie.remove(item.getPath());
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drops the index, so it is reloaded from the catalog on next use.
+   */
+  public void invalidate() {
+    lock.writeLock().lock();
+    try {
+      trie = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of paths in the index, loading it if needed.
+   *
+   * @return the number of indexed media
+   */
+  public int size() {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      return trie.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void ensureLoaded() {
+    lock.readLock().lock();
+    try {
+      if (trie != null) {
+        return;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      if (trie == null) {
+        trie = load();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private PathTrie load() {
+    PathTrie loaded = new PathTrie();
+    long afterId = 0;
+    List<MediaRepository.PathView> batch;
+    do {
+      batch =
+          mediaRepository.findPathsByIdGreaterThan(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+      for (MediaRepository.PathView media : batch) {
+        if (media.getPath() != null) {
+          loaded.put(media.getPath(), media.getId());
+        }
+        afterId = media.getId();
+      }
+    } while (batch.size() == LOAD_BATCH_SIZE);
+    logger.info(
+        "Loaded "
+            + loaded.size()
+            + " media paths into "
+            + loaded.nodeCount()
+            + " trie nodes, about "
+            + loaded.estimatedBytes() / 1024
+            + " KiB");
+    return loaded;
+  }
+}
@@ -0,0 +1,276 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.utils.DirectoryUtils;
+import com.example.mediaarchival.utils.EnvUtils;
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the sizes of media in the background, so scans can commit new media right away with
+ * their size pending. Media are sized by a fixed number of worker threads in priority order:
+ * media about to be archived first, then media being viewed, then everything found by scans.
+ * Raising the priority of queued media moves them ahead without sizing them twice.
+ */
+@Component
+public class MediaSizingService {
+
+  /**
+   * How urgently a media's size is needed, most urgent first.
+   */
+  public enum Priority {
+    /**
+     * The media is about to be archived and its job waits for the size.
+     */
+    ARCHIVE,
+
+    /**
+     * The media is being viewed.
+     */
+    VIEW,
+
+    /**
+     * The media was found or changed by a scan.
+     */
+    SCAN
+  }
+
+  private static final Comparator<SizingTask> TASK_ORDER =
+      Comparator.comparing(SizingTask::priority).thenComparingLong(SizingTask::sequence);
+
+  private final MediaRepository mediaRepository;
+  private final DirectorySizeRepository directorySizeRepository;
+  private final LibraryStatsService libraryStatsService;
+  private final LibraryMetadataCache libraryMetadataCache;
+  private final PriorityBlockingQueue<SizingTask> queue =
+      new PriorityBlockingQueue<>(64, TASK_ORDER);
+  // The most urgent task of every media that is waiting for its size
+  private final Map<Long, SizingTask> tasks = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private final ExecutorService workers;
+
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+  private static final Logger logger = LoggerFactory.getLogger(MediaSizingService.class);
+
+  /**
+   * Creates a sizing service with the number of workers configured in the environment.
+   *
+   * @param mediaRepository the repository sizes are written to
+   * @param directorySizeRepository the repository holding cached directory sizes
+   * @param libraryStatsService the service counting the sizes in the library statistics
+   * @param libraryMetadataCache the cache the categories of libraries are read from
+   */
+  @Autowired
+  public MediaSizingService(
+      MediaRepository mediaRepository,
+      DirectorySizeRepository directorySizeRepository,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache) {
+    this(
+        mediaRepository,
+        directorySizeRepository,
+        libraryStatsService,
+        libraryMetadataCache,
+        EnvUtils.getSizingThreads());
+  }
+
+  /**
+   * Creates a sizing service with the given number of workers.
+   *
+   * @param mediaRepository the repository sizes are written to
+   * @param directorySizeRepository the repository holding cached directory sizes
+   * @param libraryStatsService the service counting the sizes in the library statistics
+   * @param libraryMetadataCache the cache the categories of libraries are read from
+   * @param threads the number of worker threads, 0 to only size media through {@link #runNext}
+   */
+  public MediaSizingService(
+      MediaRepository mediaRepository,
+      DirectorySizeRepository directorySizeRepository,
+      LibraryStatsService libraryStatsService,
+      LibraryMetadataCache libraryMetadataCache,
+      int threads) {
+    this.mediaRepository = mediaRepository;
+    this.directorySizeRepository = directorySizeRepository;
+    this.libraryStatsService = libraryStatsService;
+    this.libraryMetadataCache = libraryMetadataCache;
+    AtomicInteger count = new AtomicInteger();
+    this.workers =
+        Executors.newFixedThreadPool(
+            Math.max(threads, 1),
+            runnable -> {
+              Thread thread = new Thread(runnable, "media-sizing-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    for (int i = 0; i < threads; i++) {
+      workers.submit(this::work);
+    }
+    logger.info("Sizing media with " + threads + " threads");
+  }
+
+  /**
+   * Queues a media to be sized. If the media is already queued, it keeps the more urgent of the
+   * two priorities.
+   *
+   * @param mediaId the ID of the media
+   * @param source the file or directory holding the media
+   * @param excludeSeasons whether TV season directories are left out of the size
+   * @param priority how urgently the size is needed
+   * @return a future completed with the size once it is written to the catalog
+   */
+  public CompletableFuture<Long> submit(
+      Long mediaId, File source, boolean excludeSeasons, Priority priority) {
+    SizingTask[] created = new SizingTask[1];
+    SizingTask task =
+        tasks.compute(
+            mediaId,
+            (id, queued) -> {
+              if (queued != null && queued.priority().compareTo(priority) <= 0) {
+                return queued;
+              }
+              CompletableFuture<Long> size = queued != null ? queued.size() : new CompletableFuture<>();
+              created[0] =
+                  new SizingTask(
+                      id, source, excludeSeasons, priority, sequence.incrementAndGet(), size);
+              return created[0];
+            });
+    // Queued only once registered, so workers never take it for a replaced task
+    if (created[0] != null) {
+      queue.add(created[0]);
+    }
+    return task.size();
+  }
+
+  /**
+   * Queues a media of the catalog whose size is pending, locating its files from its path.
+   *
+   * @param media the media
+   * @param priority how urgently the size is needed
+   * @return a future completed with the size once it is written to the catalog
+   */
+  public CompletableFuture<Long> submit(MediaModel media, Priority priority) {
+    boolean isTvSeries =
+        media.getLibrary() != null
+            && libraryMetadataCache
+                .get(media.getLibrary().getId())
+                .map(LibraryMetadataCache.Metadata::isTvSeries)
+                .orElse(false);
+    String sourcePath = isTvSeries ? media.getPath().replace("/metadata", "") : media.getPath();
+    return submit(media.getId(), new File(sourcePath), isTvSeries, priority);
+  }
+
+  /**
+   * Raises the priority of the media whose size is still pending, such as the page of media a
+   * user is looking at.
+   *
+   * @param media the media
+   * @param priority how urgently the sizes are needed
+   */
+  public void prioritize(Collection<MediaModel> media, Priority priority) {
+    for (MediaModel item : media) {
+      if (item.isSizePending() && item.getId() != null) {
+        submit(item, priority);
+      }
+    }
+  }
+
+  /**
+   * Waits for the size of a media whose size is pending, moving it to the front of the queue.
+   *
+   * @param media the media
+   * @return the size of the media in bytes
+   * @throws InterruptedException if the thread is interrupted while waiting
+   * @throws ExecutionException if the media could not be sized
+   */
+  public long awaitSize(MediaModel media) throws InterruptedException, ExecutionException {
+    return submit(media, Priority.ARCHIVE).get();
+  }
+
+  /**
+   * Gets the number of media waiting to be sized.
+   *
+   * @return the number of queued media
+   */
+  public int getQueuedCount() {
+    return tasks.size();
+  }
+
+  /**
+   * Stops the workers, leaving queued media pending until the next startup.
+   */
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  /**
+   * Sizes the most urgent queued media on the calling thread.
+   *
+   * @return false if the queue was empty
+   */
+  boolean runNext() {
+    SizingTask task = queue.poll();
+    if (task == null) {
+      return false;
+    }
+    size(task);
+    return true;
+  }
+
+  private void work() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        size(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void size(SizingTask task) {
+    // Tasks replaced by a more urgent one are skipped, the replacement completes the future
+    if (tasks.get(task.mediaId()) != task) {
+      return;
+    }
+    try {
+      long size =
+          DirectoryUtils.getDirectorySize(
+              task.source(), task.excludeSeasons(), directorySizeRepository);
+      libraryStatsService.track(
+          List.of(task.mediaId()),
+          () -> mediaRepository.updateComputedSizeById(task.mediaId(), size));
+      tasks.remove(task.mediaId(), task);
+      task.size().complete(size);
+    } catch (Exception e) {
+      errorLogger.error("Error sizing media " + task.mediaId() + ": " + e.getMessage());
+      tasks.remove(task.mediaId(), task);
+      task.size().completeExceptionally(e);
+    }
+  }
+
+  private record SizingTask(
+      Long mediaId,
+      File source,
+      boolean excludeSeasons,
+      Priority priority,
+      long sequence,
+      CompletableFuture<Long> size) {}
+}
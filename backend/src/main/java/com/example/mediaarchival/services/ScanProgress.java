@@ -0,0 +1,187 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ScanState;
+import com.example.mediaarchival.responses.ScanProgressResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of one library scan. The scanner updates them as it walks the library and
+ * applies changes, and readers take consistent-enough snapshots at any time without locking.
+ */
+public class ScanProgress {
+
+  private final Long libraryId;
+  private final long previousDirectories;
+  private final Clock clock;
+  private final Instant startedAt;
+
+  private final AtomicLong directoriesVisited = new AtomicLong();
+  private final AtomicLong entriesVisited = new AtomicLong();
+  private final AtomicLong mediaCreated = new AtomicLong();
+  private final AtomicLong mediaUpdated = new AtomicLong();
+  private final AtomicLong mediaRemoved = new AtomicLong();
+  private final AtomicLong mediaUnchanged = new AtomicLong();
+  private final AtomicLong bytesSized = new AtomicLong();
+
+  private volatile Instant lastProgressAt;
+  private volatile Instant finishedAt;
+  private volatile ScanState state = ScanState.RUNNING;
+
+  /**
+   * Starts tracking a scan.
+   *
+   * @param libraryId the ID of the library being scanned
+   * @param previousDirectories the number of directories the last completed scan visited, or 0
+   * @param clock the clock used to time the scan
+   */
+  public ScanProgress(Long libraryId, long previousDirectories, Clock clock) {
+    this.libraryId = libraryId;
+    this.previousDirectories = previousDirectories;
+    this.clock = clock;
+    this.startedAt = clock.instant();
+    this.lastProgressAt = startedAt;
+  }
+
+  /**
+   * Records a directory listing.
+   *
+   * @param entries the number of entries the listing returned
+   */
+  public void directoryVisited(int entries) {
+    directoriesVisited.incrementAndGet();
+    entriesVisited.addAndGet(entries);
+    lastProgressAt = clock.instant();
+  }
+
+  /**
+   * Records the size computed for a media.
+   *
+   * @param bytes the size of the media
+   */
+  public void bytesSized(long bytes) {
+    bytesSized.addAndGet(bytes);
+    lastProgressAt = clock.instant();
+  }
+
+  public void mediaCreated() {
+    mediaCreated.incrementAndGet();
+  }
+
+  public void mediaUpdated() {
+    mediaUpdated.incrementAndGet();
+  }
+
+  public void mediaRemoved() {
+    mediaRemoved.incrementAndGet();
+  }
+
+  public void mediaUnchanged() {
+    mediaUnchanged.incrementAndGet();
+  }
+
+  /**
+   * Marks the scan as finished.
+   *
+   * @param state {@link ScanState#COMPLETED} or {@link ScanState#FAILED}
+   */
+  void finish(ScanState state) {
+    this.finishedAt = clock.instant();
+    this.state = state;
+  }
+
+  public Long getLibraryId() {
+    return libraryId;
+  }
+
+  public ScanState getState() {
+    return state;
+  }
+
+  public long getDirectoriesVisited() {
+    return directoriesVisited.get();
+  }
+
+  public long getEntriesVisited() {
+    return entriesVisited.get();
+  }
+
+  public long getMediaCreated() {
+    return mediaCreated.get();
+  }
+
+  public long getMediaUpdated() {
+    return mediaUpdated.get();
+  }
+
+  public long getMediaRemoved() {
+    return mediaRemoved.get();
+  }
+
+  public long getMediaUnchanged() {
+    return mediaUnchanged.get();
+  }
+
+  public long getBytesSized() {
+    return bytesSized.get();
+  }
+
+  /**
+   * Computes the number of directory entries listed per second since the scan started.
+   *
+   * @return the listing throughput, or 0 before any time has passed
+   */
+  public double getEntriesPerSecond() {
+    double seconds = elapsed().toMillis() / 1000.0;
+    return seconds > 0 ? entriesVisited.get() / seconds : 0;
+  }
+
+  /**
+   * Extrapolates the time left from the number of directories the previous scan visited and the
+   * rate at which this scan visits them.
+   *
+   * @return the estimated seconds remaining, 0 once finished, or null if there is no estimate
+   *     because there was no previous scan or this scan already visited more directories
+   */
+  public Long getEstimatedSecondsRemaining() {
+    if (state != ScanState.RUNNING) {
+      return 0L;
+    }
+    long visited = directoriesVisited.get();
+    if (previousDirectories <= 0 || visited == 0 || visited >= previousDirectories) {
+      return null;
+    }
+    double secondsPerDirectory = elapsed().toMillis() / 1000.0 / visited;
+    return Math.round((previousDirectories - visited) * secondsPerDirectory);
+  }
+
+  /**
+   * Takes a snapshot of the counters for reporting.
+   *
+   * @return the current progress of the scan
+   */
+  public ScanProgressResponse snapshot() {
+    Instant now = clock.instant();
+    return new ScanProgressResponse(
+        libraryId,
+        state,
+        startedAt,
+        finishedAt,
+        getDirectoriesVisited(),
+        previousDirectories,
+        getEntriesVisited(),
+        getMediaCreated(),
+        getMediaUpdated(),
+        getMediaRemoved(),
+        getBytesSized(),
+        getEntriesPerSecond(),
+        getEstimatedSecondsRemaining(),
+        Duration.between(lastProgressAt, finishedAt != null ? finishedAt : now).getSeconds());
+  }
+
+  private Duration elapsed() {
+    return Duration.between(startedAt, finishedAt != null ? finishedAt : clock.instant());
+  }
+}
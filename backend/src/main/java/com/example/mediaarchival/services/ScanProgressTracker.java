@@ -0,0 +1,120 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ScanState;
+import com.example.mediaarchival.models.LibraryModel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the progress of the most recent scan of each library since startup and publishes it as
+ * metrics tagged with the library ID.
+ */
+@Component
+public class ScanProgressTracker {
+
+  private final Map<Long, ScanProgress> progressByLibrary = new ConcurrentHashMap<>();
+  private final MeterRegistry meterRegistry;
+  private final Clock clock;
+
+  /**
+   * Creates a tracker that publishes its metrics to the given registry.
+   *
+   * @param meterRegistry the registry scan metrics are published to
+   */
+  @Autowired
+  public ScanProgressTracker(MeterRegistry meterRegistry) {
+    this(meterRegistry, Clock.systemUTC());
+  }
+
+  /**
+   * Creates a tracker that times scans with the given clock.
+   *
+   * @param meterRegistry the registry scan metrics are published to
+   * @param clock the clock used to time scans
+   */
+  public ScanProgressTracker(MeterRegistry meterRegistry, Clock clock) {
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts tracking a scan of a library, replacing the progress of its previous scan.
+   *
+   * @param library the library being scanned
+   * @return the progress the scanner should update
+   */
+  public ScanProgress start(LibraryModel library) {
+    ScanProgress progress =
+        new ScanProgress(library.getId(), library.getLastScanDirectories(), clock);
+    progressByLibrary.put(library.getId(), progress);
+    registerMeters(library.getId());
+    return progress;
+  }
+
+  /**
+   * Marks a scan as finished. A completed scan's directory count is kept on the library, so
+   * the next scan can estimate its remaining time; the caller is responsible for saving it.
+   *
+   * @param library the library that was scanned
+   * @param progress the progress of the scan
+   * @param state {@link ScanState#COMPLETED} or {@link ScanState#FAILED}
+   */
+  public void finish(LibraryModel library, ScanProgress progress, ScanState state) {
+    progress.finish(state);
+    if (state == ScanState.COMPLETED) {
+      library.setLastScanDirectories(progress.getDirectoriesVisited());
+    }
+  }
+
+  /**
+   * Looks up the progress of the most recent scan of a library.
+   *
+   * @param libraryId the ID of the library
+   * @return the progress, or empty if the library was not scanned since startup
+   */
+  public Optional<ScanProgress> getProgress(Long libraryId) {
+    return Optional.ofNullable(progressByLibrary.get(libraryId));
+  }
+
+  // Micrometer returns the existing gauge when one is registered twice, so this is idempotent
+  private void registerMeters(Long libraryId) {
+    Tags tags = Tags.of("library", String.valueOf(libraryId));
+    gauge("mediaarchival.scan.running", tags, libraryId,
+        progress -> progress.getState() == ScanState.RUNNING ? 1 : 0);
+    gauge("mediaarchival.scan.directories", tags, libraryId, ScanProgress::getDirectoriesVisited);
+    gauge("mediaarchival.scan.entries", tags, libraryId, ScanProgress::getEntriesVisited);
+    gauge("mediaarchival.scan.entries.rate", tags, libraryId, ScanProgress::getEntriesPerSecond);
+    gauge("mediaarchival.scan.bytes.sized", tags, libraryId, ScanProgress::getBytesSized);
+    gauge("mediaarchival.scan.media", tags.and("change", "created"), libraryId,
+        ScanProgress::getMediaCreated);
+    gauge("mediaarchival.scan.media", tags.and("change", "updated"), libraryId,
+        ScanProgress::getMediaUpdated);
+    gauge("mediaarchival.scan.media", tags.and("change", "removed"), libraryId,
+        ScanProgress::getMediaRemoved);
+    gauge("mediaarchival.scan.eta.seconds", tags, libraryId, progress -> {
+      Long eta = progress.getEstimatedSecondsRemaining();
+      return eta != null ? eta : Double.NaN;
+    });
+  }
+
+  private void gauge(
+      String name, Tags tags, Long libraryId, ToDoubleFunction<ScanProgress> value) {
+    Gauge.builder(
+            name,
+            progressByLibrary,
+            progress -> {
+              ScanProgress current = progress.get(libraryId);
+              return current != null ? value.applyAsDouble(current) : Double.NaN;
+            })
+        .tags(tags)
+        .register(meterRegistry);
+  }
+}
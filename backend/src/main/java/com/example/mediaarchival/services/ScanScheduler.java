@@ -0,0 +1,214 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.responses.DeviceScanStatus;
+import com.example.mediaarchival.utils.EnvUtils;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Schedules library scans by the storage device their library lives on. Each device gets its
+ * own lane with a fixed number of traversal threads, so scans of libraries on different disks
+ * run concurrently while scans on the same disk never compete for more than the configured
+ * number of threads. A global limit caps the number of scans running across all devices. A
+ * library is scanned by one scan at a time, so a scan submitted while another scan of the same
+ * library is queued or running is dropped.
+ */
+@Component
+public class ScanScheduler {
+
+  static final String UNKNOWN_DEVICE = "unknown";
+
+  private final int threadsPerDevice;
+  private final int maxConcurrentScans;
+  private final Semaphore scanPermits;
+  private final Map<String, DeviceLane> lanes = new ConcurrentHashMap<>();
+  // The libraries whose scan is queued or running
+  private final Set<Long> scheduledLibraries = ConcurrentHashMap.newKeySet();
+
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+  private static final Logger logger = LoggerFactory.getLogger(ScanScheduler.class);
+
+  /**
+   * Creates a scheduler with the limits configured in the environment.
+   */
+  @Autowired
+  public ScanScheduler() {
+    this(EnvUtils.getScanThreadsPerDevice(), EnvUtils.getMaxConcurrentScans());
+  }
+
+  /**
+   * Creates a scheduler with the given limits.
+   *
+   * @param threadsPerDevice the maximum number of scans traversing one device at once
+   * @param maxConcurrentScans the maximum number of scans running across all devices
+   */
+  public ScanScheduler(int threadsPerDevice, int maxConcurrentScans) {
+    this.threadsPerDevice = threadsPerDevice;
+    this.maxConcurrentScans = maxConcurrentScans;
+    this.scanPermits = new Semaphore(maxConcurrentScans, true);
+    logger.info(
+        "Scanning with up to "
+            + threadsPerDevice
+            + " threads per device and "
+            + maxConcurrentScans
+            + " scans in total");
+  }
+
+  /**
+   * Queues a scan on the lane of the device holding {@code libraryPath}. The scan runs once the
+   * device has a free thread and the global scan limit allows it.
+   *
+   * @param libraryId the ID of the library being scanned
+   * @param libraryPath the root path of the library being scanned
+   * @param scan the scan to run
+   * @return true if the scan was queued, false if a scan of the library is already queued or
+   *     running
+   */
+  public boolean submit(Long libraryId, String libraryPath, Runnable scan) {
+    if (!scheduledLibraries.add(libraryId)) {
+      logger.info("A scan of library " + libraryId + " is already scheduled, skipping this one");
+      return false;
+    }
+    try {
+      lanes
+          .computeIfAbsent(deviceOf(libraryPath), DeviceLane::new)
+          .submit(scan, () -> scheduledLibraries.remove(libraryId));
+    } catch (RuntimeException e) {
+      scheduledLibraries.remove(libraryId);
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Reports the scans scheduled on every device seen since startup.
+   *
+   * @return the status of each device, ordered by device name
+   */
+  public List<DeviceScanStatus> getStatus() {
+    List<DeviceScanStatus> status = new ArrayList<>();
+    for (DeviceLane lane : lanes.values()) {
+      status.add(
+          new DeviceScanStatus(
+              lane.device,
+              threadsPerDevice,
+              lane.active.get(),
+              lane.queued.get(),
+              lane.completed.get()));
+    }
+    status.sort(Comparator.comparing(DeviceScanStatus::getDevice));
+    return status;
+  }
+
+  public int getThreadsPerDevice() {
+    return threadsPerDevice;
+  }
+
+  public int getMaxConcurrentScans() {
+    return maxConcurrentScans;
+  }
+
+  /**
+   * Stops all device lanes, interrupting scans that are still running.
+   */
+  @PreDestroy
+  public void shutdown() {
+    lanes.values().forEach(lane -> lane.executor.shutdownNow());
+  }
+
+  /**
+   * Resolves the storage device holding a path. Paths that do not exist yet are resolved through
+   * their nearest existing ancestor, and bind mounts of one device share its name.
+   *
+   * @param path the path to resolve
+   * @return the name of the device, or {@link #UNKNOWN_DEVICE} if it cannot be determined
+   */
+  static String deviceOf(String path) {
+    if (path == null) {
+      return UNKNOWN_DEVICE;
+    }
+    Path current = Path.of(path).toAbsolutePath();
+    while (current != null && !Files.exists(current)) {
+      current = current.getParent();
+    }
+    if (current == null) {
+      return UNKNOWN_DEVICE;
+    }
+    try {
+      FileStore store = Files.getFileStore(current);
+      return store.name().isBlank() ? store.toString() : store.name();
+    } catch (IOException e) {
+      errorLogger.error("Could not resolve the device of " + path + ": " + e.getMessage());
+      return UNKNOWN_DEVICE;
+    }
+  }
+
+  private class DeviceLane {
+    private final String device;
+    private final ExecutorService executor;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    DeviceLane(String device) {
+      this.device = device;
+      this.executor = Executors.newFixedThreadPool(threadsPerDevice, threadFactory(device));
+      logger.info("Scanning device " + device + " with up to " + threadsPerDevice + " threads");
+    }
+
+    void submit(Runnable scan, Runnable done) {
+      queued.incrementAndGet();
+      executor.execute(
+          () -> {
+            try {
+              scanPermits.acquire();
+            } catch (InterruptedException e) {
+              queued.decrementAndGet();
+              done.run();
+              Thread.currentThread().interrupt();
+              return;
+            }
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+              scan.run();
+            } catch (Exception e) {
+              errorLogger.error("Scan on device " + device + " failed: " + e.getMessage());
+            } finally {
+              active.decrementAndGet();
+              completed.incrementAndGet();
+              scanPermits.release();
+              done.run();
+            }
+          });
+    }
+
+    private ThreadFactory threadFactory(String device) {
+      AtomicInteger threadCount = new AtomicInteger();
+      return runnable -> {
+        Thread thread = new Thread(runnable, "scan-" + device + "-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.SyncOutcome;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the report of the last completed sync of every library. A report has one JSON line
+ * per media or bucket object, followed by a summary line counting each outcome. Reports are
+ * written line by line while the sync runs and only replace the previous report once the sync
+ * completes, so they can be streamed to clients whatever their size.
+ */
+@Component
+public class SyncReportStore {
+
+  private static final String DEFAULT_DIRECTORY = "/appdata/syncReports";
+  // One JSON value per line
+  private static final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator("\n");
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+
+  private final Path directory;
+
+  /**
+   * Creates a store keeping reports in the application data directory.
+   */
+  @Autowired
+  public SyncReportStore() {
+    this(Path.of(DEFAULT_DIRECTORY));
+  }
+
+  /**
+   * Creates a store keeping reports in the given directory.
+   *
+   * @param directory the directory holding the reports
+   */
+  public SyncReportStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Starts the report of a sync of a library.
+   *
+   * @param libraryId the ID of the library
+   * @return the writer of the report
+   * @throws IOException if the report cannot be created
+   */
+  public Writer open(Long libraryId) throws IOException {
+    Files.createDirectories(directory);
+    return new Writer(
+        Files.createTempFile(directory, "library-" + libraryId + "-", ".tmp"),
+        reportPath(libraryId));
+  }
+
+  /**
+   * Finds the report of the last completed sync of a library.
+   *
+   * @param libraryId the ID of the library
+   * @return the report file, or empty if the library was not synchronized by listing its bucket
+   */
+  public Optional<Path> find(Long libraryId) {
+    Path report = reportPath(libraryId);
+    return Files.isRegularFile(report) ? Optional.of(report) : Optional.empty();
+  }
+
+  /**
+   * Deletes the report of a library.
+   *
+   * @param libraryId the ID of the library
+   */
+  public void delete(Long libraryId) {
+    try {
+      Files.deleteIfExists(reportPath(libraryId));
+    } catch (IOException e) {
+      errorLogger.error("Error deleting the sync report of library " + libraryId + ": " + e.getMessage());
+    }
+  }
+
+  private Path reportPath(Long libraryId) {
+    return directory.resolve("library-" + libraryId + ".ndjson");
+  }
+
+  /**
+   * Writes the report of one sync. The report replaces the previous one when it is completed,
+   * and is discarded if it is closed before.
+   */
+  public static class Writer implements Closeable {
+    private final Path temporary;
+    private final Path target;
+    private final JsonGenerator generator;
+    private final Map<SyncOutcome, Long> counts = new EnumMap<>(SyncOutcome.class);
+    private boolean completed;
+
+    private Writer(Path temporary, Path target) throws IOException {
+      this.temporary = temporary;
+      this.target = target;
+      this.generator = jsonFactory.createGenerator(temporary.toFile(), JsonEncoding.UTF8);
+      for (SyncOutcome outcome : SyncOutcome.values()) {
+        counts.put(outcome, 0L);
+      }
+    }
+
+    /**
+     * Adds a media or bucket object to the report.
+     *
+     * @param outcome the outcome of the sync for the media or object
+     * @param path the path of the media, or the key of the object
+     * @param mediaId the ID of the media, or null for orphaned objects
+     * @param dateArchived when the object was uploaded, or null if there is no object
+     * @param archivedSize the size of the object, or null if there is no object
+     * @throws IOException if the report cannot be written
+     */
+    public void write(
+        SyncOutcome outcome, String path, Long mediaId, Instant dateArchived, Long archivedSize)
+        throws IOException {
+      counts.merge(outcome, 1L, Long::sum);
+      generator.writeStartObject();
+      generator.writeStringField("outcome", outcome.name());
+      generator.writeStringField("path", path);
+      if (mediaId != null) {
+        generator.writeNumberField("mediaId", mediaId);
+      }
+      if (dateArchived != null) {
+        generator.writeStringField("dateArchived", dateArchived.toString());
+      }
+      if (archivedSize != null) {
+        generator.writeNumberField("archivedSize", archivedSize);
+      }
+      generator.writeEndObject();
+    }
+
+    /**
+     * Gets the number of media and objects reported with each outcome so far.
+     *
+     * @return the counts by outcome
+     */
+    public Map<SyncOutcome, Long> getCounts() {
+      return counts;
+    }
+
+    /**
+     * Writes the summary line and publishes the report in place of the previous one.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    public void complete() throws IOException {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart("summary");
+      for (Map.Entry<SyncOutcome, Long> count : counts.entrySet()) {
+        generator.writeNumberField(count.getKey().name(), count.getValue());
+      }
+      generator.writeEndObject();
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+      generator.close();
+      Files.move(
+          temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      completed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!completed) {
+        generator.close();
+        Files.deleteIfExists(temporary);
+      }
+    }
+  }
+}
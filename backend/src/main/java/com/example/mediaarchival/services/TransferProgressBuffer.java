@@ -0,0 +1,119 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the progress of running uploads and downloads in memory and writes it to the job table
+ * behind the transfers. Transfer listeners record progress as often as they like without
+ * touching the database, the API reads the live values from here, and a scheduled flush writes
+ * the latest progress of every transfer that moved since the previous flush, with one update
+ * per distinct progress value. When a job's work ends, its buffered progress is dropped before
+ * the job's final state is written, so a late flush cannot overwrite it.
+ */
+@Component
+public class TransferProgressBuffer {
+
+  /**
+   * The delay between two writes of buffered progress to the job table, in milliseconds.
+   */
+  public static final long FLUSH_INTERVAL_MS = 2000;
+
+  private final JobRepository jobRepository;
+  // The live progress of every running transfer, by job ID
+  private final Map<Long, Integer> progress = new ConcurrentHashMap<>();
+  // The progress not yet written to the job table
+  private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+  // Keeps jobs from ending while their progress is being written
+  private final Object flushLock = new Object();
+
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+
+  @Autowired
+  public TransferProgressBuffer(JobRepository jobRepository) {
+    this.jobRepository = jobRepository;
+  }
+
+  /**
+   * Records the progress of a running transfer.
+   *
+   * @param jobId the ID of the job running the transfer
+   * @param progress the percentage of the archive transferred
+   */
+  public void record(Long jobId, int progress) {
+    this.progress.put(jobId, progress);
+    pending.put(jobId, progress);
+  }
+
+  /**
+   * Forgets the progress of a job whose work ended. Waits for a running flush, so the caller can
+   * then write the final state of the job.
+   *
+   * @param jobId the ID of the job
+   */
+  public void finish(Long jobId) {
+    synchronized (flushLock) {
+      pending.remove(jobId);
+      progress.remove(jobId);
+    }
+  }
+
+  /**
+   * Sets the live progress of running transfers on jobs read from the job table.
+   *
+   * @param jobs the jobs to update
+   */
+  public void applyTo(Collection<JobModel> jobs) {
+    if (progress.isEmpty()) {
+      return;
+    }
+    for (JobModel job : jobs) {
+      Integer live = progress.get(job.getId());
+      if (live != null) {
+        job.setProgress(live);
+      }
+    }
+  }
+
+  /**
+   * Writes the progress recorded since the previous flush to the job table.
+   */
+  @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+  public void flush() {
+    synchronized (flushLock) {
+      try {
+        for (Map.Entry<Integer, List<Long>> group : drain().entrySet()) {
+          jobRepository.updateProgressByIdIn(group.getValue(), group.getKey());
+        }
+      } catch (Exception e) {
+        // The next progress of each transfer is written by a later flush
+        errorLogger.error("Could not write transfer progress: " + e.getMessage());
+      }
+    }
+  }
+
+  // Removes the pending progress, grouping the job IDs by their progress
+  private Map<Integer, List<Long>> drain() {
+    Map<Integer, List<Long>> idsByProgress = new TreeMap<>();
+    for (Map.Entry<Long, Integer> entry : pending.entrySet()) {
+      // Progress recorded in the meantime stays pending
+      if (pending.remove(entry.getKey(), entry.getValue())) {
+        idsByProgress
+            .computeIfAbsent(entry.getValue(), key -> new ArrayList<>())
+            .add(entry.getKey());
+      }
+    }
+    return idsByProgress;
+  }
+}
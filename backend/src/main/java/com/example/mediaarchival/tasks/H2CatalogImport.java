@@ -0,0 +1,182 @@
+package com.example.mediaarchival.tasks;
+
+import com.example.mediaarchival.utils.EnvUtils;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Copies the catalog of an install that kept it in an H2 file into PostgreSQL, when the
+ * application runs with the postgres profile and IMPORT_H2_CATALOG names the H2 file. Rows keep
+ * their IDs and are copied table by table in foreign key order, in JDBC batches within one
+ * transaction, so a failed import leaves the catalog empty. Only an empty catalog is imported
+ * into, so leaving the variable set on later starts does nothing. Run by the
+ * {@link IdSequenceAlignment} before it moves the sequences past the imported IDs.
+ */
+@Component
+@Profile("postgres")
+public class H2CatalogImport {
+
+  static final int BATCH_SIZE = 1000;
+
+  /**
+   * The tables copied, in foreign key order.
+   */
+  static final List<String> TABLES =
+      List.of(
+          "library_model",
+          "media_model",
+          "job_model",
+          "directory_size_model",
+          "file_fingerprint_model",
+          "users");
+
+  private final DataSource dataSource;
+
+  private static final Logger logger = LoggerFactory.getLogger(H2CatalogImport.class);
+
+  @Autowired
+  public H2CatalogImport(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Imports the H2 catalog named by the environment, if any.
+   *
+   * @throws IllegalStateException if the catalog cannot be imported, which stops the start
+   *     rather than leave an install with an empty catalog
+   */
+  public void importCatalog() {
+    String url = EnvUtils.getH2CatalogImport();
+    if (url == null) {
+      return;
+    }
+    try (Connection source = DriverManager.getConnection(url, "sa", "password");
+        Connection target = dataSource.getConnection()) {
+      copy(source, target);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not import the H2 catalog: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Copies the catalog tables from one database to another. Columns missing on either side are
+   * left out, so the target keeps its defaults for them.
+   *
+   * @param source the H2 catalog
+   * @param target the empty catalog to fill
+   * @return the number of rows copied, or -1 if the target already holds a catalog
+   * @throws SQLException if reading or writing fails, in which case nothing is written
+   * @throws IllegalStateException if the H2 catalog still has the job columns of older versions
+   */
+  long copy(Connection source, Connection target) throws SQLException {
+    if (columnsOf(source, "media_model").contains("is_restoring")) {
+      throw new IllegalStateException(
+          "The H2 catalog was written by an older version, start this version on it once to"
+              + " migrate its jobs before importing it");
+    }
+    if (hasRows(target, "library_model") || hasRows(target, "media_model")) {
+      logger.info("The catalog already holds libraries, the H2 catalog is not imported");
+      return -1;
+    }
+
+    boolean autoCommit = target.getAutoCommit();
+    target.setAutoCommit(false);
+    try {
+      long rows = 0;
+      for (String table : TABLES) {
+        if (table.equals("users") && hasRows(source, table)) {
+          // The default user written on startup is replaced by the imported ones
+          try (Statement statement = target.createStatement()) {
+            statement.executeUpdate("DELETE FROM users");
+          }
+        }
+        rows += copyTable(source, target, table);
+      }
+      target.commit();
+      logger.info("Imported " + rows + " rows from the H2 catalog");
+      return rows;
+    } catch (SQLException | RuntimeException e) {
+      target.rollback();
+      throw e;
+    } finally {
+      target.setAutoCommit(autoCommit);
+    }
+  }
+
+  private long copyTable(Connection source, Connection target, String table) throws SQLException {
+    List<String> columns = new ArrayList<>(columnsOf(target, table));
+    columns.retainAll(columnsOf(source, table));
+    if (columns.isEmpty()) {
+      // Catalogs of older versions may lack the table
+      return 0;
+    }
+    String columnList = String.join(", ", columns);
+    String parameters = String.join(", ", Collections.nCopies(columns.size(), "?"));
+
+    long rows = 0;
+    try (Statement select = source.createStatement();
+        ResultSet result =
+            select.executeQuery("SELECT " + columnList + " FROM " + table + " ORDER BY id");
+        PreparedStatement insert =
+            target.prepareStatement(
+                "INSERT INTO " + table + " (" + columnList + ") VALUES (" + parameters + ")")) {
+      while (result.next()) {
+        for (int i = 1; i <= columns.size(); i++) {
+          insert.setObject(i, result.getObject(i));
+        }
+        insert.addBatch();
+        if (++rows % BATCH_SIZE == 0) {
+          insert.executeBatch();
+        }
+      }
+      insert.executeBatch();
+    }
+    logger.info("Imported " + rows + " rows into " + table);
+    return rows;
+  }
+
+  private static boolean hasRows(Connection connection, String table) throws SQLException {
+    if (columnsOf(connection, table).isEmpty()) {
+      return false;
+    }
+    try (Statement statement = connection.createStatement();
+        ResultSet result = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+      return result.next();
+    }
+  }
+
+  // The lowercase column names of a table of the connection's schema in their declared order,
+  // empty if there is no table. Without the schema, system tables such as users in H2's
+  // information schema would match as well.
+  private static Set<String> columnsOf(Connection connection, String table) throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    String name =
+        metaData.storesUpperCaseIdentifiers()
+            ? table.toUpperCase(Locale.ROOT)
+            : table.toLowerCase(Locale.ROOT);
+    Set<String> columns = new LinkedHashSet<>();
+    try (ResultSet result = metaData.getColumns(connection.getCatalog(), connection.getSchema(), name, null)) {
+      while (result.next()) {
+        columns.add(result.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+      }
+    }
+    return columns;
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.mediaarchival.tasks;
+
+import com.example.mediaarchival.models.DirectorySizeModel;
+import com.example.mediaarchival.models.FileFingerprintModel;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.LibraryStatsModel;
+import com.example.mediaarchival.models.MediaModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import java.lang.reflect.Field;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the ID sequences of the entities past the IDs already in their tables on startup.
+ * Catalogs written by older versions drew IDs from identity columns, and catalogs imported from
+ * H2 carry their IDs over, so a new sequence would otherwise hand out IDs that are taken.
+ * Hibernate's pooled optimizer uses the IDs up to each value it reads from a sequence, so the
+ * sequence restarts a whole allocation above the largest ID. Nothing has drawn IDs from the
+ * sequences yet when this runs, so restarting them is safe.
+ */
+@Component
+@DependsOn("schemaMigrations")
+public class IdSequenceAlignment {
+
+  /**
+   * The entities whose IDs come from a sequence.
+   */
+  static final List<Class<?>> SEQUENCED_ENTITIES =
+      List.of(
+          LibraryModel.class,
+          MediaModel.class,
+          JobModel.class,
+          DirectorySizeModel.class,
+          FileFingerprintModel.class,
+          LibraryStatsModel.class);
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ObjectProvider<H2CatalogImport> catalogImport;
+
+  @Autowired
+  public IdSequenceAlignment(
+      JdbcTemplate jdbcTemplate, ObjectProvider<H2CatalogImport> catalogImport) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.catalogImport = catalogImport;
+  }
+
+  /**
+   * Imports an H2 catalog if one was requested for this start, then aligns the sequences with
+   * the tables.
+   */
+  @PostConstruct
+  public void alignOnStartup() {
+    // Imported rows keep their IDs, so they are copied before the sequences are moved
+    catalogImport.ifAvailable(H2CatalogImport::importCatalog);
+    align();
+  }
+
+  /**
+   * Restarts every entity's sequence one allocation above the largest ID of its table.
+   */
+  public void align() {
+    for (Class<?> entity : SEQUENCED_ENTITIES) {
+      SequenceGenerator generator = sequenceGeneratorOf(entity);
+      Long maxId =
+          jdbcTemplate.queryForObject(
+              "SELECT COALESCE(MAX(id), 0) FROM " + tableNameOf(entity), Long.class);
+      jdbcTemplate.execute(
+          "ALTER SEQUENCE "
+              + generator.sequenceName()
+              + " RESTART WITH "
+              + (maxId + generator.allocationSize()));
+    }
+  }
+
+  /**
+   * Gets the table of an entity as named by the naming strategy, which turns the entity name
+   * into snake case.
+   *
+   * @param entity the entity class
+   * @return the table name
+   */
+  static String tableNameOf(Class<?> entity) {
+    return entity.getSimpleName().replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+  }
+
+  private static SequenceGenerator sequenceGeneratorOf(Class<?> entity) {
+    for (Field field : entity.getDeclaredFields()) {
+      if (field.isAnnotationPresent(Id.class)) {
+        SequenceGenerator generator = field.getAnnotation(SequenceGenerator.class);
+        if (generator != null) {
+          return generator;
+        }
+      }
+    }
+    throw new IllegalStateException(entity.getSimpleName() + " has no ID sequence");
+  }
+}
@@ -0,0 +1,105 @@
+package com.example.mediaarchival.tasks;
+
+import java.util.List;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migration 1, moving the jobs of catalogs written by older versions, which kept job flags and
+ * progress on the media table, to the job table. Only restores in progress survive a restart, so
+ * they are the only jobs carried over. The legacy columns and their indexes are dropped
+ * afterwards, as the schema update never drops columns and the non-null flags would reject new
+ * media. Run by the {@link SchemaMigrations} once Hibernate has created the job table and its ID
+ * sequence. Legacy catalogs only exist in H2, whose sequence syntax the migration uses, and
+ * catalogs without the legacy columns are left alone.
+ */
+@Component
+public class LegacyJobMigration implements JavaMigration {
+
+  static final MigrationVersion VERSION = MigrationVersion.fromVersion("1");
+
+  private static final List<String> LEGACY_INDEXES =
+      List.of(
+          "idx_media_archiving_library",
+          "idx_media_recovering_library",
+          "idx_media_restoring",
+          "idx_media_download_success");
+
+  private static final List<String> LEGACY_COLUMNS =
+      List.of(
+          "is_archiving",
+          "is_tarring",
+          "upload_progress",
+          "is_recovering",
+          "is_restoring",
+          "is_restored",
+          "download_progress",
+          "download_success",
+          "is_job_cancelled");
+
+  private static final Logger logger = LoggerFactory.getLogger(LegacyJobMigration.class);
+
+  @Override
+  public MigrationVersion getVersion() {
+    return VERSION;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Move legacy jobs";
+  }
+
+  @Override
+  public Integer getChecksum() {
+    return null;
+  }
+
+  @Override
+  public boolean canExecuteInTransaction() {
+    return true;
+  }
+
+  /**
+   * Carries the restores in progress over to the job table and drops the legacy job columns, if
+   * the media table still has them.
+   *
+   * @param context the context of the migration, holding its connection
+   */
+  @Override
+  public void migrate(Context context) {
+    JdbcTemplate jdbcTemplate =
+        new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+    Integer legacyColumns =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE UPPER(TABLE_NAME) = 'MEDIA_MODEL' AND UPPER(COLUMN_NAME) = 'IS_RESTORING'",
+            Integer.class);
+    if (legacyColumns == null || legacyColumns == 0) {
+      return;
+    }
+
+    // Skips media that already have an active job, in case a previous migration was interrupted
+    int restoring =
+        jdbcTemplate.update(
+            "INSERT INTO job_model (id, media_id, type, state, active, progress,"
+                + " cancel_requested, attempts, created_at, updated_at)"
+                + " SELECT NEXT VALUE FOR job_model_seq, m.id, 'DOWNLOAD', 'RESTORING', TRUE, -1,"
+                + " FALSE, 1,"
+                + " CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM media_model m"
+                + " WHERE m.is_restoring = TRUE AND NOT EXISTS"
+                + " (SELECT 1 FROM job_model j WHERE j.media_id = m.id AND j.active = TRUE)");
+    for (String index : LEGACY_INDEXES) {
+      jdbcTemplate.execute("DROP INDEX IF EXISTS " + index);
+    }
+    for (String column : LEGACY_COLUMNS) {
+      jdbcTemplate.execute("ALTER TABLE media_model DROP COLUMN IF EXISTS " + column);
+    }
+    logger.info("Moved " + restoring + " restores in progress to the job table");
+  }
+}
@@ -0,0 +1,52 @@
+package com.example.mediaarchival.tasks;
+
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.services.LibraryStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task that recounts the statistics of every library from the catalog, correcting
+ * any drift from writes that were not counted. It first runs on startup, which also creates
+ * the statistics of libraries that predate them. Libraries being scanned or synchronized are
+ * left for the next run, as their counts are moving.
+ */
+@Component
+public class LibraryStatsReconcileTask {
+
+  private final LibraryRepository libraryRepository;
+  private final LibraryStatsService libraryStatsService;
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+
+  @Autowired
+  public LibraryStatsReconcileTask(
+      LibraryRepository libraryRepository, LibraryStatsService libraryStatsService) {
+    this.libraryRepository = libraryRepository;
+    this.libraryStatsService = libraryStatsService;
+  }
+
+  /**
+   * Reconciles the statistics of every library that is not being updated.
+   */
+  @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
+  public void reconcileStats() {
+    for (LibraryModel library : libraryRepository.findAll()) {
+      if (library.isUpdating()) {
+        continue;
+      }
+      try {
+        libraryStatsService.reconcile(library);
+      } catch (Exception e) {
+        errorLogger.error(
+            "Could not reconcile the statistics of library "
+                + library.getId()
+                + ": "
+                + e.getMessage());
+      }
+    }
+  }
+}
@@ -1,8 +1,12 @@
 package com.example.mediaarchival.tasks;
 
-import com.example.mediaarchival.controllers.MediaController;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
-import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -20,30 +24,34 @@ import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 @Component
 public class RestoreChecker {
 
-  private final MediaRepository mediaRepository;
+  private final JobRepository jobRepository;
   private final S3Client s3Client;
   private final JmsTemplate jmsTemplate;
-  private final MediaController mediaController;
+  private final JobService jobService;
+  private final LibraryMetadataCache libraryMetadataCache;
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
 
   /**
    * Creates an instance of the RestoreChecker.
    *
-   * @param mediaRepository Repository for media entities.
+   * @param jobRepository   Repository for job entities.
    * @param s3Client        The AWS S3 client for interacting with AWS S3.
    * @param jmsTemplate     JMS template for sending messages to the queue.
-   * @param mediaController Controller for managing media-related operations.
+   * @param jobService      Service moving jobs through their states.
+   * @param libraryMetadataCache Cache of the libraries, holding their buckets.
    */
   @Autowired
   public RestoreChecker(
-          MediaRepository mediaRepository,
+          JobRepository jobRepository,
           S3Client s3Client,
           JmsTemplate jmsTemplate,
-          MediaController mediaController) {
-    this.mediaRepository = mediaRepository;
+          JobService jobService,
+          LibraryMetadataCache libraryMetadataCache) {
+    this.jobRepository = jobRepository;
     this.s3Client = s3Client;
     this.jmsTemplate = jmsTemplate;
-    this.mediaController = mediaController;
+    this.jobService = jobService;
+    this.libraryMetadataCache = libraryMetadataCache;
   }
 
   /**
@@ -54,74 +62,63 @@ public class RestoreChecker {
   @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
   public void checkRestoreStatus() {
     try {
-      List<MediaModel> inProgress = mediaRepository.findByIsRestoring(true);
-      for (MediaModel media : inProgress) {
-        checkAndHandleMedia(media);
+      List<JobModel> inProgress =
+          jobRepository.findByTypeAndStateInAndActiveTrue(JobType.DOWNLOAD, List.of(JobState.RESTORING));
+      for (JobModel job : inProgress) {
+        checkAndHandleJob(job);
       }
     } catch (Exception e) {
-      errorLogger.error("Error retrieving in-progress media from the repository: " + e.getMessage());
+      errorLogger.error("Error retrieving in-progress jobs from the repository: " + e.getMessage());
     }
   }
 
-  private void checkAndHandleMedia(MediaModel media) {
+  private void checkAndHandleJob(JobModel job) {
+    MediaModel media = job.getMedia();
     try {
-      if (!mediaController.getJobCancelled(media.getId())) {
-        String bucket = media.getLibrary().getBucketName();
+      if (!jobService.isCancelRequested(job)) {
+        String bucket = libraryMetadataCache.getForMedia(media).bucketName();
         String path = media.getPath();
         HeadObjectResponse response = s3Client.headObject(
                 b -> b.bucket(bucket).key(path)
         );
 
         if (response.restore() != null && response.restore().contains("ongoing-request=\"false\"")) {
-          updateMediaAndSendDownloadRequest(media);
+          updateJobAndSendDownloadRequest(job);
         } else if (response.restore() == null){
-          updateMediaAsNotRestored(media);
+          updateJobAsNotRestored(job);
         }
       } else {
-        cancelJob(media);
+        cancelJob(job);
       }
     } catch (Exception e) {
       errorLogger.error("Error getting media data from S3" + media.getId() + ": " + e.getMessage());
     }
   }
 
-  private void updateMediaAndSendDownloadRequest(MediaModel media) {
+  private void updateJobAndSendDownloadRequest(JobModel job) {
     try {
-      mediaRepository.updateIsRestoringById(media.getId(), false);
-      mediaRepository.updateIsRestoredById(media.getId(), true);
-      jmsTemplate.convertAndSend("downloadQueue", media.getPath());
+      if (jobService.transition(job, JobState.RESTORED)) {
+        jmsTemplate.convertAndSend("downloadQueue", job.getMedia().getPath());
+      }
     } catch (Exception e) {
-      errorLogger.error("Error updating media status or sending JMS message for media ID " + media.getId() + ": " + e.getMessage());
-      updateMediaAsNotRestored(media);
-      mediaRepository.updateIsRestoredById(media.getId(), true);
+      errorLogger.error("Error updating job status or sending JMS message for media ID " + job.getMedia().getId() + ": " + e.getMessage());
+      updateJobAsNotRestored(job);
     }
   }
 
-  private void updateMediaAsNotRestored(MediaModel media) {
+  private void updateJobAsNotRestored(JobModel job) {
     try {
-      media.setRestored(false);
-      media.setRecovering(true);
-      media.setRestoring(false);
-      media.setJobCancelled(false);
-      media.setDownloadSuccess(false);
-      media.setDownloadProgress(-1);
-      mediaRepository.save(media);
+      jobService.transition(job, JobState.FAILED);
     } catch (Exception e) {
-      errorLogger.error("Error updating media as not restored for media ID " + media.getId() + ": " + e.getMessage());
+      errorLogger.error("Error updating media as not restored for media ID " + job.getMedia().getId() + ": " + e.getMessage());
     }
   }
 
-  private void cancelJob(MediaModel media) {
+  private void cancelJob(JobModel job) {
     try {
-      media.setRestored(false);
-      media.setRecovering(false);
-      media.setRestoring(false);
-      media.setJobCancelled(false);
-      media.setDownloadSuccess(null);
-      media.setDownloadProgress(-1);
-      mediaRepository.save(media);
+      jobService.transition(job, JobState.CANCELLED);
     } catch (Exception e) {
-      errorLogger.error("Error updating cancelled media for media ID " + media.getId() + ": " + e.getMessage());
+      errorLogger.error("Error updating cancelled media for media ID " + job.getMedia().getId() + ": " + e.getMessage());
     }
   }
 }
@@ -1,7 +1,6 @@
 package com.example.mediaarchival.tasks;
 
-import com.example.mediaarchival.models.LibraryModel;
-import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,13 +19,13 @@ public class S3CleanupTask {
 
   private final S3Client s3Client;
 
-  private final LibraryRepository libraryRepository;
+  private final LibraryMetadataCache libraryMetadataCache;
 
   private static final Logger logger = LoggerFactory.getLogger(S3CleanupTask.class);
 
   @Autowired
-  public S3CleanupTask(LibraryRepository libraryRepository, S3Client s3Client) {
-    this.libraryRepository = libraryRepository;
+  public S3CleanupTask(LibraryMetadataCache libraryMetadataCache, S3Client s3Client) {
+    this.libraryMetadataCache = libraryMetadataCache;
     this.s3Client = s3Client;
   }
 
@@ -36,9 +35,9 @@ public class S3CleanupTask {
    */
   @Scheduled(cron = "0 0 0 * * ?") // This cron expression means every day at midnight
   public void abortOldMultipartUploads() {
-    List<LibraryModel> libraries = libraryRepository.findAll();
-    for (LibraryModel library : libraries) {
-      String bucketName = library.getBucketName();
+    List<LibraryMetadataCache.Metadata> libraries = libraryMetadataCache.getAll();
+    for (LibraryMetadataCache.Metadata library : libraries) {
+      String bucketName = library.bucketName();
       ListMultipartUploadsRequest listRequest =
           ListMultipartUploadsRequest.builder().bucket(bucketName).build();
 
@@ -0,0 +1,47 @@
+package com.example.mediaarchival.tasks;
+
+import jakarta.annotation.PostConstruct;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the versioned migrations of the catalog on startup, after Hibernate has updated the tables
+ * from the entities and before the other startup tasks. The migrations hold the changes the
+ * schema update cannot make, such as moving data and dropping columns, and the indexes of the
+ * tables. They live in db/migration/common, in db/migration/h2 and db/migration/postgresql for
+ * changes specific to the database, and
+ * as {@link org.flywaydb.core.api.migration.JavaMigration} beans such as the
+ * {@link LegacyJobMigration}. Catalogs written before migrations were tracked are baselined at
+ * version 0, so every migration runs on them once and must tolerate changes already made.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrations {
+
+  private final Flyway flyway;
+
+  private static final Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+
+  @Autowired
+  public SchemaMigrations(Flyway flyway) {
+    this.flyway = flyway;
+  }
+
+  /**
+   * Applies the migrations the catalog has not had yet.
+   */
+  @PostConstruct
+  public void migrate() {
+    MigrateResult result = flyway.migrate();
+    if (result.migrationsExecuted > 0) {
+      logger.info(
+          "Applied " + result.migrationsExecuted + " schema migrations, the catalog is at version "
+              + result.targetSchemaVersion);
+    }
+  }
+}
@@ -1,9 +1,19 @@
 package com.example.mediaarchival.tasks;
 
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.MediaSizingService;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,58 +22,120 @@ import java.util.List;
 
 /**
  * Component that performs reset tasks on application startup.
- * This effectively removes any in progress jobs that happened
- * during an application shut down or crash. Media objects being restored
- * to S3 from glacier have their jobs re-added.
+ * This effectively fails any in progress jobs that were interrupted by
+ * an application shut down or crash. Media objects being restored
+ * to S3 from glacier keep their jobs, interrupted library scans
+ * are resumed from their checkpoints and media with pending sizes are re-queued.
+ * The schema migrations run first, moving jobs kept in the media table by older versions to the
+ * job table, and an H2 catalog being imported is copied before the jobs are reset.
  */
 @Component
+@DependsOn({"schemaMigrations", "idSequenceAlignment"})
 public class StartupResetTasks {
 
   @Autowired
   private MediaRepository mediaRepository;
 
+  @Autowired
+  private JobService jobService;
+
+  @Autowired
+  private LibraryRepository libraryRepository;
+
+  @Autowired
+  private JmsTemplate jmsTemplate;
+
+  @Autowired
+  private MediaSizingService mediaSizingService;
+
   private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
 
+  private static final Logger logger = LoggerFactory.getLogger(StartupResetTasks.class);
+
   /**
-   * Resets the archiving status for all media marked as archiving upon startup.
-   * Each media is processed independently to ensure that a failure in one does not affect the others.
+   * Fails the archive jobs that were running or queued upon startup, in one update.
    */
   @PostConstruct
   public void resetArchivingStatusOnStartup() {
-    List<MediaModel> inProgressMedia = mediaRepository.findByIsArchiving(true);
-    for (MediaModel media : inProgressMedia) {
+    try {
+      int failed =
+          jobService.transitionAll(
+              JobType.ARCHIVE,
+              List.of(JobState.QUEUED, JobState.TARRING, JobState.UPLOADING),
+              JobState.FAILED);
+      logger.info("Failed " + failed + " archive jobs interrupted by the shut down");
+    } catch (Exception e) {
+      errorLogger.error("Error failing archive jobs during startup: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Clears the finished download jobs and fails the ones that were queued or downloading on
+   * startup, unless they are currently restoring. Each is a single update.
+   */
+  @PostConstruct
+  public void resetRestorationProgressOnStartup() {
+    try {
+      jobService.transitionAll(
+          JobType.DOWNLOAD, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
+    } catch (Exception e) {
+      errorLogger.error("Error clearing download jobs during startup: " + e.getMessage());
+    }
+    try {
+      int failed =
+          jobService.transitionAll(
+              JobType.DOWNLOAD,
+              List.of(JobState.QUEUED, JobState.RESTORED, JobState.DOWNLOADING),
+              JobState.FAILED);
+      logger.info("Failed " + failed + " download jobs interrupted by the shut down");
+    } catch (Exception e) {
+      errorLogger.error("Error failing download jobs during startup: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Clears the updating flag of the libraries whose scan or sync was cut short and is not
+   * resumed, so they can be scanned or synchronized again.
+   */
+  @PostConstruct
+  public void resetUpdatingLibrariesOnStartup() {
+    try {
+      int cleared = libraryRepository.clearUpdatingWithoutCheckpoint();
+      logger.info("Cleared the updating flag of " + cleared + " libraries");
+    } catch (Exception e) {
+      errorLogger.error("Error clearing updating libraries during startup: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Re-queues the media whose size was still being computed when the application stopped.
+   */
+  @PostConstruct
+  public void resumePendingSizingOnStartup() {
+    List<MediaModel> pendingMedia = mediaRepository.findByIsSizePending(true);
+    for (MediaModel media : pendingMedia) {
       try {
-        media.setArchiving(false);
-        media.setUploadProgress(-1);
-        media.setTarring(false);
-        media.setJobCancelled(false);
-        mediaRepository.save(media);
+        mediaSizingService.submit(media, MediaSizingService.Priority.SCAN);
       } catch (Exception e) {
-        errorLogger.error("Error clearing media job during startup " + media.getId() + ": " + e.getMessage());
+        errorLogger.error("Error queueing media sizing during startup " + media.getId() + ": " + e.getMessage());
       }
     }
   }
 
   /**
-   * Resets the restoration progress for all media marked as recovering on startup
-   * unless they are currently restoring. Processed independently to handle failures per media.
+   * Re-queues the scans that were interrupted by a shut down or crash once the application
+   * is ready. Each scan resumes after the checkpoint it left on its library.
    */
-  @PostConstruct
-  public void resetRestorationProgressOnStartup() {
-    List<MediaModel> inProgressMedia = mediaRepository.findByIsRecovering(true);
-    for (MediaModel media : inProgressMedia) {
-      if (!media.isRestoring()) {
-        try {
-          media.setRestored(false);
-          media.setRecovering(false);
-          media.setRestoring(false);
-          media.setDownloadProgress(-1);
-          media.setDownloadSuccess(null);
-          media.setJobCancelled(false);
-          mediaRepository.save(media);
-        } catch (Exception e) {
-          errorLogger.error("Error clearing media job during startup " + media.getId() + ": " + e.getMessage());
-        }
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumeInterruptedScansOnStartup() {
+    List<LibraryModel> interruptedLibraries = libraryRepository.findByScanCheckpointIsNotNull();
+    for (LibraryModel library : interruptedLibraries) {
+      try {
+        library.setUpdating(true);
+        libraryRepository.save(library);
+        jmsTemplate.convertAndSend("libraryScanQueue", library.getId());
+      } catch (Exception e) {
+        errorLogger.error("Error resuming scan of library during startup " + library.getId() + ": " + e.getMessage());
       }
     }
   }
@@ -1,5 +1,7 @@
 package com.example.mediaarchival.utils;
 
+import com.example.mediaarchival.models.DirectorySizeModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,6 +10,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Utility class providing directory related operations such as creating directories and calculating directory sizes.
@@ -52,9 +60,7 @@ public class DirectoryUtils {
             if (file.isFile()) {
               size += file.length();
             } else {
-              if (isTVSeries
-                  && file.isDirectory()
-                  && file.getName().toLowerCase().contains("season")) {
+              if (isTVSeries && file.isDirectory() && isSeasonDirectory(file)) {
                 continue;
               }
               size += getDirectorySize(file, isTVSeries);
@@ -67,4 +73,229 @@ public class DirectoryUtils {
   }
     return size;
   }
+
+  /**
+   * The size and latest modification time of a directory's content.
+   *
+   * @param dir the directory
+   * @param size the size of its content in bytes
+   * @param lastModified the latest modification time of its content, in milliseconds since the
+   *     epoch
+   */
+  public record DirectorySummary(File dir, long size, long lastModified) {}
+
+  /**
+   * The media of a TV show: its metadata, which is everything outside season directories, and
+   * each of its seasons.
+   *
+   * @param metadata the show directory, summarized without its season directories
+   * @param seasons the season directories directly inside the show, in path order
+   */
+  public record TvShowSummary(DirectorySummary metadata, List<DirectorySummary> seasons) {}
+
+  /**
+   * Calculates the size of a directory on disk like {@link #getDirectorySize(File, boolean)},
+   * reusing the sizes cached for its subdirectories. Every directory in the subtree is still
+   * checked, but only directories whose modification time changed since they were cached are
+   * listed again, and the new sizes are propagated up to the requested directory. Entries of
+   * directories that no longer exist are removed from the cache.
+   *
+   * <p>A directory's modification time only changes when entries are added, removed or renamed
+   * inside it, so a file rewritten in place keeps its cached size until its directory changes.
+   * Callers that need the exact size use
+   * {@link #getDirectorySize(File, boolean, DirectorySizeRepository, boolean)} to check the files.
+   *
+   * @param dir The directory to calculate the size of.
+   * @param isTVSeries Flag indicating if the directory represents a TV series.
+   * @param sizeCache The repository holding the cached directory sizes.
+   * @return The size of the directory in bytes.
+   */
+  public static long getDirectorySize(
+      File dir, boolean isTVSeries, DirectorySizeRepository sizeCache) {
+    return getDirectorySize(dir, isTVSeries, sizeCache, false);
+  }
+
+  /**
+   * Calculates the size of a directory on disk like
+   * {@link #getDirectorySize(File, boolean, DirectorySizeRepository)}, optionally checking the
+   * size of every file, so files rewritten in place are counted at their current size. The
+   * cached sizes that turn out stale are corrected.
+   *
+   * @param dir The directory to calculate the size of.
+   * @param isTVSeries Flag indicating if the directory represents a TV series.
+   * @param sizeCache The repository holding the cached directory sizes.
+   * @param verifyFiles Whether to list every directory and check its files, even the directories
+   *     whose modification time did not change.
+   * @return The size of the directory in bytes.
+   */
+  public static long getDirectorySize(
+      File dir, boolean isTVSeries, DirectorySizeRepository sizeCache, boolean verifyFiles) {
+    if (!dir.isDirectory()) {
+      return getDirectorySize(dir, isTVSeries);
+    }
+    DirectorySizeModel result = refreshSubtree(dir, sizeCache, null, verifyFiles);
+    return isTVSeries ? result.getNonSeasonSize() : result.getTotalSize();
+  }
+
+  /**
+   * Summarizes a TV show and each of its seasons in a single walk of the show directory, using
+   * the same cache as {@link #getDirectorySize(File, boolean, DirectorySizeRepository)}. Sizes
+   * and modification times are aggregated bottom-up, so the metadata and every season come out
+   * of the one traversal, and a change anywhere in a season moves that season's modification
+   * time forward.
+   *
+   * @param show The directory of the TV show.
+   * @param sizeCache The repository holding the cached directory sizes.
+   * @return The summary of the show's metadata and seasons.
+   */
+  public static TvShowSummary summarizeTvShow(File show, DirectorySizeRepository sizeCache) {
+    Map<String, DirectorySizeModel> visited = new HashMap<>();
+    DirectorySizeModel root = refreshSubtree(show, sizeCache, visited, false);
+
+    List<DirectorySummary> seasons = new ArrayList<>();
+    for (DirectorySizeModel entry : visited.values()) {
+      File dir = new File(entry.getPath());
+      if (show.getPath().equals(entry.getParentPath()) && isSeasonDirectory(dir)) {
+        seasons.add(new DirectorySummary(dir, entry.getTotalSize(), entry.getMaxLastModified()));
+      }
+    }
+    seasons.sort(Comparator.comparing(season -> season.dir().getPath()));
+    return new TvShowSummary(
+        new DirectorySummary(show, root.getNonSeasonSize(), root.getNonSeasonLastModified()),
+        seasons);
+  }
+
+  /**
+   * Checks whether a directory holds a season of a TV series. This is the one rule that decides
+   * what belongs to a season, shared by scans, sizing and archiving.
+   *
+   * @param dir The directory to check, which is assumed to be a directory.
+   * @return true if the directory name contains "season".
+   */
+  public static boolean isSeasonDirectory(File dir) {
+    return dir.getName().toLowerCase().contains("season");
+  }
+
+  // Loads the cached entries below dir, refreshes them and writes back what changed. If the
+  // cache cannot be used the subtree is walked in full without it.
+  private static DirectorySizeModel refreshSubtree(
+      File dir,
+      DirectorySizeRepository sizeCache,
+      Map<String, DirectorySizeModel> visited,
+      boolean verifyFiles) {
+    String path = dir.getPath();
+    try {
+      Map<String, DirectorySizeModel> cached = new HashMap<>();
+      Map<String, List<DirectorySizeModel>> cachedChildren = new HashMap<>();
+      for (DirectorySizeModel entry : sizeCache.findByPathOrPathStartingWith(path, path + "/")) {
+        cached.put(entry.getPath(), entry);
+        cachedChildren.computeIfAbsent(entry.getParentPath(), k -> new ArrayList<>()).add(entry);
+      }
+
+      List<DirectorySizeModel> changed = new ArrayList<>();
+      DirectorySizeModel result =
+          refreshDirectorySize(dir, cached, cachedChildren, changed, visited, verifyFiles);
+
+      if (!changed.isEmpty()) {
+        sizeCache.saveAll(changed);
+      }
+      // Whatever was not visited belongs to directories that have been removed
+      if (!cached.isEmpty()) {
+        sizeCache.deleteAllInBatch(cached.values());
+      }
+      return result;
+    } catch (Exception e) {
+      errorLogger.error("Error getting cached directory size for " + path + "  " + e.getMessage());
+      if (visited != null) {
+        visited.clear();
+      }
+      return refreshDirectorySize(
+          dir, new HashMap<>(), new HashMap<>(), new ArrayList<>(), visited, verifyFiles);
+    }
+  }
+
+  // Visited entries are removed from cached, so what is left afterwards is stale
+  private static DirectorySizeModel refreshDirectorySize(
+      File dir,
+      Map<String, DirectorySizeModel> cached,
+      Map<String, List<DirectorySizeModel>> cachedChildren,
+      List<DirectorySizeModel> changed,
+      Map<String, DirectorySizeModel> visited,
+      boolean verifyFiles) {
+    String path = dir.getPath();
+    long lastModified = dir.lastModified();
+    DirectorySizeModel entry = cached.remove(path);
+
+    long ownSize;
+    long ownLastModified;
+    List<File> subDirs = new ArrayList<>();
+    // Entries cached before modification times were tracked have to be listed once more
+    if (!verifyFiles
+        && entry != null
+        && entry.getLastModified() == lastModified
+        && entry.getOwnLastModified() != 0) {
+      ownSize = entry.getOwnSize();
+      ownLastModified = entry.getOwnLastModified();
+      for (DirectorySizeModel child : cachedChildren.getOrDefault(path, List.of())) {
+        subDirs.add(new File(child.getPath()));
+      }
+    } else {
+      ownSize = 0;
+      ownLastModified = lastModified;
+      File[] subFiles = dir.listFiles();
+      if (subFiles != null) {
+        for (File file : subFiles) {
+          if (file.isFile()) {
+            ownSize += file.length();
+            ownLastModified = Math.max(ownLastModified, file.lastModified());
+          } else if (file.isDirectory()) {
+            subDirs.add(file);
+          }
+        }
+      }
+    }
+
+    long totalSize = ownSize;
+    long nonSeasonSize = ownSize;
+    long maxLastModified = ownLastModified;
+    long nonSeasonLastModified = ownLastModified;
+    for (File subDir : subDirs) {
+      DirectorySizeModel child =
+          refreshDirectorySize(subDir, cached, cachedChildren, changed, visited, verifyFiles);
+      totalSize += child.getTotalSize();
+      maxLastModified = Math.max(maxLastModified, child.getMaxLastModified());
+      if (!isSeasonDirectory(subDir)) {
+        nonSeasonSize += child.getNonSeasonSize();
+        nonSeasonLastModified = Math.max(nonSeasonLastModified, child.getNonSeasonLastModified());
+      }
+    }
+
+    if (entry == null) {
+      entry = new DirectorySizeModel();
+      entry.setPath(path);
+    }
+    if (entry.getId() == null
+        || entry.getLastModified() != lastModified
+        || entry.getOwnSize() != ownSize
+        || entry.getTotalSize() != totalSize
+        || entry.getNonSeasonSize() != nonSeasonSize
+        || entry.getOwnLastModified() != ownLastModified
+        || entry.getMaxLastModified() != maxLastModified
+        || entry.getNonSeasonLastModified() != nonSeasonLastModified
+        || !Objects.equals(entry.getParentPath(), dir.getParent())) {
+      entry.setParentPath(dir.getParent());
+      entry.setLastModified(lastModified);
+      entry.setOwnSize(ownSize);
+      entry.setTotalSize(totalSize);
+      entry.setNonSeasonSize(nonSeasonSize);
+      entry.setOwnLastModified(ownLastModified);
+      entry.setMaxLastModified(maxLastModified);
+      entry.setNonSeasonLastModified(nonSeasonLastModified);
+      changed.add(entry);
+    }
+    if (visited != null) {
+      visited.put(path, entry);
+    }
+    return entry;
+  }
 }
@@ -1,5 +1,7 @@
 package com.example.mediaarchival.utils;
 
+import com.example.mediaarchival.enums.ChangeDetection;
+import com.example.mediaarchival.enums.MissingMediaPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,4 +87,112 @@ public class EnvUtils {
     }
     return 0.5;
   }
+
+  /**
+   * Retrieves the policy applied to media that a library scan can no longer find on disk,
+   * or provides a default if not set.
+   *
+   * @return the missing media policy.
+   */
+  public static MissingMediaPolicy getMissingMediaPolicy() {
+    String policyValue = System.getenv("MISSING_MEDIA_POLICY");
+    if (policyValue != null) {
+      try {
+        return MissingMediaPolicy.valueOf(policyValue.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        errorLogger.error("Invalid value for MISSING_MEDIA_POLICY: " + policyValue);
+        return MissingMediaPolicy.MARK_MISSING;
+      }
+    }
+    return MissingMediaPolicy.MARK_MISSING;
+  }
+
+  /**
+   * Retrieves how library scans detect changed media from the environment,
+   * or provides a default if not set.
+   *
+   * @return the change detection mode.
+   */
+  public static ChangeDetection getChangeDetection() {
+    String modeValue = System.getenv("CHANGE_DETECTION");
+    if (modeValue != null) {
+      try {
+        return ChangeDetection.valueOf(modeValue.toUpperCase());
+      } catch (IllegalArgumentException e) {
+        errorLogger.error("Invalid value for CHANGE_DETECTION: " + modeValue);
+        return ChangeDetection.MTIME;
+      }
+    }
+    return ChangeDetection.MTIME;
+  }
+
+  /**
+   * Retrieves the maximum number of library scans that may traverse the same storage device
+   * at once from the environment, or provides a default if not set.
+   *
+   * @return the number of scan threads per device, at least 1.
+   */
+  public static int getScanThreadsPerDevice() {
+    return getPositiveInt("SCAN_THREADS_PER_DEVICE", 1);
+  }
+
+  /**
+   * Retrieves the maximum number of library scans that may run at once across all storage
+   * devices from the environment, or provides a default if not set.
+   *
+   * @return the number of concurrent scans, at least 1.
+   */
+  public static int getMaxConcurrentScans() {
+    return getPositiveInt("MAX_CONCURRENT_SCANS", 4);
+  }
+
+  /**
+   * Retrieves the number of threads computing the sizes of newly scanned media in the
+   * background from the environment, or provides a default if not set.
+   *
+   * @return the number of sizing threads, at least 1.
+   */
+  public static int getSizingThreads() {
+    return getPositiveInt("SIZING_THREADS", 2);
+  }
+
+  /**
+   * Retrieves the maximum number of key prefixes listed at once while synchronizing a library
+   * with its bucket from the environment, or provides a default if not set.
+   *
+   * @return the number of concurrent prefix listings, at least 1.
+   */
+  public static int getSyncListConcurrency() {
+    return getPositiveInt("SYNC_LIST_CONCURRENCY", 8);
+  }
+
+  /**
+   * Retrieves the H2 catalog to copy into PostgreSQL on startup from the environment, given
+   * either as the path of the database file without its extension or as a JDBC URL.
+   *
+   * @return the JDBC URL of the catalog, opened read-only for a path, or null if not set.
+   */
+  public static String getH2CatalogImport() {
+    String value = System.getenv("IMPORT_H2_CATALOG");
+    if (value == null || value.isBlank()) {
+      return null;
+    }
+    return value.startsWith("jdbc:") ? value : "jdbc:h2:file:" + value + ";ACCESS_MODE_DATA=r";
+  }
+
+  private static int getPositiveInt(String name, int defaultValue) {
+    String value = System.getenv(name);
+    if (value != null) {
+      try {
+        int parsed = Integer.parseInt(value.trim());
+        if (parsed > 0) {
+          return parsed;
+        }
+      } catch (NumberFormatException e) {
+        // Logged below
+      }
+      errorLogger.error("Invalid value for " + name + ": " + value);
+    }
+    return defaultValue;
+  }
 }
@@ -0,0 +1,180 @@
+package com.example.mediaarchival.utils;
+
+import com.example.mediaarchival.models.FileFingerprintModel;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility class for fingerprinting the content of media on disk. A file's fingerprint hashes
+ * its size together with sampled blocks: the head, the tail and evenly strided blocks in
+ * between, so a multi-GB video costs a few hundred KB of reads. Smaller files are hashed in
+ * full. A media's fingerprint combines the fingerprints of all its files with their relative
+ * paths, and file fingerprints are cached by file identity, size and modification time.
+ */
+public class FingerprintUtils {
+
+  static final int BLOCK_SIZE = 64 * 1024;
+  static final int MIDDLE_BLOCKS = 8;
+  private static final int LOOKUP_BATCH_SIZE = 1000;
+
+  private static final Logger errorLogger = LoggerFactory.getLogger("ERROR_LOGGER");
+
+  /**
+   * Fingerprints a media, which is either a single file or a directory of files.
+   *
+   * @param source the file or directory of the media
+   * @param excludeSeasons whether TV season directories are left out, as for show metadata
+   * @param fingerprintCache the repository holding cached file fingerprints
+   * @return the fingerprint as a hex string, or null if the media could not be read
+   */
+  public static String fingerprint(
+      File source, boolean excludeSeasons, FileFingerprintRepository fingerprintCache) {
+    try {
+      List<FileEntry> files = listFiles(source, excludeSeasons);
+      Map<String, FileFingerprintModel> cached = loadCached(files, fingerprintCache);
+      List<FileFingerprintModel> changed = new ArrayList<>();
+
+      MessageDigest digest = newDigest();
+      for (FileEntry file : files) {
+        FileFingerprintModel entry = cached.get(file.key());
+        if (entry == null) {
+          entry = new FileFingerprintModel();
+          entry.setFileKey(file.key());
+        }
+        if (entry.getFingerprint() == null
+            || entry.getSize() != file.size()
+            || entry.getLastModified() != file.lastModified()) {
+          entry.setSize(file.size());
+          entry.setLastModified(file.lastModified());
+          entry.setFingerprint(fingerprintFile(file.path(), file.size()));
+          changed.add(entry);
+        }
+        digest.update(file.relativePath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(entry.getFingerprint().getBytes(StandardCharsets.US_ASCII));
+      }
+      if (!changed.isEmpty()) {
+        fingerprintCache.saveAll(changed);
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (Exception e) {
+      errorLogger.error("Error fingerprinting " + source.getPath() + "  " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Fingerprints a single file from its size and sampled blocks of its content.
+   *
+   * @param file the file
+   * @param size the size of the file in bytes
+   * @return the fingerprint as a hex string
+   * @throws IOException if the file cannot be read
+   */
+  static String fingerprintFile(Path file, long size) throws IOException {
+    MessageDigest digest = newDigest();
+    digest.update(Long.toString(size).getBytes(StandardCharsets.US_ASCII));
+    byte[] block = new byte[BLOCK_SIZE];
+    try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+      long sampled = (long) BLOCK_SIZE * (MIDDLE_BLOCKS + 2);
+      if (size <= sampled) {
+        int read;
+        while ((read = in.read(block)) > 0) {
+          digest.update(block, 0, read);
+        }
+      } else {
+        // Head, strided middle blocks and tail, all block aligned to the file's ends
+        long stride = (size - BLOCK_SIZE) / (MIDDLE_BLOCKS + 1);
+        for (int i = 0; i <= MIDDLE_BLOCKS + 1; i++) {
+          long offset = i == MIDDLE_BLOCKS + 1 ? size - BLOCK_SIZE : i * stride;
+          in.seek(offset);
+          in.readFully(block);
+          digest.update(block);
+        }
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static List<FileEntry> listFiles(File source, boolean excludeSeasons)
+      throws IOException {
+    Path root = source.toPath();
+    List<FileEntry> files = new ArrayList<>();
+    if (Files.isRegularFile(root)) {
+      files.add(entryOf(root, "", Files.readAttributes(root, BasicFileAttributes.class)));
+      return files;
+    }
+    try (var paths = Files.walk(root)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        if (excludeSeasons && isInSeason(root, path)) {
+          continue;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.isRegularFile()) {
+          files.add(entryOf(path, root.relativize(path).toString(), attributes));
+        }
+      }
+    }
+    files.sort(Comparator.comparing(FileEntry::relativePath));
+    return files;
+  }
+
+  private static boolean isInSeason(Path root, Path path) {
+    for (Path dir = path.getParent(); dir != null && !dir.equals(root); dir = dir.getParent()) {
+      if (DirectoryUtils.isSeasonDirectory(dir.toFile())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // File systems without file keys fall back to the absolute path as the file's identity
+  private static FileEntry entryOf(Path path, String relativePath, BasicFileAttributes attributes) {
+    Object fileKey = attributes.fileKey();
+    String key = fileKey != null ? fileKey.toString() : "path:" + path.toAbsolutePath();
+    return new FileEntry(
+        path, relativePath, key, attributes.size(), attributes.lastModifiedTime().toMillis());
+  }
+
+  private static Map<String, FileFingerprintModel> loadCached(
+      List<FileEntry> files, FileFingerprintRepository fingerprintCache) {
+    Map<String, FileFingerprintModel> cached = new HashMap<>();
+    for (int i = 0; i < files.size(); i += LOOKUP_BATCH_SIZE) {
+      List<String> keys =
+          files.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, files.size())).stream()
+              .map(FileEntry::key)
+              .toList();
+      for (FileFingerprintModel entry : fingerprintCache.findByFileKeyIn(keys)) {
+        cached.put(entry.getFileKey(), entry);
+      }
+    }
+    return cached;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private record FileEntry(
+      Path path, String relativePath, String key, long size, long lastModified) {}
+}
@@ -0,0 +1,242 @@
+package com.example.mediaarchival.utils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Utility class for joining two key-sorted streams in a single pass. Both sides are consumed one
+ * element at a time, so memory use does not depend on the number of elements being joined.
+ */
+public class MergeJoinUtils {
+
+  /**
+   * Orders paths by Unicode code point, which matches the byte order of their UTF-8 encoding.
+   * This is the order S3 uses when listing keys.
+   */
+  public static final Comparator<String> CODE_POINT_ORDER = MergeJoinUtils::compareCodePoints;
+
+  /**
+   * Receives the outcome of a merge join for each distinct key.
+   *
+   * @param <L> the type of the left-hand elements
+   * @param <R> the type of the right-hand elements
+   */
+  public interface JoinHandler<L, R> {
+
+    /**
+     * Called for a key that only exists on the left-hand side.
+     *
+     * @param left the left-hand element
+     */
+    void onLeftOnly(L left);
+
+    /**
+     * Called for a key that only exists on the right-hand side.
+     *
+     * @param right the right-hand element
+     */
+    void onRightOnly(R right);
+
+    /**
+     * Called for a key that exists on both sides.
+     *
+     * @param left the left-hand element
+     * @param right the right-hand element
+     */
+    void onBoth(L left, R right);
+  }
+
+  /**
+   * Merge joins two iterators that are both sorted by key according to {@code order}. Every
+   * element is checked against its predecessor before it is handed to the handler, so a side that
+   * is not sorted the way the caller expects is rejected before any decision is made about the
+   * out-of-order element.
+   *
+   * @param left the left-hand elements, sorted by key
+   * @param leftKey extracts the key of a left-hand element
+   * @param right the right-hand elements, sorted by key
+   * @param rightKey extracts the key of a right-hand element
+   * @param order the order both sides are sorted by
+   * @param handler receives the join result for every key
+   * @param <L> the type of the left-hand elements
+   * @param <R> the type of the right-hand elements
+   * @throws IllegalStateException if either side is not sorted or contains duplicate keys
+   */
+  public static <L, R> void join(
+      Iterator<L> left,
+      Function<L, String> leftKey,
+      Iterator<R> right,
+      Function<R, String> rightKey,
+      Comparator<String> order,
+      JoinHandler<L, R> handler) {
+    SortedSide<L> leftSide = new SortedSide<>(left, leftKey, order, "left");
+    SortedSide<R> rightSide = new SortedSide<>(right, rightKey, order, "right");
+
+    while (leftSide.current != null && rightSide.current != null) {
+      int comparison = order.compare(leftSide.key, rightSide.key);
+      if (comparison < 0) {
+        handler.onLeftOnly(leftSide.current);
+        leftSide.advance();
+      } else if (comparison > 0) {
+        handler.onRightOnly(rightSide.current);
+        rightSide.advance();
+      } else {
+        handler.onBoth(leftSide.current, rightSide.current);
+        leftSide.advance();
+        rightSide.advance();
+      }
+    }
+    while (leftSide.current != null) {
+      handler.onLeftOnly(leftSide.current);
+      leftSide.advance();
+    }
+    while (rightSide.current != null) {
+      handler.onRightOnly(rightSide.current);
+      rightSide.advance();
+    }
+  }
+
+  /**
+   * Merge joins two iterators sorted by key in either code point order or UTF-16 code unit order,
+   * such as a bucket listing and a catalog read from a database comparing strings by
+   * {@link String#compareTo}. The two orders only disagree on keys holding supplementary
+   * characters, so those keys are held back on both sides and joined once the rest of both sides
+   * has been, which keeps memory use down to the number of such keys.
+   *
+   * @param left the left-hand elements, sorted by key in either order
+   * @param leftKey extracts the key of a left-hand element
+   * @param right the right-hand elements, sorted by key in either order
+   * @param rightKey extracts the key of a right-hand element
+   * @param handler receives the join result for every key
+   * @param <L> the type of the left-hand elements
+   * @param <R> the type of the right-hand elements
+   * @throws IllegalStateException if either side is not sorted or contains duplicate keys
+   */
+  public static <L, R> void joinAcrossStringOrders(
+      Iterator<L> left,
+      Function<L, String> leftKey,
+      Iterator<R> right,
+      Function<R, String> rightKey,
+      JoinHandler<L, R> handler) {
+    HeldBack<L> heldBackLeft = new HeldBack<>(left, leftKey, "left");
+    HeldBack<R> heldBackRight = new HeldBack<>(right, rightKey, "right");
+    join(heldBackLeft, leftKey, heldBackRight, rightKey, CODE_POINT_ORDER, handler);
+    join(
+        heldBackLeft.held.values().iterator(),
+        leftKey,
+        heldBackRight.held.values().iterator(),
+        rightKey,
+        CODE_POINT_ORDER,
+        handler);
+  }
+
+  /**
+   * Compares two strings by Unicode code point rather than by UTF-16 code unit.
+   *
+   * @param a the first string
+   * @param b the second string
+   * @return a negative number, zero, or a positive number as {@code a} sorts before, equal to, or
+   *     after {@code b}
+   */
+  public static int compareCodePoints(String a, String b) {
+    int i = 0;
+    int j = 0;
+    while (i < a.length() && j < b.length()) {
+      int cpA = a.codePointAt(i);
+      int cpB = b.codePointAt(j);
+      if (cpA != cpB) {
+        return Integer.compare(cpA, cpB);
+      }
+      i += Character.charCount(cpA);
+      j += Character.charCount(cpB);
+    }
+    return Integer.compare(a.length() - i, b.length() - j);
+  }
+
+  private static boolean hasSupplementaryCharacters(String key) {
+    for (int i = 0; i < key.length(); i++) {
+      if (Character.isSurrogate(key.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Passes on the elements whose keys compare the same in code point and UTF-16 order, and keeps
+  // the others sorted by key until the first pass of the join is done
+  private static class HeldBack<T> implements Iterator<T> {
+    private final Iterator<T> iterator;
+    private final Function<T, String> keyFunction;
+    private final String name;
+    private final TreeMap<String, T> held = new TreeMap<>(CODE_POINT_ORDER);
+    private T next;
+
+    HeldBack(Iterator<T> iterator, Function<T, String> keyFunction, String name) {
+      this.iterator = iterator;
+      this.keyFunction = keyFunction;
+      this.name = name;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && iterator.hasNext()) {
+        T candidate = iterator.next();
+        String key = keyFunction.apply(candidate);
+        if (!hasSupplementaryCharacters(key)) {
+          next = candidate;
+        } else if (held.put(key, candidate) != null) {
+          throw new IllegalStateException(
+              "The " + name + " side of the merge join has a duplicate key: '" + key + "'");
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T current = next;
+      next = null;
+      return current;
+    }
+  }
+
+  private static class SortedSide<T> {
+    private final Iterator<T> iterator;
+    private final Function<T, String> keyFunction;
+    private final Comparator<String> order;
+    private final String name;
+    private T current;
+    private String key;
+
+    SortedSide(
+        Iterator<T> iterator, Function<T, String> keyFunction, Comparator<String> order, String name) {
+      this.iterator = iterator;
+      this.keyFunction = keyFunction;
+      this.order = order;
+      this.name = name;
+      advance();
+    }
+
+    void advance() {
+      if (!iterator.hasNext()) {
+        current = null;
+        return;
+      }
+      T next = iterator.next();
+      String nextKey = keyFunction.apply(next);
+      if (key != null && order.compare(key, nextKey) >= 0) {
+        throw new IllegalStateException(
+            "The " + name + " side of the merge join is not sorted: '" + nextKey
+                + "' came after '" + key + "'");
+      }
+      current = next;
+      key = nextKey;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package com.example.mediaarchival.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A library path template compiled into a matcher over path segments. Templates are split on
+ * "/" and each segment is one of:
+ *
+ * <ul>
+ *   <li>a literal directory name, such as {@code movies};
+ *   <li>{@code ${name}}, which matches any single directory name;
+ *   <li>{@code ${name:regex}}, which matches a single name that the regular expression matches
+ *       in full, such as {@code ${year:\d{4}}};
+ *   <li>a glob, which is a name containing {@code *} or {@code ?}, such as {@code Season *};
+ *   <li>{@code **}, which matches any number of directories, including none.
+ * </ul>
+ *
+ * <p>Every entry of a directory the template matches is media. Matching tracks the set of
+ * segments a directory could be at, so a walk driven by the template only lists directories
+ * that can still lead to media.
+ * Compiled templates are immutable and cached, so each distinct template is parsed once.
+ */
+public class PathTemplate {
+
+  private static final Map<String, PathTemplate> compiled = new ConcurrentHashMap<>();
+
+  private final String template;
+  private final String root;
+  private final int rootDepth;
+  private final List<Segment> segments;
+
+  private PathTemplate(String template, String root, int rootDepth, List<Segment> segments) {
+    this.template = template;
+    this.root = root;
+    this.rootDepth = rootDepth;
+    this.segments = segments;
+  }
+
+  /**
+   * Compiles a template, reusing the result of an earlier compilation of the same template.
+   *
+   * @param template the library path template
+   * @return the compiled template
+   * @throws IllegalArgumentException if the template is empty or has an invalid segment
+   */
+  public static PathTemplate compile(String template) {
+    if (template == null || template.isBlank()) {
+      throw new IllegalArgumentException("Library path is empty");
+    }
+    return compiled.computeIfAbsent(template, PathTemplate::parse);
+  }
+
+  /**
+   * Gets the directory every match starts from, which is the literal prefix of the template.
+   *
+   * @return the root directory path
+   */
+  public String getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets the template this matcher was compiled from.
+   *
+   * @return the template
+   */
+  public String getTemplate() {
+    return template;
+  }
+
+  /**
+   * Gets the states of the root directory, the starting point of a walk.
+   *
+   * @return the segments the children of the root directory are matched against
+   */
+  public BitSet rootStates() {
+    BitSet states = new BitSet();
+    states.set(rootDepth);
+    return closure(states);
+  }
+
+  /**
+   * Matches a child of a directory against the segments the directory could be followed by.
+   *
+   * @param states the states of the parent directory
+   * @param name the name of the child
+   * @return the states of the child, empty if the child cannot be part of a match
+   */
+  public BitSet advance(BitSet states, String name) {
+    BitSet next = new BitSet();
+    for (int i = states.nextSetBit(0); i >= 0 && i < segments.size(); i = states.nextSetBit(i + 1)) {
+      Segment segment = segments.get(i);
+      if (segment.isAnyDepth()) {
+        next.set(i);
+      } else if (segment.matches(name)) {
+        next.set(i + 1);
+      }
+    }
+    return closure(next);
+  }
+
+  /**
+   * Checks whether a child with the given states is media.
+   *
+   * @param states the states of the child
+   * @return true if the child is an entry of a directory the template matches
+   */
+  public boolean isMedia(BitSet states) {
+    return states.get(segments.size());
+  }
+
+  /**
+   * Returns the single literal name a directory's children must have, so the walk can follow it
+   * without listing the directory.
+   *
+   * @param states the states of the directory
+   * @return the literal name, or null if the directory has to be listed
+   */
+  public String literalChild(BitSet states) {
+    if (states.cardinality() != 1) {
+      return null;
+    }
+    int i = states.nextSetBit(0);
+    if (i >= segments.size() - 1) {
+      return null;
+    }
+    return segments.get(i).literal;
+  }
+
+  // A "**" may match no directory at all, so its state also implies the segment after it
+  private BitSet closure(BitSet states) {
+    for (int i = states.nextSetBit(0); i >= 0 && i < segments.size(); i = states.nextSetBit(i + 1)) {
+      if (segments.get(i).isAnyDepth()) {
+        states.set(i + 1);
+      }
+    }
+    return states;
+  }
+
+  private static PathTemplate parse(String template) {
+    List<String> parts = new ArrayList<>();
+    for (String part : template.split("/")) {
+      if (!part.isEmpty()) {
+        parts.add(part);
+      }
+    }
+    if (!parts.isEmpty() && parts.get(parts.size() - 1).equals("**")) {
+      throw new IllegalArgumentException("Library path cannot end with **: " + template);
+    }
+
+    // The media are the entries of the matched directories, which is one more segment
+    List<Segment> segments = new ArrayList<>();
+    for (String part : parts) {
+      segments.add(Segment.parse(part, template));
+    }
+    segments.add(new Segment(null, null, false));
+
+    // The literal prefix is the root of the walk
+    int rootDepth = 0;
+    StringBuilder root = new StringBuilder(template.startsWith("/") ? "/" : "");
+    while (rootDepth < segments.size() - 1 && segments.get(rootDepth).literal != null) {
+      if (rootDepth > 0) {
+        root.append('/');
+      }
+      root.append(segments.get(rootDepth).literal);
+      rootDepth++;
+    }
+    String rootPath = root.length() == 0 ? "." : root.toString();
+    return new PathTemplate(template, rootPath, rootDepth, List.copyOf(segments));
+  }
+
+  private static class Segment {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^:}]*)(?::(.*))?}");
+
+    private final String literal;
+    private final Pattern pattern;
+    private final boolean anyDepth;
+
+    private Segment(String literal, Pattern pattern, boolean anyDepth) {
+      this.literal = literal;
+      this.pattern = pattern;
+      this.anyDepth = anyDepth;
+    }
+
+    static Segment parse(String part, String template) {
+      if (part.equals("**")) {
+        return new Segment(null, null, true);
+      }
+      var placeholder = PLACEHOLDER.matcher(part);
+      if (placeholder.matches()) {
+        String regex = placeholder.group(2);
+        if (regex == null) {
+          return new Segment(null, null, false);
+        }
+        try {
+          return new Segment(null, Pattern.compile(regex), false);
+        } catch (PatternSyntaxException e) {
+          throw new IllegalArgumentException(
+              "Invalid pattern in library path " + template + ": " + e.getDescription());
+        }
+      }
+      if (part.indexOf('*') >= 0 || part.indexOf('?') >= 0) {
+        return new Segment(null, globToPattern(part), false);
+      }
+      return new Segment(part, null, false);
+    }
+
+    boolean isAnyDepth() {
+      return anyDepth;
+    }
+
+    boolean matches(String name) {
+      if (literal != null) {
+        return literal.equals(name);
+      }
+      return pattern == null || pattern.matcher(name).matches();
+    }
+
+    private static Pattern globToPattern(String glob) {
+      StringBuilder regex = new StringBuilder();
+      StringBuilder literalRun = new StringBuilder();
+      for (char c : glob.toCharArray()) {
+        if (c == '*' || c == '?') {
+          if (literalRun.length() > 0) {
+            regex.append(Pattern.quote(literalRun.toString()));
+            literalRun.setLength(0);
+          }
+          regex.append(c == '*' ? ".*" : ".");
+        } else {
+          literalRun.append(c);
+        }
+      }
+      if (literalRun.length() > 0) {
+        regex.append(Pattern.quote(literalRun.toString()));
+      }
+      return Pattern.compile(regex.toString());
+    }
+  }
+}
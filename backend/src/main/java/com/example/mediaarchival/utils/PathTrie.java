@@ -0,0 +1,319 @@
+package com.example.mediaarchival.utils;
+
+import java.util.Arrays;
+
+/**
+ * A compact map from paths to {@code long} values, stored as a radix trie over interned path
+ * segments. Nodes live in parallel primitive arrays, each edge is labelled with a run of segment
+ * IDs so chains of single-child directories take one node, and children are found through one
+ * open addressing table keyed by (parent node, first segment). Paths that share a library prefix
+ * therefore store that prefix once. Not thread safe.
+ */
+public class PathTrie {
+
+  /**
+   * The value returned for paths that are not in the trie.
+   */
+  public static final long NO_VALUE = Long.MIN_VALUE;
+
+  private static final long EMPTY_KEY = -1L;
+
+  private final SegmentDictionary segments;
+
+  // Node arrays, node 0 is the root and has an empty label
+  private int[] labelStart = new int[64];
+  private int[] labelLength = new int[64];
+  private long[] values = new long[64];
+  private int nodeCount;
+
+  // Segment IDs of all edge labels
+  private int[] labels = new int[256];
+  private int labelCount;
+
+  // Child table from (parent << 32 | first segment) to child node, kept at most 3/4 full
+  private long[] childKeys = newKeys(64);
+  private int[] childNodes = new int[64];
+  private int childCount;
+
+  private int size;
+
+  /**
+   * Creates an empty trie with its own segment dictionary.
+   */
+  public PathTrie() {
+    this(new SegmentDictionary());
+  }
+
+  /**
+   * Creates an empty trie that interns its segments in a shared dictionary.
+   *
+   * @param segments the dictionary to intern segments in
+   */
+  public PathTrie(SegmentDictionary segments) {
+    this.segments = segments;
+    newNode(0, 0);
+  }
+
+  /**
+   * Associates a value with a path, replacing any previous value.
+   *
+   * @param path the path
+   * @param value the value, which must not be {@link #NO_VALUE}
+   * @return the previous value, or {@link #NO_VALUE} if there was none
+   */
+  public long put(String path, long value) {
+    if (value == NO_VALUE) {
+      throw new IllegalArgumentException("NO_VALUE cannot be stored");
+    }
+    int[] ids = split(path, true);
+    int node = 0;
+    int i = 0;
+    while (i < ids.length) {
+      int child = findChild(node, ids[i]);
+      if (child < 0) {
+        child = newNode(appendLabel(ids, i), ids.length - i);
+        putChild(node, ids[i], child);
+        node = child;
+        break;
+      }
+      int matched = matchLabel(child, ids, i);
+      if (matched < labelLength[child]) {
+        child = splitNode(node, child, matched);
+      }
+      node = child;
+      i += matched;
+    }
+    long previous = values[node];
+    values[node] = value;
+    if (previous == NO_VALUE) {
+      size++;
+    }
+    return previous;
+  }
+
+  /**
+   * Looks up the value of a path.
+   *
+   * @param path the path
+   * @return the value, or {@link #NO_VALUE} if the path is not in the trie
+   */
+  public long get(String path) {
+    int[] ids = split(path, false);
+    if (ids == null) {
+      return NO_VALUE;
+    }
+    int node = 0;
+    int i = 0;
+    while (i < ids.length) {
+      int child = findChild(node, ids[i]);
+      if (child < 0) {
+        return NO_VALUE;
+      }
+      int matched = matchLabel(child, ids, i);
+      if (matched < labelLength[child]) {
+        return NO_VALUE;
+      }
+      node = child;
+      i += matched;
+    }
+    return values[node];
+  }
+
+  /**
+   * Checks whether a path is in the trie.
+   *
+   * @param path the path
+   * @return true if a value is associated with the path
+   */
+  public boolean contains(String path) {
+    return get(path) != NO_VALUE;
+  }
+
+  /**
+   * Removes a path. The nodes of the path are kept so re-adding it is cheap; a trie with heavy
+   * churn should be rebuilt from scratch now and then.
+   *
+   * @param path the path
+   * @return the removed value, or {@link #NO_VALUE} if the path was not in the trie
+   */
+  public long remove(String path) {
+    int[] ids = split(path, false);
+    if (ids == null) {
+      return NO_VALUE;
+    }
+    int node = 0;
+    int i = 0;
+    while (i < ids.length) {
+      int child = findChild(node, ids[i]);
+      if (child < 0 || matchLabel(child, ids, i) < labelLength[child]) {
+        return NO_VALUE;
+      }
+      node = child;
+      i += labelLength[child];
+    }
+    long previous = values[node];
+    if (previous != NO_VALUE) {
+      values[node] = NO_VALUE;
+      size--;
+    }
+    return previous;
+  }
+
+  /**
+   * Gets the number of paths in the trie.
+   *
+   * @return the number of paths with a value
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of nodes in the trie, including the root.
+   *
+   * @return the number of nodes
+   */
+  public int nodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * Estimates the heap used by the trie's arrays and its segment dictionary.
+   *
+   * @return the approximate size in bytes
+   */
+  public long estimatedBytes() {
+    return 16L * labelStart.length
+        + 4L * labels.length
+        + 12L * childKeys.length
+        + segments.estimatedBytes();
+  }
+
+  // Splits on '/' keeping empty segments, so every string maps to exactly one segment sequence.
+  // Returns null when a segment is unknown and interning is not allowed.
+  private int[] split(String path, boolean intern) {
+    int count = 1;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == '/') {
+        count++;
+      }
+    }
+    int[] ids = new int[count];
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      String segment = path.substring(start, end);
+      ids[i] = intern ? segments.intern(segment) : segments.find(segment);
+      if (ids[i] < 0) {
+        return null;
+      }
+      start = end + 1;
+    }
+    return ids;
+  }
+
+  private int matchLabel(int node, int[] ids, int from) {
+    int start = labelStart[node];
+    int length = Math.min(labelLength[node], ids.length - from);
+    int matched = 0;
+    while (matched < length && labels[start + matched] == ids[from + matched]) {
+      matched++;
+    }
+    return matched;
+  }
+
+  // Splits a child's label after its first {@code at} segments, returning the new middle node
+  private int splitNode(int parent, int child, int at) {
+    int middle = newNode(labelStart[child], at);
+    int firstSegment = labels[labelStart[child]];
+    labelStart[child] += at;
+    labelLength[child] -= at;
+    replaceChild(parent, firstSegment, middle);
+    putChild(middle, labels[labelStart[child]], child);
+    return middle;
+  }
+
+  private int newNode(int start, int length) {
+    if (nodeCount == labelStart.length) {
+      int capacity = nodeCount * 2;
+      labelStart = Arrays.copyOf(labelStart, capacity);
+      labelLength = Arrays.copyOf(labelLength, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    labelStart[nodeCount] = start;
+    labelLength[nodeCount] = length;
+    values[nodeCount] = NO_VALUE;
+    return nodeCount++;
+  }
+
+  private int appendLabel(int[] ids, int from) {
+    int length = ids.length - from;
+    if (labelCount + length > labels.length) {
+      labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelCount + length));
+    }
+    System.arraycopy(ids, from, labels, labelCount, length);
+    int start = labelCount;
+    labelCount += length;
+    return start;
+  }
+
+  private int findChild(int parent, int segment) {
+    long key = childKey(parent, segment);
+    int mask = childKeys.length - 1;
+    int slot = slotOf(key, mask);
+    while (childKeys[slot] != EMPTY_KEY) {
+      if (childKeys[slot] == key) {
+        return childNodes[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void putChild(int parent, int segment, int child) {
+    insertChild(childKey(parent, segment), child);
+    if (++childCount * 4 > childKeys.length * 3) {
+      long[] oldKeys = childKeys;
+      int[] oldNodes = childNodes;
+      childKeys = newKeys(oldKeys.length * 2);
+      childNodes = new int[childKeys.length];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != EMPTY_KEY) {
+          insertChild(oldKeys[i], oldNodes[i]);
+        }
+      }
+    }
+  }
+
+  private void replaceChild(int parent, int segment, int child) {
+    insertChild(childKey(parent, segment), child);
+  }
+
+  private void insertChild(long key, int child) {
+    int mask = childKeys.length - 1;
+    int slot = slotOf(key, mask);
+    while (childKeys[slot] != EMPTY_KEY && childKeys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    childKeys[slot] = key;
+    childNodes[slot] = child;
+  }
+
+  private static long childKey(int parent, int segment) {
+    return ((long) parent << 32) | (segment & 0xFFFFFFFFL);
+  }
+
+  private static int slotOf(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static long[] newKeys(int size) {
+    long[] keys = new long[size];
+    Arrays.fill(keys, EMPTY_KEY);
+    return keys;
+  }
+}
@@ -0,0 +1,190 @@
+package com.example.mediaarchival.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utility class for reading S3 Inventory reports. An inventory configuration delivers a folder
+ * per report, named after its date, holding a manifest.json that lists the gzipped CSV files of
+ * the report. The readers work on streams, so reports are parsed row by row whether they come
+ * from S3 or from local files.
+ */
+public class S3InventoryUtils {
+
+  /**
+   * The name of the manifest file in every report folder.
+   */
+  public static final String MANIFEST_FILE = "manifest.json";
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * The manifest of one inventory report.
+   *
+   * @param sourceBucket the bucket the report describes
+   * @param fileFormat the format of the report files, such as CSV
+   * @param columns the columns of the report files, in order
+   * @param files the keys of the report files in the destination bucket
+   */
+  public record Manifest(
+      String sourceBucket, String fileFormat, List<String> columns, List<String> files) {}
+
+  /**
+   * An object of a bucket, as reported by an inventory or returned by a listing.
+   *
+   * @param key the key of the object
+   * @param size the size of the object in bytes, or null if not known
+   * @param lastModified when the object was last written
+   * @param eTag the ETag of the object, or null if not known
+   * @param storageClass the storage class of the object, or null if not known
+   */
+  public record InventoryEntry(
+      String key, Long size, Instant lastModified, String eTag, String storageClass) {}
+
+  /**
+   * Orders the folders of an inventory configuration from the newest report to the oldest.
+   * Report folders are named after their UTC date, so their names sort chronologically.
+   * Folders that are not reports, such as the hive folder, are left out.
+   *
+   * @param folders the common prefixes found below the inventory location
+   * @return the keys of the report manifests, newest first
+   */
+  public static List<String> manifestKeysNewestFirst(Collection<String> folders) {
+    List<String> manifests = new ArrayList<>();
+    for (String folder : folders) {
+      String name = folder.endsWith("/") ? folder.substring(0, folder.length() - 1) : folder;
+      name = name.substring(name.lastIndexOf('/') + 1);
+      if (!name.isEmpty() && Character.isDigit(name.charAt(0))) {
+        manifests.add(folder + (folder.endsWith("/") ? "" : "/") + MANIFEST_FILE);
+      }
+    }
+    manifests.sort(Comparator.reverseOrder());
+    return manifests;
+  }
+
+  /**
+   * Reads the manifest of an inventory report.
+   *
+   * @param in the manifest.json content
+   * @return the manifest
+   * @throws IOException if the manifest cannot be read or lacks its schema or files
+   */
+  public static Manifest readManifest(InputStream in) throws IOException {
+    JsonNode root = objectMapper.readTree(in);
+    JsonNode schema = root.get("fileSchema");
+    JsonNode files = root.get("files");
+    if (schema == null || files == null || !files.isArray()) {
+      throw new IOException("Inventory manifest has no file schema or files");
+    }
+
+    List<String> columns = new ArrayList<>();
+    for (String column : schema.asText().split(",")) {
+      columns.add(column.trim());
+    }
+    List<String> fileKeys = new ArrayList<>();
+    for (JsonNode file : files) {
+      fileKeys.add(file.get("key").asText());
+    }
+    return new Manifest(
+        root.path("sourceBucket").asText(null),
+        root.path("fileFormat").asText("CSV"),
+        columns,
+        fileKeys);
+  }
+
+  /**
+   * Streams the rows of a gzipped CSV inventory file. Delete markers and noncurrent versions,
+   * reported by inventories that include versions, are skipped.
+   *
+   * @param in the gzipped CSV content
+   * @param columns the columns of the file, as listed in the manifest
+   * @param consumer receives the entry of every current object
+   * @throws IOException if the file cannot be read or a row does not match the columns
+   */
+  public static void readCsv(InputStream in, List<String> columns, Consumer<InventoryEntry> consumer)
+      throws IOException {
+    int keyColumn = columns.indexOf("Key");
+    int sizeColumn = columns.indexOf("Size");
+    int lastModifiedColumn = columns.indexOf("LastModifiedDate");
+    int eTagColumn = columns.indexOf("ETag");
+    int storageClassColumn = columns.indexOf("StorageClass");
+    int isLatestColumn = columns.indexOf("IsLatest");
+    int isDeleteMarkerColumn = columns.indexOf("IsDeleteMarker");
+    if (keyColumn < 0 || lastModifiedColumn < 0) {
+      throw new IOException("Inventory has no Key or LastModifiedDate column");
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new GZIPInputStream(in, 64 * 1024), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        List<String> fields = parseCsvLine(line);
+        if (fields.size() < columns.size()) {
+          throw new IOException("Inventory row does not match its columns: " + line);
+        }
+        if (isLatestColumn >= 0 && "false".equals(fields.get(isLatestColumn))
+            || isDeleteMarkerColumn >= 0 && "true".equals(fields.get(isDeleteMarkerColumn))) {
+          continue;
+        }
+        consumer.accept(
+            new InventoryEntry(
+                // Inventory keys are URL encoded
+                URLDecoder.decode(fields.get(keyColumn), StandardCharsets.UTF_8),
+                sizeColumn < 0 || fields.get(sizeColumn).isEmpty()
+                    ? null
+                    : Long.parseLong(fields.get(sizeColumn)),
+                Instant.parse(fields.get(lastModifiedColumn)),
+                eTagColumn < 0 || fields.get(eTagColumn).isEmpty() ? null : fields.get(eTagColumn),
+                storageClassColumn < 0 || fields.get(storageClassColumn).isEmpty()
+                    ? null
+                    : fields.get(storageClassColumn)));
+      }
+    }
+  }
+
+  // Fields are quoted, with embedded quotes doubled
+  static List<String> parseCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
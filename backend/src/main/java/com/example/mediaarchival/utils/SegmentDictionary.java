@@ -0,0 +1,147 @@
+package com.example.mediaarchival.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns path segments as small integer IDs. Every distinct segment is stored once as UTF-8 in
+ * a single byte pool, so a library that repeats the same directory names across millions of
+ * paths keeps one copy of each name instead of one {@link String} per path. Not thread safe.
+ */
+public class SegmentDictionary {
+
+  private static final int EMPTY = -1;
+
+  private byte[] pool = new byte[4096];
+  private int poolSize;
+  private int[] offsets = new int[257];
+  private int count;
+
+  // Open addressing table of segment IDs, sized to a power of two and kept at most half full
+  private int[] table = newTable(256);
+  private int[] tableHashes = new int[256];
+
+  /**
+   * Returns the ID of a segment, adding it to the dictionary if it is not present yet.
+   *
+   * @param segment the segment to intern
+   * @return the ID of the segment
+   */
+  public int intern(String segment) {
+    byte[] bytes = segment.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(bytes);
+    int slot = findSlot(bytes, hash);
+    if (table[slot] != EMPTY) {
+      return table[slot];
+    }
+    int id = append(bytes);
+    table[slot] = id;
+    tableHashes[slot] = hash;
+    if (count * 2 > table.length) {
+      resize();
+    }
+    return id;
+  }
+
+  /**
+   * Looks up the ID of a segment without adding it.
+   *
+   * @param segment the segment to look up
+   * @return the ID of the segment, or -1 if it was never interned
+   */
+  public int find(String segment) {
+    byte[] bytes = segment.getBytes(StandardCharsets.UTF_8);
+    return table[findSlot(bytes, hash(bytes))];
+  }
+
+  /**
+   * Returns the segment with the given ID.
+   *
+   * @param id an ID returned by {@link #intern(String)}
+   * @return the segment
+   */
+  public String get(int id) {
+    if (id < 0 || id >= count) {
+      throw new IndexOutOfBoundsException("Unknown segment id: " + id);
+    }
+    return new String(pool, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the number of distinct segments.
+   *
+   * @return the number of segments interned
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Estimates the heap used by the dictionary's arrays.
+   *
+   * @return the approximate size in bytes
+   */
+  public long estimatedBytes() {
+    return pool.length + 4L * offsets.length + 8L * table.length;
+  }
+
+  private int append(byte[] bytes) {
+    if (poolSize + bytes.length > pool.length) {
+      pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + bytes.length));
+    }
+    System.arraycopy(bytes, 0, pool, poolSize, bytes.length);
+    poolSize += bytes.length;
+    if (count + 2 > offsets.length) {
+      offsets = Arrays.copyOf(offsets, offsets.length * 2);
+    }
+    offsets[count + 1] = poolSize;
+    return count++;
+  }
+
+  private int findSlot(byte[] bytes, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != EMPTY) {
+      if (tableHashes[slot] == hash && matches(table[slot], bytes)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean matches(int id, byte[] bytes) {
+    int start = offsets[id];
+    return offsets[id + 1] - start == bytes.length
+        && Arrays.equals(pool, start, start + bytes.length, bytes, 0, bytes.length);
+  }
+
+  private void resize() {
+    int[] oldTable = table;
+    int[] oldHashes = tableHashes;
+    table = newTable(oldTable.length * 2);
+    tableHashes = new int[table.length];
+    int mask = table.length - 1;
+    for (int i = 0; i < oldTable.length; i++) {
+      if (oldTable[i] != EMPTY) {
+        int slot = oldHashes[i] & mask;
+        while (table[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = oldTable[i];
+        tableHashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  private static int[] newTable(int size) {
+    int[] newTable = new int[size];
+    Arrays.fill(newTable, EMPTY);
+    return newTable;
+  }
+
+  private static int hash(byte[] bytes) {
+    int hash = Arrays.hashCode(bytes);
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -2,7 +2,6 @@ package com.example.mediaarchival.utils;
 
 import com.example.mediaarchival.enums.MediaCategory;
 import com.example.mediaarchival.models.MediaModel;
-import com.example.mediaarchival.repositories.MediaRepository;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -28,16 +27,24 @@ public class TarUtils {
    * Creates a TAR archive from the media provided.
    *
    * @param media the media to be archived
-   * @param mediaRepository the media repository used to update the archiving status
    * @return the created TAR file
    * @throws RuntimeException if an I/O error occurs
    */
-  public static File createTarArchive(MediaModel media, MediaRepository mediaRepository) {
+  public static File createTarArchive(MediaModel media) {
+    return createTarArchive(media, media.getLibrary().getCategory() == MediaCategory.TV);
+  }
+
+  /**
+   * Creates a TAR archive from the media provided, whose library category is already known.
+   *
+   * @param media the media to be archived
+   * @param isTvSeries whether the media is a TV series, archived from the directory of the series
+   * @return the created TAR file
+   * @throws RuntimeException if an I/O error occurs
+   */
+  public static File createTarArchive(MediaModel media, boolean isTvSeries) {
     File tempFile = null;
     try {
-      mediaRepository.updateIsTarringById(media.getId(), true);
-      boolean isTvSeries = media.getLibrary().getCategory() == MediaCategory.TV;
-
       String sourceString = isTvSeries ? media.getPath().replace("/metadata", "") : media.getPath();
 
       tempFile = File.createTempFile("temp", ".tar", new File(tempDirectory));
@@ -61,8 +68,6 @@ public class TarUtils {
       }
       throw new RuntimeException(
           "Error creating TAR archive", e);
-    } finally {
-      mediaRepository.updateIsTarringById(media.getId(), false);
     }
   }
 
@@ -122,7 +127,8 @@ public class TarUtils {
       File[] children = file.listFiles();
       if (children != null) {
         for (File child : children) {
-          boolean isSeason = child.getName().toLowerCase().contains("season");
+          // Only season directories belong to the season media, files are part of the metadata
+          boolean isSeason = child.isDirectory() && DirectoryUtils.isSeasonDirectory(child);
           if (!(isSeason && excludeSeasons)) {
             addFileToTar(tarOutputStream, child, entryName + "/", excludeSeasons);
           }
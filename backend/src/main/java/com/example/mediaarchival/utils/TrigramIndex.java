@@ -0,0 +1,248 @@
+package com.example.mediaarchival.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An inverted index from the trigrams of short texts, such as media names, to the IDs of the
+ * texts that contain them. Texts are lowercased, and every trigram keeps a sorted posting list of
+ * IDs, so the texts that may contain a search term are found by intersecting the posting lists
+ * of the term's trigrams, starting with the shortest. Candidates contain every trigram of the
+ * term but not necessarily the term itself, so matches still have to be verified. Not thread
+ * safe.
+ */
+public class TrigramIndex {
+
+  /**
+   * The number of characters of every indexed gram. Shorter terms cannot be looked up.
+   */
+  public static final int GRAM_LENGTH = 3;
+
+  private static final long EMPTY_KEY = -1L;
+
+  // Open addressing table from the three characters of a trigram packed into a long to its
+  // posting list, kept at most 3/4 full
+  private long[] gramKeys = newKeys(1024);
+  private Postings[] gramPostings = new Postings[1024];
+  private int gramCount;
+
+  /**
+   * Indexes a text under an ID. Adding the same text under the same ID again has no effect.
+   *
+   * @param id the ID of the text
+   * @param text the text
+   */
+  public void add(int id, String text) {
+    for (long gram : grams(text)) {
+      int slot = slotOf(gram);
+      if (gramKeys[slot] == EMPTY_KEY) {
+        gramKeys[slot] = gram;
+        gramPostings[slot] = new Postings();
+        gramCount++;
+      }
+      gramPostings[slot].add(id);
+      if (gramCount * 4 > gramKeys.length * 3) {
+        grow();
+      }
+    }
+  }
+
+  /**
+   * Removes texts from the index, reading each posting list once however many texts share it.
+   *
+   * @param textsById the texts to remove, by the IDs they were added under
+   */
+  public void removeAll(Map<Integer, String> textsById) {
+    Map<Long, List<Integer>> idsByGram = new HashMap<>();
+    for (Map.Entry<Integer, String> text : textsById.entrySet()) {
+      for (long gram : grams(text.getValue())) {
+        idsByGram.computeIfAbsent(gram, key -> new ArrayList<>()).add(text.getKey());
+      }
+    }
+    // Emptied posting lists are kept, so the table never needs deletions
+    for (Map.Entry<Long, List<Integer>> gram : idsByGram.entrySet()) {
+      Postings list = find(gram.getKey());
+      if (list != null) {
+        list.removeAll(gram.getValue().stream().mapToInt(Integer::intValue).sorted().toArray());
+      }
+    }
+  }
+
+  /**
+   * Finds the IDs of the texts that may contain a term.
+   *
+   * @param term the term, matched regardless of case
+   * @param limit the largest number of candidates worth returning
+   * @return the candidate IDs in ascending order, or null if the term is shorter than
+   *     {@link #GRAM_LENGTH} or has more than {@code limit} candidates
+   */
+  public int[] candidates(String term, int limit) {
+    long[] grams = grams(term);
+    if (grams.length == 0) {
+      return null;
+    }
+    List<Postings> lists = new ArrayList<>(grams.length);
+    for (long gram : grams) {
+      Postings list = find(gram);
+      if (list == null || list.size == 0) {
+        return new int[0];
+      }
+      lists.add(list);
+    }
+    lists.sort(Comparator.comparingInt(list -> list.size));
+
+    Postings shortest = lists.get(0);
+    int[] result = new int[shortest.size];
+    int count = 0;
+    for (int i = 0; i < shortest.size; i++) {
+      int id = shortest.ids[i];
+      boolean inAll = true;
+      for (int j = 1; j < lists.size() && inAll; j++) {
+        inAll = lists.get(j).contains(id);
+      }
+      if (inAll) {
+        if (count == limit) {
+          return null;
+        }
+        result[count++] = id;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Gets the number of distinct trigrams indexed so far.
+   *
+   * @return the number of trigrams
+   */
+  public int gramCount() {
+    return gramCount;
+  }
+
+  /**
+   * Estimates the memory held by the index.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimatedBytes() {
+    long bytes = 12L * gramKeys.length;
+    for (Postings list : gramPostings) {
+      if (list != null) {
+        // List object and array header
+        bytes += 40 + 4L * list.ids.length;
+      }
+    }
+    return bytes;
+  }
+
+  private Postings find(long gram) {
+    int slot = slotOf(gram);
+    return gramKeys[slot] == EMPTY_KEY ? null : gramPostings[slot];
+  }
+
+  // The slot holding the gram, or the empty slot where it belongs
+  private int slotOf(long gram) {
+    int mask = gramKeys.length - 1;
+    int slot = Long.hashCode(gram * 0x9E3779B97F4A7C15L) & mask;
+    while (gramKeys[slot] != EMPTY_KEY && gramKeys[slot] != gram) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldKeys = gramKeys;
+    Postings[] oldPostings = gramPostings;
+    gramKeys = newKeys(oldKeys.length * 2);
+    gramPostings = new Postings[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY_KEY) {
+        int slot = slotOf(oldKeys[i]);
+        gramKeys[slot] = oldKeys[i];
+        gramPostings[slot] = oldPostings[i];
+      }
+    }
+  }
+
+  private static long[] newKeys(int capacity) {
+    long[] keys = new long[capacity];
+    Arrays.fill(keys, EMPTY_KEY);
+    return keys;
+  }
+
+  // The distinct trigrams of a text, lowercased
+  private static long[] grams(String text) {
+    if (text == null || text.length() < GRAM_LENGTH) {
+      return new long[0];
+    }
+    String lower = text.toLowerCase(Locale.ROOT);
+    long[] grams = new long[lower.length() - GRAM_LENGTH + 1];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] =
+          (long) lower.charAt(i) << 32 | (long) lower.charAt(i + 1) << 16 | lower.charAt(i + 2);
+    }
+    Arrays.sort(grams);
+    int distinct = 0;
+    for (int i = 0; i < grams.length; i++) {
+      if (i == 0 || grams[i] != grams[i - 1]) {
+        grams[distinct++] = grams[i];
+      }
+    }
+    return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+  }
+
+  // A sorted list of IDs, appended to in place since new media get ascending IDs
+  private static final class Postings {
+    private int[] ids = new int[4];
+    private int size;
+
+    void add(int id) {
+      if (size > 0 && ids[size - 1] >= id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+          return;
+        }
+        insert(-index - 1, id);
+      } else {
+        insert(size, id);
+      }
+    }
+
+    boolean contains(int id) {
+      return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    // Removes the given sorted IDs in one pass
+    void removeAll(int[] removed) {
+      int kept = 0;
+      int next = 0;
+      for (int i = 0; i < size; i++) {
+        while (next < removed.length && removed[next] < ids[i]) {
+          next++;
+        }
+        if (next < removed.length && removed[next] == ids[i]) {
+          continue;
+        }
+        ids[kept++] = ids[i];
+      }
+      size = kept;
+      if (ids.length > 16 && size < ids.length / 4) {
+        ids = Arrays.copyOf(ids, Math.max(size * 2, 4));
+      }
+    }
+
+    private void insert(int index, int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+      }
+      System.arraycopy(ids, index, ids, index + 1, size - index);
+      ids[index] = id;
+      size++;
+    }
+  }
+}
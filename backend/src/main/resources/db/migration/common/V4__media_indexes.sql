@@ -0,0 +1,4 @@
+-- Media are read by library with their archive status for bulk library actions, and by library
+-- in path order by scans and syncs. Catalogs indexed by the schema update already have these
+CREATE INDEX IF NOT EXISTS idx_media_library_status ON media_model (library_id, archived_status);
+CREATE INDEX IF NOT EXISTS idx_media_library_path ON media_model (library_id, path);
@@ -0,0 +1,5 @@
+-- Jobs are read by media, and the active ones by type and state. Catalogs indexed by the schema
+-- update already have these
+CREATE INDEX IF NOT EXISTS idx_job_media_active ON job_model (media_id, active);
+CREATE INDEX IF NOT EXISTS idx_job_active_type ON job_model (active, type);
+CREATE INDEX IF NOT EXISTS idx_job_type_state ON job_model (type, state);
@@ -0,0 +1,4 @@
+-- Scans and syncs walk a library's media in path order alongside a disk walk or a bucket
+-- listing, which the language aware collations PostgreSQL databases usually default to do not
+-- follow. The C collation compares paths by their bytes, and rebuilds the path indexes with it.
+ALTER TABLE media_model ALTER COLUMN path TYPE varchar(255) COLLATE "C";
@@ -0,0 +1,7 @@
+-- Jobs are read by media, and the active ones by type and state. Active jobs are a handful among
+-- the job history, so a partial index of them replaces the indexes by type the schema update
+-- created on the whole table
+CREATE INDEX IF NOT EXISTS idx_job_media_active ON job_model (media_id, active);
+DROP INDEX IF EXISTS idx_job_active_type;
+DROP INDEX IF EXISTS idx_job_type_state;
+CREATE INDEX idx_job_active_type_state ON job_model (type, state) WHERE active;
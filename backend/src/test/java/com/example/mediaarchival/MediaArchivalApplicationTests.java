@@ -9,14 +9,39 @@ import com.example.mediaarchival.converters.StringToMediaTypeConverterTest;
 import com.example.mediaarchival.deserializers.ArchivedStatusDeserializerTest;
 import com.example.mediaarchival.deserializers.MediaCategoryDeserializerTest;
 import com.example.mediaarchival.filters.JwtValidationFilterTest;
+import com.example.mediaarchival.filters.MediaCursorTest;
+import com.example.mediaarchival.repositories.MediaRepositoryTest;
+import com.example.mediaarchival.services.MediaCountCacheTest;
+import com.example.mediaarchival.services.MediaNameIndexTest;
+import com.example.mediaarchival.services.MediaPathIndexTest;
+import com.example.mediaarchival.services.LibrarySyncServiceTest;
+import com.example.mediaarchival.services.MediaSizingServiceTest;
+import com.example.mediaarchival.services.SyncReportStoreTest;
+import com.example.mediaarchival.services.TransferProgressBufferTest;
+import com.example.mediaarchival.services.JobServiceTest;
+import com.example.mediaarchival.services.LibraryMetadataCacheTest;
+import com.example.mediaarchival.services.LibraryStatsServiceTest;
+import com.example.mediaarchival.tasks.H2CatalogImportTest;
+import com.example.mediaarchival.tasks.IdSequenceAlignmentTest;
+import com.example.mediaarchival.tasks.SchemaMigrationsTest;
+import com.example.mediaarchival.services.ScanProgressTest;
+import com.example.mediaarchival.services.ScanSchedulerTest;
 import com.example.mediaarchival.tasks.S3CleanupTaskTest;
 import com.example.mediaarchival.tasks.StartupResetTasksTest;
+import com.example.mediaarchival.utils.S3InventoryUtilsTest;
 import com.example.mediaarchival.utils.TarUtilsTest;
 import com.example.mediaarchival.utils.TokenUtilsTest;
 import com.example.mediaarchival.tasks.RestoreCheckerTest;
 import com.example.mediaarchival.utils.DirectoryUtilsTest;
+import com.example.mediaarchival.utils.MergeJoinUtilsTest;
+import com.example.mediaarchival.utils.PathTrieTest;
+import com.example.mediaarchival.utils.TrigramIndexTest;
+import com.example.mediaarchival.utils.PathTemplateTest;
+import com.example.mediaarchival.utils.FingerprintUtilsTest;
 import com.example.mediaarchival.consumers.LibraryUpdateConsumerTest;
 import com.example.mediaarchival.consumers.RestoreConsumerTest;
+import com.example.mediaarchival.consumers.MediaScanDiffTest;
+import com.example.mediaarchival.consumers.PrefixListingTest;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -63,6 +88,10 @@ class MediaArchivalApplicationTests {
   @Nested
   @TestInstance(TestInstance.Lifecycle.PER_CLASS)
   class TarUtilsTests extends TarUtilsTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class S3InventoryUtilsTests extends S3InventoryUtilsTest {}
   @Nested
   @TestInstance(TestInstance.Lifecycle.PER_CLASS)
   class MediaObjectTransferListenerTests extends MediaObjectTransferListenerTest {}
@@ -83,6 +112,10 @@ class MediaArchivalApplicationTests {
   @TestInstance(TestInstance.Lifecycle.PER_CLASS)
   class DirectoryUtilsTests extends DirectoryUtilsTest {}
 
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_CLASS)
+  class MergeJoinUtilsTests extends MergeJoinUtilsTest {}
+
   @Nested
   @TestInstance(TestInstance.Lifecycle.PER_METHOD)
   class LibraryUpdateConsumerTests extends LibraryUpdateConsumerTest {}
@@ -91,6 +124,98 @@ class MediaArchivalApplicationTests {
   @TestInstance(TestInstance.Lifecycle.PER_METHOD)
   class RestoreConsumerTests extends RestoreConsumerTest {}
 
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class ScanSchedulerTests extends ScanSchedulerTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class ScanProgressTests extends ScanProgressTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class PathTrieTests extends PathTrieTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaPathIndexTests extends MediaPathIndexTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class TrigramIndexTests extends TrigramIndexTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaCursorTests extends MediaCursorTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaCountCacheTests extends MediaCountCacheTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class TransferProgressBufferTests extends TransferProgressBufferTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class JobServiceTests extends JobServiceTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class LibraryStatsServiceTests extends LibraryStatsServiceTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class LibraryMetadataCacheTests extends LibraryMetadataCacheTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class IdSequenceAlignmentTests extends IdSequenceAlignmentTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class SchemaMigrationsTests extends SchemaMigrationsTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class H2CatalogImportTests extends H2CatalogImportTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaNameIndexTests extends MediaNameIndexTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class PathTemplateTests extends PathTemplateTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class FingerprintUtilsTests extends FingerprintUtilsTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaScanDiffTests extends MediaScanDiffTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class PrefixListingTests extends PrefixListingTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaSizingServiceTests extends MediaSizingServiceTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class LibrarySyncServiceTests extends LibrarySyncServiceTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class SyncReportStoreTests extends SyncReportStoreTest {}
+
+  @Nested
+  @TestInstance(TestInstance.Lifecycle.PER_METHOD)
+  class MediaRepositoryTests extends MediaRepositoryTest {}
+
   @Test
   void contextLoads() {}
 }
@@ -3,33 +3,78 @@ package com.example.mediaarchival.consumers;
 import com.example.mediaarchival.controllers.LibraryController;
 import com.example.mediaarchival.enums.ArchivedStatus;
 import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.enums.ScanState;
+import com.example.mediaarchival.enums.SyncOutcome;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
 import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.CatalogPathOrder;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.LibrarySyncService;
+import com.example.mediaarchival.services.LibrarySyncService.AppliedEntry;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import com.example.mediaarchival.services.ScanProgress;
+import com.example.mediaarchival.services.ScanProgressTracker;
+import com.example.mediaarchival.services.ScanScheduler;
+import com.example.mediaarchival.services.SyncReportStore;
+import com.example.mediaarchival.utils.MergeJoinUtils;
+import com.example.mediaarchival.utils.S3InventoryUtils.InventoryEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -42,14 +87,54 @@ public class LibraryUpdateConsumerTest {
 
     @Mock private MediaRepository mediaRepository;
 
+    @Mock private DirectorySizeRepository directorySizeRepository;
+
+    @Mock private FileFingerprintRepository fileFingerprintRepository;
+
+    @Mock private ScanScheduler scanScheduler;
+
+    @Mock private MediaSizingService mediaSizingService;
+
+    @Spy private ScanProgressTracker scanProgressTracker = new ScanProgressTracker(new SimpleMeterRegistry());
+
+    @Mock private MediaPathIndex mediaPathIndex;
+
+    @Mock private MediaNameIndex mediaNameIndex;
+
+    @Mock private LibrarySyncService librarySyncService;
+
+    @Spy private SyncReportStore syncReportStore;
+
+    @TempDir
+    Path tempDir;
+
     @Mock private S3Client s3Client;
 
+    @Mock private S3AsyncClient s3AsyncClient;
+
+    @Mock private LibraryStatsService libraryStatsService;
+
+    @Spy private CatalogPathOrder catalogPathOrder = new CatalogPathOrder(false);
+
     @InjectMocks
     private LibraryUpdateConsumer libraryUpdateConsumer;
 
     @BeforeEach
     public void setUp() {
+        syncReportStore = new SyncReportStore(tempDir);
         MockitoAnnotations.initMocks(this);
+        // Run scheduled scans inline so each test observes the finished scan
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        }).when(scanScheduler).submit(any(), any(), any());
+        // Writes go through to the repository, as the statistics service does
+        when(libraryStatsService.saveAll(anyList()))
+                .thenAnswer(invocation -> mediaRepository.saveAll(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(libraryStatsService).track(anyList(), any(Runnable.class));
     }
 
     @AfterEach
@@ -66,24 +151,203 @@ public class LibraryUpdateConsumerTest {
         library.setCategory(MediaCategory.OTHER);
         library.setPath("testVolume/music/${artist}/");
         library.setId(libraryId);
+        library.setUpdating(true);
         when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        mockCatalog(libraryId, new ArrayList<>());
 
         List<String> expectedMediaObjectPaths = new ArrayList<>();
         expectedMediaObjectPaths.add("testVolume/music/Carly Rae Jepsen/The Loveliest Time");
         expectedMediaObjectPaths.add(
                 "testVolume/music/Chapell Roan/The Rise and Fall of a Midwest Princess");
 
-        // Mock the behavior of mediaRepository without hitting the database
-        when(mediaRepository.save(any(MediaModel.class))).thenReturn(null); // Adjust this as needed
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        List<MediaModel> saved = savedMedia();
+        assertThat(saved).extracting(MediaModel::getPath).containsExactlyElementsOf(expectedMediaObjectPaths);
+        assertThat(saved).allMatch(media -> media.getArchivedStatus() == ArchivedStatus.NOT_ARCHIVED);
+        verify(mediaRepository, never()).markMissingByIdIn(anyList());
+        verify(scanScheduler, times(1)).submit(eq(libraryId), eq(library.getPath()), any());
+        assertThat(library.isUpdating()).isFalse();
+        ScanProgress progress = scanProgressTracker.getProgress(libraryId).orElseThrow();
+        assertThat(progress.getState()).isEqualTo(ScanState.COMPLETED);
+        assertThat(progress.getMediaCreated()).isEqualTo(2);
+        assertThat(progress.getDirectoriesVisited()).isEqualTo(3);
+        assertThat(library.getLastScanDirectories()).isEqualTo(3);
+    }
+
+    @Test
+    public void testScanLibraryWithPatternPath() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath("testVolume/**/${show:Derry.*}");
+        library.setId(libraryId);
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        mockCatalog(libraryId, new ArrayList<>());
 
         // Act
         libraryUpdateConsumer.scanLibrary(1L);
 
         // Assert
-        verify(mediaRepository, times(2)).save(any(MediaModel.class));
-        for (String expectedPath : expectedMediaObjectPaths) {
-            verify(mediaRepository).save(argThat(media -> media.getPath().equals(expectedPath)));
-        }
+        assertThat(savedMedia()).extracting(MediaModel::getPath).containsExactly(
+                "testVolume/tv/Derry Girls/Season 01",
+                "testVolume/tv/Derry Girls/Season 02",
+                "testVolume/tv/Derry Girls/Season 03",
+                "testVolume/tv/Derry Girls/metadata.txt");
+    }
+
+    @Test
+    public void testScanLibraryResumesAfterCheckpoint() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath("testVolume/music/${artist}/");
+        library.setId(libraryId);
+        library.setScanCheckpoint("testVolume/music/Chapell Roan/Early Demos");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        mockCatalog(libraryId, new ArrayList<>());
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        assertThat(savedMedia()).extracting(MediaModel::getPath).containsExactly(
+                "testVolume/music/Chapell Roan/The Rise and Fall of a Midwest Princess");
+        verify(mediaRepository).findByLibraryIdAndPathGreaterThanOrderByLibraryIdAscPathAsc(
+                eq(libraryId), eq("testVolume/music/Chapell Roan/Early Demos"), any(Pageable.class));
+        // The artist scanned before the checkpoint is not listed again
+        assertThat(scanProgressTracker.getProgress(libraryId).orElseThrow().getDirectoriesVisited()).isEqualTo(2);
+        assertThat(library.getScanCheckpoint()).isNull();
+        verify(libraryRepository).save(library);
+    }
+
+    @Test
+    public void testScanLibraryResumedAgainstAnEmptyRootKeepsCatalog() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        Path root = Files.createDirectories(tempDir.resolve("unmounted"));
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath(root + "/${artist}/");
+        library.setScanCheckpoint(root + "/Carly Rae Jepsen/The Loveliest Time");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+
+        MediaModel existingMedia = new MediaModel();
+        existingMedia.setId(1L);
+        existingMedia.setPath(root + "/Chapell Roan/The Rise and Fall of a Midwest Princess");
+        mockCatalog(libraryId, List.of(existingMedia));
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        verify(mediaRepository, never()).markMissingByIdIn(anyList());
+        verify(mediaRepository, never()).deleteAllByIdInBatch(anyList());
+        assertThat(library.getScanCheckpoint()).isNull();
+    }
+
+    @Test
+    public void testScanLibraryResumedAfterTheLastMediaOnDiskMarksRemovedMediaAsMissing() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        Path root = tempDir.resolve("music");
+        Files.createDirectories(root.resolve("Carly Rae Jepsen/The Loveliest Time"));
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath(root + "/${artist}/");
+        library.setScanCheckpoint(root + "/Carly Rae Jepsen/The Loveliest Time");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+
+        MediaModel deletedMedia = new MediaModel();
+        deletedMedia.setId(7L);
+        deletedMedia.setPath(root + "/Chapell Roan/The Rise and Fall of a Midwest Princess");
+        deletedMedia.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        mockCatalog(libraryId, List.of(deletedMedia));
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        verify(mediaRepository).markMissingByIdIn(List.of(7L));
+    }
+
+    @Test
+    public void testScanLibraryWithSupplementaryCharactersInPathsInCodePointOrder() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        Path root = tempDir.resolve("music");
+        String emojiPath = root + "/Artist A/" + new String(Character.toChars(0x1F3B5)) + " Mix";
+        String fullwidthPath = root + "/Artist A/\uFF08Live\uFF09";
+        Files.createDirectories(Path.of(emojiPath));
+        Files.createDirectories(Path.of(fullwidthPath));
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath(root + "/${artist}/");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        useCodePointOrder();
+        mockCatalog(libraryId, List.of(
+                catalogMedia(1L, emojiPath, ArchivedStatus.ARCHIVED),
+                catalogMedia(2L, fullwidthPath, ArchivedStatus.ARCHIVED)), MergeJoinUtils.CODE_POINT_ORDER);
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        verify(mediaRepository, never()).markMissingByIdIn(anyList());
+        ScanProgress progress = scanProgressTracker.getProgress(libraryId).orElseThrow();
+        assertThat(progress.getState()).isEqualTo(ScanState.COMPLETED);
+        assertThat(progress.getMediaCreated()).isZero();
+    }
+
+    @Test
+    public void testScanLibraryResumedInCodePointOrderKeepsMediaWithSupplementaryCharacters() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        Path root = tempDir.resolve("music");
+        String emojiPath = root + "/Artist A/" + new String(Character.toChars(0x1F3B5)) + " Mix";
+        String fullwidthPath = root + "/Artist A/\uFF08Live\uFF09";
+        Files.createDirectories(Path.of(emojiPath));
+        Files.createDirectories(Path.of(fullwidthPath));
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath(root + "/${artist}/");
+        // By code point the emoji comes after the checkpoint, by UTF-16 code unit before it
+        library.setScanCheckpoint(fullwidthPath);
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        useCodePointOrder();
+        mockCatalog(libraryId, List.of(
+                catalogMedia(1L, emojiPath, ArchivedStatus.ARCHIVED),
+                catalogMedia(2L, fullwidthPath, ArchivedStatus.ARCHIVED)), MergeJoinUtils.CODE_POINT_ORDER);
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        verify(mediaRepository, never()).markMissingByIdIn(anyList());
+        ScanProgress progress = scanProgressTracker.getProgress(libraryId).orElseThrow();
+        assertThat(progress.getState()).isEqualTo(ScanState.COMPLETED);
+        assertThat(progress.getMediaCreated()).isZero();
+        assertThat(library.getScanCheckpoint()).isNull();
+    }
+
+    // The catalog sorts paths by code point, as PostgreSQL does
+    private void useCodePointOrder() {
+        doAnswer(invocation -> MergeJoinUtils.compareCodePoints(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(catalogPathOrder).compare(anyString(), anyString());
     }
 
     @Test
@@ -97,43 +361,88 @@ public class LibraryUpdateConsumerTest {
         library.setPath("testVolume/music/${artist}/");
         when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
 
-        // Mock the behavior of mediaRepository without hitting the database
-        when(mediaRepository.save(any(MediaModel.class))).thenReturn(null); // Adjust this as needed
-
         // Mock existing media objects
         MediaModel existingMedia1 = new MediaModel();
         existingMedia1.setId(1L);
         existingMedia1.setPath("testVolume/music/Carly Rae Jepsen/The Loveliest Time");
         existingMedia1.setArchivedStatus(ArchivedStatus.ARCHIVED);
         existingMedia1.setDateArchived(Instant.MIN); // Use the earliest possible date
-        when(mediaRepository.findByPath(eq(existingMedia1.getPath()))).thenReturn(existingMedia1);
 
         MediaModel existingMedia2 = new MediaModel();
         existingMedia2.setId(2L);
         existingMedia2.setPath("testVolume/music/Chapell Roan/The Rise and Fall of a Midwest Princess");
         existingMedia2.setArchivedStatus(ArchivedStatus.ARCHIVED);
         existingMedia2.setDateArchived(Instant.now());
-        when(mediaRepository.findByPath(eq(existingMedia2.getPath()))).thenReturn(existingMedia2);
+        mockCatalog(libraryId, Arrays.asList(existingMedia1, existingMedia2));
 
         // Act
         libraryUpdateConsumer.scanLibrary(1L);
 
         // Assert
-        verify(mediaRepository, times(2)).save(any(MediaModel.class));
-
-        // Verify that mediaRepository.save() was called with the expected paths and archived statuses
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia1.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE));
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia2.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.ARCHIVED));
+        List<MediaModel> saved = savedMedia();
+        assertThat(saved).hasSize(2);
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia1.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE);
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia2.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.ARCHIVED);
+    }
+
+    @Test
+    public void testScanLibraryMarksRemovedMediaAsMissing() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath("testVolume/music/${artist}/");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+
+        MediaModel deletedMedia = new MediaModel();
+        deletedMedia.setId(7L);
+        deletedMedia.setPath("testVolume/music/Carly Rae Jepsen/Dedicated");
+        deletedMedia.setArchivedStatus(ArchivedStatus.ARCHIVED);
+
+        MediaModel archivingMedia = new MediaModel();
+        archivingMedia.setId(8L);
+        archivingMedia.setPath("testVolume/music/Zedd/Clarity");
+        mockCatalog(libraryId, Arrays.asList(deletedMedia, archivingMedia));
+        when(mediaRepository.findIdsWithActiveJobByIdIn(anyCollection())).thenReturn(List.of(8L));
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        assertThat(savedMedia()).hasSize(2);
+        verify(mediaRepository, times(1)).markMissingByIdIn(List.of(7L));
+        verify(mediaRepository, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    @Test
+    public void testScanLibraryWithoutMediaOnDiskKeepsCatalog() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setId(libraryId);
+        library.setName("Test Library");
+        library.setCategory(MediaCategory.OTHER);
+        library.setPath("testVolume/music/${artist}/Unknown Folder");
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+
+        MediaModel existingMedia = new MediaModel();
+        existingMedia.setId(1L);
+        existingMedia.setPath("testVolume/music/Carly Rae Jepsen/Unknown Folder/Album");
+        mockCatalog(libraryId, List.of(existingMedia));
+
+        // Act
+        libraryUpdateConsumer.scanLibrary(1L);
+
+        // Assert
+        verify(mediaRepository, never()).saveAll(anyList());
+        verify(mediaRepository, never()).markMissingByIdIn(anyList());
+        verify(mediaRepository, never()).deleteAllByIdInBatch(anyList());
     }
 
     @Test
@@ -146,30 +455,25 @@ public class LibraryUpdateConsumerTest {
         library.setPath("testVolume/tv/");
         library.setId(libraryId);
         when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        mockCatalog(libraryId, new ArrayList<>());
 
         List<String> expectedMediaObjectPaths = new ArrayList<>();
-        expectedMediaObjectPaths.add("testVolume/tv/Derry Girls/metadata");
         expectedMediaObjectPaths.add("testVolume/tv/Derry Girls/Season 01");
         expectedMediaObjectPaths.add("testVolume/tv/Derry Girls/Season 02");
         expectedMediaObjectPaths.add("testVolume/tv/Derry Girls/Season 03");
-        expectedMediaObjectPaths.add("testVolume/tv/The Owl House/metadata");
+        expectedMediaObjectPaths.add("testVolume/tv/Derry Girls/metadata");
         expectedMediaObjectPaths.add("testVolume/tv/The Owl House/Season 1");
         expectedMediaObjectPaths.add("testVolume/tv/The Owl House/Season 2");
         expectedMediaObjectPaths.add("testVolume/tv/The Owl House/Season 3");
-
-        // Mock the behavior of mediaRepository without hitting the database
-        when(mediaRepository.save(any(MediaModel.class))).thenReturn(null); // Adjust this as needed
+        expectedMediaObjectPaths.add("testVolume/tv/The Owl House/metadata");
 
         // Act
         libraryUpdateConsumer.scanLibrary(1L);
 
         // Assert
-        verify(mediaRepository, times(8)).save(any(MediaModel.class));
-
-        // Verify that mediaRepository.save() was called with the expected paths
-        for (String expectedPath : expectedMediaObjectPaths) {
-            verify(mediaRepository).save(argThat(media -> media.getPath().equals(expectedPath)));
-        }
+        assertThat(savedMedia())
+                .extracting(MediaModel::getPath)
+                .containsExactlyElementsOf(expectedMediaObjectPaths);
     }
 
     @Test
@@ -183,68 +487,51 @@ public class LibraryUpdateConsumerTest {
         library.setId(libraryId);
         when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
 
-        // Mock the behavior of mediaRepository without hitting the database
-        when(mediaRepository.save(any(MediaModel.class))).thenReturn(null); // Adjust this as needed
-
         // Mock existing media objects
         MediaModel existingMedia1 = new MediaModel();
         existingMedia1.setId(1L);
         existingMedia1.setPath("testVolume/tv/Derry Girls/metadata");
         existingMedia1.setArchivedStatus(ArchivedStatus.ARCHIVED);
         existingMedia1.setDateArchived(Instant.now());
-        when(mediaRepository.findByPath(eq(existingMedia1.getPath()))).thenReturn(existingMedia1);
 
         MediaModel existingMedia2 = new MediaModel();
         existingMedia2.setId(2L);
         existingMedia2.setPath("testVolume/tv/Derry Girls/Season 01");
         existingMedia2.setArchivedStatus(ArchivedStatus.ARCHIVED);
         existingMedia2.setDateArchived(Instant.now());
-        when(mediaRepository.findByPath(eq(existingMedia2.getPath()))).thenReturn(existingMedia2);
 
         MediaModel existingMedia3 = new MediaModel();
         existingMedia3.setId(3L);
         existingMedia3.setPath("testVolume/tv/Derry Girls/Season 02");
         existingMedia3.setArchivedStatus(ArchivedStatus.ARCHIVED);
         existingMedia3.setDateArchived(Instant.MIN); // Use the earliest possible date
-        when(mediaRepository.findByPath(eq(existingMedia3.getPath()))).thenReturn(existingMedia3);
 
         MediaModel existingMedia4 = new MediaModel();
         existingMedia4.setId(4L);
         existingMedia4.setPath("testVolume/tv/Derry Girls/Season 03");
         existingMedia4.setArchivedStatus(ArchivedStatus.NOT_ARCHIVED);
-        when(mediaRepository.findByPath(eq(existingMedia4.getPath()))).thenReturn(existingMedia4);
+        mockCatalog(libraryId, Arrays.asList(existingMedia1, existingMedia2, existingMedia3, existingMedia4));
 
         // Act
         libraryUpdateConsumer.scanLibrary(1L);
 
         // Assert
-        verify(mediaRepository, times(8)).save(any(MediaModel.class));
-
-        // Verify that mediaRepository.save() was called with the expected paths and archived statuses
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia1.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.ARCHIVED));
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia2.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.ARCHIVED));
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia3.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE));
-        verify(mediaRepository)
-                .save(
-                        argThat(
-                                media ->
-                                        media.getPath().equals(existingMedia4.getPath())
-                                                && media.getArchivedStatus() == ArchivedStatus.NOT_ARCHIVED));
+        List<MediaModel> saved = savedMedia();
+        assertThat(saved).hasSize(8);
+
+        // Verify that the expected paths were saved with the expected archived statuses
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia1.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.ARCHIVED);
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia2.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.ARCHIVED);
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia3.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.OUT_OF_DATE);
+        assertThat(saved).anyMatch(media ->
+                media.getPath().equals(existingMedia4.getPath())
+                        && media.getArchivedStatus() == ArchivedStatus.NOT_ARCHIVED);
     }
 
     @Test
@@ -253,25 +540,193 @@ public class LibraryUpdateConsumerTest {
         Long libraryId = 1L;
         LibraryModel library = new LibraryModel();
         library.setBucketName("TestBucket");
+        library.setPath("testVolume/music/${artist}/");
+        library.setUpdating(true);
         when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        when(mediaRepository.findFirstLevelDirectories(libraryId, "testVolume/music/".length() + 1))
+                .thenReturn(List.of("testVolume/music/Artist B/", "testVolume/music/Artist A/"));
+
+        Instant uploaded = Instant.now().minusSeconds(3600);
+        MediaModel archived = catalogMedia(1L, "testVolume/music/Artist A/One", ArchivedStatus.NOT_ARCHIVED);
+        MediaModel deleted = catalogMedia(2L, "testVolume/music/Artist A/Two", ArchivedStatus.ARCHIVED);
+        deleted.setDateArchived(uploaded);
+        MediaModel neverArchived = catalogMedia(3L, "testVolume/music/Artist B/Three", ArchivedStatus.NOT_ARCHIVED);
+        mockCatalog(libraryId, List.of(archived, deleted, neverArchived));
+
+        // Mock the S3 listing of both artists, the first one over two pages
+        S3Object archivedObject = S3Object.builder().key("testVolume/music/Artist A/One").lastModified(uploaded).size(100L).build();
+        S3Object orphanObject = S3Object.builder().key("testVolume/music/Artist A/Zed").lastModified(uploaded).size(5L).build();
+        mockListing("testVolume/music/Artist A/", null, ListObjectsV2Response.builder()
+                .contents(archivedObject).isTruncated(true).nextContinuationToken("token").build());
+        mockListing("testVolume/music/Artist A/", "token",
+                ListObjectsV2Response.builder().contents(orphanObject).isTruncated(false).build());
+        mockListing("testVolume/music/Artist B/", null,
+                ListObjectsV2Response.builder().isTruncated(false).build());
+        when(librarySyncService.applyEntries(anyList(), anyList()))
+                .thenReturn(List.of(new AppliedEntry(SyncOutcome.ARCHIVED, uploaded, 100L, true)));
+        when(librarySyncService.markNotArchived(anyList(), any(Instant.class))).thenReturn(1);
 
-        // Mock S3 Response
-        S3Object s3Object = S3Object.builder().key("testKey").lastModified(Instant.now()).build();
-        ListObjectsV2Response s3Response =
-                ListObjectsV2Response.builder().contents(s3Object).isTruncated(false).build();
-        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(s3Response);
+        // Act
+        libraryUpdateConsumer.synchronizeLibrary(1L);
 
-        MediaModel media = new MediaModel();
-        media.setDateLastModified(Instant.now());
-        when(mediaRepository.findByPath(s3Object.key())).thenReturn(media);
+        // Assert
+        verify(s3AsyncClient, times(3)).listObjectsV2(any(ListObjectsV2Request.class));
+        verify(librarySyncService).applyEntries(List.of(1L), List.of(entryOf(archivedObject)));
+        verify(librarySyncService).markNotArchived(eq(List.of(2L)), any(Instant.class));
+        List<String> report = Files.readAllLines(syncReportStore.find(libraryId).orElseThrow());
+        assertThat(report).hasSize(5);
+        assertThat(report.get(0)).contains("\"outcome\":\"ARCHIVED\"", "\"mediaId\":1", "\"archivedSize\":100");
+        assertThat(report.get(1)).contains("\"outcome\":\"DELETED_FROM_S3\"", "\"mediaId\":2");
+        assertThat(report.get(2)).contains("\"outcome\":\"ORPHANED\"", "Artist A/Zed");
+        assertThat(report.get(3)).contains("\"outcome\":\"NEVER_ARCHIVED\"", "\"mediaId\":3");
+        assertThat(report.get(4)).contains("\"summary\"", "\"ARCHIVED\":1", "\"ORPHANED\":1");
+        verify(libraryRepository).save(library);
+        assertThat(library.isUpdating()).isFalse();
+    }
+
+    @Test
+    void testSynchronizeMediaWithSupplementaryCharactersInPaths() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setBucketName("TestBucket");
+        library.setPath("testVolume/music/${artist}/");
+        library.setUpdating(true);
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+        when(mediaRepository.findFirstLevelDirectories(libraryId, "testVolume/music/".length() + 1))
+                .thenReturn(List.of("testVolume/music/Artist A/"));
+
+        // The catalog comes back in UTF-16 order, as H2 sorts it, the listing in code point order
+        String emojiPath = "testVolume/music/Artist A/" + new String(Character.toChars(0x1F3B5)) + " Mix";
+        String fullwidthPath = "testVolume/music/Artist A/\uFF08Live\uFF09";
+        mockCatalog(libraryId, List.of(
+                catalogMedia(1L, emojiPath, ArchivedStatus.NOT_ARCHIVED),
+                catalogMedia(2L, fullwidthPath, ArchivedStatus.NOT_ARCHIVED)));
+        Instant uploaded = Instant.now().minusSeconds(3600);
+        S3Object fullwidthObject = S3Object.builder().key(fullwidthPath).lastModified(uploaded).size(10L).build();
+        S3Object emojiObject = S3Object.builder().key(emojiPath).lastModified(uploaded).size(20L).build();
+        mockListing("testVolume/music/Artist A/", null, ListObjectsV2Response.builder()
+                .contents(fullwidthObject, emojiObject).isTruncated(false).build());
+        // The report holds what the service applied
+        when(librarySyncService.applyEntries(anyList(), anyList())).thenReturn(List.of(
+                new AppliedEntry(SyncOutcome.ARCHIVED, uploaded, 10L, true),
+                new AppliedEntry(SyncOutcome.MISMATCHED, uploaded, 20L, true)));
 
         // Act
         libraryUpdateConsumer.synchronizeLibrary(1L);
 
         // Assert
-        verify(libraryRepository, times(1)).findById(libraryId);
-        verify(s3Client, times(1)).listObjectsV2(any(ListObjectsV2Request.class));
-        verify(mediaRepository, times(1)).findByPath(s3Object.key());
-        verify(mediaRepository, times(1)).save(any(MediaModel.class));
+        verify(librarySyncService).applyEntries(
+                List.of(2L, 1L), List.of(entryOf(fullwidthObject), entryOf(emojiObject)));
+        List<String> report = Files.readAllLines(syncReportStore.find(libraryId).orElseThrow());
+        assertThat(report).hasSize(3);
+        assertThat(report.get(1)).contains("\"outcome\":\"MISMATCHED\"", "\"mediaId\":1", "\"archivedSize\":20");
+        assertThat(report.get(2)).contains("\"summary\"", "\"ARCHIVED\":1", "\"MISMATCHED\":1");
+    }
+
+    private InventoryEntry entryOf(S3Object object) {
+        return new InventoryEntry(object.key(), object.size(), object.lastModified(), object.eTag(),
+                object.storageClassAsString());
+    }
+
+    private MediaModel catalogMedia(Long id, String path, ArchivedStatus status) {
+        MediaModel media = new MediaModel();
+        media.setId(id);
+        media.setPath(path);
+        media.setArchivedStatus(status);
+        media.setDateLastModified(Instant.now().minusSeconds(7200));
+        return media;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSynchronizeMediaFromInventory() throws Exception {
+        // Arrange
+        Long libraryId = 1L;
+        LibraryModel library = new LibraryModel();
+        library.setName("Music");
+        library.setBucketName("TestBucket");
+        library.setPath("testVolume/music/${artist}/");
+        library.setInventoryPath("inventory-bucket/reports/TestBucket/daily");
+        library.setUpdating(true);
+        when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+
+        // The newest report is still being delivered, so the previous one is read
+        ListObjectsV2Request foldersRequest = ListObjectsV2Request.builder()
+                .bucket("inventory-bucket").prefix("reports/TestBucket/daily/").delimiter("/").build();
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenReturn(new ListObjectsV2Iterable(s3Client, foldersRequest));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(
+                ListObjectsV2Response.builder().isTruncated(false).commonPrefixes(
+                        CommonPrefix.builder().prefix("reports/TestBucket/daily/2024-01-01T01-00Z/").build(),
+                        CommonPrefix.builder().prefix("reports/TestBucket/daily/2024-01-02T01-00Z/").build(),
+                        CommonPrefix.builder().prefix("reports/TestBucket/daily/hive/").build()).build());
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> request != null
+                && request.key().equals("reports/TestBucket/daily/2024-01-02T01-00Z/manifest.json"))))
+                .thenThrow(NoSuchKeyException.builder().build());
+        mockObject("reports/TestBucket/daily/2024-01-01T01-00Z/manifest.json", ("{\"sourceBucket\":\"TestBucket\","
+                + "\"fileFormat\":\"CSV\",\"fileSchema\":\"Bucket, Key, Size, LastModifiedDate, StorageClass\","
+                + "\"files\":[{\"key\":\"reports/data/one.csv.gz\"}]}").getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(report)) {
+            out.write(("\"TestBucket\",\"testVolume/music/Artist/Album\",\"100\",\"2024-01-01T00:00:00Z\",\"DEEP_ARCHIVE\"\n"
+                    + "\"TestBucket\",\"testVolume/movies/Movie\",\"100\",\"2024-01-01T00:00:00Z\",\"DEEP_ARCHIVE\"\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        mockObject("reports/data/one.csv.gz", report.toByteArray());
+
+        // Act
+        libraryUpdateConsumer.synchronizeLibrary(libraryId);
+
+        // Assert
+        ArgumentCaptor<List<InventoryEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(librarySyncService).applyEntries(entries.capture());
+        assertThat(entries.getValue()).extracting(InventoryEntry::key)
+                .containsExactly("testVolume/music/Artist/Album");
+        verifyNoInteractions(s3AsyncClient);
+        assertThat(library.isUpdating()).isFalse();
+    }
+
+    private void mockObject(String key, byte[] content) {
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> request != null && request.key().equals(key))))
+                .thenAnswer(invocation -> new ResponseInputStream<>(GetObjectResponse.builder().build(),
+                        AbortableInputStream.create(new ByteArrayInputStream(content))));
+    }
+
+    private void mockListing(String prefix, String continuationToken, ListObjectsV2Response page) {
+        when(s3AsyncClient.listObjectsV2(argThat((ListObjectsV2Request request) ->
+                request != null
+                        && prefix.equals(request.prefix())
+                        && Objects.equals(continuationToken, request.continuationToken()))))
+                .thenReturn(CompletableFuture.completedFuture(page));
+    }
+
+    // Serves the given media as the library's catalog, in path order and in batches
+    private void mockCatalog(Long libraryId, List<MediaModel> catalog) {
+        mockCatalog(libraryId, catalog, Comparator.naturalOrder());
+    }
+
+    private void mockCatalog(Long libraryId, List<MediaModel> catalog, Comparator<String> order) {
+        List<MediaModel> sorted = new ArrayList<>(catalog);
+        sorted.sort(Comparator.comparing(MediaModel::getPath, order));
+        when(mediaRepository.findByLibraryIdAndPathGreaterThanOrderByLibraryIdAscPathAsc(
+                eq(libraryId), anyString(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    String after = invocation.getArgument(1);
+                    Pageable pageable = invocation.getArgument(2);
+                    return sorted.stream()
+                            .filter(media -> order.compare(media.getPath(), after) > 0)
+                            .limit(pageable.getPageSize())
+                            .collect(Collectors.toList());
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MediaModel> savedMedia() {
+        ArgumentCaptor<Iterable<MediaModel>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(mediaRepository, atLeastOnce()).saveAll(captor.capture());
+        List<MediaModel> saved = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> batch.forEach(saved::add));
+        return saved;
     }
 }
@@ -1,15 +1,27 @@
 package com.example.mediaarchival.consumers;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
-import com.example.mediaarchival.controllers.MediaController;
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.TransferProgressBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.transfer.s3.model.FileUpload;
 import software.amazon.awssdk.transfer.s3.progress.TransferListener;
 import software.amazon.awssdk.transfer.s3.progress.TransferProgressSnapshot;
 
@@ -17,7 +29,9 @@ public class MediaObjectTransferListenerTest {
 
   @Mock private MediaRepository mediaRepository;
 
-  @Mock private MediaController mediaController;
+  @Mock private JobRepository jobRepository;
+
+  @Mock private LibraryStatsRepository libraryStatsRepository;
 
   @Mock private MediaModel mediaObject;
   @Mock private TransferListener.Context.TransferInitiated transferInitiatedContext;
@@ -25,15 +39,36 @@ public class MediaObjectTransferListenerTest {
   @Mock private TransferListener.Context.TransferComplete transferCompleteContext;
   @Mock private TransferListener.Context.TransferFailed transferFailedContext;
 
+  private TransferProgressBuffer transferProgressBuffer;
+
+  private JobService jobService;
+
+  private LibraryStatsService libraryStatsService;
+
   private MediaObjectTransferListener listener;
 
   private MediaModel mediaModel;
+
+  private JobModel job;
+
   @BeforeEach
   void setUp() {
     MockitoAnnotations.openMocks(this);
     mediaModel = new MediaModel();
     mediaModel.setId(1L);
     mediaModel.setSize(100L);
+    when(mediaObject.getId()).thenReturn(1L);
+    job = new JobModel();
+    job.setId(7L);
+    job.setType(JobType.ARCHIVE);
+    job.setState(JobState.UPLOADING);
+    transferProgressBuffer = new TransferProgressBuffer(jobRepository);
+    jobService = new JobService(jobRepository, mediaRepository, transferProgressBuffer);
+    libraryStatsService =
+        new LibraryStatsService(libraryStatsRepository, mediaRepository, jobRepository);
+    when(jobRepository.updateStateById(
+            anyLong(), any(), any(), anyBoolean(), anyInt(), anyInt(), any(), any()))
+        .thenReturn(1);
   }
 
   @Test
@@ -41,22 +76,22 @@ public class MediaObjectTransferListenerTest {
     // Arrange
     listener =
             new MediaObjectTransferListener(
-                    mediaRepository, mediaController, mediaModel, 10, true, "");
-
-    when(mediaRepository.findById(anyLong())).thenReturn(java.util.Optional.of(mediaModel));
+                    libraryStatsService, jobService, job, mediaModel, 10, true, "");
 
     // Act
     listener.transferInitiated(transferInitiatedContext);
 
     // Assert
-    verify(mediaRepository).updateUploadProgressById(mediaModel.getId(), 0);
+    verifyNoInteractions(mediaRepository, jobRepository);
+    transferProgressBuffer.flush();
+    verify(jobRepository).updateProgressByIdIn(List.of(job.getId()), 0);
   }
 
   @Test
   void testBytesTransferred_Normal() {
     listener =
             new MediaObjectTransferListener(
-                    mediaRepository, mediaController, mediaModel, 10, true, "");
+                    libraryStatsService, jobService, job, mediaModel, 10, true, "");
 
     // Mock TransferProgressSnapshot
     TransferProgressSnapshot progressSnapshot = mock(TransferProgressSnapshot.class);
@@ -66,37 +101,82 @@ public class MediaObjectTransferListenerTest {
     when(bytesTransferredContext.progressSnapshot()).thenReturn(progressSnapshot);
 
     // Arrange
-    when(mediaController.getJobCancelled(mediaModel.getId())).thenReturn(false);
+    when(jobRepository.findCancelRequestedById(job.getId())).thenReturn(false);
 
     // Act
     listener.bytesTransferred(bytesTransferredContext);
 
     // Assert
-    verify(mediaRepository).updateUploadProgressById(mediaModel.getId(), 50);
+    JobModel polled = new JobModel();
+    polled.setId(job.getId());
+    transferProgressBuffer.applyTo(List.of(polled));
+    assertEquals(50, polled.getProgress());
+    verify(jobRepository, never()).updateProgressByIdIn(any(), anyInt());
+  }
+
+  @Test
+  void testBytesTransferred_Cancelled_ShouldPauseTheTransfer() {
+    listener =
+            new MediaObjectTransferListener(
+                    libraryStatsService, jobService, job, mediaModel, 10, true, "");
+    FileUpload fileUpload = mock(FileUpload.class);
+    when(fileUpload.completionFuture()).thenReturn(new CompletableFuture<>());
+    listener.setFileUpload(fileUpload);
+    TransferProgressSnapshot progressSnapshot = mock(TransferProgressSnapshot.class);
+    when(progressSnapshot.transferredBytes()).thenReturn(50L);
+    when(bytesTransferredContext.progressSnapshot()).thenReturn(progressSnapshot);
+    when(jobRepository.findCancelRequestedById(job.getId())).thenReturn(true);
+
+    listener.bytesTransferred(bytesTransferredContext);
+
+    verify(fileUpload).pause();
+    assertEquals(-1, job.getProgress());
   }
 
   @Test
   void transferCompleteUpdatesMediaObject() {
     listener =
             new MediaObjectTransferListener(
-                    mediaRepository, mediaController, mediaObject, 10, true, "");
+                    libraryStatsService, jobService, job, mediaObject, 10, true, "");
+    transferProgressBuffer.record(job.getId(), 90);
 
     listener.transferComplete(transferCompleteContext);
-    verify(mediaObject).setArchiving(false);
-    verify(mediaObject).setUploadProgress(-1);
     verify(mediaObject).setArchivedStatus(ArchivedStatus.ARCHIVED);
     verify(mediaObject).setDateArchived(any());
     verify(mediaRepository).save(mediaObject);
+    verify(jobRepository).updateStateById(
+        eq(7L), eq(JobState.UPLOADING), eq(JobState.SUCCEEDED), eq(false), eq(-1), eq(0),
+        any(), any());
+    assertEquals(JobState.SUCCEEDED, job.getState());
+
+    // The buffered progress is not written over the completed job
+    transferProgressBuffer.flush();
+    verify(jobRepository, never()).updateProgressByIdIn(any(), anyInt());
   }
 
   @Test
-  void transferFailedUpdatesMediaObject() {
+  void transferFailedUpdatesJob() {
     listener =
             new MediaObjectTransferListener(
-                    mediaRepository, mediaController, mediaObject, 10, true, "");
+                    libraryStatsService, jobService, job, mediaObject, 10, true, "");
+    when(jobRepository.findCancelRequestedById(job.getId())).thenReturn(false);
+
     listener.transferFailed(transferFailedContext);
-    verify(mediaObject).setArchiving(false);
-    verify(mediaObject).setUploadProgress(-1);
-    verify(mediaRepository).save(mediaObject);
+
+    assertEquals(JobState.FAILED, job.getState());
+    assertTrue(job.getFinishedAt() != null);
+    verify(mediaRepository, never()).save(any());
+  }
+
+  @Test
+  void transferFailedAfterCancelCancelsJob() {
+    listener =
+            new MediaObjectTransferListener(
+                    libraryStatsService, jobService, job, mediaObject, 10, true, "");
+    when(jobRepository.findCancelRequestedById(job.getId())).thenReturn(true);
+
+    listener.transferFailed(transferFailedContext);
+
+    assertEquals(JobState.CANCELLED, job.getState());
   }
 }
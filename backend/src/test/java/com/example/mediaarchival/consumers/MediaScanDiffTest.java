@@ -0,0 +1,200 @@
+package com.example.mediaarchival.consumers;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.MissingMediaPolicy;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import com.example.mediaarchival.services.ScanProgress;
+import com.example.mediaarchival.utils.FingerprintUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class MediaScanDiffTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    @Mock
+    private LibraryRepository libraryRepository;
+
+    @Mock
+    private MediaSizingService mediaSizingService;
+
+    @Mock
+    private FileFingerprintRepository fileFingerprintRepository;
+
+    private final LibraryModel library = new LibraryModel();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        library.setId(1L);
+        when(fileFingerprintRepository.findByFileKeyIn(any())).thenReturn(List.of());
+        when(mediaRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void MediaScanDiff_onBoth_ShouldIgnoreBumpedTimesWhenFingerprinting() throws IOException {
+        Path movie = createMovie(new byte[4096]);
+        MediaModel media = archivedMedia(movie);
+
+        Instant bumped = Instant.now().plus(Duration.ofDays(1));
+        Files.setLastModifiedTime(movie, FileTime.from(bumped));
+        MediaScanDiff diff = newDiff(fileFingerprintRepository);
+        diff.onBoth(scanned(movie), media);
+        diff.flush();
+
+        assertEquals(ArchivedStatus.ARCHIVED, media.getArchivedStatus());
+        assertEquals(Files.getLastModifiedTime(movie).toInstant(), media.getDateLastModified());
+    }
+
+    @Test
+    void MediaScanDiff_onBoth_ShouldDetectContentChangedWithPreservedTimes() throws IOException {
+        Path movie = createMovie(new byte[4096]);
+        MediaModel media = archivedMedia(movie);
+
+        byte[] content = new byte[4096];
+        content[0] = 1;
+        replaceKeepingTime(movie, content);
+        MediaScanDiff diff = newDiff(fileFingerprintRepository);
+        diff.onBoth(scanned(movie), media);
+        diff.flush();
+
+        assertEquals(ArchivedStatus.OUT_OF_DATE, media.getArchivedStatus());
+        verify(mediaRepository).saveAll(List.of(media));
+    }
+
+    @Test
+    void MediaScanDiff_onBoth_ShouldMissPreservedTimesWithoutFingerprints() throws IOException {
+        Path movie = createMovie(new byte[4096]);
+        MediaModel media = archivedMedia(movie);
+
+        byte[] content = new byte[4096];
+        content[0] = 1;
+        replaceKeepingTime(movie, content);
+        MediaScanDiff diff = newDiff(null);
+        diff.onBoth(scanned(movie), media);
+        diff.flush();
+
+        assertEquals(ArchivedStatus.ARCHIVED, media.getArchivedStatus());
+        verify(mediaRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void MediaScanDiff_onLeftOnly_ShouldCommitNewMediaWithSizePending() throws IOException {
+        Path movie = createMovie(new byte[4096]);
+        when(mediaRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<MediaModel> batch = invocation.getArgument(0);
+            batch.forEach(media -> media.setId(9L));
+            return batch;
+        });
+        MediaScanDiff diff = newDiff(null);
+
+        diff.onLeftOnly(new ScannedMedia(movie.toString(), "movie.mkv", movie.toFile(), false,
+                Files.getLastModifiedTime(movie).toInstant(), ScannedMedia.UNKNOWN_SIZE));
+        diff.flush();
+
+        verify(mediaRepository).saveAll(argThat(batch -> {
+            MediaModel media = ((List<MediaModel>) batch).get(0);
+            return media.isSizePending() && media.getSize() == 0;
+        }));
+        verify(mediaSizingService).submit(9L, movie.toFile(), false, MediaSizingService.Priority.SCAN);
+    }
+
+    @Test
+    void MediaScanDiff_onLeftOnly_ShouldKeepSizesKnownFromTheWalk() throws IOException {
+        Path movie = createMovie(new byte[4096]);
+        MediaScanDiff diff = newDiff(null);
+
+        diff.onLeftOnly(scanned(movie));
+        diff.flush();
+
+        verify(mediaRepository).saveAll(argThat(batch -> {
+            MediaModel media = ((List<MediaModel>) batch).get(0);
+            return !media.isSizePending() && media.getSize() == 4096;
+        }));
+        verifyNoInteractions(mediaSizingService);
+    }
+
+    private Path createMovie(byte[] content) throws IOException {
+        Path movie = tempDir.resolve("movie.mkv");
+        Files.write(movie, content);
+        Files.setLastModifiedTime(movie, FileTime.from(Instant.now().minus(Duration.ofDays(10))));
+        return movie;
+    }
+
+    // Media archived after its last modification, fingerprinted by an earlier scan
+    private MediaModel archivedMedia(Path movie) throws IOException {
+        MediaModel media = new MediaModel();
+        media.setId(5L);
+        media.setPath(movie.toString());
+        media.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        media.setDateLastModified(Files.getLastModifiedTime(movie).toInstant());
+        media.setDateArchived(Instant.now().minus(Duration.ofDays(5)));
+        media.setFingerprint(FingerprintUtils.fingerprint(movie.toFile(), false, fileFingerprintRepository));
+        return media;
+    }
+
+    private static void replaceKeepingTime(Path file, byte[] content) throws IOException {
+        Path replacement = file.resolveSibling("replacement.tmp");
+        Files.write(replacement, content);
+        Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(file));
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ScannedMedia scanned(Path movie) throws IOException {
+        return new ScannedMedia(
+                movie.toString(),
+                movie.getFileName().toString(),
+                movie.toFile(),
+                false,
+                Files.getLastModifiedTime(movie).toInstant(),
+                Files.size(movie));
+    }
+
+    private MediaScanDiff newDiff(FileFingerprintRepository fingerprintCache) {
+        return new MediaScanDiff(
+                mediaRepository,
+                libraryRepository,
+                mediaSizingService,
+                fingerprintCache,
+                library,
+                MissingMediaPolicy.MARK_MISSING,
+                true,
+                new ScanProgress(1L, 0, Clock.systemUTC()),
+                mock(MediaPathIndex.class),
+                mock(MediaNameIndex.class),
+                new LibraryStatsService(
+                        mock(LibraryStatsRepository.class), mediaRepository, mock(JobRepository.class)));
+    }
+}
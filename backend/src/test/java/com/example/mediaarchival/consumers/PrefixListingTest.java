@@ -0,0 +1,105 @@
+package com.example.mediaarchival.consumers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PrefixListingTest {
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testRequestsForSortsDirectoriesInKeyOrder() {
+        List<ListObjectsV2Request> requests = PrefixListing.requestsFor(
+                "bucket", List.of("music/Artist/", "", "music/Artist B/"));
+
+        assertThat(requests).extracting(ListObjectsV2Request::prefix)
+                .containsExactly("music/Artist B/", "music/Artist/");
+        assertThat(requests).allMatch(request -> request.bucket().equals("bucket") && request.delimiter() == null);
+        assertThat(PrefixListing.rootRequestFor("bucket", "music/").delimiter()).isEqualTo("/");
+    }
+
+    @Test
+    public void testNextPageReturnsPrefixesInOrderWhileListingThemAtOnce() {
+        CompletableFuture<ListObjectsV2Response> first = new CompletableFuture<>();
+        CompletableFuture<ListObjectsV2Response> second = new CompletableFuture<>();
+        CompletableFuture<ListObjectsV2Response> third = new CompletableFuture<>();
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(first, second, third);
+        PrefixListing listing = new PrefixListing(
+                s3AsyncClient, PrefixListing.requestsFor("bucket", List.of("a/", "b/", "c/")), 2);
+
+        // The second prefix answers first, but the first prefix is returned first
+        second.complete(page("b/one", null));
+        first.complete(page("a/one", null));
+        assertThat(listing.nextPage().contents()).extracting(S3Object::key).containsExactly("a/one");
+
+        third.complete(page("c/one", null));
+        assertThat(listing.nextPage().contents()).extracting(S3Object::key).containsExactly("b/one");
+        assertThat(listing.nextPage().contents()).extracting(S3Object::key).containsExactly("c/one");
+        assertThat(listing.nextPage()).isNull();
+        verify(s3AsyncClient, times(3)).listObjectsV2(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    public void testObjectsFollowContinuationTokensBeforeTheNextPrefix() {
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(
+                CompletableFuture.completedFuture(page("a/one", "token")),
+                CompletableFuture.completedFuture(page("b/one", null)),
+                CompletableFuture.completedFuture(page("a/two", null)));
+        PrefixListing listing = new PrefixListing(
+                s3AsyncClient, PrefixListing.requestsFor("bucket", List.of("a/", "b/")), 4);
+
+        List<String> keys = new ArrayList<>();
+        listing.objects().forEachRemaining(object -> keys.add(object.key()));
+
+        assertThat(keys).containsExactly("a/one", "a/two", "b/one");
+        ArgumentCaptor<ListObjectsV2Request> requests = ArgumentCaptor.forClass(ListObjectsV2Request.class);
+        verify(s3AsyncClient, times(3)).listObjectsV2(requests.capture());
+        assertThat(requests.getAllValues().get(2).prefix()).isEqualTo("a/");
+        assertThat(requests.getAllValues().get(2).continuationToken()).isEqualTo("token");
+    }
+
+    @Test
+    public void testMergeKeepsKeyOrder() {
+        Iterator<S3Object> root = List.of(object("music/Album B"), object("music/Single")).iterator();
+        Iterator<S3Object> directories = List.of(object("music/Album/One"), object("music/Artist/One")).iterator();
+
+        List<String> keys = new ArrayList<>();
+        PrefixListing.merge(root, directories).forEachRemaining(object -> keys.add(object.key()));
+
+        assertThat(keys).containsExactly("music/Album B", "music/Album/One", "music/Artist/One", "music/Single");
+    }
+
+    private S3Object object(String key) {
+        return S3Object.builder().key(key).build();
+    }
+
+    private ListObjectsV2Response page(String key, String continuationToken) {
+        return ListObjectsV2Response.builder()
+                .contents(object(key))
+                .isTruncated(continuationToken != null)
+                .nextContinuationToken(continuationToken)
+                .build();
+    }
+}
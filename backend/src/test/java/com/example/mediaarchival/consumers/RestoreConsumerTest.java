@@ -2,10 +2,14 @@ package com.example.mediaarchival.consumers;
 
 import static org.mockito.Mockito.*;
 
-import com.example.mediaarchival.controllers.MediaController;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
@@ -26,18 +30,21 @@ public class RestoreConsumerTest {
     @Mock private MediaRepository mediaRepository;
     @Mock private S3Client s3Client;
     @Mock private JmsTemplate jmsTemplate;
-    @Mock private MediaController mediaController;
+    @Mock private JobService jobService;
+    @Mock private LibraryMetadataCache libraryMetadataCache;
 
     @InjectMocks private RestoreConsumer restoreConsumer;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(libraryMetadataCache.getForMedia(any())).thenAnswer(invocation ->
+                LibraryMetadataCache.Metadata.of(invocation.<MediaModel>getArgument(0).getLibrary()));
     }
 
     @AfterEach
     void tearDown() {
-        reset(mediaRepository, s3Client, jmsTemplate, mediaController);
+        reset(mediaRepository, s3Client, jmsTemplate, jobService, libraryMetadataCache);
     }
 
     @Test
@@ -51,7 +58,8 @@ public class RestoreConsumerTest {
         mockMedia.getLibrary().setBucketName("test-bucket");
 
         when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
-        when(mediaController.getJobCancelled(mockMedia.getId())).thenReturn(false);
+        JobModel job = queuedJob(mockMedia);
+        when(jobService.isCancelRequested(job)).thenReturn(false);
 
         HeadObjectResponse mockResponse = HeadObjectResponse.builder()
                 .restore("ongoing-request=\"false\"")
@@ -63,6 +71,7 @@ public class RestoreConsumerTest {
 
         // Assert
         verify(jmsTemplate, times(1)).convertAndSend("downloadQueue", testPath);
+        verify(jobService, never()).transition(any(), any());
     }
 
     @Test
@@ -75,7 +84,8 @@ public class RestoreConsumerTest {
         mockMedia.getLibrary().setBucketName("test-bucket");
 
         when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
-        when(mediaController.getJobCancelled(mockMedia.getId())).thenReturn(false);
+        JobModel job = queuedJob(mockMedia);
+        when(jobService.isCancelRequested(job)).thenReturn(false);
 
         HeadObjectResponse mockResponse = HeadObjectResponse.builder()
                 .restore("ongoing-request=\"true\"")
@@ -86,7 +96,7 @@ public class RestoreConsumerTest {
         restoreConsumer.processRestoreRequest(testPath);
 
         // Assert
-        verify(mediaRepository, times(1)).updateIsRestoringById(mockMedia.getId(), true);
+        verify(jobService, times(1)).transition(job, JobState.RESTORING);
     }
 
     @Test
@@ -100,7 +110,8 @@ public class RestoreConsumerTest {
         mockMedia.getLibrary().setBucketName("test-bucket");
 
         when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
-        when(mediaController.getJobCancelled(mockMedia.getId())).thenReturn(false);
+        JobModel job = queuedJob(mockMedia);
+        when(jobService.isCancelRequested(job)).thenReturn(false);
 
         // Mock HeadObjectResponse to simulate that the object is not being restored
         HeadObjectResponse mockResponse = HeadObjectResponse.builder().restore(null).build();
@@ -111,7 +122,7 @@ public class RestoreConsumerTest {
 
         // Assert
         verify(s3Client, times(1)).restoreObject((RestoreObjectRequest) any());
-        verify(mediaRepository, times(1)).updateIsRestoringById(mockMedia.getId(), true);
+        verify(jobService, times(1)).transition(job, JobState.RESTORING);
     }
 
 
@@ -123,13 +134,55 @@ public class RestoreConsumerTest {
         mockMedia.setId(4L);
 
         when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
-        when(mediaController.getJobCancelled(mockMedia.getId())).thenReturn(true);
+        JobModel job = queuedJob(mockMedia);
+        when(jobService.isCancelRequested(job)).thenReturn(true);
 
         // Act
         restoreConsumer.processRestoreRequest(testPath);
 
         // Assert
         verify(jmsTemplate, never()).convertAndSend(anyString(), Optional.ofNullable(any()));
-        verify(mediaRepository, times(1)).save(mockMedia);
+        verify(jobService, times(1)).transition(job, JobState.CANCELLED);
+    }
+
+    @Test
+    void testProcessRestoreRequest_WithStoppedJob_ShouldSkipTheMessage() {
+        String testPath = "stopped/path";
+        MediaModel mockMedia = new MediaModel();
+        mockMedia.setId(5L);
+
+        when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
+        when(jobService.findActiveJob(mockMedia, JobType.DOWNLOAD)).thenReturn(null);
+
+        restoreConsumer.processRestoreRequest(testPath);
+
+        verifyNoInteractions(s3Client, jmsTemplate);
+        verify(jobService, never()).transition(any(), any());
+    }
+
+    @Test
+    void testProcessRestoreRequest_WhenS3Fails_ShouldStopTheJob() {
+        String testPath = "failing/path";
+        MediaModel mockMedia = new MediaModel();
+        mockMedia.setId(6L);
+        mockMedia.setLibrary(new LibraryModel());
+        mockMedia.getLibrary().setBucketName("test-bucket");
+
+        when(mediaRepository.findByPath(testPath)).thenReturn(mockMedia);
+        JobModel job = queuedJob(mockMedia);
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenThrow(new RuntimeException("S3 down"));
+
+        restoreConsumer.processRestoreRequest(testPath);
+
+        verify(jobService, times(1)).stop(job);
+    }
+
+    private JobModel queuedJob(MediaModel media) {
+        JobModel job = new JobModel();
+        job.setId(media.getId());
+        job.setType(JobType.DOWNLOAD);
+        job.setState(JobState.QUEUED);
+        when(jobService.findActiveJob(media, JobType.DOWNLOAD)).thenReturn(job);
+        return job;
     }
 }
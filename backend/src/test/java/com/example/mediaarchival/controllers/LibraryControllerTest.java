@@ -4,12 +4,28 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobType;
 import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.enums.SyncOutcome;
 import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.LibraryStatsModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
 import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.responses.DeviceScanStatus;
+import com.example.mediaarchival.services.ScanProgressTracker;
+import com.example.mediaarchival.services.ScanScheduler;
+import com.example.mediaarchival.services.SyncReportStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,6 +34,7 @@ import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.jpa.domain.Specification;
@@ -46,10 +63,26 @@ public class LibraryControllerTest {
 
   @Mock private JmsTemplate jmsTemplate;
 
+  @Mock private ScanScheduler scanScheduler;
+
+  @Mock private JobRepository jobRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private LibraryStatsRepository libraryStatsRepository;
+
+  private ScanProgressTracker scanProgressTracker;
+
+  private SyncReportStore syncReportStore;
+
+  @TempDir Path tempDir;
+
   @BeforeEach
   void setUp() {
     MockitoAnnotations.initMocks(this);
-    LibraryController libraryController = new LibraryController(libraryRepository, mediaRepository, s3Client, jmsTemplate);
+    scanProgressTracker = new ScanProgressTracker(new SimpleMeterRegistry());
+    syncReportStore = new SyncReportStore(tempDir);
+    LibraryController libraryController = new LibraryController(libraryRepository, mediaRepository, s3Client, jmsTemplate, scanScheduler, scanProgressTracker, new MediaPathIndex(mediaRepository), new MediaNameIndex(mediaRepository), syncReportStore, jobRepository, jobService, new LibraryStatsService(libraryStatsRepository, mediaRepository, jobRepository), new LibraryMetadataCache(libraryRepository));
     mockMvc = MockMvcBuilders.standaloneSetup(libraryController).build();
   }
 
@@ -70,6 +103,91 @@ public class LibraryControllerTest {
     verify(libraryRepository, times(1)).findAll();
   }
 
+  @Test
+  void testGetScanDevices() throws Exception {
+    // Arrange
+    when(scanScheduler.getStatus())
+        .thenReturn(List.of(new DeviceScanStatus("/dev/sda1", 2, 1, 3, 5)));
+
+    // Act
+    RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/api/libraries/scan-devices");
+    MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+
+    // Assert
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(result.getResponse().getContentAsString())
+        .contains("\"device\":\"/dev/sda1\"", "\"threadLimit\":2", "\"queuedScans\":3");
+  }
+
+  @Test
+  void testGetSyncReport() throws Exception {
+    // Arrange
+    when(libraryRepository.existsById(1L)).thenReturn(true);
+    try (SyncReportStore.Writer report = syncReportStore.open(1L)) {
+      report.write(SyncOutcome.ORPHANED, "music/Old", null, Instant.EPOCH, 10L);
+      report.complete();
+    }
+
+    // Act
+    MvcResult result =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/1/sync-report")).andReturn();
+
+    // Assert
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(result.getResponse().getContentType()).isEqualTo("application/x-ndjson");
+    assertThat(result.getResponse().getContentAsString().split("\n"))
+        .containsExactly(
+            "{\"outcome\":\"ORPHANED\",\"path\":\"music/Old\",\"dateArchived\":\"1970-01-01T00:00:00Z\",\"archivedSize\":10}",
+            "{\"summary\":{\"ARCHIVED\":0,\"OUT_OF_DATE\":0,\"MISMATCHED\":0,\"NEVER_ARCHIVED\":0,\"DELETED_FROM_S3\":0,\"ORPHANED\":1}}");
+  }
+
+  @Test
+  void testGetSyncReport_NotSynchronized() throws Exception {
+    // Arrange
+    when(libraryRepository.existsById(1L)).thenReturn(true);
+
+    // Act
+    MvcResult result =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/1/sync-report")).andReturn();
+
+    // Assert
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.NO_CONTENT.value());
+  }
+
+  @Test
+  void testGetScanProgress() throws Exception {
+    // Arrange
+    LibraryModel library = new LibraryModel();
+    library.setId(1L);
+    library.setLastScanDirectories(10);
+    when(libraryRepository.existsById(1L)).thenReturn(true);
+    scanProgressTracker.start(library).directoryVisited(4);
+
+    // Act
+    MvcResult result =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/1/scan-progress")).andReturn();
+
+    // Assert
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(result.getResponse().getContentAsString())
+        .contains("\"state\":\"RUNNING\"", "\"directoriesVisited\":1", "\"entriesVisited\":4",
+            "\"previousScanDirectories\":10");
+  }
+
+  @Test
+  void testGetScanProgress_NotScanned() throws Exception {
+    when(libraryRepository.existsById(1L)).thenReturn(true);
+    when(libraryRepository.existsById(2L)).thenReturn(false);
+
+    MvcResult notScanned =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/1/scan-progress")).andReturn();
+    MvcResult notFound =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/2/scan-progress")).andReturn();
+
+    assertThat(notScanned.getResponse().getStatus()).isEqualTo(HttpStatus.NO_CONTENT.value());
+    assertThat(notFound.getResponse().getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+  }
+
   @Test
   void testGetLibraryById() throws Exception {
     // Arrange
@@ -122,6 +240,9 @@ public class LibraryControllerTest {
     // Assert
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.CREATED.value());
     verify(libraryRepository, times(1)).save(any(LibraryModel.class));
+    // The new library starts with empty statistics for every status
+    verify(libraryStatsRepository, times(1)).saveAll(argThat(rows ->
+        ((List<LibraryStatsModel>) rows).size() == ArchivedStatus.values().length));
   }
 
   @Test
@@ -172,15 +293,63 @@ public class LibraryControllerTest {
     // Assert
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.NO_CONTENT.value());
     verify(libraryRepository, times(1)).findById(libraryId);
-    verify(mediaRepository, times(1)).findByLibraryId(libraryId);
-    verify(mediaRepository, times(1)).deleteAll(anyList());
+    verify(mediaRepository, times(1)).findIndexedByLibraryId(libraryId);
+    verify(mediaRepository, times(1)).deleteAllByLibraryIdInBatch(libraryId);
+    verify(mediaRepository, never()).deleteAll(anyList());
+    verify(libraryStatsRepository, times(1)).deleteAllByLibraryIdInBatch(libraryId);
     verify(libraryRepository, times(1)).delete(existingLibrary);
   }
 
+  @Test
+  void testGetLibraryStats() throws Exception {
+    // Arrange
+    Long libraryId = 1L;
+    when(libraryRepository.existsById(libraryId)).thenReturn(true);
+    LibraryStatsModel archived = new LibraryStatsModel();
+    archived.setArchivedStatus(ArchivedStatus.ARCHIVED);
+    archived.setMediaCount(2);
+    archived.setTotalBytes(300);
+    archived.setReconciledAt(Instant.parse("2024-01-01T00:00:00Z"));
+    LibraryStatsModel outOfDate = new LibraryStatsModel();
+    outOfDate.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
+    outOfDate.setMediaCount(1);
+    outOfDate.setTotalBytes(50);
+    outOfDate.setReconciledAt(Instant.parse("2024-01-01T00:00:00Z"));
+    when(libraryStatsRepository.findByLibraryId(libraryId)).thenReturn(List.of(archived, outOfDate));
+    JobRepository.ActiveJobCount archiving = mock(JobRepository.ActiveJobCount.class);
+    when(archiving.getType()).thenReturn(JobType.ARCHIVE);
+    when(archiving.getCount()).thenReturn(4L);
+    when(jobRepository.countActiveByTypeAndLibraryId(libraryId)).thenReturn(List.of(archiving));
+
+    // Act
+    MvcResult result =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/{id}/stats", libraryId)).andReturn();
+
+    // Assert
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    String body = result.getResponse().getContentAsString();
+    assertThat(body)
+        .contains("\"ARCHIVED\":{\"mediaCount\":2,\"totalBytes\":300}")
+        .contains("\"NOT_ARCHIVED\":{\"mediaCount\":0,\"totalBytes\":0}")
+        .contains("\"mediaCount\":3", "\"totalBytes\":350")
+        .contains("\"activeArchiveJobs\":4", "\"activeDownloadJobs\":0");
+    verify(mediaRepository, never()).findAll(any(Specification.class));
+  }
+
+  @Test
+  void testGetLibraryStats_NotFound() throws Exception {
+    when(libraryRepository.existsById(999L)).thenReturn(false);
+
+    MvcResult result =
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/libraries/{id}/stats", 999L)).andReturn();
+
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+  }
+
   @Test
   void testScanLibrary_NotFound() throws Exception {
     Long libraryId = 999L; // Non-existent ID
-    when(libraryRepository.findById(libraryId)).thenReturn(Optional.empty());
+    when(libraryRepository.existsById(libraryId)).thenReturn(false);
 
     RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/scan", libraryId);
     MvcResult result = mockMvc.perform(requestBuilder).andReturn();
@@ -191,23 +360,35 @@ public class LibraryControllerTest {
   @Test
   void testScanLibrary_Successful() throws Exception {
     Long libraryId = 1L;
-    LibraryModel library = new LibraryModel();
-    library.setId(libraryId);
-    when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+    when(libraryRepository.existsById(libraryId)).thenReturn(true);
+    when(libraryRepository.markUpdatingById(libraryId)).thenReturn(1);
     when(mediaRepository.findAll(any(Specification.class))).thenReturn(new ArrayList<>());
 
     RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/scan", libraryId);
     MvcResult result = mockMvc.perform(requestBuilder).andReturn();
 
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.NO_CONTENT.value());
-    verify(libraryRepository, times(1)).findById(libraryId);
+    verify(libraryRepository, times(1)).markUpdatingById(libraryId);
     verify(jmsTemplate, times(1)).convertAndSend(eq("libraryScanQueue"), eq(libraryId));
   }
 
+  @Test
+  void testScanLibrary_AlreadyUpdating() throws Exception {
+    Long libraryId = 1L;
+    when(libraryRepository.existsById(libraryId)).thenReturn(true);
+    when(libraryRepository.markUpdatingById(libraryId)).thenReturn(0);
+
+    RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/scan", libraryId);
+    MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+    verify(jmsTemplate, never()).convertAndSend(anyString(), any(Object.class));
+  }
+
   @Test
   void testSynchronizeMedia_NotFound() throws Exception {
     Long libraryId = 999L; // Non-existent ID
-    when(libraryRepository.findById(libraryId)).thenReturn(Optional.empty());
+    when(libraryRepository.existsById(libraryId)).thenReturn(false);
 
     RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/synchronize", libraryId);
     MvcResult result = mockMvc.perform(requestBuilder).andReturn();
@@ -218,19 +399,31 @@ public class LibraryControllerTest {
   @Test
   void testSynchronizeMedia_Successful() throws Exception {
     Long libraryId = 1L;
-    LibraryModel library = new LibraryModel();
-    library.setId(libraryId);
-    when(libraryRepository.findById(libraryId)).thenReturn(Optional.of(library));
+    when(libraryRepository.existsById(libraryId)).thenReturn(true);
+    when(libraryRepository.markUpdatingById(libraryId)).thenReturn(1);
     when(mediaRepository.findAll(any(Specification.class))).thenReturn(new ArrayList<>());
 
     RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/synchronize", libraryId);
     MvcResult result = mockMvc.perform(requestBuilder).andReturn();
 
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.NO_CONTENT.value());
-    verify(libraryRepository, times(1)).findById(libraryId);
+    verify(libraryRepository, times(1)).markUpdatingById(libraryId);
     verify(jmsTemplate, times(1)).convertAndSend(eq("librarySyncQueue"), eq(libraryId));
   }
 
+  @Test
+  void testSynchronizeMedia_AlreadyUpdating() throws Exception {
+    Long libraryId = 1L;
+    when(libraryRepository.existsById(libraryId)).thenReturn(true);
+    when(libraryRepository.markUpdatingById(libraryId)).thenReturn(0);
+
+    RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/api/libraries/{id}/synchronize", libraryId);
+    MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+
+    assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+    verify(jmsTemplate, never()).convertAndSend(anyString(), any(Object.class));
+  }
+
 
 
 
@@ -245,7 +438,7 @@ public class LibraryControllerTest {
 
     List<MediaModel> mediaObjects = Arrays.asList(media1, media2);
 
-    when(mediaRepository.findByLibraryIdAndArchivedStatusIn(eq(libraryId), anyList()))
+    when(mediaRepository.findByLibraryIdAndArchivedStatusInAndIsMissingFalse(eq(libraryId), anyList()))
         .thenReturn(mediaObjects);
 
     // Act
@@ -255,10 +448,34 @@ public class LibraryControllerTest {
 
     // Assert
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
-    verify(mediaRepository, times(1)).findByLibraryIdAndArchivedStatusIn(eq(libraryId), anyList());
-    verify(mediaRepository, times(2)).save(any(MediaModel.class)); // Two media objects are saved
+    verify(mediaRepository, times(1)).findByLibraryIdAndArchivedStatusInAndIsMissingFalse(eq(libraryId), anyList());
+    verify(jobService, times(2)).start(any(MediaModel.class), eq(JobType.ARCHIVE));
     verify(jmsTemplate, times(2))
         .convertAndSend(
             eq("archivingQueue"), any(String.class)); // Two media objects are sent to the queue
   }
+
+  @Test
+  void testArchiveLibraryMediaObjects_skipsMediaWithActiveJobs() throws Exception {
+    // Arrange
+    Long libraryId = 1L;
+    MediaModel media1 = new MediaModel();
+    media1.setId(1L);
+    media1.setPath("test1");
+    MediaModel media2 = new MediaModel();
+    media2.setId(2L);
+    media2.setPath("test2");
+    when(mediaRepository.findByLibraryIdAndArchivedStatusInAndIsMissingFalse(eq(libraryId), anyList()))
+        .thenReturn(Arrays.asList(media1, media2));
+    when(jobRepository.findActiveMediaIdsByLibraryId(libraryId)).thenReturn(List.of(2L));
+
+    // Act
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/libraries/{id}/archive", libraryId));
+
+    // Assert
+    verify(jobService).start(media1, JobType.ARCHIVE);
+    verify(jobService, never()).start(media2, JobType.ARCHIVE);
+    verify(jmsTemplate).convertAndSend("archivingQueue", "test1");
+    verify(jmsTemplate, never()).convertAndSend("archivingQueue", "test2");
+  }
 }
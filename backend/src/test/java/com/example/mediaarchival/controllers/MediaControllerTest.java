@@ -5,14 +5,32 @@ import static org.assertj.core.api.Assertions.assertThatReflectiveOperationExcep
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.filters.MediaCursor;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.MediaSummary;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
+import com.example.mediaarchival.services.LibraryStatsService;
+import com.example.mediaarchival.services.MediaCountCache;
+import com.example.mediaarchival.services.MediaNameIndex;
+import com.example.mediaarchival.services.MediaPathIndex;
+import com.example.mediaarchival.services.MediaSizingService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -36,25 +54,48 @@ public class MediaControllerTest {
 
   @Mock private JmsTemplate jmsTemplate;
 
+  @Mock private MediaSizingService mediaSizingService;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobRepository jobRepository;
+
+  @Mock private LibraryRepository libraryRepository;
+
+  @Mock private LibraryStatsRepository libraryStatsRepository;
+
   private MediaController mediaController;
 
   @BeforeEach
   void setUp() {
     MockitoAnnotations.initMocks(this);
-    mediaController = new MediaController(mediaRepository, jmsTemplate);
+    mediaController = new MediaController(
+        mediaRepository, jmsTemplate, new MediaPathIndex(mediaRepository),
+        new MediaNameIndex(mediaRepository), mediaSizingService,
+        new MediaCountCache(mediaRepository, Clock.systemUTC(), Runnable::run),
+        jobService, jobRepository, libraryRepository,
+        new LibraryStatsService(libraryStatsRepository, mediaRepository, jobRepository),
+        new LibraryMetadataCache(libraryRepository));
     mockMvc = MockMvcBuilders.standaloneSetup(mediaController).build();
   }
 
   @Test
   void testGetAllMedias_noErrors() throws Exception {
     // Arrange
-    List<MediaModel> mediaList = new ArrayList<>();
-    mediaList.add(new MediaModel());
-    mediaList.add(new MediaModel());
+    List<MediaSummary> mediaList = new ArrayList<>();
+    mediaList.add(summary(1L, "Clip 1", false));
+    mediaList.add(summary(2L, "Clip 2", true));
     // Mock Page for paging parameters
-    Page<MediaModel> page = new PageImpl<>(mediaList);
+    Page<MediaSummary> page = new PageImpl<>(mediaList);
+    LibraryModel library = new LibraryModel();
+    library.setId(3L);
+    library.setName("Clips");
+    List<MediaModel> pending = List.of(new MediaModel());
 
-    when(mediaRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+    when(mediaRepository.findSummaries(any(Specification.class), any(Pageable.class)))
+        .thenReturn(page);
+    when(libraryRepository.findAllById(Set.of(3L))).thenReturn(List.of(library));
+    when(mediaRepository.findAllById(List.of(2L))).thenReturn(pending);
 
     // Act
     RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/api/media-objects");
@@ -62,14 +103,125 @@ public class MediaControllerTest {
 
     // Assert
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
-    verify(mediaRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+    JsonNode body = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(body.get("content")).hasSize(2);
+    assertThat(body.get("content").get(0).get("libraryId").asLong()).isEqualTo(3L);
+    assertThat(body.get("content").get(0).has("library")).isFalse();
+    assertThat(body.get("content").get(0).get("uploadProgress").asInt()).isEqualTo(-1);
+    assertThat(body.get("libraries")).hasSize(1);
+    assertThat(body.get("libraries").get(0).get("name").asText()).isEqualTo("Clips");
+    assertThat(body.get("totalElements").asLong()).isEqualTo(2L);
+    verify(mediaRepository, times(1)).findSummaries(any(Specification.class), any(Pageable.class));
+    verify(mediaRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    verify(jobService).applyTo(mediaList);
+    // Only the media whose size is pending are loaded as entities
+    verify(mediaSizingService).prioritize(pending, MediaSizingService.Priority.VIEW);
+  }
+
+  @Test
+  void testGetAllMedias_listsMediaWithActiveJobsFromTheJobTable() throws Exception {
+    // Arrange
+    JobModel job = job(JobType.ARCHIVE, JobState.UPLOADING);
+    job.setProgress(40);
+    MediaSummary media = summary(1L, "Clip 1", false);
+    media.setCurrentJob(job);
+    when(jobService.findMediaWithActiveJobs(eq(JobType.ARCHIVE), any(Specification.class), eq(0), eq(100)))
+        .thenReturn(new PageImpl<>(List.of(media), PageRequest.of(0, 100), 1));
+
+    // Act
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects")
+            .param("size", "100")
+            .param("sortBy", "uploadJobs")
+            .param("isArchiving", "true"))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    // Assert
+    JsonNode row = new ObjectMapper().readTree(result.getResponse().getContentAsString())
+        .get("content").get(0);
+    assertThat(row.get("archiving").asBoolean()).isTrue();
+    assertThat(row.get("uploadProgress").asInt()).isEqualTo(40);
+    assertThat(row.get("jobCancelled").asBoolean()).isFalse();
+    verify(mediaRepository, never()).findSummaries(any(Specification.class), any(Pageable.class));
+  }
+
+  @Test
+  void testScrollMedias_returnsCursorOfTheLastMediaOnThePage() throws Exception {
+    // Arrange
+    List<MediaSummary> mediaList = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      mediaList.add(summary(id, "Clip " + id, id == 2));
+    }
+    List<MediaModel> pending = List.of(new MediaModel());
+    when(mediaRepository.findSummaries(any(Specification.class), any(Sort.class), eq(3)))
+        .thenReturn(mediaList);
+    when(mediaRepository.findAllById(List.of(2L))).thenReturn(pending);
+    when(mediaRepository.count(any(Specification.class))).thenReturn(40L);
+
+    // Act
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects/scroll")
+            .param("size", "2")
+            .param("sortBy", "name"))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    // Assert
+    String expectedCursor = MediaCursor.after(mediaList.get(1), "name", true).encode();
+    JsonNode page = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+    assertThat(page.get("content")).hasSize(2);
+    assertThat(page.get("nextCursor").asText()).isEqualTo(expectedCursor);
+    assertThat(page.get("totalElements").asLong()).isEqualTo(40L);
+    verify(mediaSizingService).prioritize(pending, MediaSizingService.Priority.VIEW);
+  }
+
+  @Test
+  void testScrollMedias_lastPageHasNoCursor() throws Exception {
+    // Arrange
+    MediaModel media = new MediaModel();
+    media.setId(7L);
+    MediaCursor cursor = MediaCursor.after(media, "dateArchived", false);
+    when(mediaRepository.findSummaries(any(Specification.class), any(Sort.class), eq(11)))
+        .thenReturn(List.of(summary(3L, "Clip 3", false)));
+
+    // Act
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects/scroll")
+            .param("cursor", cursor.encode())
+            .param("sortBy", "dateArchived")
+            .param("sortDirection", "desc"))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    // Assert
+    assertThat(new ObjectMapper().readTree(result.getResponse().getContentAsString())
+        .get("nextCursor").isNull()).isTrue();
+  }
+
+  @Test
+  void testScrollMedias_rejectsCursorsOfAnotherOrderAndUnknownColumns() throws Exception {
+    MediaModel media = new MediaModel();
+    media.setId(7L);
+    String cursor = MediaCursor.after(media, "name", true).encode();
+
+    mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects/scroll")
+            .param("cursor", cursor)
+            .param("sortDirection", "desc"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects/scroll")
+            .param("cursor", "not-a-cursor"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(MockMvcRequestBuilders.get("/api/media-objects/scroll")
+            .param("sortBy", "uploadJobs"))
+        .andExpect(status().isBadRequest());
+    verify(mediaRepository, never())
+        .findSummaries(any(Specification.class), any(Sort.class), anyInt());
   }
 
   @Test
   void testGetAllMedias_WithParameters() throws Exception {
     // Arrange
-    Page<MediaModel> page = new PageImpl<>(new ArrayList<>());
-    when(mediaRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+    Page<MediaSummary> page = new PageImpl<>(new ArrayList<>());
+    when(mediaRepository.findSummaries(any(Specification.class), any(Pageable.class)))
+        .thenReturn(page);
 
     // Act
     RequestBuilder requestBuilder = MockMvcRequestBuilders.get("/api/media-objects")
@@ -86,7 +238,8 @@ public class MediaControllerTest {
 
     // Assert
     assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
-    verify(mediaRepository, times(1)).findAll(any(Specification.class), any(Pageable.class));
+    verify(mediaRepository, times(1)).findSummaries(any(Specification.class), any(Pageable.class));
+    verify(libraryRepository, never()).findAllById(any());
   }
 
 
@@ -186,13 +339,40 @@ public class MediaControllerTest {
     verify(mediaRepository, times(1)).findByPath("path2");
     verify(jmsTemplate, times(1)).convertAndSend("archivingQueue", "path1");
     verify(jmsTemplate, times(1)).convertAndSend("archivingQueue", "path2");
+    verify(jobService).start(media1, JobType.ARCHIVE);
+    verify(jobService).start(media2, JobType.ARCHIVE);
+    verify(mediaSizingService).prioritize(List.of(media1), MediaSizingService.Priority.ARCHIVE);
+  }
+
+  @Test
+  void testArchiveMediaObjects_skipsMediaWithActiveJob() throws Exception {
+    // Arrange
+    MediaModel media = new MediaModel();
+    media.setPath("path1");
+    when(mediaRepository.findByPath("path1")).thenReturn(media);
+    doAnswer(invocation -> {
+      media.setCurrentJob(job(JobType.DOWNLOAD, JobState.DOWNLOADING));
+      return null;
+    }).when(jobService).applyTo(anyCollection());
+
+    // Act
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/archive")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(new ObjectMapper().writeValueAsString(List.of("path1"))))
+            .andExpect(status().isOk());
+
+    // Assert
+    verify(jobService, never()).start(any(MediaModel.class), any(JobType.class));
+    verify(jmsTemplate, never()).convertAndSend(anyString(), anyString());
   }
   @Test
   void PrepareMediaObjectsForDownload_success() throws Exception {
     // Arrange
     List<String> paths = Arrays.asList("path1", "path2");
     LibraryModel library = new LibraryModel();
+    library.setId(1L);
     library.setStorageClass(StorageClass.GLACIER);
+    when(libraryRepository.findById(1L)).thenReturn(Optional.of(library));
     MediaModel media1 = new MediaModel();
     media1.setPath("path1");
     MediaModel media2 = new MediaModel();
@@ -214,6 +394,8 @@ public class MediaControllerTest {
     // Assert
     verify(mediaRepository, times(1)).findByPath("path1");
     verify(mediaRepository, times(1)).findByPath("path2");
+    // The library of both media is loaded once
+    verify(libraryRepository, times(1)).findById(1L);
     verify(jmsTemplate, times(2)).convertAndSend(anyString(), anyString());
   }
 
@@ -221,12 +403,6 @@ public class MediaControllerTest {
   void CancelJobs_success() throws Exception {
     // Arrange
     List<Long> ids = Arrays.asList(1L, 2L);
-    MediaModel media1 = new MediaModel();
-    MediaModel media2 = new MediaModel();
-    media1.setArchiving(true);
-    media2.setArchiving(true);
-    when(mediaRepository.findById(1L)).thenReturn(Optional.of(media1));
-    when(mediaRepository.findById(2L)).thenReturn(Optional.of(media2));
 
     ObjectMapper objectMapper = new ObjectMapper();
     String requestBody = objectMapper.writeValueAsString(ids);
@@ -238,40 +414,110 @@ public class MediaControllerTest {
             .andExpect(status().isOk());
 
     // Assert
-    verify(mediaRepository, times(1)).findById(1L);
-    verify(mediaRepository, times(1)).findById(2L);
-    verify(mediaRepository, times(2)).save(any(MediaModel.class));
+    verify(jobService, times(1)).requestCancelForMedia(ids);
+    verifyNoInteractions(jobRepository);
   }
 
   @Test
   void CancelAllArchiveJobs_success() throws Exception {
-    // Arrange
-    List<MediaModel> medias = Arrays.asList(new MediaModel(), new MediaModel());
-    when(mediaRepository.findByIsArchiving(true)).thenReturn(medias);
-
     // Act
     mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/cancel-all-archive-jobs"))
             .andExpect(status().isOk());
 
     // Assert
-    verify(mediaRepository, times(1)).findByIsArchiving(true);
-    verify(mediaRepository, times(2)).save(any(MediaModel.class));
+    verify(jobService, times(1)).requestCancelAll(JobType.ARCHIVE);
+    verifyNoInteractions(jobRepository);
   }
 
   @Test
   void testClearAllFinishedDownloads_success() throws Exception {
+    // Act
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/clear-all-finished"))
+            .andExpect(status().isOk());
+
+    // Assert
+    verify(jobService, times(1)).transitionAll(
+        JobType.DOWNLOAD, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
+    verifyNoInteractions(jobRepository);
+  }
+
+  @Test
+  void testClearFinishedDownloads_success() throws Exception {
     // Arrange
-    List<MediaModel> successes = Arrays.asList(new MediaModel(), new MediaModel());
-    when(mediaRepository.findByDownloadSuccess(true)).thenReturn(successes);
+    List<Long> ids = Arrays.asList(1L, 2L);
 
     // Act
-    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/clear-all-finished"))
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/clear-finished")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(new ObjectMapper().writeValueAsString(ids)))
+            .andExpect(status().isOk());
+
+    // Assert
+    verify(jobService, times(1)).transitionAllForMedia(
+        JobType.DOWNLOAD, ids, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
+  }
+
+  @Test
+  void testBulkDeleteMediaObjects_deletesExistingMediaInOneStatement() throws Exception {
+    // Arrange
+    List<Long> ids = Arrays.asList(1L, 2L, 3L);
+    when(mediaRepository.findIndexedByIdIn(ids))
+        .thenReturn(List.of(indexed(1L, "Movies/A"), indexed(3L, "Movies/C")));
+
+    // Act
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/bulk-delete")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(new ObjectMapper().writeValueAsString(ids)))
             .andExpect(status().isOk());
 
     // Assert
-    verify(mediaRepository, times(1)).findByDownloadSuccess(true);
-    verify(mediaRepository, times(2)).save(any(MediaModel.class));
+    verify(mediaRepository, times(1)).deleteAllByIdInBatch(List.of(1L, 3L));
+    verify(mediaRepository, never()).delete(any(MediaModel.class));
   }
 
+  @Test
+  void testBulkDeleteMediaObjects_ignoresUnknownIds() throws Exception {
+    // Arrange
+    when(mediaRepository.findIndexedByIdIn(anyList())).thenReturn(List.of());
 
+    // Act
+    mockMvc.perform(MockMvcRequestBuilders.post("/api/media-objects/bulk-delete")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[9]"))
+            .andExpect(status().isOk());
+
+    // Assert
+    verify(mediaRepository, never()).deleteAllByIdInBatch(anyIterable());
+  }
+
+  private static MediaRepository.IndexedView indexed(Long id, String path) {
+    return new MediaRepository.IndexedView() {
+      @Override
+      public Long getId() {
+        return id;
+      }
+
+      @Override
+      public String getPath() {
+        return path;
+      }
+
+      @Override
+      public String getName() {
+        return path.substring(path.lastIndexOf('/') + 1);
+      }
+    };
+  }
+
+  private static JobModel job(JobType type, JobState state) {
+    JobModel job = new JobModel();
+    job.setType(type);
+    job.setState(state);
+    return job;
+  }
+
+  private static MediaSummary summary(Long id, String name, boolean isSizePending) {
+    return new MediaSummary(
+        id, name, "/clips/" + name, null, null, null, 0, false, isSizePending, 3L);
+  }
 }
@@ -0,0 +1,75 @@
+package com.example.mediaarchival.filters;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.errors.InvalidCursorException;
+import com.example.mediaarchival.models.MediaModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MediaCursorTest {
+
+    @Test
+    void MediaCursor_decode_ShouldRestoreTheEncodedPosition() {
+        MediaModel media = new MediaModel();
+        media.setId(42L);
+        media.setDateArchived(Instant.parse("2023-11-05T10:15:30.123456Z"));
+        media.setArchivedStatus(ArchivedStatus.OUT_OF_DATE);
+
+        MediaCursor byDate = MediaCursor.decode(MediaCursor.after(media, "dateArchived", false).encode());
+        assertEquals("dateArchived", byDate.getSortBy());
+        assertFalse(byDate.isAscending());
+        assertEquals(42L, byDate.getId());
+        assertEquals(media.getDateArchived(), byDate.getTypedValue());
+
+        MediaCursor byStatus = MediaCursor.decode(MediaCursor.after(media, "archivedStatus", true).encode());
+        assertEquals(ArchivedStatus.OUT_OF_DATE, byStatus.getTypedValue());
+
+        MediaCursor byName = MediaCursor.decode(MediaCursor.after(media, "name", true).encode());
+        assertNull(byName.getTypedValue());
+    }
+
+    @Test
+    void MediaCursor_decode_ShouldRejectMalformedCursors() {
+        assertThrows(InvalidCursorException.class, () -> MediaCursor.decode("%%%"));
+        assertThrows(InvalidCursorException.class, () -> MediaCursor.decode(encode("[1, 2]")));
+        assertThrows(InvalidCursorException.class,
+                () -> MediaCursor.decode(encode("{\"sortBy\":\"uploadProgress\",\"id\":1}")));
+        assertThrows(InvalidCursorException.class,
+                () -> MediaCursor.decode(encode("{\"sortBy\":\"size\",\"value\":\"big\",\"id\":1}")));
+    }
+
+    @Test
+    void MediaCursor_requireOrder_ShouldRejectCursorsOfAnotherOrder() {
+        MediaModel media = new MediaModel();
+        media.setId(1L);
+        MediaCursor cursor = MediaCursor.after(media, "size", true);
+
+        cursor.requireOrder("size", true);
+        assertThrows(InvalidCursorException.class, () -> cursor.requireOrder("size", false));
+        assertThrows(InvalidCursorException.class, () -> cursor.requireOrder("name", true));
+    }
+
+    @Test
+    void MediaSpecifications_getScrollSort_ShouldPutMediaWithoutValueLastAndBreakTiesById() {
+        List<Sort.Order> orders = MediaSpecifications.getScrollSort("dateArchived", false).toList();
+
+        assertEquals(2, orders.size());
+        assertEquals("dateArchived", orders.get(0).getProperty());
+        assertTrue(orders.get(0).isDescending());
+        assertEquals(Sort.NullHandling.NULLS_LAST, orders.get(0).getNullHandling());
+        assertEquals("id", orders.get(1).getProperty());
+        assertTrue(orders.get(1).isDescending());
+        assertEquals(1, MediaSpecifications.getScrollSort("id", true).toList().size());
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mediaarchival.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the hot filter queries on media against an in-memory H2 catalog, first without the
+ * indexes the schema migrations create on {@link MediaModel} and then with them, printing the query plan and the
+ * median latency of every query. Not part of the test suite, run it with
+ * {@code mvn test -Dtest=MediaQueryBenchmark -Dbenchmark.rows=1000000}.
+ */
+public class MediaQueryBenchmark {
+
+    private static final int LIBRARIES = 10;
+    private static final int RUNS = 21;
+
+    // The queries as issued by the repositories and specifications, with their parameters
+    private static final Map<String, String> QUERIES = new LinkedHashMap<>();
+
+    static {
+        QUERIES.put("library by status",
+                "SELECT id FROM media_model WHERE library_id = 3 AND archived_status IN (0, 2)");
+        QUERIES.put("sync cursor",
+                "SELECT * FROM media_model WHERE library_id = 3 AND path > 'library-3/media-500000'"
+                        + " ORDER BY library_id, path LIMIT 1000");
+    }
+
+    private static final String INDEX_MIGRATION = "/db/migration/common/V4__media_indexes.sql";
+
+    @Test
+    public void benchmarkQueries() throws SQLException, IOException {
+        int rows = Integer.getInteger("benchmark.rows", 1_000_000);
+        try (Connection connection = DriverManager.getConnection(
+                // Results of repeated queries are otherwise served from H2's cache
+                "jdbc:h2:mem:benchmark;OPTIMIZE_REUSE_RESULTS=FALSE", "sa", "")) {
+            createCatalog(connection, rows);
+            System.out.println("== " + rows + " media without indexes");
+            run(connection);
+
+            try (Statement statement = connection.createStatement()) {
+                for (String index : indexMigration().split(";")) {
+                    if (!index.isBlank()) {
+                        statement.execute(index);
+                    }
+                }
+                statement.execute("ANALYZE");
+            }
+            System.out.println("== " + rows + " media with indexes");
+            run(connection);
+        }
+    }
+
+    // The migration without its comments
+    private String indexMigration() throws IOException {
+        try (InputStream in = MediaQueryBenchmark.class.getResourceAsStream(INDEX_MIGRATION)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll("(?m)^--.*$", "");
+        }
+    }
+
+    private void createCatalog(Connection connection, int rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE media_model (id BIGINT PRIMARY KEY, name VARCHAR(255),"
+                    + " path VARCHAR(255) UNIQUE, library_id BIGINT, archived_status TINYINT)");
+            // H2 indexes the library foreign key that Hibernate declares
+            statement.execute("CREATE INDEX fk_media_library ON media_model (library_id)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO media_model VALUES (?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= rows; id++) {
+                insert.setLong(1, id);
+                insert.setString(2, "media-" + id);
+                insert.setString(3, "library-" + id % LIBRARIES + "/media-" + id);
+                insert.setLong(4, id % LIBRARIES);
+                insert.setInt(5, id % 3);
+                insert.addBatch();
+                if (id % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private void run(Connection connection) throws SQLException {
+        for (Map.Entry<String, String> query : QUERIES.entrySet()) {
+            try (Statement statement = connection.createStatement()) {
+                long[] nanos = new long[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    long start = System.nanoTime();
+                    try (ResultSet result = statement.executeQuery(query.getValue())) {
+                        while (result.next()) {
+                            // Read every row, as the repositories do
+                        }
+                    }
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                String plan;
+                try (ResultSet result = statement.executeQuery("EXPLAIN " + query.getValue())) {
+                    result.next();
+                    // Only the access path H2 chose, which it writes as a comment after the table
+                    String explained = result.getString(1);
+                    int start = explained.indexOf("/*");
+                    plan = explained.substring(start, explained.indexOf("*/", start) + 2)
+                            .replaceAll("\\s+", " ");
+                }
+                System.out.printf("%-20s %10.3f ms  %s%n", query.getKey(), nanos[RUNS / 2] / 1e6, plan);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.mediaarchival.repositories;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Migrations run after Hibernate has created the tables, which the slice does not arrange
+@DataJpaTest(properties = "spring.flyway.enabled=false")
+public class MediaRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Test
+    void MediaRepository_markNotArchivedByIdIn_ShouldKeepUploadsThatFinishedDuringTheSync() {
+        Instant syncStarted = Instant.now();
+        LibraryModel library = new LibraryModel();
+        library.setName("Music");
+        library.setPath("/music/${artist}/");
+        entityManager.persist(library);
+
+        // Dated by its object, which S3 stamped when the upload started before the sync
+        MediaModel uploaded = archivedMedia(library, "/music/a/uploaded", syncStarted.minusSeconds(600));
+        archiveJob(uploaded, syncStarted.minusSeconds(610), syncStarted.plusSeconds(300));
+        MediaModel deleted = archivedMedia(library, "/music/a/deleted", syncStarted.minusSeconds(86400));
+        archiveJob(deleted, syncStarted.minusSeconds(86410), syncStarted.minusSeconds(86000));
+        entityManager.flush();
+
+        int changed = mediaRepository.markNotArchivedByIdIn(
+                List.of(uploaded.getId(), deleted.getId()), syncStarted);
+        entityManager.clear();
+
+        assertEquals(1, changed);
+        MediaModel kept = mediaRepository.findById(uploaded.getId()).orElseThrow();
+        assertEquals(ArchivedStatus.ARCHIVED, kept.getArchivedStatus());
+        assertEquals("\"abc\"", kept.getUploadedETag());
+        MediaModel cleared = mediaRepository.findById(deleted.getId()).orElseThrow();
+        assertEquals(ArchivedStatus.NOT_ARCHIVED, cleared.getArchivedStatus());
+        assertNull(cleared.getUploadedETag());
+    }
+
+    private MediaModel archivedMedia(LibraryModel library, String path, Instant dateArchived) {
+        MediaModel media = new MediaModel();
+        media.setName(path);
+        media.setPath(path);
+        media.setLibrary(library);
+        media.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        media.setDateArchived(dateArchived);
+        media.setUploadedETag("\"abc\"");
+        return entityManager.persist(media);
+    }
+
+    private void archiveJob(MediaModel media, Instant createdAt, Instant finishedAt) {
+        JobModel job = new JobModel();
+        job.setMedia(media);
+        job.setType(JobType.ARCHIVE);
+        job.setState(JobState.SUCCEEDED);
+        job.setCreatedAt(createdAt);
+        job.setUpdatedAt(finishedAt);
+        job.setFinishedAt(finishedAt);
+        entityManager.persist(job);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class JobServiceTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    private TransferProgressBuffer transferProgressBuffer;
+
+    private JobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        transferProgressBuffer = new TransferProgressBuffer(jobRepository);
+        jobService = new JobService(jobRepository, mediaRepository, transferProgressBuffer);
+        when(jobRepository.updateStateById(
+                anyLong(), any(), any(), anyBoolean(), anyInt(), anyInt(), any(), any()))
+                .thenReturn(1);
+    }
+
+    @Test
+    void JobService_start_ShouldQueueAnActiveJobAndSetItOnTheMedia() {
+        MediaModel media = new MediaModel();
+        when(jobRepository.save(any(JobModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        JobModel job = jobService.start(media, JobType.ARCHIVE);
+
+        assertEquals(JobState.QUEUED, job.getState());
+        assertTrue(job.isActive());
+        assertSame(media, job.getMedia());
+        assertSame(job, media.getCurrentJob());
+        assertTrue(media.isArchiving());
+    }
+
+    @Test
+    void JobService_transition_ShouldCountAnAttemptWhenLeavingTheQueue() {
+        JobModel job = job(JobType.ARCHIVE, JobState.QUEUED);
+
+        assertTrue(jobService.transition(job, JobState.TARRING));
+
+        assertEquals(JobState.TARRING, job.getState());
+        assertEquals(1, job.getAttempts());
+        verify(jobRepository).updateStateById(
+                eq(1L), eq(JobState.QUEUED), eq(JobState.TARRING), eq(true), eq(-1), eq(1),
+                any(Instant.class), isNull());
+    }
+
+    @Test
+    void JobService_transition_ShouldDeactivateAFinishedArchiveJob() {
+        JobModel job = job(JobType.ARCHIVE, JobState.UPLOADING);
+
+        assertTrue(jobService.transition(job, JobState.SUCCEEDED));
+
+        assertFalse(job.isActive());
+        assertNotNull(job.getFinishedAt());
+        verify(jobRepository).updateStateById(
+                eq(1L), eq(JobState.UPLOADING), eq(JobState.SUCCEEDED), eq(false), eq(-1), eq(0),
+                any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void JobService_transition_ShouldKeepAFinishedDownloadActiveUntilCleared() {
+        JobModel job = job(JobType.DOWNLOAD, JobState.DOWNLOADING);
+
+        jobService.transition(job, JobState.SUCCEEDED);
+        assertTrue(job.isActive());
+        Instant finishedAt = job.getFinishedAt();
+
+        jobService.transition(job, JobState.CLEARED);
+        assertFalse(job.isActive());
+        assertEquals(finishedAt, job.getFinishedAt());
+    }
+
+    @Test
+    void JobService_transition_ShouldRejectTransitionsOutsideTheStateMachine() {
+        JobModel job = job(JobType.ARCHIVE, JobState.CANCELLED);
+
+        assertThrows(IllegalStateException.class, () -> jobService.transition(job, JobState.UPLOADING));
+        verify(jobRepository, never()).updateStateById(
+                anyLong(), any(), any(), anyBoolean(), anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void JobService_transitionAll_ShouldRejectStatesInWhichJobsAreNotActive() {
+        assertThrows(IllegalStateException.class, () -> jobService.transitionAll(
+                JobType.ARCHIVE, List.of(JobState.SUCCEEDED), JobState.CLEARED));
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void JobService_transition_ShouldLeaveTheJobAloneWhenItsStateChangedMeanwhile() {
+        JobModel job = job(JobType.DOWNLOAD, JobState.RESTORING);
+        when(jobRepository.updateStateById(
+                anyLong(), any(), any(), anyBoolean(), anyInt(), anyInt(), any(), any()))
+                .thenReturn(0);
+
+        assertFalse(jobService.transition(job, JobState.RESTORED));
+
+        assertEquals(JobState.RESTORING, job.getState());
+        assertEquals(0, job.getAttempts());
+    }
+
+    @Test
+    void JobService_transition_ShouldDropBufferedProgressWhenTheJobFinishes() {
+        JobModel job = job(JobType.ARCHIVE, JobState.UPLOADING);
+        jobService.recordProgress(job, 50);
+
+        jobService.transition(job, JobState.FAILED);
+        transferProgressBuffer.flush();
+
+        verify(jobRepository, never()).updateProgressByIdIn(any(), anyInt());
+    }
+
+    @Test
+    void JobService_stop_ShouldCancelAJobWhoseCancellationWasRequested() {
+        JobModel job = job(JobType.DOWNLOAD, JobState.DOWNLOADING);
+        when(jobRepository.findCancelRequestedById(1L)).thenReturn(true);
+
+        assertTrue(jobService.stop(job));
+
+        assertEquals(JobState.CANCELLED, job.getState());
+    }
+
+    @Test
+    void JobService_stop_ShouldFailAJobThatWasNotCancelled() {
+        JobModel job = job(JobType.ARCHIVE, JobState.TARRING);
+        when(jobRepository.findCancelRequestedById(1L)).thenReturn(false);
+
+        assertTrue(jobService.stop(job));
+
+        assertEquals(JobState.FAILED, job.getState());
+    }
+
+    @Test
+    void JobService_stop_ShouldIgnoreAJobThatAlreadyEnded() {
+        JobModel job = job(JobType.DOWNLOAD, JobState.SUCCEEDED);
+
+        assertFalse(jobService.stop(job));
+
+        assertEquals(JobState.SUCCEEDED, job.getState());
+        verify(jobRepository, never()).updateStateById(
+                anyLong(), any(), any(), anyBoolean(), anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void JobService_requestCancel_ShouldOnlyFlagRunningJobs() {
+        JobModel job = job(JobType.ARCHIVE, JobState.UPLOADING);
+        when(jobRepository.requestCancelById(eq(1L), eq(JobService.RUNNING_STATES), any(Instant.class)))
+                .thenReturn(0);
+
+        assertFalse(jobService.requestCancel(job));
+        assertFalse(job.isCancelRequested());
+    }
+
+    @Test
+    void JobService_applyTo_ShouldSetTheActiveJobsWithTheirBufferedProgress() {
+        MediaModel archiving = media(1L);
+        MediaModel idle = media(2L);
+        JobModel job = job(JobType.ARCHIVE, JobState.UPLOADING);
+        job.setMedia(archiving);
+        when(jobRepository.findByActiveTrueAndMediaIdIn(List.of(1L, 2L))).thenReturn(List.of(job));
+        transferProgressBuffer.record(1L, 42);
+
+        jobService.applyTo(List.of(archiving, idle));
+
+        assertTrue(archiving.isArchiving());
+        assertEquals(42, archiving.getUploadProgress());
+        assertNull(idle.getCurrentJob());
+        assertFalse(idle.isArchiving());
+    }
+
+    private static JobModel job(JobType type, JobState state) {
+        JobModel job = new JobModel();
+        job.setId(1L);
+        job.setType(type);
+        job.setState(state);
+        return job;
+    }
+
+    private static MediaModel media(Long id) {
+        MediaModel media = new MediaModel();
+        media.setId(id);
+        return media;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.s3.model.StorageClass;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LibraryMetadataCacheTest {
+
+    @Mock
+    private LibraryRepository libraryRepository;
+
+    private LibraryMetadataCache libraryMetadataCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        libraryMetadataCache = new LibraryMetadataCache(libraryRepository);
+    }
+
+    @Test
+    void LibraryMetadataCache_get_ShouldLoadLibraryOnce() {
+        when(libraryRepository.findById(1L)).thenReturn(Optional.of(library(1L, "bucket")));
+
+        LibraryMetadataCache.Metadata first = libraryMetadataCache.get(1L).orElseThrow();
+        LibraryMetadataCache.Metadata second = libraryMetadataCache.get(1L).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals("bucket", first.bucketName());
+        assertEquals(StorageClass.DEEP_ARCHIVE, first.storageClass());
+        assertTrue(first.isTvSeries());
+        verify(libraryRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void LibraryMetadataCache_get_ShouldNotCacheMissingLibraries() {
+        when(libraryRepository.findById(1L))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(library(1L, "bucket")));
+
+        assertTrue(libraryMetadataCache.get(1L).isEmpty());
+        assertTrue(libraryMetadataCache.get(1L).isPresent());
+    }
+
+    @Test
+    void LibraryMetadataCache_invalidate_ShouldReloadLibrary() {
+        when(libraryRepository.findById(1L))
+                .thenReturn(Optional.of(library(1L, "old-bucket")))
+                .thenReturn(Optional.of(library(1L, "new-bucket")));
+        libraryMetadataCache.get(1L);
+
+        libraryMetadataCache.invalidate(1L);
+
+        assertEquals("new-bucket", libraryMetadataCache.get(1L).orElseThrow().bucketName());
+    }
+
+    @Test
+    void LibraryMetadataCache_getForMedia_ShouldThrowWhenLibraryIsMissing() {
+        MediaModel media = new MediaModel();
+        media.setPath("/movies/Missing");
+        media.setLibrary(library(2L, "bucket"));
+        when(libraryRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> libraryMetadataCache.getForMedia(media));
+    }
+
+    @Test
+    void LibraryMetadataCache_getAll_ShouldListLibrariesFromCacheUntilInvalidated() {
+        when(libraryRepository.findAll()).thenReturn(List.of(library(2L, "second"), library(1L, "first")));
+
+        List<LibraryMetadataCache.Metadata> loaded = libraryMetadataCache.getAll();
+        List<LibraryMetadataCache.Metadata> cached = libraryMetadataCache.getAll();
+        libraryMetadataCache.get(2L);
+
+        assertEquals(List.of(1L, 2L), loaded.stream().map(LibraryMetadataCache.Metadata::id).toList());
+        assertEquals(loaded, cached);
+        verify(libraryRepository, times(1)).findAll();
+        verify(libraryRepository, never()).findById(anyLong());
+
+        libraryMetadataCache.invalidate(1L);
+        libraryMetadataCache.getAll();
+
+        verify(libraryRepository, times(2)).findAll();
+    }
+
+    private static LibraryModel library(Long id, String bucketName) {
+        LibraryModel library = new LibraryModel();
+        library.setId(id);
+        library.setName("Library " + id);
+        library.setPath("/library" + id);
+        library.setCategory(MediaCategory.TV);
+        library.setStorageClass(StorageClass.DEEP_ARCHIVE);
+        library.setBucketName(bucketName);
+        return library;
+    }
+}
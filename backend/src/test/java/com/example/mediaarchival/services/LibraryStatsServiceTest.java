@@ -0,0 +1,186 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.LibraryStatsModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.responses.LibraryStatsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class LibraryStatsServiceTest {
+
+    @Mock
+    private LibraryStatsRepository libraryStatsRepository;
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    @Mock
+    private JobRepository jobRepository;
+
+    private LibraryStatsService libraryStatsService;
+
+    private LibraryModel library;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        libraryStatsService = new LibraryStatsService(libraryStatsRepository, mediaRepository, jobRepository);
+        library = new LibraryModel();
+        library.setId(3L);
+        when(mediaRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void LibraryStatsService_saveAll_ShouldCountNewMedia() {
+        MediaModel first = media(null, ArchivedStatus.NOT_ARCHIVED, 100);
+        MediaModel second = media(null, ArchivedStatus.NOT_ARCHIVED, 50);
+
+        libraryStatsService.saveAll(List.of(first, second));
+
+        verify(mediaRepository, never()).findStatsByIdIn(any());
+        verify(libraryStatsRepository).addByLibraryIdAndArchivedStatus(3L, ArchivedStatus.NOT_ARCHIVED, 2, 150);
+    }
+
+    @Test
+    void LibraryStatsService_saveAll_ShouldMoveChangedMediaBetweenStatuses() {
+        MediaModel media = media(1L, ArchivedStatus.OUT_OF_DATE, 120);
+        MediaRepository.StatsView before = stats(1L, ArchivedStatus.ARCHIVED, 100);
+        when(mediaRepository.findStatsByIdIn(List.of(1L))).thenReturn(List.of(before));
+
+        libraryStatsService.saveAll(List.of(media));
+
+        verify(libraryStatsRepository).addByLibraryIdAndArchivedStatus(3L, ArchivedStatus.ARCHIVED, -1, -100);
+        verify(libraryStatsRepository).addByLibraryIdAndArchivedStatus(3L, ArchivedStatus.OUT_OF_DATE, 1, 120);
+    }
+
+    @Test
+    void LibraryStatsService_saveAll_ShouldNotWriteWhenNothingCountedChanged() {
+        MediaModel media = media(1L, ArchivedStatus.ARCHIVED, 100);
+        MediaRepository.StatsView before = stats(1L, ArchivedStatus.ARCHIVED, 100);
+        when(mediaRepository.findStatsByIdIn(List.of(1L))).thenReturn(List.of(before));
+
+        libraryStatsService.saveAll(List.of(media));
+
+        verify(libraryStatsRepository, never()).addByLibraryIdAndArchivedStatus(anyLong(), any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void LibraryStatsService_track_ShouldSubtractDeletedMedia() {
+        MediaRepository.StatsView first = stats(1L, ArchivedStatus.ARCHIVED, 100);
+        MediaRepository.StatsView second = stats(2L, ArchivedStatus.ARCHIVED, 30);
+        when(mediaRepository.findStatsByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of());
+
+        libraryStatsService.track(List.of(1L, 2L), () -> mediaRepository.deleteAllByIdInBatch(List.of(1L, 2L)));
+
+        verify(mediaRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(libraryStatsRepository).addByLibraryIdAndArchivedStatus(3L, ArchivedStatus.ARCHIVED, -2, -130);
+    }
+
+    @Test
+    void LibraryStatsService_track_ShouldCountResizedMedia() {
+        MediaRepository.StatsView pending = stats(1L, ArchivedStatus.NOT_ARCHIVED, 0);
+        MediaRepository.StatsView sized = stats(1L, ArchivedStatus.NOT_ARCHIVED, 400);
+        when(mediaRepository.findStatsByIdIn(List.of(1L)))
+                .thenReturn(List.of(pending))
+                .thenReturn(List.of(sized));
+
+        libraryStatsService.track(List.of(1L), () -> mediaRepository.updateComputedSizeById(1L, 400));
+
+        verify(libraryStatsRepository).addByLibraryIdAndArchivedStatus(3L, ArchivedStatus.NOT_ARCHIVED, 0, 400);
+    }
+
+    @Test
+    void LibraryStatsService_reconcile_ShouldCreateMissingRowsAndCorrectDrift() {
+        LibraryStatsModel drifted = row(ArchivedStatus.ARCHIVED, 5, 500);
+        when(libraryStatsRepository.findByLibraryId(3L)).thenReturn(List.of(drifted));
+        MediaRepository.StatusTotals archived = mock(MediaRepository.StatusTotals.class);
+        when(archived.getArchivedStatus()).thenReturn(ArchivedStatus.ARCHIVED);
+        when(archived.getMediaCount()).thenReturn(4L);
+        when(archived.getTotalBytes()).thenReturn(420L);
+        when(mediaRepository.sumByLibraryIdGroupByArchivedStatus(3L)).thenReturn(List.of(archived));
+
+        libraryStatsService.reconcile(library);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LibraryStatsModel>> captor = ArgumentCaptor.forClass(List.class);
+        verify(libraryStatsRepository).saveAll(captor.capture());
+        Map<ArchivedStatus, LibraryStatsModel> rows = captor.getValue().stream()
+                .collect(Collectors.toMap(LibraryStatsModel::getArchivedStatus, row -> row));
+        assertEquals(ArchivedStatus.values().length, rows.size());
+        assertSame(drifted, rows.get(ArchivedStatus.ARCHIVED));
+        assertEquals(4, drifted.getMediaCount());
+        assertEquals(420, drifted.getTotalBytes());
+        assertEquals(0, rows.get(ArchivedStatus.NOT_ARCHIVED).getMediaCount());
+        assertSame(library, rows.get(ArchivedStatus.NOT_ARCHIVED).getLibrary());
+        assertTrue(rows.values().stream().allMatch(row -> row.getReconciledAt() != null));
+    }
+
+    @Test
+    void LibraryStatsService_getAllStats_ShouldListEveryLibraryWithItsActiveJobs() {
+        LibraryStatsModel archived = row(ArchivedStatus.ARCHIVED, 2, 200);
+        when(libraryStatsRepository.findAll()).thenReturn(List.of(archived));
+        JobRepository.ActiveJobCount downloads = mock(JobRepository.ActiveJobCount.class);
+        when(downloads.getLibraryId()).thenReturn(3L);
+        when(downloads.getType()).thenReturn(JobType.DOWNLOAD);
+        when(downloads.getCount()).thenReturn(1L);
+        when(jobRepository.countActiveByLibraryAndType()).thenReturn(List.of(downloads));
+
+        List<LibraryStatsResponse> stats = libraryStatsService.getAllStats();
+
+        assertEquals(1, stats.size());
+        assertEquals(3L, stats.get(0).getLibraryId());
+        assertEquals(2, stats.get(0).getMediaCount());
+        assertEquals(200, stats.get(0).getTotalBytes());
+        assertEquals(0, stats.get(0).getActiveArchiveJobs());
+        assertEquals(1, stats.get(0).getActiveDownloadJobs());
+        // A row that was never reconciled leaves the statistics unreconciled
+        assertNull(stats.get(0).getReconciledAt());
+    }
+
+    private MediaModel media(Long id, ArchivedStatus status, long size) {
+        MediaModel media = new MediaModel();
+        media.setId(id);
+        media.setLibrary(library);
+        media.setArchivedStatus(status);
+        media.setSize(size);
+        return media;
+    }
+
+    private LibraryStatsModel row(ArchivedStatus status, long mediaCount, long totalBytes) {
+        LibraryStatsModel row = new LibraryStatsModel();
+        row.setLibrary(library);
+        row.setArchivedStatus(status);
+        row.setMediaCount(mediaCount);
+        row.setTotalBytes(totalBytes);
+        return row;
+    }
+
+    private static MediaRepository.StatsView stats(Long id, ArchivedStatus status, long size) {
+        MediaRepository.StatsView view = mock(MediaRepository.StatsView.class);
+        when(view.getId()).thenReturn(id);
+        when(view.getLibraryId()).thenReturn(3L);
+        when(view.getArchivedStatus()).thenReturn(status);
+        when(view.getSize()).thenReturn(size);
+        return view;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.enums.SyncOutcome;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.LibrarySyncService.AppliedEntry;
+import com.example.mediaarchival.utils.S3InventoryUtils.InventoryEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class LibrarySyncServiceTest {
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    @Mock
+    private MediaPathIndex mediaPathIndex;
+
+    private LibrarySyncService librarySyncService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        librarySyncService = new LibrarySyncService(mediaRepository, mediaPathIndex,
+                new LibraryStatsService(
+                        mock(LibraryStatsRepository.class), mediaRepository, mock(JobRepository.class)));
+    }
+
+    @Test
+    public void testApplyMatchedEntriesLoadsBatchWithOneLookupByID() {
+        Instant uploaded = Instant.now();
+        MediaModel archived = media(1L, uploaded.minusSeconds(60));
+        MediaModel outdated = media(2L, uploaded.plusSeconds(60));
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(archived, outdated));
+
+        List<AppliedEntry> applied = librarySyncService.applyEntries(List.of(1L, 2L), List.of(
+                new InventoryEntry("archived", 100L, uploaded, null, null),
+                new InventoryEntry("outdated", 200L, uploaded, null, null)));
+
+        assertThat(applied).containsExactly(
+                new AppliedEntry(SyncOutcome.ARCHIVED, uploaded, 100L, true),
+                new AppliedEntry(SyncOutcome.OUT_OF_DATE, uploaded, 200L, true));
+        verify(mediaRepository, times(1)).findAllById(List.of(1L, 2L));
+        verifyNoInteractions(mediaPathIndex);
+        assertThat(savedMedia()).containsExactly(archived, outdated);
+        assertThat(archived.getArchivedStatus()).isEqualTo(ArchivedStatus.ARCHIVED);
+        assertThat(outdated.getArchivedStatus()).isEqualTo(ArchivedStatus.OUT_OF_DATE);
+    }
+
+    @Test
+    public void testApplyMatchedEntriesSkipsUnchangedMedia() {
+        Instant uploaded = Instant.now();
+        MediaModel media = media(1L, uploaded.minusSeconds(60));
+        media.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        media.setDateArchived(uploaded);
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(media));
+
+        assertThat(librarySyncService.applyEntries(List.of(1L),
+                List.of(new InventoryEntry("archived", null, uploaded, null, null))))
+                .containsExactly(new AppliedEntry(SyncOutcome.ARCHIVED, uploaded, null, false));
+        verify(mediaRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void testApplyMatchedEntriesReportsWhatTheStaleEntryGuardKept() {
+        Instant uploaded = Instant.now();
+        // Archived again since the listing was read, and deleted from the catalog meanwhile
+        MediaModel reuploaded = uploadedMedia(1L, uploaded.plusSeconds(3600), 2048L, "\"new\"");
+        reuploaded.setArchivedSize(2048L);
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(reuploaded));
+
+        List<AppliedEntry> applied = librarySyncService.applyEntries(List.of(1L, 2L), List.of(
+                new InventoryEntry("reuploaded", 1024L, uploaded, "\"old\"", null),
+                new InventoryEntry("deleted", 10L, uploaded, null, null)));
+
+        assertThat(applied).containsExactly(
+                new AppliedEntry(SyncOutcome.ARCHIVED, uploaded.plusSeconds(3605), 2048L, false),
+                new AppliedEntry(SyncOutcome.ORPHANED, uploaded, 10L, false));
+        verify(mediaRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void testApplyEntriesWithoutCatalogMatchesSkipsLookup() {
+        when(mediaPathIndex.findId("orphan")).thenReturn(OptionalLong.empty());
+
+        assertThat(librarySyncService.applyEntries(
+                List.of(new InventoryEntry("orphan", null, Instant.now(), null, null)))).isZero();
+        verifyNoInteractions(mediaRepository);
+    }
+
+    @Test
+    public void testApplyEntriesRecordsObjectDetailsAndIgnoresStaleEntries() {
+        Instant uploaded = Instant.now();
+        when(mediaPathIndex.findId("synced")).thenReturn(OptionalLong.of(1L));
+        when(mediaPathIndex.findId("reuploaded")).thenReturn(OptionalLong.of(2L));
+
+        MediaModel synced = media(1L, uploaded.minusSeconds(60));
+        MediaModel reuploaded = media(2L, uploaded.minusSeconds(60));
+        reuploaded.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        reuploaded.setDateArchived(uploaded.plusSeconds(3600));
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(synced, reuploaded));
+
+        int updated = librarySyncService.applyEntries(List.of(
+                new InventoryEntry("synced", 2048L, uploaded, "etag", "DEEP_ARCHIVE"),
+                new InventoryEntry("reuploaded", 10L, uploaded, "old", "DEEP_ARCHIVE")));
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(savedMedia()).containsExactly(synced);
+        assertThat(synced.getArchivedSize()).isEqualTo(2048L);
+        assertThat(synced.getArchivedStorageClass()).isEqualTo("DEEP_ARCHIVE");
+        assertThat(reuploaded.getDateArchived()).isEqualTo(uploaded.plusSeconds(3600));
+        assertThat(reuploaded.getArchivedSize()).isNull();
+    }
+
+    @Test
+    public void testApplyEntriesFlagsObjectsThatDifferFromUpload() {
+        Instant uploaded = Instant.now();
+        when(mediaPathIndex.findId("intact")).thenReturn(OptionalLong.of(1L));
+        when(mediaPathIndex.findId("overwritten")).thenReturn(OptionalLong.of(2L));
+
+        MediaModel intact = uploadedMedia(1L, uploaded, 2048L, "\"abc\"");
+        MediaModel overwritten = uploadedMedia(2L, uploaded, 2048L, "\"abc\"");
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(intact, overwritten));
+
+        int updated = librarySyncService.applyEntries(List.of(
+                new InventoryEntry("intact", 2048L, uploaded, "abc", "DEEP_ARCHIVE"),
+                new InventoryEntry("overwritten", 2048L, uploaded.plusSeconds(600), "def", "DEEP_ARCHIVE")));
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(intact.getArchivedStatus()).isEqualTo(ArchivedStatus.ARCHIVED);
+        assertThat(overwritten.getArchivedStatus()).isEqualTo(ArchivedStatus.OUT_OF_DATE);
+    }
+
+    @Test
+    public void testApplyEntriesAppliesUploadedObjectsOlderThanTheirArchiveDate() {
+        Instant uploaded = Instant.now();
+        when(mediaPathIndex.findId("uploaded")).thenReturn(OptionalLong.of(1L));
+        when(mediaPathIndex.findId("stale")).thenReturn(OptionalLong.of(2L));
+
+        // Both were recorded as archived when their uploads finished, after S3 stamped the objects
+        MediaModel uploadedMedia = uploadedMedia(1L, uploaded, 2048L, "\"abc\"");
+        MediaModel reuploaded = uploadedMedia(2L, uploaded, 2048L, "\"abc\"");
+        when(mediaRepository.findAllById(any())).thenReturn(List.of(uploadedMedia, reuploaded));
+
+        int updated = librarySyncService.applyEntries(List.of(
+                new InventoryEntry("uploaded", 2048L, uploaded, "abc", "DEEP_ARCHIVE"),
+                new InventoryEntry("stale", 1024L, uploaded.minusSeconds(3600), "old", "DEEP_ARCHIVE")));
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(savedMedia()).containsExactly(uploadedMedia);
+        assertThat(uploadedMedia.getArchivedStatus()).isEqualTo(ArchivedStatus.ARCHIVED);
+        assertThat(uploadedMedia.getDateArchived()).isEqualTo(uploaded);
+        assertThat(uploadedMedia.getArchivedStorageClass()).isEqualTo("DEEP_ARCHIVE");
+        assertThat(reuploaded.getArchivedStatus()).isEqualTo(ArchivedStatus.ARCHIVED);
+        assertThat(reuploaded.getArchivedSize()).isNull();
+    }
+
+    @Test
+    public void testDiffersFromUpload() {
+        MediaModel media = uploadedMedia(1L, Instant.now(), 2048L, "\"abc\"");
+
+        assertThat(LibrarySyncService.differsFromUpload(media, 2048L, "\"abc\"")).isFalse();
+        assertThat(LibrarySyncService.differsFromUpload(media, null, null)).isFalse();
+        assertThat(LibrarySyncService.differsFromUpload(media, 1024L, "\"abc\"")).isTrue();
+        assertThat(LibrarySyncService.differsFromUpload(media, 2048L, "\"def\"")).isTrue();
+        assertThat(LibrarySyncService.differsFromUpload(media(2L, null), 1024L, "def")).isFalse();
+    }
+
+    private MediaModel uploadedMedia(Long id, Instant uploaded, Long size, String eTag) {
+        MediaModel media = media(id, uploaded.minusSeconds(60));
+        media.setArchivedStatus(ArchivedStatus.ARCHIVED);
+        media.setDateArchived(uploaded.plusSeconds(5));
+        media.setUploadedSize(size);
+        media.setUploadedETag(eTag);
+        return media;
+    }
+
+    private MediaModel media(Long id, Instant lastModified) {
+        MediaModel media = new MediaModel();
+        media.setId(id);
+        media.setDateLastModified(lastModified);
+        return media;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MediaModel> savedMedia() {
+        ArgumentCaptor<Iterable<MediaModel>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(mediaRepository, atLeastOnce()).saveAll(captor.capture());
+        List<MediaModel> saved = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> batch.forEach(saved::add));
+        return saved;
+    }
+}
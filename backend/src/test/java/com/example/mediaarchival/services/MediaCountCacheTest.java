@@ -0,0 +1,102 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ArchivedStatus;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MediaCountCacheTest {
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    private final Instant start = Instant.parse("2023-11-05T10:00:00Z");
+    private Instant now;
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private MediaCountCache mediaCountCache;
+
+    private final Specification<MediaModel> specification = (root, query, builder) -> null;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        refreshes.clear();
+        now = start;
+        mediaCountCache = new MediaCountCache(mediaRepository, clock, refreshes::add);
+    }
+
+    @Test
+    void MediaCountCache_count_ShouldCountEachFiltersOnceWhileFresh() {
+        when(mediaRepository.count(any(Specification.class))).thenReturn(5L, 9L);
+        assertEquals(5L, mediaCountCache.count(filters(1L), specification));
+        assertEquals(5L, mediaCountCache.count(filters(1L), specification));
+        assertEquals(9L, mediaCountCache.count(filters(2L), specification));
+
+        verify(mediaRepository, times(2)).count(any(Specification.class));
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    void MediaCountCache_count_ShouldServeStaleCountsWhileRefreshingOnce() {
+        when(mediaRepository.count(any(Specification.class))).thenReturn(5L, 6L);
+        mediaCountCache.count(filters(1L), specification);
+
+        now = start.plus(MediaCountCache.MAX_AGE).plusSeconds(1);
+        assertEquals(5L, mediaCountCache.count(filters(1L), specification));
+        assertEquals(5L, mediaCountCache.count(filters(1L), specification));
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+        assertEquals(6L, mediaCountCache.count(filters(1L), specification));
+        assertEquals(1, refreshes.size());
+    }
+
+    @Test
+    void MediaCountCache_count_ShouldEvictTheLeastRecentlyUsedFilters() {
+        when(mediaRepository.count(any(Specification.class))).thenReturn(1L);
+        for (long libraryId = 0; libraryId <= MediaCountCache.MAX_ENTRIES; libraryId++) {
+            mediaCountCache.count(filters(libraryId), specification);
+        }
+        clearInvocations(mediaRepository);
+
+        mediaCountCache.count(filters(MediaCountCache.MAX_ENTRIES), specification);
+        verify(mediaRepository, never()).count(any(Specification.class));
+        mediaCountCache.count(filters(0L), specification);
+        verify(mediaRepository).count(any(Specification.class));
+    }
+
+    private static MediaCountCache.Filters filters(long libraryId) {
+        return new MediaCountCache.Filters(ArchivedStatus.ARCHIVED, null, libraryId, null, null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.MediaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class MediaNameIndexTest {
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    private MediaNameIndex mediaNameIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mediaNameIndex = new MediaNameIndex(mediaRepository);
+    }
+
+    @Test
+    void MediaNameIndex_findCandidates_ShouldLoadTheCatalogInBatches() {
+        List<MediaRepository.NameView> catalog = new ArrayList<>();
+        for (long id = 1; id <= MediaNameIndex.LOAD_BATCH_SIZE + 5; id++) {
+            catalog.add(nameView(id, "Album " + id));
+        }
+        mockCatalog(catalog);
+
+        assertEquals(Optional.of(List.of(1004L)), mediaNameIndex.findCandidates("bum 1004"));
+        assertEquals(Optional.of(List.of()), mediaNameIndex.findCandidates("Heat"));
+        verify(mediaRepository, times(2)).findNamesByIdGreaterThan(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void MediaNameIndex_findCandidates_ShouldDeclineShortAndCommonTerms() {
+        List<MediaRepository.NameView> catalog = new ArrayList<>();
+        for (long id = 1; id <= MediaNameIndex.MAX_CANDIDATES + 1; id++) {
+            catalog.add(nameView(id, "Episode " + id));
+        }
+        mockCatalog(catalog);
+
+        assertEquals(Optional.empty(), mediaNameIndex.findCandidates("Ep"));
+        assertEquals(Optional.empty(), mediaNameIndex.findCandidates("episode"));
+        assertEquals(Optional.empty(), mediaNameIndex.findCandidates(null));
+    }
+
+    @Test
+    void MediaNameIndex_put_ShouldKeepTheLoadedIndexCurrent() {
+        mockCatalog(List.of(nameView(1L, "Heat")));
+
+        mediaNameIndex.findCandidates("heat");
+        mediaNameIndex.put(2L, "Ronin");
+        MediaModel heat = new MediaModel();
+        heat.setId(1L);
+        heat.setName("Heat");
+        mediaNameIndex.remove(List.of(heat));
+
+        assertEquals(Optional.of(List.of(2L)), mediaNameIndex.findCandidates("RONIN"));
+        assertEquals(Optional.of(List.of()), mediaNameIndex.findCandidates("heat"));
+        verify(mediaRepository, times(1)).findNamesByIdGreaterThan(anyLong(), any(Pageable.class));
+    }
+
+    private void mockCatalog(List<MediaRepository.NameView> catalog) {
+        when(mediaRepository.findNamesByIdGreaterThan(anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(0);
+                    Pageable pageable = invocation.getArgument(1);
+                    return catalog.stream()
+                            .filter(media -> media.getId() > afterId)
+                            .limit(pageable.getPageSize())
+                            .collect(Collectors.toList());
+                });
+    }
+
+    private static MediaRepository.NameView nameView(Long id, String name) {
+        return new MediaRepository.NameView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.repositories.MediaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class MediaPathIndexTest {
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    private MediaPathIndex mediaPathIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mediaPathIndex = new MediaPathIndex(mediaRepository);
+    }
+
+    @Test
+    void MediaPathIndex_findId_ShouldLoadTheCatalogInBatches() {
+        List<MediaRepository.PathView> catalog = new ArrayList<>();
+        for (long id = 1; id <= MediaPathIndex.LOAD_BATCH_SIZE + 5; id++) {
+            catalog.add(pathView(id, "/data/music/Artist/Album " + id));
+        }
+        mockCatalog(catalog);
+
+        assertEquals(OptionalLong.of(7), mediaPathIndex.findId("/data/music/Artist/Album 7"));
+        assertEquals(OptionalLong.empty(), mediaPathIndex.findId("/data/music/Artist/Album 0"));
+        assertEquals(MediaPathIndex.LOAD_BATCH_SIZE + 5, mediaPathIndex.size());
+        verify(mediaRepository, times(2)).findPathsByIdGreaterThan(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void MediaPathIndex_put_ShouldKeepTheLoadedIndexCurrent() {
+        mockCatalog(List.of(pathView(1L, "/data/movies/Heat")));
+
+        mediaPathIndex.findId("/data/movies/Heat");
+        mediaPathIndex.put("/data/movies/Ronin", 2L);
+        mediaPathIndex.remove("/data/movies/Heat");
+
+        assertEquals(OptionalLong.of(2), mediaPathIndex.findId("/data/movies/Ronin"));
+        assertEquals(OptionalLong.empty(), mediaPathIndex.findId("/data/movies/Heat"));
+        verify(mediaRepository, times(1)).findPathsByIdGreaterThan(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void MediaPathIndex_invalidate_ShouldReloadFromTheCatalog() {
+        mockCatalog(List.of(pathView(1L, "/data/movies/Heat")));
+        mediaPathIndex.findId("/data/movies/Heat");
+
+        mockCatalog(List.of(pathView(3L, "/data/movies/Heat")));
+        mediaPathIndex.invalidate();
+
+        assertEquals(OptionalLong.of(3), mediaPathIndex.findId("/data/movies/Heat"));
+    }
+
+    private void mockCatalog(List<MediaRepository.PathView> catalog) {
+        when(mediaRepository.findPathsByIdGreaterThan(anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(0);
+                    Pageable pageable = invocation.getArgument(1);
+                    return catalog.stream()
+                            .filter(media -> media.getId() > afterId)
+                            .limit(pageable.getPageSize())
+                            .collect(Collectors.toList());
+                });
+    }
+
+    private static MediaRepository.PathView pathView(Long id, String path) {
+        return new MediaRepository.PathView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getPath() {
+                return path;
+            }
+        };
+    }
+}
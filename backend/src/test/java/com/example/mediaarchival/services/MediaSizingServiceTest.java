@@ -0,0 +1,150 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.MediaCategory;
+import com.example.mediaarchival.models.LibraryModel;
+import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.repositories.LibraryStatsRepository;
+import com.example.mediaarchival.repositories.MediaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class MediaSizingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private MediaRepository mediaRepository;
+
+    @Mock
+    private DirectorySizeRepository directorySizeRepository;
+
+    @Mock
+    private LibraryRepository libraryRepository;
+
+    private LibraryStatsService libraryStatsService;
+
+    private LibraryMetadataCache libraryMetadataCache;
+
+    private MediaSizingService sizingService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        libraryStatsService = new LibraryStatsService(
+                mock(LibraryStatsRepository.class), mediaRepository, mock(JobRepository.class));
+        libraryMetadataCache = new LibraryMetadataCache(libraryRepository);
+        sizingService = new MediaSizingService(
+                mediaRepository, directorySizeRepository, libraryStatsService, libraryMetadataCache, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sizingService.shutdown();
+    }
+
+    @Test
+    void MediaSizingService_runNext_ShouldSizeUrgentMediaFirst() throws IOException {
+        File first = createAlbum("first", 100);
+        File second = createAlbum("second", 200);
+        File viewed = createAlbum("viewed", 300);
+
+        sizingService.submit(1L, first, false, MediaSizingService.Priority.SCAN);
+        sizingService.submit(2L, second, false, MediaSizingService.Priority.SCAN);
+        sizingService.submit(3L, viewed, false, MediaSizingService.Priority.VIEW);
+        while (sizingService.runNext()) {
+        }
+
+        InOrder order = inOrder(mediaRepository);
+        order.verify(mediaRepository).updateComputedSizeById(3L, 300);
+        order.verify(mediaRepository).updateComputedSizeById(1L, 100);
+        order.verify(mediaRepository).updateComputedSizeById(2L, 200);
+        assertEquals(0, sizingService.getQueuedCount());
+    }
+
+    @Test
+    void MediaSizingService_submit_ShouldSizeReprioritizedMediaOnce() throws Exception {
+        File album = createAlbum("album", 100);
+
+        CompletableFuture<Long> scanned = sizingService.submit(1L, album, false, MediaSizingService.Priority.SCAN);
+        CompletableFuture<Long> archived = sizingService.submit(1L, album, false, MediaSizingService.Priority.ARCHIVE);
+        sizingService.submit(1L, album, false, MediaSizingService.Priority.VIEW);
+        while (sizingService.runNext()) {
+        }
+
+        assertSame(scanned, archived);
+        assertEquals(100L, scanned.get());
+        verify(mediaRepository, times(1)).updateComputedSizeById(anyLong(), anyLong());
+    }
+
+    @Test
+    void MediaSizingService_awaitSize_ShouldWaitForTheWorkers() throws Exception {
+        File show = createAlbum("Show", 100);
+        Files.createDirectories(show.toPath().resolve("Season 1"));
+        Files.write(show.toPath().resolve("Season 1/episode.mp4"), new byte[500]);
+        LibraryModel library = new LibraryModel();
+        library.setId(7L);
+        library.setCategory(MediaCategory.TV);
+        when(libraryRepository.findById(7L)).thenReturn(Optional.of(library));
+        MediaModel media = new MediaModel();
+        media.setId(4L);
+        media.setPath(show.getPath() + "/metadata");
+        media.setLibrary(library);
+        media.setSizePending(true);
+
+        MediaSizingService workers = new MediaSizingService(
+                mediaRepository, directorySizeRepository, libraryStatsService, libraryMetadataCache, 1);
+        try {
+            CompletableFuture<Long> size = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return workers.awaitSize(media);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertEquals(100L, size.get(10, TimeUnit.SECONDS));
+        } finally {
+            workers.shutdown();
+        }
+        verify(mediaRepository).updateComputedSizeById(4L, 100);
+    }
+
+    @Test
+    void MediaSizingService_prioritize_ShouldSkipMediaWithKnownSizes() {
+        MediaModel known = new MediaModel();
+        known.setId(1L);
+        known.setPath(tempDir.toString());
+
+        sizingService.prioritize(List.of(known), MediaSizingService.Priority.VIEW);
+
+        assertEquals(0, sizingService.getQueuedCount());
+    }
+
+    private File createAlbum(String name, int size) throws IOException {
+        Path album = tempDir.resolve(name);
+        Files.createDirectories(album);
+        Files.write(album.resolve("track.flac"), new byte[size]);
+        return album.toFile();
+    }
+}
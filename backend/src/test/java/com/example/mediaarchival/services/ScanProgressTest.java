@@ -0,0 +1,110 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.ScanState;
+import com.example.mediaarchival.models.LibraryModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanProgressTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void ScanProgress_getEstimatedSecondsRemaining_ShouldExtrapolateFromThePreviousScan() {
+        ScanProgress progress = new ScanProgress(1L, 100, clock);
+        progress.directoryVisited(40);
+        for (int i = 0; i < 24; i++) {
+            progress.directoryVisited(10);
+        }
+        clock.advance(Duration.ofSeconds(50));
+
+        // 25 of 100 directories in 50 seconds leaves 75 directories at 2 seconds each
+        assertEquals(150L, progress.getEstimatedSecondsRemaining());
+        assertEquals(280 / 50.0, progress.getEntriesPerSecond(), 0.001);
+    }
+
+    @Test
+    void ScanProgress_getEstimatedSecondsRemaining_ShouldBeUnknownWithoutAPreviousScan() {
+        ScanProgress firstScan = new ScanProgress(1L, 0, clock);
+        firstScan.directoryVisited(5);
+        ScanProgress largerScan = new ScanProgress(1L, 1, clock);
+        largerScan.directoryVisited(5);
+        largerScan.directoryVisited(5);
+        clock.advance(Duration.ofSeconds(5));
+
+        assertNull(firstScan.getEstimatedSecondsRemaining());
+        assertNull(largerScan.getEstimatedSecondsRemaining());
+    }
+
+    @Test
+    void ScanProgress_snapshot_ShouldReportTimeSinceLastProgress() {
+        ScanProgress progress = new ScanProgress(1L, 10, clock);
+        progress.directoryVisited(3);
+        progress.bytesSized(2048);
+        clock.advance(Duration.ofSeconds(30));
+
+        assertEquals(30, progress.snapshot().getSecondsSinceLastProgress());
+        assertEquals(2048, progress.snapshot().getBytesSized());
+        assertEquals(ScanState.RUNNING, progress.snapshot().getState());
+    }
+
+    @Test
+    void ScanProgressTracker_finish_ShouldOnlyRememberCompletedScans() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ScanProgressTracker tracker = new ScanProgressTracker(registry, clock);
+        LibraryModel library = new LibraryModel();
+        library.setId(3L);
+        library.setLastScanDirectories(7);
+
+        ScanProgress failed = tracker.start(library);
+        failed.directoryVisited(1);
+        tracker.finish(library, failed, ScanState.FAILED);
+        assertEquals(7, library.getLastScanDirectories());
+
+        ScanProgress completed = tracker.start(library);
+        completed.directoryVisited(1);
+        completed.directoryVisited(1);
+        assertEquals(1.0, registry.get("mediaarchival.scan.running").tag("library", "3").gauge().value());
+        tracker.finish(library, completed, ScanState.COMPLETED);
+
+        assertEquals(2, library.getLastScanDirectories());
+        assertSame(completed, tracker.getProgress(3L).orElseThrow());
+        assertEquals(0L, completed.getEstimatedSecondsRemaining());
+        assertEquals(0.0, registry.get("mediaarchival.scan.running").tag("library", "3").gauge().value());
+        assertEquals(2.0, registry.get("mediaarchival.scan.directories").tag("library", "3").gauge().value());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
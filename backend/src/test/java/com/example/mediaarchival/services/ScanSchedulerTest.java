@@ -0,0 +1,160 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.responses.DeviceScanStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ScanScheduler scanScheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scanScheduler != null) {
+            scanScheduler.shutdown();
+        }
+    }
+
+    @Test
+    void ScanScheduler_submit_ShouldLimitScansOnTheSameDevice() throws InterruptedException {
+        scanScheduler = new ScanScheduler(2, 10);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(6);
+
+        for (int i = 0; i < 6; i++) {
+            scanScheduler.submit((long) i, tempDir.resolve("library" + i).toString(), () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(50);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void ScanScheduler_submit_ShouldRespectTheGlobalLimit() throws InterruptedException {
+        scanScheduler = new ScanScheduler(3, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            scanScheduler.submit((long) i, tempDir.toString(), () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(50);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void ScanScheduler_getStatus_ShouldReportActiveQueuedAndCompletedScans() throws InterruptedException {
+        scanScheduler = new ScanScheduler(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        scanScheduler.submit(1L, tempDir.toString(), () -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        });
+        scanScheduler.submit(2L, tempDir.toString(), finished::countDown);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        List<DeviceScanStatus> status = scanScheduler.getStatus();
+        assertEquals(1, status.size());
+        assertEquals(ScanScheduler.deviceOf(tempDir.toString()), status.get(0).getDevice());
+        assertEquals(1, status.get(0).getThreadLimit());
+        assertEquals(1, status.get(0).getActiveScans());
+        assertEquals(1, status.get(0).getQueuedScans());
+
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        // The counters are updated just after the scan itself returns
+        for (int i = 0; i < 100 && scanScheduler.getStatus().get(0).getCompletedScans() < 2; i++) {
+            sleep(10);
+        }
+        assertEquals(2, scanScheduler.getStatus().get(0).getCompletedScans());
+        assertEquals(0, scanScheduler.getStatus().get(0).getActiveScans());
+    }
+
+    @Test
+    void ScanScheduler_submit_ShouldDropScansOfALibraryAlreadyScheduled() throws InterruptedException {
+        scanScheduler = new ScanScheduler(2, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(scanScheduler.submit(1L, tempDir.toString(), () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+            finished.countDown();
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // A second thread is free, but the library is already being scanned
+        assertFalse(scanScheduler.submit(1L, tempDir.toString(), runs::incrementAndGet));
+
+        release.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        // The library can be scanned again once its scan has finished
+        CountDownLatch rescanned = new CountDownLatch(1);
+        boolean queued = false;
+        for (int i = 0; i < 100 && !queued; i++) {
+            queued = scanScheduler.submit(1L, tempDir.toString(), rescanned::countDown);
+            if (!queued) {
+                sleep(10);
+            }
+        }
+        assertTrue(rescanned.await(10, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void ScanScheduler_deviceOf_ShouldResolveMissingPathsThroughTheirParent() {
+        String device = ScanScheduler.deviceOf(tempDir.toString());
+
+        assertNotEquals(ScanScheduler.UNKNOWN_DEVICE, device);
+        assertEquals(device, ScanScheduler.deviceOf(tempDir.resolve("not/created/yet").toString()));
+        assertEquals(ScanScheduler.UNKNOWN_DEVICE, ScanScheduler.deviceOf(null));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.SyncOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyncReportStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void SyncReportStore_complete_ShouldReplaceThePreviousReport() throws Exception {
+        SyncReportStore store = new SyncReportStore(tempDir);
+        try (SyncReportStore.Writer report = store.open(1L)) {
+            report.write(SyncOutcome.NEVER_ARCHIVED, "music/Old", 1L, null, null);
+            report.complete();
+        }
+        try (SyncReportStore.Writer report = store.open(1L)) {
+            report.write(SyncOutcome.ARCHIVED, "music/New", 2L, Instant.EPOCH, 10L);
+            report.write(SyncOutcome.ARCHIVED, "music/Newer", 3L, Instant.EPOCH, 20L);
+            assertEquals(2L, report.getCounts().get(SyncOutcome.ARCHIVED));
+            report.complete();
+        }
+
+        List<String> lines = Files.readAllLines(store.find(1L).orElseThrow());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"path\":\"music/New\""));
+        assertTrue(lines.get(2).contains("\"ARCHIVED\":2"));
+        assertTrue(lines.get(2).contains("\"NEVER_ARCHIVED\":0"));
+    }
+
+    @Test
+    void SyncReportStore_close_ShouldDiscardIncompleteReports() throws Exception {
+        SyncReportStore store = new SyncReportStore(tempDir);
+        try (SyncReportStore.Writer report = store.open(1L)) {
+            report.write(SyncOutcome.ORPHANED, "music/Old", null, Instant.EPOCH, 10L);
+        }
+
+        assertTrue(store.find(1L).isEmpty());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void SyncReportStore_delete_ShouldRemoveTheReport() throws Exception {
+        SyncReportStore store = new SyncReportStore(tempDir);
+        try (SyncReportStore.Writer report = store.open(1L)) {
+            report.complete();
+        }
+
+        store.delete(1L);
+
+        assertTrue(store.find(1L).isEmpty());
+    }
+}
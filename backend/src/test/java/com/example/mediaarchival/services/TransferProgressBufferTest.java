@@ -0,0 +1,99 @@
+package com.example.mediaarchival.services;
+
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
+import com.example.mediaarchival.repositories.JobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class TransferProgressBufferTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    private TransferProgressBuffer transferProgressBuffer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        transferProgressBuffer = new TransferProgressBuffer(jobRepository);
+    }
+
+    @Test
+    void TransferProgressBuffer_flush_ShouldWriteTheLatestProgressGroupedByValue() {
+        transferProgressBuffer.record(1L, 10);
+        transferProgressBuffer.record(1L, 40);
+        transferProgressBuffer.record(2L, 40);
+        transferProgressBuffer.record(3L, 7);
+
+        transferProgressBuffer.flush();
+
+        verify(jobRepository).updateProgressByIdIn(argThat(ids ->
+                ids.size() == 2 && ids.containsAll(List.of(1L, 2L))), eq(40));
+        verify(jobRepository).updateProgressByIdIn(List.of(3L), 7);
+        verifyNoMoreInteractions(jobRepository);
+    }
+
+    @Test
+    void TransferProgressBuffer_flush_ShouldOnlyWriteProgressRecordedSinceThePreviousFlush() {
+        transferProgressBuffer.record(1L, 10);
+        transferProgressBuffer.record(2L, 10);
+        transferProgressBuffer.flush();
+        clearInvocations(jobRepository);
+
+        transferProgressBuffer.flush();
+        verifyNoInteractions(jobRepository);
+
+        transferProgressBuffer.record(2L, 11);
+        transferProgressBuffer.flush();
+        verify(jobRepository).updateProgressByIdIn(List.of(2L), 11);
+        verifyNoMoreInteractions(jobRepository);
+    }
+
+    @Test
+    void TransferProgressBuffer_finish_ShouldDropTheProgressOfEndedJobs() {
+        transferProgressBuffer.record(1L, 90);
+        transferProgressBuffer.record(2L, 30);
+
+        transferProgressBuffer.finish(1L);
+        transferProgressBuffer.flush();
+
+        verify(jobRepository, never()).updateProgressByIdIn(eq(List.of(1L)), anyInt());
+        verify(jobRepository).updateProgressByIdIn(List.of(2L), 30);
+    }
+
+    @Test
+    void TransferProgressBuffer_applyTo_ShouldSetTheLiveProgressOfRunningTransfers() {
+        JobModel uploading = job(1L, JobType.ARCHIVE, 20);
+        JobModel downloading = job(2L, JobType.DOWNLOAD, -1);
+        JobModel queued = job(3L, JobType.ARCHIVE, -1);
+        transferProgressBuffer.record(1L, 55);
+        transferProgressBuffer.record(2L, 35);
+
+        transferProgressBuffer.applyTo(List.of(uploading, downloading, queued));
+
+        assertEquals(55, uploading.getProgress());
+        assertEquals(35, downloading.getProgress());
+        assertEquals(-1, queued.getProgress());
+        verify(jobRepository, never()).updateProgressByIdIn(any(), anyInt());
+    }
+
+    private static JobModel job(Long id, JobType type, int progress) {
+        JobModel job = new JobModel();
+        job.setId(id);
+        job.setType(type);
+        job.setState(JobState.QUEUED);
+        job.setProgress(progress);
+        return job;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.mediaarchival.tasks;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class H2CatalogImportTest {
+
+    private Connection source;
+
+    private Connection target;
+
+    private final H2CatalogImport catalogImport = new H2CatalogImport(null);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        source = DriverManager.getConnection("jdbc:h2:mem:" + UUID.randomUUID(), "sa", "");
+        // H2 emulating PostgreSQL stands in for the PostgreSQL catalog
+        target = DriverManager.getConnection("jdbc:h2:mem:" + UUID.randomUUID()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH", "sa", "");
+        for (Connection connection : new Connection[] {source, target}) {
+            execute(connection,
+                    "CREATE TABLE library_model (id BIGINT PRIMARY KEY, name VARCHAR(255))",
+                    "CREATE TABLE media_model (id BIGINT PRIMARY KEY, path VARCHAR(255) UNIQUE,"
+                            + " archived_status SMALLINT, library_id BIGINT REFERENCES library_model (id))",
+                    "CREATE TABLE job_model (id BIGINT PRIMARY KEY, state VARCHAR(20),"
+                            + " media_id BIGINT NOT NULL REFERENCES media_model (id) ON DELETE CASCADE)",
+                    "CREATE TABLE users (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                            + " username VARCHAR(255))");
+        }
+        // Tables the H2 catalog predates, and a column the target no longer has
+        execute(target,
+                "CREATE TABLE directory_size_model (id BIGINT PRIMARY KEY, path VARCHAR(4096))",
+                "CREATE TABLE file_fingerprint_model (id BIGINT PRIMARY KEY, path VARCHAR(4096))",
+                "INSERT INTO users (id, username) VALUES (1, 'admin')");
+        execute(source,
+                "ALTER TABLE media_model ADD COLUMN obsolete BOOLEAN",
+                "INSERT INTO library_model VALUES (3, 'Movies')",
+                "INSERT INTO users (id, username) VALUES (1, 'owner')");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        source.close();
+        target.close();
+    }
+
+    @Test
+    void H2CatalogImport_copy_ShouldCopyEveryTableWithItsIds() throws SQLException {
+        try (PreparedStatement insert = source.prepareStatement(
+                "INSERT INTO media_model (id, path, archived_status, library_id, obsolete)"
+                        + " VALUES (?, ?, 1, 3, TRUE)")) {
+            // More rows than fit in one batch
+            for (int id = 1; id <= 2500; id++) {
+                insert.setLong(1, id * 2L);
+                insert.setString(2, "Movies/Film " + id);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        execute(source, "INSERT INTO job_model VALUES (11, 'RESTORING', 4)");
+
+        long rows = catalogImport.copy(source, target);
+
+        assertEquals(1 + 2500 + 1 + 1, rows);
+        assertEquals(2500, count("SELECT COUNT(*) FROM media_model WHERE library_id = 3"));
+        assertEquals(5000, count("SELECT MAX(id) FROM media_model"));
+        assertEquals(1, count("SELECT archived_status FROM media_model WHERE path = 'Movies/Film 1'"));
+        assertEquals(4, count("SELECT media_id FROM job_model WHERE id = 11 AND state = 'RESTORING'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE username = 'owner'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE username = 'admin'"));
+        assertTrue(target.getAutoCommit());
+    }
+
+    @Test
+    void H2CatalogImport_copy_ShouldLeaveAnExistingCatalogAlone() throws SQLException {
+        execute(target, "INSERT INTO library_model VALUES (1, 'Music')");
+
+        assertEquals(-1, catalogImport.copy(source, target));
+
+        assertEquals(1, count("SELECT COUNT(*) FROM library_model"));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE username = 'admin'"));
+    }
+
+    @Test
+    void H2CatalogImport_copy_ShouldRefuseCatalogsWithLegacyJobColumns() throws SQLException {
+        execute(source, "ALTER TABLE media_model ADD COLUMN is_restoring BOOLEAN");
+
+        assertThrows(IllegalStateException.class, () -> catalogImport.copy(source, target));
+
+        assertEquals(0, count("SELECT COUNT(*) FROM library_model"));
+    }
+
+    @Test
+    void H2CatalogImport_copy_ShouldWriteNothingWhenARowIsRejected() throws SQLException {
+        execute(source,
+                "INSERT INTO media_model (id, path, library_id) VALUES (1, 'Movies/A', 3)",
+                "INSERT INTO job_model VALUES (1, 'QUEUED', 1)");
+        execute(target, "ALTER TABLE job_model ADD COLUMN type VARCHAR(20) NOT NULL");
+
+        assertThrows(SQLException.class, () -> catalogImport.copy(source, target));
+
+        assertEquals(0, count("SELECT COUNT(*) FROM library_model"));
+        assertEquals(0, count("SELECT COUNT(*) FROM media_model"));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE username = 'admin'"));
+        assertTrue(target.getAutoCommit());
+    }
+
+    private long count(String query) throws SQLException {
+        try (Statement statement = target.createStatement();
+             ResultSet result = statement.executeQuery(query)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String... statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mediaarchival.tasks;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class IdSequenceAlignmentTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        // Tables as older versions created them, with identity IDs, and new sequences
+        for (Class<?> entity : IdSequenceAlignment.SEQUENCED_ENTITIES) {
+            String table = IdSequenceAlignment.tableNameOf(entity);
+            jdbcTemplate.execute("CREATE TABLE " + table + " (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY)");
+            jdbcTemplate.execute("CREATE SEQUENCE " + table + "_seq START WITH 1 INCREMENT BY 50");
+        }
+    }
+
+    @Test
+    void IdSequenceAlignment_align_ShouldRestartSequencesAnAllocationAboveTheLargestId() {
+        for (int i = 0; i < 120; i++) {
+            jdbcTemplate.update("INSERT INTO media_model DEFAULT VALUES");
+        }
+
+        new IdSequenceAlignment(jdbcTemplate, emptyProvider()).align();
+
+        // The pooled optimizer hands out the 50 IDs up to each value it reads
+        assertEquals(170L, nextValue("media_model_seq"));
+        assertEquals(50L, nextValue("library_model_seq"));
+        assertEquals(50L, nextValue("job_model_seq"));
+    }
+
+    @Test
+    void IdSequenceAlignment_align_ShouldMoveSequencesBackWhenAheadOfTheTable() {
+        jdbcTemplate.execute("ALTER SEQUENCE job_model_seq RESTART WITH 5000");
+        jdbcTemplate.update("INSERT INTO job_model (id) VALUES (7)");
+
+        new IdSequenceAlignment(jdbcTemplate, emptyProvider()).align();
+
+        assertEquals(57L, nextValue("job_model_seq"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void IdSequenceAlignment_alignOnStartup_ShouldImportTheH2CatalogFirst() {
+        H2CatalogImport catalogImport = mock(H2CatalogImport.class);
+        doAnswer(invocation -> jdbcTemplate.update("INSERT INTO media_model (id) VALUES (900)"))
+                .when(catalogImport).importCatalog();
+        ObjectProvider<H2CatalogImport> provider = mock(ObjectProvider.class);
+        doAnswer(invocation -> {
+            ((Consumer<H2CatalogImport>) invocation.getArgument(0)).accept(catalogImport);
+            return null;
+        }).when(provider).ifAvailable(any());
+
+        new IdSequenceAlignment(jdbcTemplate, provider).alignOnStartup();
+
+        verify(catalogImport).importCatalog();
+        assertEquals(950L, nextValue("media_model_seq"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<H2CatalogImport> emptyProvider() {
+        return mock(ObjectProvider.class);
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("VALUES NEXT VALUE FOR " + sequence, Long.class);
+    }
+}
@@ -2,10 +2,14 @@ package com.example.mediaarchival.tasks;
 
 import static org.mockito.Mockito.*;
 
-import com.example.mediaarchival.controllers.MediaController;
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.JobModel;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
-import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.repositories.JobRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,19 +31,22 @@ import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 public class RestoreCheckerTest {
 
-    @Mock private MediaRepository mediaRepository;
+    @Mock private JobRepository jobRepository;
     @Mock private S3Client s3Client;
     @Mock private JmsTemplate jmsTemplate;
-    @Mock private MediaController mediaController;
+    @Mock private JobService jobService;
+    @Mock private LibraryMetadataCache libraryMetadataCache;
     @InjectMocks private RestoreChecker restoreChecker;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(libraryMetadataCache.getForMedia(any())).thenAnswer(invocation ->
+                LibraryMetadataCache.Metadata.of(invocation.<MediaModel>getArgument(0).getLibrary()));
     }
     @AfterEach
     public void tearDown() {
-        reset(mediaRepository, s3Client, jmsTemplate, mediaController);
+        reset(jobRepository, s3Client, jmsTemplate, jobService, libraryMetadataCache);
     }
 
 
@@ -49,13 +56,12 @@ public class RestoreCheckerTest {
         libraryModel.setBucketName("bucket-name");
 
         MediaModel mediaModel = new MediaModel();
-        mediaModel.setRestored(false);
         mediaModel.setId(1L); // Assuming the ID is a Long
         mediaModel.setLibrary(libraryModel);
         mediaModel.setPath("media-path");
 
-        List<MediaModel> mediaList = Collections.singletonList(mediaModel);
-        when(mediaRepository.findByIsRestoring(true)).thenReturn(mediaList);
+        JobModel job = restoringJob(mediaModel);
+        when(jobService.transition(job, JobState.RESTORED)).thenReturn(true);
 
         // Capture the Consumer passed to the headObject method
         ArgumentCaptor<Consumer<HeadObjectRequest.Builder>> argumentCaptor = ArgumentCaptor.forClass(Consumer.class);
@@ -79,50 +85,49 @@ public class RestoreCheckerTest {
         restoreChecker.checkRestoreStatus();
 
         // Verify
+        verify(jobService).transition(job, JobState.RESTORED);
         verify(jmsTemplate).convertAndSend(eq("downloadQueue"), eq("media-path"));
     }
 
     @Test
     public void checkRestoreStatus_JobCancelled_DoNotUpdateOrSendDownload() {
         MediaModel mediaModel = createTestMediaModel();
-        mediaModel.setJobCancelled(true);
 
-        List<MediaModel> mediaList = Collections.singletonList(mediaModel);
-        when(mediaRepository.findByIsRestoring(true)).thenReturn(mediaList);
-        when(mediaController.getJobCancelled(mediaModel.getId())).thenReturn(true);
+        JobModel job = restoringJob(mediaModel);
+        when(jobService.isCancelRequested(job)).thenReturn(true);
 
         restoreChecker.checkRestoreStatus();
 
-        // Since the job is cancelled, no further actions should be taken.
-        verify(mediaRepository, never()).updateIsRestoringById(any(Long.class), anyBoolean());
+        // Since the job is cancelled, it ends without checking S3 or sending a download.
+        verify(jobService).transition(job, JobState.CANCELLED);
+        verifyNoInteractions(s3Client);
         verify(jmsTemplate, never()).convertAndSend(anyString(), Optional.ofNullable(any()));
     }
 
     @Test
-    public void checkRestoreStatus_MediaAlreadyRestored_DoNotUpdateOrSendDownload() {
+    public void checkRestoreStatus_TransitionLost_DoNotSendDownload() {
         MediaModel mediaModel = createTestMediaModel();
-        mediaModel.setRestored(true);
 
-        List<MediaModel> mediaList = Collections.singletonList(mediaModel);
-        when(mediaRepository.findByIsRestoring(true)).thenReturn(mediaList);
+        JobModel job = restoringJob(mediaModel);
+        when(s3Client.headObject(any(Consumer.class)))
+                .thenReturn(HeadObjectResponse.builder().restore("ongoing-request=\"false\"").build());
+        when(jobService.transition(job, JobState.RESTORED)).thenReturn(false);
 
         restoreChecker.checkRestoreStatus();
 
-        verify(mediaRepository, never()).updateIsRestoringById(anyLong(), anyBoolean());
         verify(jmsTemplate, never()).convertAndSend(anyString(), Optional.ofNullable(any()));
     }
     @Test
     public void checkRestoreStatus_RestoreInProgress_DoNotUpdateOrSendDownload() {
         MediaModel mediaModel = createTestMediaModel();
 
-        List<MediaModel> mediaList = Collections.singletonList(mediaModel);
-        when(mediaRepository.findByIsRestoring(true)).thenReturn(mediaList);
+        restoringJob(mediaModel);
         when(s3Client.headObject(any(Consumer.class)))
                 .thenReturn(HeadObjectResponse.builder().restore("ongoing-request=\"true\"").build());
 
         restoreChecker.checkRestoreStatus();
 
-        verify(mediaRepository, never()).updateIsRestoringById(anyLong(), anyBoolean());
+        verify(jobService, never()).transition(any(), any());
         verify(jmsTemplate, never()).convertAndSend(anyString(), Optional.ofNullable(any()));
     }
 
@@ -130,16 +135,14 @@ public class RestoreCheckerTest {
     public void checkRestoreStatus_RestoreNotStarted_UpdateMediaAsNotRestored() {
         MediaModel mediaModel = createTestMediaModel();
 
-        List<MediaModel> mediaList = Collections.singletonList(mediaModel);
-        when(mediaRepository.findByIsRestoring(true)).thenReturn(mediaList);
+        JobModel job = restoringJob(mediaModel);
         when(s3Client.headObject(any(Consumer.class)))
                 .thenReturn(HeadObjectResponse.builder().restore(null).build());
 
         restoreChecker.checkRestoreStatus();
 
-        verify(mediaRepository, never()).updateIsRestoringById(anyLong(), anyBoolean());
         verify(jmsTemplate, never()).convertAndSend(anyString(), Optional.ofNullable(any()));
-        verify(mediaRepository).save(any(MediaModel.class));
+        verify(jobService).transition(job, JobState.FAILED);
     }
 
 
@@ -148,11 +151,21 @@ public class RestoreCheckerTest {
         libraryModel.setBucketName("bucket-name");
 
         MediaModel mediaModel = new MediaModel();
-        mediaModel.setRestored(false);
         mediaModel.setId(1L);
         mediaModel.setLibrary(libraryModel);
         mediaModel.setPath("media-path");
         return mediaModel;
     }
 
+    private JobModel restoringJob(MediaModel mediaModel) {
+        JobModel job = new JobModel();
+        job.setId(10L);
+        job.setMedia(mediaModel);
+        job.setType(JobType.DOWNLOAD);
+        job.setState(JobState.RESTORING);
+        when(jobRepository.findByTypeAndStateInAndActiveTrue(JobType.DOWNLOAD, List.of(JobState.RESTORING)))
+                .thenReturn(Collections.singletonList(job));
+        return job;
+    }
+
 }
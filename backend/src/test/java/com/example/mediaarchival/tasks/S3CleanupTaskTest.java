@@ -1,7 +1,7 @@
 package com.example.mediaarchival.tasks;
 
 import com.example.mediaarchival.models.LibraryModel;
-import com.example.mediaarchival.repositories.LibraryRepository;
+import com.example.mediaarchival.services.LibraryMetadataCache;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,7 +20,7 @@ import static org.mockito.Mockito.*;
 public class S3CleanupTaskTest {
 
     @Mock private S3Client s3Client;
-    @Mock private LibraryRepository libraryRepository;
+    @Mock private LibraryMetadataCache libraryMetadataCache;
     @InjectMocks private S3CleanupTask s3CleanupTask;
 
     @BeforeEach
@@ -29,13 +29,14 @@ public class S3CleanupTaskTest {
         LibraryModel libraryModel = new LibraryModel();
         libraryModel.setBucketName("test-bucket");
 
-        List<LibraryModel> libraries = Collections.singletonList(libraryModel);
-        when(libraryRepository.findAll()).thenReturn(libraries);
+        List<LibraryMetadataCache.Metadata> libraries =
+                Collections.singletonList(LibraryMetadataCache.Metadata.of(libraryModel));
+        when(libraryMetadataCache.getAll()).thenReturn(libraries);
     }
 
     @AfterEach
     public void tearDown() {
-        reset(s3Client, libraryRepository);
+        reset(s3Client, libraryMetadataCache);
     }
 
     @Test
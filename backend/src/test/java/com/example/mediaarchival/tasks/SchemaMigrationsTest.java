@@ -0,0 +1,88 @@
+package com.example.mediaarchival.tasks;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigrationsTest {
+
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Tables as the schema update leaves a catalog written by an older version
+        jdbcTemplate.execute("CREATE TABLE media_model (id BIGINT PRIMARY KEY, path VARCHAR(255),"
+                + " library_id BIGINT, archived_status TINYINT,"
+                + " is_restoring BOOLEAN NOT NULL, is_archiving BOOLEAN NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_media_restoring ON media_model (is_restoring)");
+        jdbcTemplate.execute("CREATE TABLE job_model (id BIGINT PRIMARY KEY, media_id BIGINT,"
+                + " type VARCHAR(255), state VARCHAR(255), active BOOLEAN, progress INT,"
+                + " cancel_requested BOOLEAN, attempts INT, created_at TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE SEQUENCE job_model_seq START WITH 1 INCREMENT BY 50");
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " username VARCHAR(255), password VARCHAR(255))");
+    }
+
+    @Test
+    void SchemaMigrations_migrate_ShouldBaselineAnUntrackedCatalogAndApplyEveryMigrationOnce() {
+        jdbcTemplate.update("INSERT INTO media_model VALUES (1, 'restoring', 1, 0, TRUE, FALSE)");
+        jdbcTemplate.update("INSERT INTO media_model VALUES (2, 'archived', 1, 0, FALSE, FALSE)");
+        // Created by the schema update of an older version, which declared it on the entity
+        jdbcTemplate.execute("CREATE INDEX idx_media_library_path ON media_model (library_id, path)");
+
+        new SchemaMigrations(flyway()).migrate();
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM job_model WHERE media_id = 1 AND state = 'RESTORING' AND active",
+                Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'MEDIA_MODEL'"
+                        + " AND COLUMN_NAME IN ('IS_RESTORING', 'IS_ARCHIVING')",
+                Integer.class));
+        assertEquals("admin", jdbcTemplate.queryForObject("SELECT username FROM users", String.class));
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN ('IDX_MEDIA_LIBRARY_STATUS',"
+                        + " 'IDX_MEDIA_LIBRARY_PATH', 'IDX_JOB_MEDIA_ACTIVE', 'IDX_JOB_ACTIVE_TYPE', 'IDX_JOB_TYPE_STATE')",
+                Integer.class));
+        assertEquals("5", flyway().info().current().getVersion().getVersion());
+
+        // Nothing is applied twice
+        new SchemaMigrations(flyway()).migrate();
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM job_model", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    void SchemaMigrations_migrate_ShouldKeepTheUsersOfACurrentCatalog() {
+        jdbcTemplate.execute("ALTER TABLE media_model DROP COLUMN is_restoring");
+        jdbcTemplate.update("INSERT INTO users (id, username, password) VALUES (4, 'owner', 'hash')");
+
+        new SchemaMigrations(flyway()).migrate();
+
+        assertEquals("owner", jdbcTemplate.queryForObject("SELECT username FROM users", String.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM job_model", Integer.class));
+    }
+
+    // Configured as by application.properties
+    private Flyway flyway() {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .javaMigrations(new LegacyJobMigration())
+                .load();
+    }
+}
@@ -1,16 +1,21 @@
 package com.example.mediaarchival.tasks;
 
+import com.example.mediaarchival.enums.JobState;
+import com.example.mediaarchival.enums.JobType;
+import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
+import com.example.mediaarchival.repositories.LibraryRepository;
 import com.example.mediaarchival.repositories.MediaRepository;
+import com.example.mediaarchival.services.JobService;
+import com.example.mediaarchival.services.MediaSizingService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
+import org.springframework.jms.core.JmsTemplate;
 
-import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +26,18 @@ public class StartupResetTasksTest {
     @Mock
     private MediaRepository mediaRepository;
 
+    @Mock
+    private JobService jobService;
+
+    @Mock
+    private LibraryRepository libraryRepository;
+
+    @Mock
+    private JmsTemplate jmsTemplate;
+
+    @Mock
+    private MediaSizingService mediaSizingService;
+
     @InjectMocks
     private StartupResetTasks startupResetTasks;
 
@@ -31,99 +48,80 @@ public class StartupResetTasksTest {
 
     @AfterEach
     public void tearDown() {
-        reset(mediaRepository);
+        reset(mediaRepository, jobService);
     }
 
     @Test
-    void StartupResetTasks_whenResetArchivingStatusOnStartup_thenArchivingStatusIsReset() {
-        MediaModel media1 = createTestMediaModel(true, false);
-        MediaModel media2 = createTestMediaModel(true, false);
-        List<MediaModel> inProgressMedia = Arrays.asList(media1, media2);
-
-        when(mediaRepository.findByIsArchiving(true)).thenReturn(inProgressMedia);
-
+    void StartupResetTasks_whenResetArchivingStatusOnStartup_thenArchiveJobsFailInOneUpdate() {
         startupResetTasks.resetArchivingStatusOnStartup();
 
-        verify(mediaRepository).findByIsArchiving(true);
+        verify(jobService).transitionAll(
+                JobType.ARCHIVE,
+                List.of(JobState.QUEUED, JobState.TARRING, JobState.UPLOADING),
+                JobState.FAILED);
+        verifyNoMoreInteractions(jobService);
+    }
 
-        ArgumentCaptor<MediaModel> mediaModelArgumentCaptor = ArgumentCaptor.forClass(MediaModel.class);
-        verify(mediaRepository, times(inProgressMedia.size())).save(mediaModelArgumentCaptor.capture());
-        List<MediaModel> savedMedia = mediaModelArgumentCaptor.getAllValues();
+    @Test
+    void StartupResetTasks_whenResetRestorationProgressOnStartup_thenDownloadsAreResetExceptRestores() {
+        startupResetTasks.resetRestorationProgressOnStartup();
 
-        for (MediaModel media : savedMedia) {
-            assertFalse(media.isArchiving());
-            assertEquals(-1, media.getUploadProgress());
-            assertFalse(media.isTarring());
-            assertFalse(media.isJobCancelled());
-        }
+        verify(jobService).transitionAll(
+                JobType.DOWNLOAD, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED);
+        verify(jobService).transitionAll(
+                JobType.DOWNLOAD,
+                List.of(JobState.QUEUED, JobState.RESTORED, JobState.DOWNLOADING),
+                JobState.FAILED);
+        verifyNoMoreInteractions(jobService);
     }
 
     @Test
-    void StartupResetTasks_whenResetRestorationProgressOnStartup_thenRestorationProgressIsReset() {
-        MediaModel media1 = createTestMediaModel(false, true);
-        MediaModel media2 = createTestMediaModel(false, true);
-        List<MediaModel> inProgressMedia = Arrays.asList(media1, media2);
-
-        when(mediaRepository.findByIsRecovering(true)).thenReturn(inProgressMedia);
+    void StartupResetTasks_whenClearingFinishedDownloadsFails_thenInterruptedDownloadsStillFail() {
+        when(jobService.transitionAll(
+                JobType.DOWNLOAD, List.of(JobState.SUCCEEDED, JobState.FAILED), JobState.CLEARED))
+                .thenThrow(new RuntimeException("Update failed"));
 
         startupResetTasks.resetRestorationProgressOnStartup();
 
-        verify(mediaRepository).findByIsRecovering(true);
-
-        ArgumentCaptor<MediaModel> mediaModelArgumentCaptor = ArgumentCaptor.forClass(MediaModel.class);
-        verify(mediaRepository, times(inProgressMedia.size())).save(mediaModelArgumentCaptor.capture());
-        List<MediaModel> savedMedia = mediaModelArgumentCaptor.getAllValues();
-
-        for (MediaModel media : savedMedia) {
-            assertFalse(media.isRestored());
-            assertFalse(media.isRecovering());
-            assertFalse(media.isRestoring());
-            assertEquals(-1, media.getDownloadProgress());
-            assertNull(media.getDownloadSuccess());
-            assertFalse(media.isJobCancelled());
-        }
+        verify(jobService).transitionAll(
+                JobType.DOWNLOAD,
+                List.of(JobState.QUEUED, JobState.RESTORED, JobState.DOWNLOADING),
+                JobState.FAILED);
     }
+
     @Test
-    void StartupResetTasks_whenResetArchivingStatusAndSaveFails_thenContinueWithNextMedia() {
-        // Setup test data
-        MediaModel media1 = createTestMediaModel(true, false);
-        MediaModel media2 = createTestMediaModel(true, false);
-        List<MediaModel> inProgressMedia = Arrays.asList(media1, media2);
-
-        when(mediaRepository.findByIsArchiving(true)).thenReturn(inProgressMedia);
-
-        doAnswer(invocation -> {
-            MediaModel media = invocation.getArgument(0);
-            if (media.equals(media1)) {
-                throw new RuntimeException("Save failed");
-            }
-            return null;
-        }).when(mediaRepository).save(any(MediaModel.class));
+    void StartupResetTasks_whenResetUpdatingLibrariesOnStartup_thenLibrariesWithoutCheckpointAreCleared() {
+        when(libraryRepository.clearUpdatingWithoutCheckpoint()).thenReturn(2);
 
-        startupResetTasks.resetArchivingStatusOnStartup();
+        startupResetTasks.resetUpdatingLibrariesOnStartup();
 
-        verify(mediaRepository).findByIsArchiving(true);
+        verify(libraryRepository).clearUpdatingWithoutCheckpoint();
+    }
 
-        ArgumentCaptor<MediaModel> mediaModelArgumentCaptor = ArgumentCaptor.forClass(MediaModel.class);
-        verify(mediaRepository, times(2)).save(mediaModelArgumentCaptor.capture());
+    @Test
+    void StartupResetTasks_whenResumePendingSizingOnStartup_thenMediaAreQueued() {
+        MediaModel media = new MediaModel();
+        media.setSizePending(true);
 
-        List<MediaModel> savedMedia = mediaModelArgumentCaptor.getAllValues();
+        when(mediaRepository.findByIsSizePending(true)).thenReturn(List.of(media));
 
-        assertEquals(media2, savedMedia.get(1));
-        assertFalse(media2.isArchiving());
-        assertEquals(-1, media2.getUploadProgress());
-        assertFalse(media2.isTarring());
-        assertFalse(media2.isJobCancelled());
+        startupResetTasks.resumePendingSizingOnStartup();
 
-        assertEquals(2, savedMedia.size());
+        verify(mediaSizingService).submit(media, MediaSizingService.Priority.SCAN);
     }
 
+    @Test
+    void StartupResetTasks_whenResumeInterruptedScansOnStartup_thenScansAreRequeued() {
+        LibraryModel library = new LibraryModel();
+        library.setId(4L);
+        library.setScanCheckpoint("/data/music/Artist/Album");
+
+        when(libraryRepository.findByScanCheckpointIsNotNull()).thenReturn(List.of(library));
+
+        startupResetTasks.resumeInterruptedScansOnStartup();
 
-    private MediaModel createTestMediaModel(boolean isArchiving, boolean isRecovering) {
-        MediaModel mediaModel = new MediaModel();
-        mediaModel.setArchiving(isArchiving);
-        mediaModel.setRecovering(isRecovering);
-        mediaModel.setRestoring(false);
-        return mediaModel;
+        assertTrue(library.isUpdating());
+        verify(libraryRepository).save(library);
+        verify(jmsTemplate).convertAndSend("libraryScanQueue", 4L);
     }
 }
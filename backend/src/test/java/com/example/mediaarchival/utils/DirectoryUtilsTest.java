@@ -1,11 +1,21 @@
 package com.example.mediaarchival.utils;
 
+import com.example.mediaarchival.models.DirectorySizeModel;
+import com.example.mediaarchival.repositories.DirectorySizeRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.Files;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
 
 public class DirectoryUtilsTest {
 
@@ -49,4 +59,170 @@ public class DirectoryUtilsTest {
 
         assertEquals(1024, DirectoryUtils.getDirectorySize(seriesDir.toFile(), true));
     }
+
+    @Test
+    void DirectoryUtils_getDirectorySizeWithCache_ShouldMatchUncachedSizes() throws IOException {
+        Path seriesDir = createSeries();
+        DirectorySizeRepository sizeCache = inMemorySizeCache(new HashMap<>());
+
+        assertEquals(3072, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+        assertEquals(1024, DirectoryUtils.getDirectorySize(seriesDir.toFile(), true, sizeCache));
+        assertEquals(2048, DirectoryUtils.getDirectorySize(seriesDir.resolve("Season 1").toFile(), false, sizeCache));
+    }
+
+    @Test
+    void DirectoryUtils_getDirectorySizeWithCache_ShouldOnlyRewriteChangedDirectoryAndAncestors() throws IOException {
+        Path seriesDir = createSeries();
+        Map<String, DirectorySizeModel> store = new HashMap<>();
+        DirectorySizeRepository sizeCache = inMemorySizeCache(store);
+        DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache);
+        assertEquals(3, store.size());
+
+        // Nothing changed, so nothing is written
+        clearInvocations(sizeCache);
+        assertEquals(3072, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+        verify(sizeCache, never()).saveAll(any());
+
+        // A new episode only changes the season and the series above it
+        Path seasonDir = seriesDir.resolve("Season 1");
+        Files.write(seasonDir.resolve("episode3.mp4"), new byte[512]);
+        seasonDir.toFile().setLastModified(seasonDir.toFile().lastModified() + 2000);
+        clearInvocations(sizeCache);
+
+        assertEquals(3584, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+        List<String> rewritten = savedPaths(sizeCache);
+        assertEquals(List.of(seriesDir.toString(), seasonDir.toString()), rewritten.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void DirectoryUtils_getDirectorySizeWithCache_ShouldOnlySeeFilesRewrittenInPlaceWhenVerifying() throws IOException {
+        Path seriesDir = createSeries();
+        Map<String, DirectorySizeModel> store = new HashMap<>();
+        DirectorySizeRepository sizeCache = inMemorySizeCache(store);
+        DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache);
+
+        // Rewriting a file in place leaves the modification time of its directory alone
+        Path seasonDir = seriesDir.resolve("Season 1");
+        long seasonModified = seasonDir.toFile().lastModified();
+        Files.write(seasonDir.resolve("episode1.mp4"), new byte[1536]);
+        seasonDir.toFile().setLastModified(seasonModified);
+
+        // Without verifying, the season keeps its cached size
+        assertEquals(3072, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+
+        assertEquals(3584, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache, true));
+        assertEquals(2560, store.get(seasonDir.toString()).getOwnSize());
+        assertEquals(3584, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+    }
+
+    @Test
+    void DirectoryUtils_getDirectorySizeWithCache_ShouldDropRemovedDirectories() throws IOException {
+        Path seriesDir = createSeries();
+        Map<String, DirectorySizeModel> store = new HashMap<>();
+        DirectorySizeRepository sizeCache = inMemorySizeCache(store);
+        DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache);
+
+        Path extrasDir = seriesDir.resolve("extras");
+        Files.delete(extrasDir.resolve("poster.jpg"));
+        Files.delete(extrasDir);
+        seriesDir.toFile().setLastModified(seriesDir.toFile().lastModified() + 2000);
+
+        assertEquals(2560, DirectoryUtils.getDirectorySize(seriesDir.toFile(), false, sizeCache));
+        assertFalse(store.containsKey(extrasDir.toString()));
+    }
+
+    @Test
+    void DirectoryUtils_summarizeTvShow_ShouldSummarizeMetadataAndSeasonsInOneWalk() throws IOException {
+        Path seriesDir = createSeries();
+        Path seasonTwo = Files.createDirectories(seriesDir.resolve("Season 2"));
+        Files.write(seasonTwo.resolve("episode1.mp4"), new byte[256]);
+        Files.write(seriesDir.resolve("season notes.txt"), new byte[100]);
+        DirectorySizeRepository sizeCache = inMemorySizeCache(new HashMap<>());
+
+        DirectoryUtils.TvShowSummary summary = DirectoryUtils.summarizeTvShow(seriesDir.toFile(), sizeCache);
+
+        // Files named like seasons stay part of the metadata
+        assertEquals(1124, summary.metadata().size());
+        assertEquals(List.of("Season 1", "Season 2"), summary.seasons().stream()
+                .map(season -> season.dir().getName()).collect(Collectors.toList()));
+        assertEquals(2048, summary.seasons().get(0).size());
+        assertEquals(256, summary.seasons().get(1).size());
+        verify(sizeCache, times(1)).findByPathOrPathStartingWith(anyString(), anyString());
+    }
+
+    @Test
+    void DirectoryUtils_summarizeTvShow_ShouldTrackTheLatestChangeInsideEachSeason() throws IOException {
+        Path seriesDir = createSeries();
+        Path seasonDir = seriesDir.resolve("Season 1");
+        long base = 1_700_000_000_000L;
+        for (Path path : List.of(seriesDir, seriesDir.resolve("info.txt"), seriesDir.resolve("extras"),
+                seriesDir.resolve("extras/poster.jpg"), seasonDir, seasonDir.resolve("episode1.mp4"))) {
+            path.toFile().setLastModified(base);
+        }
+        seasonDir.resolve("episode2.mp4").toFile().setLastModified(base + 60_000);
+        DirectorySizeRepository sizeCache = inMemorySizeCache(new HashMap<>());
+
+        DirectoryUtils.TvShowSummary summary = DirectoryUtils.summarizeTvShow(seriesDir.toFile(), sizeCache);
+        assertEquals(base + 60_000, summary.seasons().get(0).lastModified());
+        assertEquals(base, summary.metadata().lastModified());
+
+        // A change in the extras only moves the metadata forward
+        seriesDir.resolve("extras/poster.jpg").toFile().setLastModified(base + 120_000);
+        seriesDir.resolve("extras").toFile().setLastModified(base + 1_000);
+        summary = DirectoryUtils.summarizeTvShow(seriesDir.toFile(), sizeCache);
+        assertEquals(base + 60_000, summary.seasons().get(0).lastModified());
+        assertEquals(base + 120_000, summary.metadata().lastModified());
+    }
+
+    // series: info.txt (512), extras/poster.jpg (512), Season 1/episode1.mp4 + episode2.mp4 (2048)
+    private Path createSeries() throws IOException {
+        Path seriesDir = tempDir.resolve("series");
+        Path seasonDir = seriesDir.resolve("Season 1");
+        Path extrasDir = seriesDir.resolve("extras");
+        Files.createDirectories(seasonDir);
+        Files.createDirectories(extrasDir);
+        Files.write(seriesDir.resolve("info.txt"), new byte[512]);
+        Files.write(extrasDir.resolve("poster.jpg"), new byte[512]);
+        Files.write(seasonDir.resolve("episode1.mp4"), new byte[1024]);
+        Files.write(seasonDir.resolve("episode2.mp4"), new byte[1024]);
+        return seriesDir;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DirectorySizeRepository inMemorySizeCache(Map<String, DirectorySizeModel> store) {
+        DirectorySizeRepository sizeCache = mock(DirectorySizeRepository.class);
+        when(sizeCache.findByPathOrPathStartingWith(anyString(), anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            String prefix = invocation.getArgument(1);
+            return store.values().stream()
+                    .filter(entry -> entry.getPath().equals(path) || entry.getPath().startsWith(prefix))
+                    .collect(Collectors.toList());
+        });
+        when(sizeCache.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<DirectorySizeModel> entries = invocation.getArgument(0);
+            for (DirectorySizeModel entry : entries) {
+                if (entry.getId() == null) {
+                    entry.setId((long) store.size() + 1);
+                }
+                store.put(entry.getPath(), entry);
+            }
+            return entries;
+        });
+        doAnswer(invocation -> {
+            Iterable<DirectorySizeModel> entries = invocation.getArgument(0);
+            entries.forEach(entry -> store.remove(entry.getPath()));
+            return null;
+        }).when(sizeCache).deleteAllInBatch(any());
+        return sizeCache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> savedPaths(DirectorySizeRepository sizeCache) {
+        List<String> paths = new ArrayList<>();
+        mockingDetails(sizeCache).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("saveAll"))
+                .forEach(invocation -> ((Iterable<DirectorySizeModel>) invocation.getArgument(0))
+                        .forEach(entry -> paths.add(entry.getPath())));
+        return paths;
+    }
 }
@@ -0,0 +1,126 @@
+package com.example.mediaarchival.utils;
+
+import com.example.mediaarchival.models.FileFingerprintModel;
+import com.example.mediaarchival.repositories.FileFingerprintRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class FingerprintUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void FingerprintUtils_fingerprintFile_ShouldOnlyReadSampledBlocks() throws IOException {
+        Path movie = tempDir.resolve("movie.mkv");
+        byte[] content = new byte[2 * 1024 * 1024];
+        new Random(7).nextBytes(content);
+        Files.write(movie, content);
+        String original = FingerprintUtils.fingerprintFile(movie, content.length);
+
+        // Between the head and the first middle block, so not sampled
+        overwriteByte(movie, FingerprintUtils.BLOCK_SIZE + 10);
+        assertEquals(original, FingerprintUtils.fingerprintFile(movie, content.length));
+
+        overwriteByte(movie, 10);
+        String headChanged = FingerprintUtils.fingerprintFile(movie, content.length);
+        assertNotEquals(original, headChanged);
+
+        overwriteByte(movie, content.length - 1);
+        assertNotEquals(headChanged, FingerprintUtils.fingerprintFile(movie, content.length));
+    }
+
+    @Test
+    void FingerprintUtils_fingerprint_ShouldReuseCachedFileFingerprints() throws IOException {
+        Path album = tempDir.resolve("album");
+        Files.createDirectories(album);
+        Files.write(album.resolve("01.flac"), new byte[4096]);
+        Files.write(album.resolve("02.flac"), new byte[2048]);
+        Map<String, FileFingerprintModel> store = new HashMap<>();
+        FileFingerprintRepository cache = inMemoryFingerprintCache(store);
+
+        String first = FingerprintUtils.fingerprint(album.toFile(), false, cache);
+        assertNotNull(first);
+        assertEquals(2, store.size());
+
+        clearInvocations(cache);
+        assertEquals(first, FingerprintUtils.fingerprint(album.toFile(), false, cache));
+        verify(cache, never()).saveAll(any());
+    }
+
+    @Test
+    void FingerprintUtils_fingerprint_ShouldDetectReplacedFilesWithPreservedTimes() throws IOException {
+        Path album = tempDir.resolve("album");
+        Files.createDirectories(album);
+        Path track = album.resolve("01.flac");
+        Files.write(track, new byte[4096]);
+        FileFingerprintRepository cache = inMemoryFingerprintCache(new HashMap<>());
+        String first = FingerprintUtils.fingerprint(album.toFile(), false, cache);
+
+        // A restore writes a new file with the same size and modification time
+        Path restored = tempDir.resolve("restored.flac");
+        byte[] content = new byte[4096];
+        content[100] = 1;
+        Files.write(restored, content);
+        Files.setLastModifiedTime(restored, Files.getLastModifiedTime(track));
+        Files.move(restored, track, StandardCopyOption.REPLACE_EXISTING);
+
+        assertNotEquals(first, FingerprintUtils.fingerprint(album.toFile(), false, cache));
+    }
+
+    @Test
+    void FingerprintUtils_fingerprint_ShouldExcludeSeasonFolders() throws IOException {
+        Path show = tempDir.resolve("show");
+        Path season = show.resolve("Season 1");
+        Files.createDirectories(season);
+        Files.write(show.resolve("poster.jpg"), new byte[512]);
+        Files.write(season.resolve("episode.mp4"), new byte[1024]);
+        FileFingerprintRepository cache = inMemoryFingerprintCache(new HashMap<>());
+        String metadata = FingerprintUtils.fingerprint(show.toFile(), true, cache);
+        String all = FingerprintUtils.fingerprint(show.toFile(), false, cache);
+
+        Files.write(season.resolve("episode2.mp4"), new byte[1024]);
+
+        assertEquals(metadata, FingerprintUtils.fingerprint(show.toFile(), true, cache));
+        assertNotEquals(all, FingerprintUtils.fingerprint(show.toFile(), false, cache));
+    }
+
+    private static void overwriteByte(Path file, long offset) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            out.seek(offset);
+            int value = out.read();
+            out.seek(offset);
+            out.write(value ^ 0xFF);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private FileFingerprintRepository inMemoryFingerprintCache(Map<String, FileFingerprintModel> store) {
+        FileFingerprintRepository cache = mock(FileFingerprintRepository.class);
+        when(cache.findByFileKeyIn(any())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            return keys.stream().filter(store::containsKey).map(store::get).collect(Collectors.toList());
+        });
+        when(cache.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<FileFingerprintModel> entries = invocation.getArgument(0);
+            entries.forEach(entry -> store.put(entry.getFileKey(), entry));
+            return entries;
+        });
+        return cache;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.mediaarchival.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class MergeJoinUtilsTest {
+
+  private static class RecordingHandler implements MergeJoinUtils.JoinHandler<String, String> {
+    private final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onLeftOnly(String left) {
+      events.add("left:" + left);
+    }
+
+    @Override
+    public void onRightOnly(String right) {
+      events.add("right:" + right);
+    }
+
+    @Override
+    public void onBoth(String left, String right) {
+      events.add("both:" + left);
+    }
+  }
+
+  @Test
+  void MergeJoinUtils_join_ShouldReportEveryKeyOnce() {
+    RecordingHandler handler = new RecordingHandler();
+
+    MergeJoinUtils.join(
+        List.of("a", "b", "d", "f").iterator(),
+        Function.identity(),
+        List.of("b", "c", "d", "e").iterator(),
+        Function.identity(),
+        Comparator.naturalOrder(),
+        handler);
+
+    assertEquals(
+        List.of("left:a", "both:b", "right:c", "both:d", "right:e", "left:f"), handler.events);
+  }
+
+  @Test
+  void MergeJoinUtils_join_ShouldHandleEmptySides() {
+    RecordingHandler handler = new RecordingHandler();
+
+    MergeJoinUtils.join(
+        List.<String>of().iterator(),
+        Function.identity(),
+        List.of("a", "b").iterator(),
+        Function.identity(),
+        Comparator.naturalOrder(),
+        handler);
+
+    assertEquals(List.of("right:a", "right:b"), handler.events);
+  }
+
+  @Test
+  void MergeJoinUtils_join_ShouldRejectUnsortedSideBeforeHandlingIt() {
+    RecordingHandler handler = new RecordingHandler();
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            MergeJoinUtils.join(
+                List.of("a", "b", "c").iterator(),
+                Function.identity(),
+                List.of("b", "a").iterator(),
+                Function.identity(),
+                Comparator.naturalOrder(),
+                handler));
+
+    assertEquals(List.of("left:a", "both:b"), handler.events);
+  }
+
+  @Test
+  void MergeJoinUtils_joinAcrossStringOrders_ShouldJoinSidesSortedByCodePointAndUtf16() {
+    String emoji = "a/" + new String(Character.toChars(0x1F3B5));
+    String fullwidth = "a/\uFF08live\uFF09";
+    RecordingHandler handler = new RecordingHandler();
+
+    // The left side in UTF-16 order, the right side in code point order
+    MergeJoinUtils.joinAcrossStringOrders(
+        List.of("a/b", emoji, fullwidth, "b").iterator(),
+        Function.identity(),
+        List.of("a/b", fullwidth, emoji + "2", "c").iterator(),
+        Function.identity(),
+        handler);
+
+    assertEquals(
+        List.of("both:a/b", "both:" + fullwidth, "left:b", "right:c", "left:" + emoji,
+            "right:" + emoji + "2"),
+        handler.events);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            MergeJoinUtils.join(
+                List.of("a/b", emoji, fullwidth).iterator(),
+                Function.identity(),
+                List.of("a/b", fullwidth, emoji).iterator(),
+                Function.identity(),
+                MergeJoinUtils.CODE_POINT_ORDER,
+                new RecordingHandler()));
+  }
+
+  @Test
+  void MergeJoinUtils_compareCodePoints_ShouldMatchUtf8ByteOrder() {
+    String supplementary = new String(Character.toChars(0x1F600));
+    String privateUse = "\uE000";
+
+    // UTF-16 order puts the surrogate pair first, UTF-8 byte order does not
+    assertTrue(supplementary.compareTo(privateUse) < 0);
+    assertTrue(MergeJoinUtils.compareCodePoints(supplementary, privateUse) > 0);
+    assertTrue(MergeJoinUtils.compareCodePoints("abc", "abd") < 0);
+    assertTrue(MergeJoinUtils.compareCodePoints("ab", "abc") < 0);
+    assertEquals(0, MergeJoinUtils.compareCodePoints("abc", "abc"));
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.mediaarchival.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathTemplateTest {
+
+    @Test
+    void PathTemplate_compile_ShouldUseTheLiteralPrefixAsRoot() {
+        assertEquals("/data/music", PathTemplate.compile("/data/music/${artist}/").getRoot());
+        assertEquals("testVolume/tv", PathTemplate.compile("testVolume/tv").getRoot());
+        assertEquals("/", PathTemplate.compile("/**/Movies").getRoot());
+        assertSame(PathTemplate.compile("/data/${a}"), PathTemplate.compile("/data/${a}"));
+    }
+
+    @Test
+    void PathTemplate_advance_ShouldMatchPlaceholderGlobAndRegexSegments() {
+        PathTemplate template = PathTemplate.compile("/data/${year:\\d{4}}/Season ?/Disc *");
+
+        BitSet year = template.advance(template.rootStates(), "2023");
+        assertTrue(template.advance(template.rootStates(), "20x3").isEmpty());
+
+        BitSet season = template.advance(year, "Season 1");
+        assertTrue(template.advance(year, "Season 10").isEmpty());
+
+        BitSet disc = template.advance(season, "Disc 1");
+        assertFalse(template.isMedia(disc));
+        assertTrue(template.advance(season, "Extras").isEmpty());
+
+        assertTrue(template.isMedia(template.advance(disc, "Pilot.mkv")));
+    }
+
+    @Test
+    void PathTemplate_advance_ShouldMatchAnyDepthSegments() {
+        PathTemplate template = PathTemplate.compile("/data/**/Albums");
+        BitSet root = template.rootStates();
+
+        // Media directly under /data/Albums, or under any Albums further down
+        assertTrue(template.isMedia(template.advance(template.advance(root, "Albums"), "A")));
+        BitSet deep = template.advance(template.advance(root, "x"), "y");
+        BitSet albums = template.advance(deep, "Albums");
+        assertTrue(template.isMedia(template.advance(albums, "B")));
+        assertFalse(template.isMedia(deep));
+        assertFalse(deep.isEmpty());
+    }
+
+    @Test
+    void PathTemplate_literalChild_ShouldOnlyFollowUnambiguousLiterals() {
+        PathTemplate template = PathTemplate.compile("/data/${disk}/media/movies");
+        BitSet disk = template.advance(template.rootStates(), "disk1");
+
+        assertNull(template.literalChild(template.rootStates()));
+        assertEquals("media", template.literalChild(disk));
+        assertEquals("movies", template.literalChild(template.advance(disk, "media")));
+        assertNull(template.literalChild(
+                template.advance(template.advance(disk, "media"), "movies")));
+        assertNull(PathTemplate.compile("/data/**/movies").literalChild(
+                PathTemplate.compile("/data/**/movies").rootStates()));
+    }
+
+    @Test
+    void PathTemplate_compile_ShouldRejectInvalidTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile(null));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("/data/**"));
+        assertThrows(IllegalArgumentException.class, () -> PathTemplate.compile("/data/${x:[a-}"));
+    }
+}
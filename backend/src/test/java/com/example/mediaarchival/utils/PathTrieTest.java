@@ -0,0 +1,110 @@
+package com.example.mediaarchival.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathTrieTest {
+
+    @Test
+    void PathTrie_put_ShouldStoreOverlappingPaths() {
+        PathTrie trie = new PathTrie();
+        trie.put("/data/tv/Show A/Season 1", 1);
+        trie.put("/data/tv/Show A/metadata", 2);
+        trie.put("/data/tv/Show B/Season 1", 3);
+        trie.put("/data/tv", 4);
+
+        assertEquals(1, trie.get("/data/tv/Show A/Season 1"));
+        assertEquals(2, trie.get("/data/tv/Show A/metadata"));
+        assertEquals(3, trie.get("/data/tv/Show B/Season 1"));
+        assertEquals(4, trie.get("/data/tv"));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void PathTrie_get_ShouldNotMatchPrefixesOrUnknownSegments() {
+        PathTrie trie = new PathTrie();
+        trie.put("/data/movies/Heat (1995)", 1);
+
+        assertEquals(PathTrie.NO_VALUE, trie.get("/data/movies"));
+        assertEquals(PathTrie.NO_VALUE, trie.get("/data/movies/Heat"));
+        assertEquals(PathTrie.NO_VALUE, trie.get("/data/movies/Heat (1995)/extra"));
+        assertEquals(PathTrie.NO_VALUE, trie.get("/data/movies/Heat (1995)/"));
+        assertFalse(trie.contains("data/movies/Heat (1995)"));
+    }
+
+    @Test
+    void PathTrie_put_ShouldReplaceAndRemoveValues() {
+        PathTrie trie = new PathTrie();
+        assertEquals(PathTrie.NO_VALUE, trie.put("/a/b", 1));
+        assertEquals(1, trie.put("/a/b", 2));
+        assertEquals(1, trie.size());
+
+        assertEquals(2, trie.remove("/a/b"));
+        assertEquals(PathTrie.NO_VALUE, trie.remove("/a/b"));
+        assertEquals(PathTrie.NO_VALUE, trie.remove("/a"));
+        assertEquals(0, trie.size());
+
+        trie.put("/a/b", 3);
+        assertEquals(3, trie.get("/a/b"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("/a/c", PathTrie.NO_VALUE));
+    }
+
+    @Test
+    void PathTrie_put_ShouldCompressSingleChildChains() {
+        PathTrie trie = new PathTrie();
+        for (int i = 0; i < 1000; i++) {
+            trie.put("/mnt/storage/media/music/Artist/Album " + i, i);
+        }
+
+        // One node for the shared prefix, one per album and the root
+        assertEquals(1002, trie.nodeCount());
+        assertEquals(999, trie.get("/mnt/storage/media/music/Artist/Album 999"));
+    }
+
+    @Test
+    void PathTrie_get_ShouldMatchAHashMapOnRandomPaths() {
+        String[] names = {"a", "b", "Season 1", "Season 10", "metadata", "", "ü", "日本"};
+        Random random = new Random(42);
+        PathTrie trie = new PathTrie();
+        Map<String, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder path = new StringBuilder();
+            int depth = 1 + random.nextInt(5);
+            for (int d = 0; d < depth; d++) {
+                path.append('/').append(names[random.nextInt(names.length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.getOrDefault(path.toString(), PathTrie.NO_VALUE),
+                        trie.remove(path.toString()));
+                expected.remove(path.toString());
+            } else {
+                trie.put(path.toString(), i);
+                expected.put(path.toString(), (long) i);
+            }
+        }
+
+        assertEquals(expected.size(), trie.size());
+        expected.forEach((path, value) -> assertEquals(value, trie.get(path)));
+    }
+
+    @Test
+    void SegmentDictionary_intern_ShouldReturnStableIds() {
+        SegmentDictionary dictionary = new SegmentDictionary();
+        int first = dictionary.intern("Season 1");
+        for (int i = 0; i < 2000; i++) {
+            dictionary.intern("segment " + i);
+        }
+
+        assertEquals(first, dictionary.intern("Season 1"));
+        assertEquals(first, dictionary.find("Season 1"));
+        assertEquals("segment 1999", dictionary.get(dictionary.find("segment 1999")));
+        assertEquals(-1, dictionary.find("unknown"));
+        assertEquals(2001, dictionary.size());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mediaarchival.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class S3InventoryUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void S3InventoryUtils_readManifest_ShouldReadSchemaAndFiles() throws IOException {
+        Path manifest = tempDir.resolve("manifest.json");
+        Files.writeString(manifest, """
+                {
+                  "sourceBucket" : "media-bucket",
+                  "destinationBucket" : "arn:aws:s3:::inventory-bucket",
+                  "version" : "2016-11-30",
+                  "fileFormat" : "CSV",
+                  "fileSchema" : "Bucket, Key, Size, LastModifiedDate, ETag, StorageClass",
+                  "files" : [ {
+                    "key" : "inventory/media-bucket/daily/data/one.csv.gz",
+                    "size" : 120,
+                    "MD5checksum" : "abc"
+                  } ]
+                }
+                """);
+
+        S3InventoryUtils.Manifest read;
+        try (InputStream in = Files.newInputStream(manifest)) {
+            read = S3InventoryUtils.readManifest(in);
+        }
+
+        assertEquals("media-bucket", read.sourceBucket());
+        assertEquals("CSV", read.fileFormat());
+        assertEquals(List.of("Bucket", "Key", "Size", "LastModifiedDate", "ETag", "StorageClass"), read.columns());
+        assertEquals(List.of("inventory/media-bucket/daily/data/one.csv.gz"), read.files());
+    }
+
+    @Test
+    void S3InventoryUtils_readCsv_ShouldDecodeKeysAndSkipDeleteMarkers() throws IOException {
+        Path report = tempDir.resolve("one.csv.gz");
+        writeGzip(report, String.join("\n",
+                "\"media-bucket\",\"music/Chapell%20Roan/Pink%2BPony\",\"true\",\"false\",\"2048\",\"2024-01-01T10:00:00.000Z\",\"\"\"etag\"\"\",\"DEEP_ARCHIVE\"",
+                "\"media-bucket\",\"music/Old\",\"false\",\"false\",\"10\",\"2023-01-01T10:00:00.000Z\",\"etag\",\"DEEP_ARCHIVE\"",
+                "\"media-bucket\",\"music/Deleted\",\"true\",\"true\",\"\",\"2024-01-01T10:00:00.000Z\",\"\",\"\"",
+                ""));
+        List<String> columns = List.of(
+                "Bucket", "Key", "IsLatest", "IsDeleteMarker", "Size", "LastModifiedDate", "ETag", "StorageClass");
+
+        List<S3InventoryUtils.InventoryEntry> entries = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(report)) {
+            S3InventoryUtils.readCsv(in, columns, entries::add);
+        }
+
+        assertEquals(1, entries.size());
+        S3InventoryUtils.InventoryEntry entry = entries.get(0);
+        assertEquals("music/Chapell Roan/Pink+Pony", entry.key());
+        assertEquals(2048L, entry.size());
+        assertEquals(Instant.parse("2024-01-01T10:00:00Z"), entry.lastModified());
+        assertEquals("\"etag\"", entry.eTag());
+        assertEquals("DEEP_ARCHIVE", entry.storageClass());
+    }
+
+    @Test
+    void S3InventoryUtils_manifestKeysNewestFirst_ShouldSkipFoldersThatAreNotReports() {
+        List<String> manifests = S3InventoryUtils.manifestKeysNewestFirst(List.of(
+                "inventory/media-bucket/daily/2024-01-01T01-00Z/",
+                "inventory/media-bucket/daily/hive/",
+                "inventory/media-bucket/daily/2024-01-03T01-00Z/",
+                "inventory/media-bucket/daily/data/"));
+
+        assertEquals(List.of(
+                "inventory/media-bucket/daily/2024-01-03T01-00Z/manifest.json",
+                "inventory/media-bucket/daily/2024-01-01T01-00Z/manifest.json"), manifests);
+    }
+
+    private void writeGzip(Path file, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,12 +1,10 @@
 package com.example.mediaarchival.utils;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.*;
 
 import com.example.mediaarchival.enums.MediaCategory;
 import com.example.mediaarchival.models.LibraryModel;
 import com.example.mediaarchival.models.MediaModel;
-import com.example.mediaarchival.repositories.MediaRepository;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -23,7 +21,6 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
-import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -39,9 +36,6 @@ public class TarUtilsTest {
   @TempDir
   static Path tempDir;
 
-  @Mock
-  MediaRepository mediaRepository;
-
   @BeforeAll
   public void setup() throws IOException {
     mockEnvUtils = Mockito.mockStatic(EnvUtils.class);
@@ -65,13 +59,11 @@ public class TarUtilsTest {
     library.setCategory(MediaCategory.OTHER);
     media.setLibrary(library);
 
-    this.tarFile = TarUtils.createTarArchive(media, mediaRepository);
+    this.tarFile = TarUtils.createTarArchive(media);
 
     assertNotNull(tarFile);
     assertTrue(tarFile.exists());
 
-    verify(mediaRepository, times(1)).updateIsTarringById(1L, true);
-    verify(mediaRepository, times(1)).updateIsTarringById(1L, false);
     try (TarArchiveInputStream tarInput = new TarArchiveInputStream(new FileInputStream(tarFile))) {
       TarArchiveEntry entry;
       Set<String> tarContents = new HashSet<>();
@@ -95,13 +87,11 @@ public class TarUtilsTest {
     library.setCategory(MediaCategory.OTHER);
     media.setLibrary(library);
 
-    File tarFile = TarUtils.createTarArchive(media, mediaRepository);
+    File tarFile = TarUtils.createTarArchive(media);
 
     assertNotNull(tarFile);
     assertTrue(tarFile.exists());
 
-    verify(mediaRepository, times(1)).updateIsTarringById(1L, true);
-    verify(mediaRepository, times(1)).updateIsTarringById(1L, false);
 
     try (TarArchiveInputStream tarInput = new TarArchiveInputStream(new FileInputStream(tarFile))) {
       TarArchiveEntry entry;
@@ -138,7 +128,7 @@ public class TarUtilsTest {
     library.setCategory(MediaCategory.OTHER);
     media.setLibrary(library);
 
-    File tarFile = TarUtils.createTarArchive(media, mediaRepository);
+    File tarFile = TarUtils.createTarArchive(media);
 
     // Unpack the TAR file
     TarUtils.unpackTarArchive(tarFile);
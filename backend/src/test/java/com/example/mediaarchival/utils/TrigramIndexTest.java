@@ -0,0 +1,79 @@
+package com.example.mediaarchival.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    @Test
+    void TrigramIndex_candidates_ShouldFindSubstringsRegardlessOfCase() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(1, "Our Flag Means Death");
+        index.add(2, "The Death of Stalin");
+        index.add(3, "Flags of Our Fathers");
+
+        assertArrayEquals(new int[] {1, 2}, index.candidates("DEATH", 10));
+        assertArrayEquals(new int[] {1, 3}, index.candidates("flag", 10));
+        assertArrayEquals(new int[] {1}, index.candidates("Our Flag", 10));
+        assertArrayEquals(new int[0], index.candidates("Heat", 10));
+    }
+
+    @Test
+    void TrigramIndex_candidates_ShouldDeclineShortOrCommonTerms() {
+        TrigramIndex index = new TrigramIndex();
+        for (int id = 1; id <= 5; id++) {
+            index.add(id, "Season " + id);
+        }
+
+        assertNull(index.candidates("Se", 10));
+        assertNull(index.candidates("season", 4));
+        assertEquals(5, index.candidates("season", 5).length);
+    }
+
+    @Test
+    void TrigramIndex_removeAll_ShouldForgetRemovedTexts() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(1, "Heat");
+        index.add(2, "Heathers");
+        index.add(3, "Wheat");
+        index.add(2, "Heathers");
+
+        index.removeAll(Map.of(2, "Heathers", 3, "Wheat"));
+
+        assertArrayEquals(new int[] {1}, index.candidates("heat", 10));
+        assertArrayEquals(new int[0], index.candidates("ther", 10));
+    }
+
+    @Test
+    void TrigramIndex_candidates_ShouldIncludeEveryMatchOfRandomTexts() {
+        Random random = new Random(42);
+        TrigramIndex index = new TrigramIndex();
+        Map<Integer, String> texts = new HashMap<>();
+        // Insert out of ID order to exercise sorted inserts into posting lists
+        for (int i = 0; i < 2000; i++) {
+            int id = random.nextInt(100_000);
+            StringBuilder text = new StringBuilder();
+            for (int c = 0; c < 4 + random.nextInt(12); c++) {
+                text.append((char) ('a' + random.nextInt(4)));
+            }
+            texts.put(id, text.toString());
+            index.add(id, text.toString());
+        }
+
+        for (String term : new String[] {"abc", "dddd", "abcab", "cadb"}) {
+            int[] candidates = index.candidates(term, Integer.MAX_VALUE);
+            for (Map.Entry<Integer, String> text : texts.entrySet()) {
+                if (text.getValue().contains(term)) {
+                    assertTrue(Arrays.binarySearch(candidates, text.getKey()) >= 0,
+                            text.getValue() + " should be a candidate for " + term);
+                }
+            }
+        }
+    }
+}